@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+
+/**
+ * Append-only file that holds the failure traces and expected and actual values of an
+ * imported test run session. The test elements only keep a {@link StoredFailure} with
+ * the file positions, so that huge result files can be loaded with bounded memory.
+ * The values are appended through a buffer and read back on demand.
+ */
+public class FailureTraceStore {
+
+	/**
+	 * File positions of a failure trace and its expected and actual values.
+	 */
+	public static final class StoredFailure {
+		private final FailureTraceStore fStore;
+		private final long fOffset;
+		private final int fTraceLength;
+		private final int fExpectedLength;
+		private final int fActualLength;
+
+		StoredFailure(FailureTraceStore store, long offset, int traceLength, int expectedLength, int actualLength) {
+			fStore= store;
+			fOffset= offset;
+			fTraceLength= traceLength;
+			fExpectedLength= expectedLength;
+			fActualLength= actualLength;
+		}
+
+		public boolean hasTrace() {
+			return fTraceLength >= 0;
+		}
+
+		public boolean hasExpected() {
+			return fExpectedLength >= 0;
+		}
+
+		public boolean hasActual() {
+			return fActualLength >= 0;
+		}
+
+		public String getTrace() {
+			return fStore.read(fOffset, fTraceLength);
+		}
+
+		public String getExpected() {
+			return fStore.read(fOffset + Math.max(fTraceLength, 0), fExpectedLength);
+		}
+
+		public String getActual() {
+			return fStore.read(fOffset + Math.max(fTraceLength, 0) + Math.max(fExpectedLength, 0), fActualLength);
+		}
+	}
+
+	private static final int BUFFER_SIZE= 64 * 1024;
+
+	private final File fFile;
+	private RandomAccessFile fAccess;
+	// the length including the buffered bytes
+	private long fLength;
+	// the appended bytes that have not been written to the file yet
+	private final byte[] fBuffer= new byte[BUFFER_SIZE];
+	private int fBuffered;
+
+	/**
+	 * Creates a store in the JUnit history directory.
+	 *
+	 * @throws IOException if the file could not be created
+	 */
+	public FailureTraceStore() throws IOException {
+		fFile= File.createTempFile("traces", ".bin", JUnitCorePlugin.getHistoryDirectory()); //$NON-NLS-1$ //$NON-NLS-2$
+		fFile.deleteOnExit();
+		fAccess= new RandomAccessFile(fFile, "rw"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Appends a failure to the store.
+	 *
+	 * @param trace the failure trace, can be <code>null</code>
+	 * @param expected the expected value, can be <code>null</code>
+	 * @param actual the actual value, can be <code>null</code>
+	 * @return the stored failure
+	 * @throws IOException if writing failed
+	 */
+	public synchronized StoredFailure add(String trace, String expected, String actual) throws IOException {
+		long offset= fLength;
+		int traceLength= write(trace);
+		int expectedLength= write(expected);
+		int actualLength= write(actual);
+		return new StoredFailure(this, offset, traceLength, expectedLength, actualLength);
+	}
+
+	private int write(String value) throws IOException {
+		if (value == null)
+			return -1;
+		byte[] bytes= value.getBytes(StandardCharsets.UTF_8);
+		if (fBuffered + bytes.length > BUFFER_SIZE)
+			flush();
+		if (bytes.length > BUFFER_SIZE) {
+			fAccess.seek(fLength);
+			fAccess.write(bytes);
+		} else {
+			System.arraycopy(bytes, 0, fBuffer, fBuffered, bytes.length);
+			fBuffered+= bytes.length;
+		}
+		fLength+= bytes.length;
+		return bytes.length;
+	}
+
+	private void flush() throws IOException {
+		if (fBuffered == 0)
+			return;
+		fAccess.seek(fLength - fBuffered);
+		fAccess.write(fBuffer, 0, fBuffered);
+		fBuffered= 0;
+	}
+
+	synchronized String read(long offset, int length) {
+		if (length < 0)
+			return null;
+		if (fAccess == null)
+			return null; // disposed
+		try {
+			if (offset + length > fLength - fBuffered)
+				flush();
+			byte[] bytes= new byte[length];
+			fAccess.seek(offset);
+			fAccess.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			JUnitCorePlugin.log(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Closes and deletes the store. Stored failures return <code>null</code> afterwards.
+	 */
+	public synchronized void dispose() {
+		if (fAccess == null)
+			return;
+		try {
+			fAccess.close();
+		} catch (IOException e) {
+			JUnitCorePlugin.log(e);
+		}
+		fAccess= null;
+		fFile.delete();
+	}
+}
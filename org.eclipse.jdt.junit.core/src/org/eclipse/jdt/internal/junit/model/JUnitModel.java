@@ -12,31 +12,23 @@
 
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 
 import org.eclipse.jdt.junit.TestRunListener;
 
@@ -381,24 +373,17 @@ public final class JUnitModel {
 	 * @throws CoreException if the import failed
 	 */
 	public static TestRunSession importTestRunSession(File file) throws CoreException {
-		try {
-			SAXParserFactory parserFactory= SAXParserFactory.newInstance();
-//			parserFactory.setValidating(true); // TODO: add DTD and debug flag
-			SAXParser parser= parserFactory.newSAXParser();
-			TestRunHandler handler= new TestRunHandler();
-			parser.parse(file, handler);
-			TestRunSession session= handler.getTestRunSession();
+		try (InputStream in= new BufferedInputStream(new FileInputStream(file))) {
+			TestRunSessionReader reader= new TestRunSessionReader();
+			TestRunSession session= reader.read(in);
+			if (session == null)
+				throw new IOException("no test run found"); //$NON-NLS-1$
 			JUnitCorePlugin.getModel().addTestRunSession(session);
 			return session;
-		} catch (ParserConfigurationException e) {
-			throwImportError(file, e);
-		} catch (SAXException e) {
+		} catch (XMLStreamException e) {
 			throwImportError(file, e);
 		} catch (IOException e) {
 			throwImportError(file, e);
-		} catch (IllegalArgumentException e) {
-			// Bug in parser: can throw IAE even if file is not null
-			throwImportError(file, e);
 		}
 		return null; // does not happen
 	}
@@ -416,7 +401,7 @@ public final class JUnitModel {
 	public static TestRunSession importTestRunSession(String url, IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
 		monitor.beginTask(ModelMessages.JUnitModel_importing_from_url, IProgressMonitor.UNKNOWN);
 		final String trimmedUrl= url.trim().replaceAll("\r\n?|\n", ""); //$NON-NLS-1$ //$NON-NLS-2$
-		final TestRunHandler handler= new TestRunHandler(monitor);
+		final TestRunSessionReader reader= new TestRunSessionReader(monitor);
 		
 		final CoreException[] exception= { null };
 		final TestRunSession[] session= { null };
@@ -424,23 +409,16 @@ public final class JUnitModel {
 		Thread importThread= new Thread("JUnit URL importer") { //$NON-NLS-1$
 			@Override
 			public void run() {
-				try {
-					SAXParserFactory parserFactory= SAXParserFactory.newInstance();
-//					parserFactory.setValidating(true); // TODO: add DTD and debug flag
-					SAXParser parser= parserFactory.newSAXParser();
-					parser.parse(trimmedUrl, handler);
-					session[0]= handler.getTestRunSession();
+				try (InputStream in= new BufferedInputStream(new URL(trimmedUrl).openStream())) {
+					session[0]= reader.read(in);
+					if (session[0] == null)
+						storeImportError(new IOException("no test run found")); //$NON-NLS-1$
 				} catch (OperationCanceledException e) {
 					// canceled
-				} catch (ParserConfigurationException e) {
-					storeImportError(e);
-				} catch (SAXException e) {
+				} catch (XMLStreamException e) {
 					storeImportError(e);
 				} catch (IOException e) {
 					storeImportError(e);
-				} catch (IllegalArgumentException e) {
-					// Bug in parser: can throw IAE even if URL is not null
-					storeImportError(e);
 				}
 			}
 			private void storeImportError(Exception e) {
@@ -472,21 +450,13 @@ public final class JUnitModel {
 	}
 
 	public static void importIntoTestRunSession(File swapFile, TestRunSession testRunSession) throws CoreException {
-		try {
-			SAXParserFactory parserFactory= SAXParserFactory.newInstance();
-//			parserFactory.setValidating(true); // TODO: add DTD and debug flag
-			SAXParser parser= parserFactory.newSAXParser();
-			TestRunHandler handler= new TestRunHandler(testRunSession);
-			parser.parse(swapFile, handler);
-		} catch (ParserConfigurationException e) {
-			throwImportError(swapFile, e);
-		} catch (SAXException e) {
+		try (InputStream in= new BufferedInputStream(new FileInputStream(swapFile))) {
+			TestRunSessionReader reader= new TestRunSessionReader(testRunSession);
+			reader.read(in);
+		} catch (XMLStreamException e) {
 			throwImportError(swapFile, e);
 		} catch (IOException e) {
 			throwImportError(swapFile, e);
-		} catch (IllegalArgumentException e) {
-			// Bug in parser: can throw IAE even if file is not null
-			throwImportError(swapFile, e);
 		}
 	}
 
@@ -498,50 +468,18 @@ public final class JUnitModel {
 	 * @throws CoreException if an error occurred
 	 */
 	public static void exportTestRunSession(TestRunSession testRunSession, File file) throws CoreException {
-		FileOutputStream out= null;
-		try {
-			out= new FileOutputStream(file);
-            exportTestRunSession(testRunSession, out);
+		try (OutputStream out= new BufferedOutputStream(new FileOutputStream(file))) {
+			exportTestRunSession(testRunSession, out);
 
 		} catch (IOException e) {
 			throwExportError(file, e);
-		} catch (TransformerConfigurationException e) {
-			throwExportError(file, e);
-		} catch (TransformerException e) {
+		} catch (XMLStreamException e) {
 			throwExportError(file, e);
-		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException e2) {
-					JUnitCorePlugin.log(e2);
-				}
-			}
 		}
 	}
 
-	public static void exportTestRunSession(TestRunSession testRunSession, OutputStream out)
-			throws TransformerFactoryConfigurationError, TransformerException {
-
-		Transformer transformer= TransformerFactory.newInstance().newTransformer();
-		InputSource inputSource= new InputSource();
-		SAXSource source= new SAXSource(new TestRunSessionSerializer(testRunSession), inputSource);
-		StreamResult result= new StreamResult(out);
-		transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8"); //$NON-NLS-1$
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes"); //$NON-NLS-1$
-		/*
-		 * Bug in Xalan: Only indents if proprietary property
-		 * org.apache.xalan.templates.OutputProperties.S_KEY_INDENT_AMOUNT is set.
-		 *
-		 * Bug in Xalan as shipped with J2SE 5.0:
-		 * Does not read the indent-amount property at all >:-(.
-		 */
-		try {
-			transformer.setOutputProperty("{http://xml.apache.org/xalan}indent-amount", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-		} catch (IllegalArgumentException e) {
-			// no indentation today...
-		}
-		transformer.transform(source, result);
+	public static void exportTestRunSession(TestRunSession testRunSession, OutputStream out) throws XMLStreamException {
+		new TestRunSessionSerializer(testRunSession).serialize(out);
 	}
 
 	private static void throwExportError(File file, Exception e) throws CoreException {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,12 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -22,6 +26,10 @@ import java.io.UnsupportedEncodingException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.SafeRunner;
@@ -42,6 +50,14 @@ public class RemoteTestRunnerClient {
 			JUnitCorePlugin.log(exception);
 		}
 	}
+	/**
+	 * A notification of the listeners about a test event. The values of the event are taken
+	 * when the message is read, so that the notification can be sent after later messages.
+	 */
+	private abstract class ListenerNotification {
+		abstract void sendTo(ITestRunListener2 listener);
+	}
+
 	/**
 	 * A simple state machine to process requests from the RemoteTestRunner
 	 */
@@ -225,7 +241,17 @@ public class RemoteTestRunnerClient {
 	private int fPort= -1;
 	private PrintWriter fWriter;
 	private PushbackReader fPushbackReader;
+	/**
+	 * The frame input if the RemoteTestRunner uses the binary protocol, set to
+	 * <code>null</code> by {@link #shutDown()} from any thread
+	 */
+	private volatile DataInputStream fBinaryInput;
 	private String fLastLineDelimiter;
+	/**
+	 * The notifications of the frame that is currently read, or <code>null</code> if the
+	 * listeners are notified for each message
+	 */
+	private List<ListenerNotification> fFrameNotifications;
 	/**
 	 * The protocol version
 	 */
@@ -263,19 +289,27 @@ public class RemoteTestRunnerClient {
 					System.out.println("Creating server socket "+fServerPort); //$NON-NLS-1$
 				fServerSocket= new ServerSocket(fServerPort);
 				fSocket= fServerSocket.accept();
-				try {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream(), "UTF-8"))); //$NON-NLS-1$
-				} catch (UnsupportedEncodingException e) {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream())));
-				}
 				try {
 				    fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream(), "UTF-8"), true); //$NON-NLS-1$
 	            } catch (UnsupportedEncodingException e1) {
 	                fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream()), true);
 	            }
-				String message;
-				while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
-					receiveMessage(message);
+				InputStream input= new BufferedInputStream(fSocket.getInputStream(), 16 * 1024);
+				if (isBinaryProtocol(input)) {
+					DataInputStream binaryInput= new DataInputStream(input);
+					fBinaryInput= binaryInput;
+					fLastLineDelimiter= System.getProperty("line.separator"); //$NON-NLS-1$
+					readFrames(binaryInput);
+				} else {
+					try {
+					    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(input, "UTF-8"))); //$NON-NLS-1$
+					} catch (UnsupportedEncodingException e) {
+					    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(input)));
+					}
+					String message;
+					while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
+						receiveMessage(message);
+				}
 			} catch (SocketException e) {
 				notifyTestRunTerminated();
 			} catch (IOException e) {
@@ -331,6 +365,13 @@ public class RemoteTestRunnerClient {
 			}
 		} catch(IOException e) {
 		}
+		try {
+			if (fBinaryInput != null) {
+				fBinaryInput.close();
+				fBinaryInput= null;
+			}
+		} catch(IOException e) {
+		}
 		try {
 			if (fSocket != null) {
 				fSocket.close();
@@ -351,6 +392,119 @@ public class RemoteTestRunnerClient {
 		return fSocket != null;
 	}
 
+	/**
+	 * Checks whether the stream starts with the binary protocol header. Consumes the
+	 * header if it does, otherwise the stream is reset to read text messages.
+	 *
+	 * @param in the input stream from the RemoteTestRunner, must support mark
+	 * @return <code>true</code> iff the RemoteTestRunner uses the binary protocol
+	 * @throws IOException if reading fails
+	 */
+	private boolean isBinaryProtocol(InputStream in) throws IOException {
+		byte[] header= MessageIds.BINARY_PROTOCOL.getBytes(StandardCharsets.US_ASCII);
+		in.mark(header.length);
+		for (int i= 0; i < header.length; i++) {
+			if (in.read() != header[i]) {
+				in.reset();
+				return false;
+			}
+		}
+		int version= new DataInputStream(in).readInt();
+		if (version != MessageIds.BINARY_PROTOCOL_VERSION)
+			throw new IOException("Unsupported binary protocol version: " + version); //$NON-NLS-1$
+		return true;
+	}
+
+	/**
+	 * Reads frames of the binary protocol until the RemoteTestRunner closes the connection
+	 * or the client is shut down. The listeners are notified once per frame about the
+	 * events of all its messages.
+	 *
+	 * @param input the frame input, which is {@link #fBinaryInput} until the client is shut down
+	 * @throws IOException if reading fails
+	 */
+	private void readFrames(DataInputStream input) throws IOException {
+		byte[] payload= new byte[0];
+		fFrameNotifications= new ArrayList<>();
+		try {
+			while (fBinaryInput == input) {
+				int length;
+				try {
+					length= input.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+				if (payload.length < length)
+					payload= new byte[Math.max(length, 2 * payload.length)];
+				input.readFully(payload, 0, length);
+
+				ByteBuffer frame= ByteBuffer.wrap(payload, 0, length);
+				int count= frame.getInt();
+				try {
+					// messages after a TEST_STOPPED message are ignored like later frames
+					for (int i= 0; i < count && fBinaryInput == input; i++) {
+						int messageLength= frame.getInt();
+						String message= new String(payload, frame.position(), messageLength, StandardCharsets.UTF_8);
+						frame.position(frame.position() + messageLength);
+						receiveMessage(message);
+					}
+				} finally {
+					sendFrameNotifications();
+				}
+			}
+		} finally {
+			fFrameNotifications= null;
+		}
+	}
+
+	/**
+	 * Sends the notifications of the frame that has been read to the listeners. Each
+	 * listener gets all notifications in order with a single safe runnable.
+	 */
+	private void sendFrameNotifications() {
+		final List<ListenerNotification> notifications= fFrameNotifications;
+		if (notifications.isEmpty())
+			return;
+		for (int i= 0; i < fListeners.length; i++) {
+			final ITestRunListener2 listener= fListeners[i];
+			SafeRunner.run(new ListenerSafeRunnable() {
+				@Override
+				public void run() {
+					for (int j= 0; j < notifications.size(); j++) {
+						try {
+							notifications.get(j).sendTo(listener);
+						} catch (RuntimeException e) {
+							// a failing notification must not drop the later events of the frame
+							JUnitCorePlugin.log(e);
+						}
+					}
+				}
+			});
+		}
+		notifications.clear();
+	}
+
+	/**
+	 * Notifies the listeners, or adds the notification to the frame that is currently read.
+	 *
+	 * @param notification the notification
+	 */
+	private void notifyListeners(final ListenerNotification notification) {
+		if (fFrameNotifications != null) {
+			fFrameNotifications.add(notification);
+			return;
+		}
+		for (int i= 0; i < fListeners.length; i++) {
+			final ITestRunListener2 listener= fListeners[i];
+			SafeRunner.run(new ListenerSafeRunnable() {
+				@Override
+				public void run() {
+					notification.sendTo(listener);
+				}
+			});
+		}
+	}
+
 	private String readMessage(PushbackReader in) throws IOException {
 		StringBuffer buf= new StringBuffer(128);
 		int ch;
@@ -461,27 +615,24 @@ public class RemoteTestRunnerClient {
 	}
 
 	private void notifyTestReran(final String testId, final String className, final String testName, final int statusCode, final String trace) {
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					listener.testReran(testId,
-								className, testName, statusCode, trace,
-								nullifyEmpty(fExpectedResult), nullifyEmpty(fActualResult));
-				}
-			});
-		}
+		final String expected= nullifyEmpty(fExpectedResult);
+		final String actual= nullifyEmpty(fActualResult);
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testReran(testId, className, testName, statusCode, trace, expected, actual);
+			}
+		});
 	}
 
-	private void notifyTestTreeEntry(final String treeEntry) {
-		for (int i= 0; i < fListeners.length; i++) {
-			ITestRunListener2 listener= fListeners[i];
-			if (!hasTestId())
-				listener.testTreeEntry(fakeTestId(treeEntry));
-			else
-				listener.testTreeEntry(treeEntry);
-		}
+	private void notifyTestTreeEntry(String treeEntry) {
+		final String entry= hasTestId() ? treeEntry : fakeTestId(treeEntry);
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testTreeEntry(entry);
+			}
+		});
 	}
 
 	private String fakeTestId(String treeEntry) {
@@ -494,88 +645,75 @@ public class RemoteTestRunnerClient {
 	private void notifyTestRunStopped(final long elapsedTime) {
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					listener.testRunStopped(elapsedTime);
-				}
-			});
-		}
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testRunStopped(elapsedTime);
+			}
+		});
 	}
 
 	private void testRunEnded(final long elapsedTime) {
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					listener.testRunEnded(elapsedTime);
-				}
-			});
-		}
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testRunEnded(elapsedTime);
+			}
+		});
 	}
 
-	private void notifyTestEnded(final String test) {
+	private void notifyTestEnded(String test) {
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					String s[]= extractTestId(test);
-					listener.testEnded(s[0], s[1]);
-				}
-			});
-		}
+		final String s[]= extractTestId(test);
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testEnded(s[0], s[1]);
+			}
+		});
 	}
 
-	private void notifyTestStarted(final String test) {
+	private void notifyTestStarted(String test) {
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					String s[]= extractTestId(test);
-					listener.testStarted(s[0], s[1]);
-				}
-			});
-		}
+		final String s[]= extractTestId(test);
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testStarted(s[0], s[1]);
+			}
+		});
 	}
 
 	private void notifyTestRunStarted(final int count) {
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					listener.testRunStarted(count);
-				}
-			});
-		}
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testRunStarted(count);
+			}
+		});
 	}
 
 	private void notifyTestFailed() {
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-			        listener.testFailed(fFailureKind, fFailedTestId,
-			        		fFailedTest, fFailedTrace.toString(), nullifyEmpty(fExpectedResult), nullifyEmpty(fActualResult));
-				}
-			});
-		}
+		final int failureKind= fFailureKind;
+		final String failedTestId= fFailedTestId;
+		final String failedTest= fFailedTest;
+		final String trace= fFailedTrace.toString();
+		final String expected= nullifyEmpty(fExpectedResult);
+		final String actual= nullifyEmpty(fActualResult);
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testFailed(failureKind, failedTestId, failedTest, trace, expected, actual);
+			}
+		});
 	}
 
 	/**
@@ -607,15 +745,12 @@ public class RemoteTestRunnerClient {
 		// fix for 77771 RemoteTestRunnerClient doing work after junit shutdown [JUnit]
 		if (JUnitCorePlugin.isStopped())
 			return;
-		for (int i= 0; i < fListeners.length; i++) {
-			final ITestRunListener2 listener= fListeners[i];
-			SafeRunner.run(new ListenerSafeRunnable() {
-				@Override
-				public void run() {
-					listener.testRunTerminated();
-				}
-			});
-		}
+		notifyListeners(new ListenerNotification() {
+			@Override
+			void sendTo(ITestRunListener2 listener) {
+				listener.testRunTerminated();
+			}
+		});
 	}
 
 	public void rerunTest(String testId, String className, String testName) {
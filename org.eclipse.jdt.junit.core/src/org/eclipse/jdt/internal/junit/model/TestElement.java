@@ -20,6 +20,8 @@ import org.eclipse.jdt.junit.model.ITestRunSession;
 
 import org.eclipse.core.runtime.Assert;
 
+import org.eclipse.jdt.internal.junit.model.FailureTraceStore.StoredFailure;
+
 public abstract class TestElement implements ITestElement {
 	public final static class Status {
 		public static final Status RUNNING_ERROR= new Status("RUNNING_ERROR", 5); //$NON-NLS-1$
@@ -191,6 +193,11 @@ public abstract class TestElement implements ITestElement {
 	private String fTrace;
 	private String fExpected;
 	private String fActual;
+	/**
+	 * Failure of an imported test run, or <code>null</code>. Replaces the trace, expected and
+	 * actual fields.
+	 */
+	private StoredFailure fStoredFailure;
 
 	private boolean fAssumptionFailed;
 
@@ -260,8 +267,8 @@ public abstract class TestElement implements ITestElement {
 	public FailureTrace getFailureTrace() {
 		Result testResult= getTestResult(false);
 		if (testResult == Result.ERROR || testResult == Result.FAILURE
-				|| (testResult == Result.IGNORED && fTrace != null)) {
-			return new FailureTrace(fTrace, fExpected, fActual);
+				|| (testResult == Result.IGNORED && hasTrace())) {
+			return new FailureTrace(getTrace(), getExpected(), getActual());
 		}
 		return null;
 	}
@@ -302,6 +309,12 @@ public abstract class TestElement implements ITestElement {
 	}
 
 	public void setStatus(Status status, String trace, String expected, String actual) {
+		if (fStoredFailure != null) {
+			fTrace= fStoredFailure.getTrace();
+			fExpected= fStoredFailure.getExpected();
+			fActual= fStoredFailure.getActual();
+			fStoredFailure= null;
+		}
 		if (trace != null && fTrace != null) {
 			//don't overwrite first trace if same test run logs multiple errors
 			fTrace= fTrace + trace;
@@ -313,23 +326,51 @@ public abstract class TestElement implements ITestElement {
 		setStatus(status);
 	}
 
+	/**
+	 * Sets the status and a failure that is loaded from the store on demand.
+	 *
+	 * @param status the status
+	 * @param failure the stored failure
+	 */
+	public void setStatus(Status status, StoredFailure failure) {
+		fTrace= null;
+		fExpected= null;
+		fActual= null;
+		fStoredFailure= failure;
+		setStatus(status);
+	}
+
 	public Status getStatus() {
 		return fStatus;
 	}
 
 	public String getTrace() {
+		if (fStoredFailure != null)
+			return fStoredFailure.getTrace();
 		return fTrace;
 	}
 
 	public String getExpected() {
+		if (fStoredFailure != null)
+			return fStoredFailure.getExpected();
 		return fExpected;
 	}
 
 	public String getActual() {
+		if (fStoredFailure != null)
+			return fStoredFailure.getActual();
 		return fActual;
 	}
 
+	private boolean hasTrace() {
+		if (fStoredFailure != null)
+			return fStoredFailure.hasTrace();
+		return fTrace != null;
+	}
+
 	public boolean isComparisonFailure() {
+		if (fStoredFailure != null)
+			return fStoredFailure.hasExpected() && fStoredFailure.hasActual();
 		return fExpected != null && fActual != null;
 	}
 
@@ -13,6 +13,7 @@
 package org.eclipse.jdt.internal.junit.model;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
 import org.eclipse.jdt.internal.junit.JUnitMessages;
 import org.eclipse.jdt.internal.junit.launcher.ITestKind;
 import org.eclipse.jdt.internal.junit.launcher.JUnitLaunchConfigurationConstants;
+import org.eclipse.jdt.internal.junit.model.FailureTraceStore.StoredFailure;
 import org.eclipse.jdt.internal.junit.model.TestElement.Status;
 import org.eclipse.jdt.internal.junit.runner.MessageIds;
 
@@ -97,6 +99,11 @@ public class TestRunSession implements ITestRunSession {
 	 */
 	private TestSuiteElement fUnrootedSuite;
 
+	/**
+	 * Store for the failures of an imported test run, or <code>null</code>.
+	 */
+	private FailureTraceStore fFailureTraceStore;
+
 	private static final String EMPTY_STRING= ""; //$NON-NLS-1$
 
 	/**
@@ -236,6 +243,24 @@ public class TestRunSession implements ITestRunSession {
 		fTestRoot= new TestRoot(this);
 		fTestResult= null;
 		fIdToTest= new HashMap<>();
+		disposeFailureTraceStore();
+	}
+
+	/**
+	 * @return the store for the failures of an imported test run
+	 * @throws IOException if the store could not be created
+	 */
+	synchronized FailureTraceStore getFailureTraceStore() throws IOException {
+		if (fFailureTraceStore == null)
+			fFailureTraceStore= new FailureTraceStore();
+		return fFailureTraceStore;
+	}
+
+	private synchronized void disposeFailureTraceStore() {
+		if (fFailureTraceStore != null) {
+			fFailureTraceStore.dispose();
+			fFailureTraceStore= null;
+		}
 	}
 
 	@Override
@@ -375,6 +400,7 @@ public class TestRunSession implements ITestRunSession {
 			fIncompleteTestSuites= null;
 			fFactoryTestSuites= null;
 			fUnrootedSuite= null;
+			disposeFailureTraceStore();
 
 		} catch (IllegalStateException e) {
 			JUnitCorePlugin.log(e);
@@ -389,6 +415,7 @@ public class TestRunSession implements ITestRunSession {
 
 
 	public void removeSwapFile() {
+		disposeFailureTraceStore();
 		File swapFile= getSwapFile();
 		if (swapFile.exists())
 			swapFile.delete();
@@ -817,6 +844,15 @@ public class TestRunSession implements ITestRunSession {
 
 	public void registerTestFailureStatus(TestElement testElement, Status status, String trace, String expected, String actual) {
 		testElement.setStatus(status, trace, expected, actual);
+		countFailure(testElement, status);
+	}
+
+	public void registerTestFailureStatus(TestElement testElement, Status status, StoredFailure failure) {
+		testElement.setStatus(status, failure);
+		countFailure(testElement, status);
+	}
+
+	private void countFailure(TestElement testElement, Status status) {
 		if (!testElement.isAssumptionFailure()) {
 			if (status.isError()) {
 				fErrorCount++;
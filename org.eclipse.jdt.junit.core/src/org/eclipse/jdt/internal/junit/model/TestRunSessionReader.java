@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2017 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,14 +14,15 @@
 
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Stack;
 
-import org.xml.sax.Attributes;
-import org.xml.sax.Locator;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
-import org.xml.sax.helpers.DefaultHandler;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.eclipse.osgi.util.NLS;
 
@@ -36,7 +37,12 @@ import org.eclipse.jdt.core.JavaCore;
 
 import org.eclipse.jdt.internal.junit.model.TestElement.Status;
 
-public class TestRunHandler extends DefaultHandler {
+/**
+ * Reads a test run session from XML with a streaming parser. Failure traces and expected and
+ * actual values are moved to the {@link FailureTraceStore} of the session as soon as they have
+ * been read, so the memory needed for huge result files is bounded by the test tree.
+ */
+public class TestRunSessionReader {
 
 	/*
 	 * TODO: validate (currently assumes correct XML)
@@ -49,48 +55,81 @@ public class TestRunHandler extends DefaultHandler {
 	private TestCaseElement fTestCase;
 	private Stack<Boolean> fNotRun= new Stack<>();
 
-	private StringBuffer fFailureBuffer;
+	private StringBuilder fFailureBuffer;
 	private boolean fInExpected;
 	private boolean fInActual;
-	private StringBuffer fExpectedBuffer;
-	private StringBuffer fActualBuffer;
+	private StringBuilder fExpectedBuffer;
+	private StringBuilder fActualBuffer;
 
-	private Locator fLocator;
+	private XMLStreamReader fReader;
 
 	private Status fStatus;
 
 	private IProgressMonitor fMonitor;
 	private int fLastReportedLine;
 
-	public TestRunHandler() {
+	public TestRunSessionReader() {
 
 	}
 
-	public TestRunHandler(IProgressMonitor monitor) {
+	public TestRunSessionReader(IProgressMonitor monitor) {
 		fMonitor= monitor;
 	}
 	
-	public TestRunHandler(TestRunSession testRunSession) {
+	public TestRunSessionReader(TestRunSession testRunSession) {
 		fTestRunSession= testRunSession;
 	}
 
-	@Override
-	public void setDocumentLocator(Locator locator) {
-		fLocator= locator;
+	/**
+	 * Reads the test run session from the given stream. The stream is not closed.
+	 *
+	 * @param input the input stream
+	 * @return the read test run session, or <code>null</code> if the stream did not contain a test run
+	 * @throws XMLStreamException if the XML could not be parsed
+	 * @throws IOException if the failure traces could not be stored
+	 * @throws OperationCanceledException if the reading thread has been interrupted
+	 */
+	public TestRunSession read(InputStream input) throws XMLStreamException, IOException {
+		XMLInputFactory factory= XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		fReader= factory.createXMLStreamReader(input);
+		try {
+			while (fReader.hasNext()) {
+				switch (fReader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						startElement(fReader.getLocalName());
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						endElement(fReader.getLocalName());
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						characters();
+						break;
+					default:
+						break;
+				}
+			}
+		} finally {
+			fReader.close();
+			fReader= null;
+		}
+		return fTestRunSession;
 	}
 
-	@Override
-	public void startDocument() throws SAXException {
+	private String getAttribute(String name) {
+		return fReader.getAttributeValue(null, name);
 	}
 
-	@Override
-	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-		if (fLocator != null && fMonitor != null) {
-			int line= fLocator.getLineNumber();
+	private void startElement(String qName) throws XMLStreamException {
+		if (fMonitor != null) {
+			int line= fReader.getLocation().getLineNumber();
 			if (line - 20 >= fLastReportedLine) {
 				line -= line % 20;
 				fLastReportedLine= line;
-				fMonitor.subTask(NLS.bind(ModelMessages.TestRunHandler_lines_read, Integer.valueOf(line)));
+				fMonitor.subTask(NLS.bind(ModelMessages.TestRunSessionReader_lines_read, Integer.valueOf(line)));
 			}
 		}
 		if (Thread.interrupted())
@@ -98,8 +137,8 @@ public class TestRunHandler extends DefaultHandler {
 		
 		if (qName.equals(IXMLTags.NODE_TESTRUN)) {
 			if (fTestRunSession == null) {
-				String name= attributes.getValue(IXMLTags.ATTR_NAME);
-				String project= attributes.getValue(IXMLTags.ATTR_PROJECT);
+				String name= getAttribute(IXMLTags.ATTR_NAME);
+				String project= getAttribute(IXMLTags.ATTR_PROJECT);
 				IJavaProject javaProject= null;
 				if (project != null) {
 					IJavaModel javaModel= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot());
@@ -108,11 +147,11 @@ public class TestRunHandler extends DefaultHandler {
 						javaProject= null;
 				}
 				fTestRunSession= new TestRunSession(name, javaProject);
-				String includeTags= attributes.getValue(IXMLTags.ATTR_INCLUDE_TAGS);
+				String includeTags= getAttribute(IXMLTags.ATTR_INCLUDE_TAGS);
 				if (includeTags != null && includeTags.trim().length() > 0) {
 					fTestRunSession.setIncludeTags(includeTags);
 				}
-				String excludeTags= attributes.getValue(IXMLTags.ATTR_EXCLUDE_TAGS);
+				String excludeTags= getAttribute(IXMLTags.ATTR_EXCLUDE_TAGS);
 				if (excludeTags != null && excludeTags.trim().length() > 0) {
 					fTestRunSession.setExcludeTags(excludeTags);
 				}
@@ -127,7 +166,7 @@ public class TestRunHandler extends DefaultHandler {
 			// support Ant's 'junitreport' task; create suite from NODE_TESTSUITE
 
 		} else if (qName.equals(IXMLTags.NODE_TESTSUITE)) {
-			String name= attributes.getValue(IXMLTags.ATTR_NAME);
+			String name= getAttribute(IXMLTags.ATTR_NAME);
 
 			if (fTestRunSession == null) {
 				// support standalone suites and Ant's 'junitreport' task:
@@ -135,68 +174,48 @@ public class TestRunHandler extends DefaultHandler {
 				fTestSuite= fTestRunSession.getTestRoot();
 			}
 
-			String pack= attributes.getValue(IXMLTags.ATTR_PACKAGE);
+			String pack= getAttribute(IXMLTags.ATTR_PACKAGE);
 			String suiteName= pack == null ? name : pack + "." + name; //$NON-NLS-1$
-			String displayName= attributes.getValue(IXMLTags.ATTR_DISPLAY_NAME);
-			String paramTypesStr= attributes.getValue(IXMLTags.ATTR_PARAMETER_TYPES);
-			String[] paramTypes;
-			if (paramTypesStr != null && !paramTypesStr.trim().isEmpty()) {
-				paramTypes= paramTypesStr.split(","); //$NON-NLS-1$
-				Arrays.parallelSetAll(paramTypes, i -> paramTypes[i].trim());
-			} else {
-				paramTypes= null;
-			}
-			String uniqueId= attributes.getValue(IXMLTags.ATTR_UNIQUE_ID);
-			if (uniqueId != null && uniqueId.trim().isEmpty()) {
-				uniqueId= null;
-			}
+			String displayName= getAttribute(IXMLTags.ATTR_DISPLAY_NAME);
+			String[] paramTypes= getParameterTypes();
+			String uniqueId= getUniqueId();
 			fTestSuite= (TestSuiteElement) fTestRunSession.createTestElement(fTestSuite, getNextId(), suiteName, true, 0, false, displayName, paramTypes, uniqueId);
-			readTime(fTestSuite, attributes);
-			fNotRun.push(Boolean.valueOf(attributes.getValue(IXMLTags.ATTR_INCOMPLETE)));
+			readTime(fTestSuite);
+			fNotRun.push(Boolean.valueOf(getAttribute(IXMLTags.ATTR_INCOMPLETE)));
 
 		} else if (qName.equals(IXMLTags.NODE_PROPERTIES) || qName.equals(IXMLTags.NODE_PROPERTY)) {
 			// not interested
 
 		} else if (qName.equals(IXMLTags.NODE_TESTCASE)) {
-			String name= attributes.getValue(IXMLTags.ATTR_NAME);
-			String classname= attributes.getValue(IXMLTags.ATTR_CLASSNAME);
+			String name= getAttribute(IXMLTags.ATTR_NAME);
+			String classname= getAttribute(IXMLTags.ATTR_CLASSNAME);
 			String testName= name + '(' + classname + ')';
-			boolean isDynamicTest= Boolean.valueOf(attributes.getValue(IXMLTags.ATTR_DYNAMIC_TEST)).booleanValue();
-			String displayName= attributes.getValue(IXMLTags.ATTR_DISPLAY_NAME);
-			String paramTypesStr= attributes.getValue(IXMLTags.ATTR_PARAMETER_TYPES);
-			String[] paramTypes;
-			if (paramTypesStr != null && !paramTypesStr.trim().isEmpty()) {
-				paramTypes= paramTypesStr.split(","); //$NON-NLS-1$
-				Arrays.parallelSetAll(paramTypes, i -> paramTypes[i].trim());
-			} else {
-				paramTypes= null;
-			}
-			String uniqueId= attributes.getValue(IXMLTags.ATTR_UNIQUE_ID);
-			if (uniqueId != null && uniqueId.trim().isEmpty()) {
-				uniqueId= null;
-			}
+			boolean isDynamicTest= Boolean.valueOf(getAttribute(IXMLTags.ATTR_DYNAMIC_TEST)).booleanValue();
+			String displayName= getAttribute(IXMLTags.ATTR_DISPLAY_NAME);
+			String[] paramTypes= getParameterTypes();
+			String uniqueId= getUniqueId();
 			fTestCase= (TestCaseElement) fTestRunSession.createTestElement(fTestSuite, getNextId(), testName, false, 0, isDynamicTest, displayName, paramTypes, uniqueId);
-			fNotRun.push(Boolean.valueOf(attributes.getValue(IXMLTags.ATTR_INCOMPLETE)));
-			fTestCase.setIgnored(Boolean.valueOf(attributes.getValue(IXMLTags.ATTR_IGNORED)).booleanValue());
-			readTime(fTestCase, attributes);
+			fNotRun.push(Boolean.valueOf(getAttribute(IXMLTags.ATTR_INCOMPLETE)));
+			fTestCase.setIgnored(Boolean.valueOf(getAttribute(IXMLTags.ATTR_IGNORED)).booleanValue());
+			readTime(fTestCase);
 
 		} else if (qName.equals(IXMLTags.NODE_ERROR)) {
 			//TODO: multiple failures: https://bugs.eclipse.org/bugs/show_bug.cgi?id=125296
 			fStatus= Status.ERROR;
-			fFailureBuffer= new StringBuffer();
+			fFailureBuffer= new StringBuilder();
 
 		} else if (qName.equals(IXMLTags.NODE_FAILURE)) {
 			//TODO: multiple failures: https://bugs.eclipse.org/bugs/show_bug.cgi?id=125296
 			fStatus= Status.FAILURE;
-			fFailureBuffer= new StringBuffer();
+			fFailureBuffer= new StringBuilder();
 
 		} else if (qName.equals(IXMLTags.NODE_EXPECTED)) {
 			fInExpected= true;
-			fExpectedBuffer= new StringBuffer();
+			fExpectedBuffer= new StringBuilder();
 
 		} else if (qName.equals(IXMLTags.NODE_ACTUAL)) {
 			fInActual= true;
-			fActualBuffer= new StringBuffer();
+			fActualBuffer= new StringBuilder();
 
 		} else if (qName.equals(IXMLTags.NODE_SYSTEM_OUT) || qName.equals(IXMLTags.NODE_SYSTEM_ERR)) {
 			// not interested
@@ -205,19 +224,36 @@ public class TestRunHandler extends DefaultHandler {
 			// before Ant 1.9.0: not an Ant JUnit tag, see https://bugs.eclipse.org/bugs/show_bug.cgi?id=276068
 			// later: child of <suite> or <test>, see https://issues.apache.org/bugzilla/show_bug.cgi?id=43969
 			fStatus= Status.OK;
-			fFailureBuffer= new StringBuffer();
-			String message= attributes.getValue(IXMLTags.ATTR_MESSAGE);
+			fFailureBuffer= new StringBuilder();
+			String message= getAttribute(IXMLTags.ATTR_MESSAGE);
 			if (message != null) {
 				fFailureBuffer.append(message).append('\n');
 			}
 
 		} else {
-			throw new SAXParseException("unknown node '" + qName + "'", fLocator);  //$NON-NLS-1$//$NON-NLS-2$
+			throw new XMLStreamException("unknown node '" + qName + "'", fReader.getLocation());  //$NON-NLS-1$//$NON-NLS-2$
 		}
 	}
 
-	private void readTime(TestElement testElement, Attributes attributes) {
-		String timeString= attributes.getValue(IXMLTags.ATTR_TIME);
+	private String[] getParameterTypes() {
+		String paramTypesStr= getAttribute(IXMLTags.ATTR_PARAMETER_TYPES);
+		if (paramTypesStr == null || paramTypesStr.trim().isEmpty())
+			return null;
+		String[] paramTypes= paramTypesStr.split(","); //$NON-NLS-1$
+		Arrays.parallelSetAll(paramTypes, i -> paramTypes[i].trim());
+		return paramTypes;
+	}
+
+	private String getUniqueId() {
+		String uniqueId= getAttribute(IXMLTags.ATTR_UNIQUE_ID);
+		if (uniqueId != null && uniqueId.trim().isEmpty()) {
+			uniqueId= null;
+		}
+		return uniqueId;
+	}
+
+	private void readTime(TestElement testElement) {
+		String timeString= getAttribute(IXMLTags.ATTR_TIME);
 		if (timeString != null) {
 			try {
 				testElement.setElapsedTimeInSeconds(Double.parseDouble(timeString));
@@ -226,21 +262,24 @@ public class TestRunHandler extends DefaultHandler {
 		}
 	}
 
-	@Override
-	public void characters(char[] ch, int start, int length) throws SAXException {
+	private void characters() {
+		StringBuilder buffer;
 		if (fInExpected) {
-			fExpectedBuffer.append(ch, start, length);
+			buffer= fExpectedBuffer;
 
 		} else if (fInActual) {
-			fActualBuffer.append(ch, start, length);
+			buffer= fActualBuffer;
 
 		} else if (fFailureBuffer != null) {
-			fFailureBuffer.append(ch, start, length);
+			buffer= fFailureBuffer;
+
+		} else {
+			return;
 		}
+		buffer.append(fReader.getTextCharacters(), fReader.getTextStart(), fReader.getTextLength());
 	}
 
-	@Override
-	public void endElement(String uri, String localName, String qName) throws SAXException {
+	private void endElement(String qName) throws XMLStreamException, IOException {
 		if (qName.equals(IXMLTags.NODE_TESTRUN)) {
 			// OK
 
@@ -307,9 +346,10 @@ public class TestRunHandler extends DefaultHandler {
 		fTestRunSession.registerTestEnded(testElement, completed);
 	}
 
-	private void handleFailure(TestElement testElement) {
+	private void handleFailure(TestElement testElement) throws IOException {
 		if (fFailureBuffer != null) {
-			fTestRunSession.registerTestFailureStatus(testElement, fStatus, fFailureBuffer.toString(), toString(fExpectedBuffer), toString(fActualBuffer));
+			FailureTraceStore store= fTestRunSession.getFailureTraceStore();
+			fTestRunSession.registerTestFailureStatus(testElement, fStatus, store.add(fFailureBuffer.toString(), toString(fExpectedBuffer), toString(fActualBuffer)));
 			fFailureBuffer= null;
 			fExpectedBuffer= null;
 			fActualBuffer= null;
@@ -317,27 +357,14 @@ public class TestRunHandler extends DefaultHandler {
 		}
 	}
 
-	private String toString(StringBuffer buffer) {
+	private String toString(StringBuilder buffer) {
 		return buffer != null ? buffer.toString() : null;
 	}
 
-	private void handleUnknownNode(String qName) throws SAXException {
+	private void handleUnknownNode(String qName) throws XMLStreamException {
 		//TODO: just log if debug option is enabled?
 		String msg= "unknown node '" + qName + "'"; //$NON-NLS-1$//$NON-NLS-2$
-		if (fLocator != null) {
-			msg += " at line " + fLocator.getLineNumber() + ", column " + fLocator.getColumnNumber();  //$NON-NLS-1$//$NON-NLS-2$
-		}
-		throw new SAXException(msg);
-	}
-
-	@Override
-	public void error(SAXParseException e) throws SAXException {
-		throw e;
-	}
-
-	@Override
-	public void warning(SAXParseException e) throws SAXException {
-		throw e;
+		throw new XMLStreamException(msg, fReader.getLocation());
 	}
 
 	private String getNextId() {
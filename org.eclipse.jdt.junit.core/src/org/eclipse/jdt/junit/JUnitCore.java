@@ -19,7 +19,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.HashSet;
 import java.util.Set;
 
-import javax.xml.transform.TransformerException;
+import javax.xml.stream.XMLStreamException;
 
 import org.eclipse.jdt.junit.model.ITestRunSession;
 
@@ -179,7 +179,7 @@ public class JUnitCore {
 		try {
 			JUnitModel.exportTestRunSession((TestRunSession)testRunSession, output);
 			
-		} catch (TransformerException exception) {
+		} catch (XMLStreamException exception) {
 			String pluginID= JUnitCorePlugin.getPluginId();
 			String message= ModelMessages.JUnitModel_could_not_export;
 			throw new CoreException(new Status(IStatus.ERROR, pluginID, message, exception));
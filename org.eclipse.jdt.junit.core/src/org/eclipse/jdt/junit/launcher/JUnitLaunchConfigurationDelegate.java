@@ -376,6 +376,9 @@ public class JUnitLaunchConfigurationDelegate extends AbstractJavaLaunchConfigur
 		programArguments.add("-port"); //$NON-NLS-1$
 		programArguments.add(String.valueOf(fPort));
 
+		// older runtimes ignore this argument and keep sending text messages
+		programArguments.add("-binaryprotocol"); //$NON-NLS-1$
+
 		if (fKeepAlive)
 			programArguments.add(0, "-keepalive"); //$NON-NLS-1$
 
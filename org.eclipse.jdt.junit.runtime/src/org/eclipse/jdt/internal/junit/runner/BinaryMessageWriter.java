@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Sends messages with the binary protocol, see {@link MessageIds#BINARY_PROTOCOL}.
+ * <p>
+ * Messages are collected into frames. A frame is written when it gets large,
+ * when the writer is closed, or on {@link #flush()}. To avoid a frame for every
+ * flushed test start, a flush within {@link #MAX_LATENCY} milliseconds of the
+ * previous frame is deferred to a flusher thread.
+ * </p>
+ */
+public class BinaryMessageWriter implements MessageSender {
+
+	/**
+	 * Size of the collected messages that causes a frame to be written
+	 */
+	private static final int MAX_FRAME_SIZE= 64 * 1024;
+
+	/**
+	 * Maximum delay of a flushed message in milliseconds
+	 */
+	private static final long MAX_LATENCY= 50;
+
+	private final DataOutputStream fOutput;
+	private final ByteArrayOutputStream fFrameBytes= new ByteArrayOutputStream(8 * 1024);
+	private final DataOutputStream fFrame= new DataOutputStream(fFrameBytes);
+	private int fMessageCount;
+	private long fLastFrameTime;
+	private boolean fFlushPending;
+	private boolean fClosed;
+
+	/**
+	 * Thread that writes deferred frames.
+	 */
+	private class FlusherThread extends Thread {
+		public FlusherThread() {
+			super("BinaryMessageFlusher"); //$NON-NLS-1$
+			setDaemon(true);
+		}
+
+		public void run() {
+			synchronized (BinaryMessageWriter.this) {
+				try {
+					while (!fClosed) {
+						if (!fFlushPending) {
+							BinaryMessageWriter.this.wait();
+							continue;
+						}
+						long delay= fLastFrameTime + MAX_LATENCY - System.currentTimeMillis();
+						if (delay > 0) {
+							BinaryMessageWriter.this.wait(delay);
+							continue;
+						}
+						writeFrame();
+					}
+				} catch (InterruptedException e) {
+					// stop flushing, close() writes the remaining messages
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a writer and sends the protocol header.
+	 *
+	 * @param output the stream to write to
+	 * @throws IOException if the header could not be written
+	 */
+	public BinaryMessageWriter(OutputStream output) throws IOException {
+		fOutput= new DataOutputStream(new BufferedOutputStream(output, 16 * 1024));
+		fOutput.write(encode(MessageIds.BINARY_PROTOCOL));
+		fOutput.writeInt(MessageIds.BINARY_PROTOCOL_VERSION);
+		fOutput.flush();
+		new FlusherThread().start();
+	}
+
+	public synchronized void sendMessage(String msg) {
+		if (fClosed)
+			return;
+		try {
+			byte[] bytes= encode(msg);
+			fFrame.writeInt(bytes.length);
+			fFrame.write(bytes);
+			fMessageCount++;
+			if (fFrameBytes.size() >= MAX_FRAME_SIZE)
+				writeFrame();
+		} catch (IOException e) {
+			fClosed= true;
+		}
+	}
+
+	public synchronized void flush() {
+		if (fClosed || fMessageCount == 0)
+			return;
+		if (System.currentTimeMillis() - fLastFrameTime >= MAX_LATENCY) {
+			writeFrame();
+		} else if (!fFlushPending) {
+			fFlushPending= true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Writes the remaining messages and closes the stream.
+	 */
+	public synchronized void close() {
+		if (!fClosed) {
+			writeFrame();
+			fClosed= true;
+			notifyAll();
+		}
+		try {
+			fOutput.close();
+		} catch (IOException e) {
+			// the client is gone
+		}
+	}
+
+	private void writeFrame() {
+		fFlushPending= false;
+		fLastFrameTime= System.currentTimeMillis();
+		if (fMessageCount == 0)
+			return;
+		try {
+			fOutput.writeInt(4 + fFrameBytes.size());
+			fOutput.writeInt(fMessageCount);
+			fFrameBytes.writeTo(fOutput);
+			fOutput.flush();
+		} catch (IOException e) {
+			fClosed= true;
+		}
+		fFrameBytes.reset();
+		fMessageCount= 0;
+	}
+
+	private static byte[] encode(String msg) {
+		try {
+			return msg.getBytes("UTF-8"); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			return msg.getBytes();
+		}
+	}
+}
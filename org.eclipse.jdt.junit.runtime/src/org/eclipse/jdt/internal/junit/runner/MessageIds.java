@@ -128,6 +128,23 @@ public class MessageIds {
 	 */
 	public static final String TEST_RERUN=	">RERUN  "; //$NON-NLS-1$
 
+	/**
+	 * Header of the binary protocol. Sent by the RemoteTestRunner as the first
+	 * bytes of the connection if the client requested the binary protocol with
+	 * the -binaryprotocol argument. It is followed by a four byte
+	 * BINARY_PROTOCOL_VERSION and a sequence of frames:<br>
+	 * frame = payloadLength + messageCount + message*<br>
+	 * message = byteLength + UTF-8 bytes of the text message<br>
+	 * All integers are four byte big endian values. Runtimes that do not know
+	 * the binary protocol ignore the argument and send text messages.
+	 * Requests from the client are always sent as text messages.
+	 */
+	public static final String BINARY_PROTOCOL= "%BINARY "; //$NON-NLS-1$
+	/**
+	 * Version of the binary protocol.
+	 */
+	public static final int BINARY_PROTOCOL_VERSION= 1;
+
 	/**
 	 * MessageFormat to encode test method identifiers:
 	 * testMethod(testClass)
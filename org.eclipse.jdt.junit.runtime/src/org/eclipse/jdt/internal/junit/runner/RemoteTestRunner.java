@@ -91,6 +91,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Reader for incoming messages
 	 */
 	private BufferedReader fReader;
+	/**
+	 * Writer for the binary protocol, or <code>null</code> if messages are sent as text
+	 */
+	private BinaryMessageWriter fBinaryWriter;
 	/**
 	 * Host to connect to, default is the localhost
 	 */
@@ -108,6 +112,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * This allows to rerun tests.
 	 */
 	private boolean fKeepAlive= false;
+	/**
+	 * Send messages with the binary protocol
+	 */
+	private boolean fBinaryProtocol= false;
 	/**
 	 * Has the server been stopped
 	 */
@@ -197,6 +205,7 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * -host: the host to connect to default local host
 	 * -port: the port to connect to, mandatory argument
 	 * -keepalive: keep the process alive after a test run
+	 * -binaryprotocol: send messages with the binary protocol
      * </pre>
      */
 	public static void main(String[] args) {
@@ -295,6 +304,8 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 			}
 			else if(args[i].toLowerCase().equals("-keepalive")) { //$NON-NLS-1$
 				fKeepAlive= true;
+			} else if(args[i].toLowerCase().equals("-binaryprotocol")) { //$NON-NLS-1$
+				fBinaryProtocol= true;
 			}
 			else if(args[i].toLowerCase().equals("-debugging") || args[i].toLowerCase().equals("-debug")){ //$NON-NLS-1$ //$NON-NLS-2$
 			    fDebugMode= true;
@@ -452,6 +463,8 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 			return;
 		if (fRerunTest != null) {
 			rerunTest(new RerunRequest(Integer.parseInt(fRerunTest), fTestClassNames[0], fTestName));
+			if (fBinaryWriter != null)
+				shutDown(); // send deferred messages before System.exit()
 			return;
 		}
 
@@ -650,11 +663,15 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 		for (int i= 1; i < 20; i++) {
 			try{
 				fClientSocket= new Socket(fHost, fPort);
-				try {
-				    fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream(), "UTF-8")), false/*true*/); //$NON-NLS-1$
-	            } catch (UnsupportedEncodingException e1) {
-	                fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream())), false/*true*/);
-	            }
+				if (fBinaryProtocol) {
+					fBinaryWriter= new BinaryMessageWriter(fClientSocket.getOutputStream());
+				} else {
+					try {
+					    fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream(), "UTF-8")), false/*true*/); //$NON-NLS-1$
+		            } catch (UnsupportedEncodingException e1) {
+		                fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream())), false/*true*/);
+		            }
+				}
 				try {
 				    fReader= new BufferedReader(new InputStreamReader(fClientSocket.getInputStream(), "UTF-8")); //$NON-NLS-1$
                 } catch (UnsupportedEncodingException e1) {
@@ -679,6 +696,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Shutsdown the connection to the remote test listener.
 	 */
 	private void shutDown() {
+		if (fBinaryWriter != null) {
+			fBinaryWriter.close();
+			fBinaryWriter= null;
+		}
 		if (fWriter != null) {
 			fWriter.close();
 			fWriter= null;
@@ -714,6 +735,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#sendMessage(java.lang.String)
 	 */
 	public void sendMessage(String msg) {
+		if (fBinaryWriter != null) {
+			fBinaryWriter.sendMessage(msg);
+			return;
+		}
 		if(fWriter == null)
 			return;
 		fWriter.println(msg);
@@ -753,7 +778,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	}
 
 	public void flush() {
-	    fWriter.flush();
+		if (fBinaryWriter != null)
+			fBinaryWriter.flush();
+		else
+			fWriter.flush();
 	}
 
 	public void runTests(TestExecution execution) {
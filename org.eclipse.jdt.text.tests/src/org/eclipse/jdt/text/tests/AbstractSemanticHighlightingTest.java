@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -132,6 +132,10 @@ public class AbstractSemanticHighlightingTest extends TestCase {
 		return buf.toString();
 	}
 
+	protected SourceViewer getSourceViewer() {
+		return fSourceViewer;
+	}
+
 	protected Position[] getSemanticHighlightingPositions() throws BadPositionCategoryException {
 		SemanticHighlightingManager manager= (SemanticHighlightingManager) new Accessor(fEditor, JavaEditor.class).get("fSemanticManager");
 		SemanticHighlightingPresenter presenter= (SemanticHighlightingPresenter) new Accessor(manager, manager.getClass()).get("fPresenter");
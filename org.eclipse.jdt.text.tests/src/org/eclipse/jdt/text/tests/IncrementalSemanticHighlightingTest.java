@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.SourceViewer;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingReconciler;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightings;
+
+/**
+ * Tests that the positions computed by an incremental reconcile are the same as the ones of a
+ * full reconcile.
+ *
+ * @since 3.14
+ */
+public class IncrementalSemanticHighlightingTest extends AbstractSemanticHighlightingTest {
+
+	private static final Class<IncrementalSemanticHighlightingTest> THIS= IncrementalSemanticHighlightingTest.class;
+
+	public static Test suite() {
+		return new SemanticHighlightingTestSetup(new TestSuite(THIS), "/SHTest/src/SHTest.java");
+	}
+
+	private String fOriginalContent;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fOriginalContent= getSourceViewer().getDocument().get();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaPlugin.getDefault().getPreferenceStore().setToDefault(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL);
+		getSourceViewer().getDocument().set(fOriginalContent);
+		reconcile(false);
+		super.tearDown();
+	}
+
+	private void reconcile(boolean force) {
+		SourceViewer viewer= getSourceViewer();
+		if (force)
+			EditorTestHelper.forceReconcile(viewer);
+		assertTrue(EditorTestHelper.joinReconciler(viewer, 0, 10000, 100));
+		EditorTestHelper.runEventQueue(100);
+	}
+
+	private Position[] getFullReconcilePositions() throws Exception {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		store.setValue(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL, false);
+		try {
+			reconcile(true);
+			return getSemanticHighlightingPositions();
+		} finally {
+			store.setToDefault(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL);
+		}
+	}
+
+	private Position[] edit(int line, int column, int length, String text) throws Exception {
+		IDocument document= getSourceViewer().getDocument();
+		document.replace(document.getLineOffset(line) + column, length, text);
+		reconcile(false);
+		return getSemanticHighlightingPositions();
+	}
+
+	private static void assertContains(Position[] positions, Position expected) {
+		for (int i= 0; i < positions.length; i++) {
+			if (positions[i].getOffset() == expected.getOffset() && positions[i].getLength() == expected.getLength())
+				return;
+		}
+		fail("Missing position " + expected.getOffset() + ", " + expected.getLength());
+	}
+
+	public void testIncrementalByDefault() throws Exception {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		assertTrue(store.getDefaultBoolean(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL));
+	}
+
+	public void testMethodBodyInsertion() throws Exception {
+		setUpSemanticHighlighting(SemanticHighlightings.LOCAL_VARIABLE);
+		Position[] before= getSemanticHighlightingPositions();
+
+		Position[] incremental= edit(9, 0, 0, "\t\tint added= local;\n");
+		// the declaration of "added" and the reference to "local"
+		assertEquals(before.length + 2, incremental.length);
+		assertEqualPositions(getFullReconcilePositions(), incremental);
+		assertContains(incremental, createPosition(9, 6, 5));
+		assertContains(incremental, createPosition(9, 13, 5));
+	}
+
+	public void testMethodBodyDeletion() throws Exception {
+		setUpSemanticHighlighting(SemanticHighlightings.LOCAL_VARIABLE);
+		Position[] before= getSemanticHighlightingPositions();
+
+		// removes "local++;"
+		Position[] incremental= edit(9, 2, 8, "");
+		assertEquals(before.length - 1, incremental.length);
+		assertEqualPositions(getFullReconcilePositions(), incremental);
+	}
+
+	public void testChangeOutsideMethodBody() throws Exception {
+		setUpSemanticHighlighting(SemanticHighlightings.FIELD);
+
+		Position[] positions= edit(3, 0, 0, "\tint addedField;\n");
+		assertEqualPositions(getFullReconcilePositions(), positions);
+		assertEqualPositions(new Position[] { createPosition(3, 5, 10), createPosition(4, 5, 5) }, new Position[] { positions[0], positions[1] });
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.SourceViewer;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotationModel;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.text.folding.IJavaFoldingStructureProvider;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests that the folding structure updated for a reconcile delta is the same as the whole
+ * recomputed structure.
+ *
+ * @since 3.14
+ */
+public class JavaFoldingStructureProviderTest extends TestCase {
+
+	private static final String INCREMENTAL_UPDATE= "DefaultJavaFoldingStructureProvider.incrementalUpdate";
+
+	private static final String SOURCE=
+			"/*\n" +
+			" * Header.\n" +
+			" */\n" +
+			"package p;\n" +
+			"public class A {\n" +
+			"\t/**\n" +
+			"\t * Javadoc of m1.\n" +
+			"\t */\n" +
+			"\tvoid m1() {\n" +
+			"\t\tint i= 0;\n" +
+			"\t}\n" +
+			"\t/**\n" +
+			"\t * Javadoc of m2.\n" +
+			"\t */\n" +
+			"\tvoid m2() {\n" +
+			"\t\tint j= 0;\n" +
+			"\t}\n" +
+			"\tclass Inner {\n" +
+			"\t\tvoid m3() {\n" +
+			"\t\t\tint k= 0;\n" +
+			"\t\t}\n" +
+			"\t}\n" +
+			"}\n";
+
+	public static Test suite() {
+		return new TestSuite(JavaFoldingStructureProviderTest.class);
+	}
+
+	private IJavaProject fProject;
+	private JavaEditor fEditor;
+	private SourceViewer fSourceViewer;
+	private boolean fWasFoldingEnabled;
+
+	@Override
+	protected void setUp() throws Exception {
+		fWasFoldingEnabled= EditorTestHelper.enableFolding(true);
+		fProject= JavaProjectHelper.createJavaProject("JavaFoldingStructureProviderTest", "bin");
+		JavaProjectHelper.addRTJar(fProject);
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fProject, "src");
+		IPackageFragment pack= root.createPackageFragment("p", true, null);
+		ICompilationUnit unit= pack.createCompilationUnit("A.java", SOURCE, true, null);
+
+		fEditor= (JavaEditor) EditorTestHelper.openInEditor((IFile) unit.getResource(), true);
+		fSourceViewer= EditorTestHelper.getSourceViewer(fEditor);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaPlugin.getDefault().getPreferenceStore().setToDefault(INCREMENTAL_UPDATE);
+		EditorTestHelper.revertEditor(fEditor, true);
+		EditorTestHelper.closeEditor(fEditor);
+		fEditor= null;
+		fSourceViewer= null;
+		JavaProjectHelper.delete(fProject);
+		EditorTestHelper.enableFolding(fWasFoldingEnabled);
+	}
+
+	private Map<Annotation, Position> getFoldingStructure() {
+		ProjectionAnnotationModel model= fEditor.getAdapter(ProjectionAnnotationModel.class);
+		Map<Annotation, Position> structure= new HashMap<>();
+		Iterator<Annotation> iter= model.getAnnotationIterator();
+		while (iter.hasNext()) {
+			Annotation annotation= iter.next();
+			Position position= model.getPosition(annotation);
+			structure.put(annotation, new Position(position.getOffset(), position.getLength()));
+		}
+		return structure;
+	}
+
+	private Map<Annotation, Position> edit(String search, String replacement) throws Exception {
+		IDocument document= fSourceViewer.getDocument();
+		int offset= document.get().indexOf(search);
+		assertTrue(offset != -1);
+		document.replace(offset, search.length(), replacement);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+		EditorTestHelper.runEventQueue(100);
+		return getFoldingStructure();
+	}
+
+	private Map<Annotation, Position> getFullStructure() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		store.setValue(INCREMENTAL_UPDATE, false);
+		try {
+			IJavaFoldingStructureProvider provider= (IJavaFoldingStructureProvider) new Accessor(fEditor, JavaEditor.class).get("fProjectionModelUpdater");
+			provider.initialize();
+			EditorTestHelper.runEventQueue(100);
+			return getFoldingStructure();
+		} finally {
+			store.setToDefault(INCREMENTAL_UPDATE);
+		}
+	}
+
+	private static void assertSamePositions(Map<Annotation, Position> expected, Map<Annotation, Position> actual) {
+		assertEquals(expected.size(), actual.size());
+		Iterator<Annotation> iter= expected.keySet().iterator();
+		while (iter.hasNext()) {
+			Annotation annotation= iter.next();
+			assertEquals(expected.get(annotation), actual.get(annotation));
+		}
+	}
+
+	public void testMethodBodyChange() throws Exception {
+		Map<Annotation, Position> before= getFoldingStructure();
+		assertFalse(before.isEmpty());
+
+		Map<Annotation, Position> after= edit("\t\tint i= 0;\n", "\t\tint i= 0;\n\t\ti++;\n\t\ti--;\n");
+		// the annotations of the other members and comments are kept
+		assertEquals(before.keySet(), after.keySet());
+		assertSamePositions(getFullStructure(), after);
+	}
+
+	public void testNestedMethodBodyChange() throws Exception {
+		Map<Annotation, Position> before= getFoldingStructure();
+
+		Map<Annotation, Position> after= edit("\t\t\tint k= 0;\n", "\t\t\tint k= 0;\n\t\t\tk++;\n");
+		assertEquals(before.keySet(), after.keySet());
+		assertSamePositions(getFullStructure(), after);
+	}
+
+	public void testMethodBodyDeletion() throws Exception {
+		Map<Annotation, Position> before= getFoldingStructure();
+
+		Map<Annotation, Position> after= edit("\t\tint j= 0;\n", "");
+		assertEquals(before.keySet(), after.keySet());
+		assertSamePositions(getFullStructure(), after);
+	}
+
+	public void testHeaderCommentChange() throws Exception {
+		Map<Annotation, Position> before= getFoldingStructure();
+
+		Map<Annotation, Position> after= edit(" * Header.\n", " * Header.\n * More header.\n");
+		assertEquals(before.keySet(), after.keySet());
+		assertSamePositions(getFullStructure(), after);
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingCache;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the persistent cache of semantic highlighting positions.
+ *
+ * @since 3.14
+ */
+public class SemanticHighlightingCacheTest extends TestCase {
+
+	private static final String FINGERPRINT= "fingerprint";
+
+	private static final int[] POSITIONS= { 10, 3, 0, 20, 5, 1 };
+
+	public static Test suite() {
+		return new TestSuite(SemanticHighlightingCacheTest.class);
+	}
+
+	private IJavaProject fProject;
+	private IJavaProject fDependentProject;
+	private ICompilationUnit fUnitA;
+	private ICompilationUnit fUnitB;
+	private ICompilationUnit fUnitC;
+	private SemanticHighlightingCache fCache;
+
+	@Override
+	protected void setUp() throws Exception {
+		fProject= JavaProjectHelper.createJavaProject("SemanticHighlightingCacheTest", "bin");
+		JavaProjectHelper.addRTJar(fProject);
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fProject, "src");
+		IPackageFragment pack= root.createPackageFragment("p", true, null);
+		fUnitA= pack.createCompilationUnit("A.java", "package p;\npublic class A {\n\tpublic int f;\n\tpublic int m() {\n\t\treturn 1;\n\t}\n}\n", true, null);
+		fUnitB= pack.createCompilationUnit("B.java", "package p;\npublic class B {\n\tint m(A a) {\n\t\treturn a.f;\n\t}\n}\n", true, null);
+
+		fDependentProject= JavaProjectHelper.createJavaProject("SemanticHighlightingCacheTest2", "bin");
+		JavaProjectHelper.addRTJar(fDependentProject);
+		JavaProjectHelper.addRequiredProject(fDependentProject, fProject);
+		IPackageFragmentRoot dependentRoot= JavaProjectHelper.addSourceContainer(fDependentProject, "src");
+		IPackageFragment dependentPack= dependentRoot.createPackageFragment("q", true, null);
+		fUnitC= dependentPack.createCompilationUnit("C.java", "package q;\npublic class C {\n\tint m(p.A a) {\n\t\treturn a.f;\n\t}\n}\n", true, null);
+
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		store.setValue(SemanticHighlightingCache.PREFERENCE_KEY, true);
+		fCache= SemanticHighlightingCache.getCache(store);
+		assertNotNull(fCache);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaPlugin.getDefault().getPreferenceStore().setToDefault(SemanticHighlightingCache.PREFERENCE_KEY);
+		SemanticHighlightingCache.shutdown();
+		JavaProjectHelper.delete(fDependentProject);
+		JavaProjectHelper.delete(fProject);
+	}
+
+	private void put(ICompilationUnit unit) throws Exception {
+		fCache.put(unit, unit.getSource(), FINGERPRINT, POSITIONS);
+		Job.getJobManager().join(fCache.getJobFamily(), null);
+	}
+
+	private boolean isCached(ICompilationUnit unit) throws Exception {
+		int[] positions= fCache.get(unit, unit.getSource(), FINGERPRINT);
+		return positions != null && Arrays.equals(POSITIONS, positions);
+	}
+
+	private void edit(ICompilationUnit unit, String search, String replacement) throws Exception {
+		unit.becomeWorkingCopy(null);
+		try {
+			IBuffer buffer= unit.getBuffer();
+			buffer.replace(buffer.getContents().indexOf(search), search.length(), replacement);
+			unit.commitWorkingCopy(true, null);
+		} finally {
+			unit.discardWorkingCopy();
+		}
+	}
+
+	public void testHitAndMiss() throws Exception {
+		assertFalse(isCached(fUnitA));
+		put(fUnitA);
+		assertTrue(isCached(fUnitA));
+
+		assertNull(fCache.get(fUnitA, fUnitA.getSource() + " ", FINGERPRINT));
+		assertNull(fCache.get(fUnitA, fUnitA.getSource(), FINGERPRINT + "2"));
+		assertFalse(isCached(fUnitB));
+	}
+
+	public void testMethodBodyChangeKeepsEntries() throws Exception {
+		put(fUnitA);
+		put(fUnitB);
+		put(fUnitC);
+
+		edit(fUnitA, "return 1;", "return 2;");
+		assertFalse(isCached(fUnitA));
+		assertTrue(isCached(fUnitB));
+		assertTrue(isCached(fUnitC));
+	}
+
+	public void testStructuralChangeInvalidatesEntries() throws Exception {
+		put(fUnitB);
+		put(fUnitC);
+
+		// the field becomes static in the referenced unit, the references are highlighted differently
+		edit(fUnitA, "public int f;", "public static int f;");
+		assertFalse(isCached(fUnitB));
+		assertFalse(isCached(fUnitC));
+	}
+
+	public void testRemovedUnitInvalidatesEntries() throws Exception {
+		put(fUnitB);
+		put(fUnitC);
+
+		fUnitA.delete(true, null);
+		assertFalse(isCached(fUnitB));
+		assertFalse(isCached(fUnitC));
+	}
+
+	public void testDependentProjectChangeKeepsEntries() throws Exception {
+		put(fUnitB);
+		put(fUnitC);
+
+		edit(fUnitC, "int m(", "int n(");
+		assertFalse(isCached(fUnitC));
+		assertTrue(isCached(fUnitB));
+	}
+}
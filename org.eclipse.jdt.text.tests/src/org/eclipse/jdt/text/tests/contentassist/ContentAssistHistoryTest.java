@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.text.tests.contentassist;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -240,6 +242,70 @@ public class ContentAssistHistoryTest extends TestCase {
 		assertEqualMap(map(LIST, list(ARRAY_LIST), COLLECTION, list(ARRAY_LIST), ITERABLE, list(ARRAY_LIST), CHAR_SEQUENCE, list(STRING)), loaded.getEntireHistory());
 	}
 
+	public void testLoadStoreFile() throws Exception {
+		ContentAssistHistory history= new ContentAssistHistory();
+
+		history.remember(fgListT, fgArrayListT);
+		history.remember(fgCollectionT, fgLinkedListT);
+		history.remember(fgCharSequenceT, fgStringT);
+
+		File file= File.createTempFile("history", ".bin");
+		try {
+			ContentAssistHistory.store(history, file);
+			ContentAssistHistory loaded= ContentAssistHistory.load(file);
+
+			assertEqualMap(map(LIST, list(ARRAY_LIST), COLLECTION, list(ARRAY_LIST, LINKED_LIST), ITERABLE, list(ARRAY_LIST, LINKED_LIST), CHAR_SEQUENCE, list(STRING)), loaded.getEntireHistory());
+		} finally {
+			file.delete();
+		}
+		assertNull(ContentAssistHistory.load(file));
+	}
+
+	public void testLoadTruncatedFile() throws Exception {
+		ContentAssistHistory history= new ContentAssistHistory();
+
+		history.remember(fgListT, fgArrayListT);
+		history.remember(fgCharSequenceT, fgStringT);
+
+		File file= File.createTempFile("history", ".bin");
+		try {
+			ContentAssistHistory.store(history, file);
+			try (RandomAccessFile access= new RandomAccessFile(file, "rw")) {
+				access.setLength(access.length() - 6);
+			}
+			// a corrupt file is treated like a missing one, so that the preferences are used instead
+			assertNull(ContentAssistHistory.load(file));
+
+			try (RandomAccessFile access= new RandomAccessFile(file, "rw")) {
+				access.seek(12);
+				access.writeInt(Integer.MAX_VALUE);
+			}
+			assertNull(ContentAssistHistory.load(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testRank() {
+		ContentAssistHistory history= new ContentAssistHistory();
+
+		history.remember(fgCollectionT, fgArrayListT);
+		history.remember(fgCollectionT, fgLinkedListT);
+
+		RHSHistory rhs= history.getHistory(COLLECTION);
+		assertEquals(2, rhs.size());
+		assertEquals(0.5f, rhs.getRank(ARRAY_LIST), 0f);
+		assertEquals(1.0f, rhs.getRank(LINKED_LIST), 0f);
+		assertEquals(0.0f, rhs.getRank(STRING), 0f);
+		assertSame(rhs, history.getHistory(COLLECTION));
+
+		history.remember(fgCollectionT, fgArrayListT);
+		RHSHistory updated= history.getHistory(COLLECTION);
+		assertEquals(1.0f, updated.getRank(ARRAY_LIST), 0f);
+		assertEquals(0.5f, updated.getRank(LINKED_LIST), 0f);
+		assertEquals("a handed out ranking must not change", 1.0f, rhs.getRank(LINKED_LIST), 0f);
+	}
+
 	private static void assertEqualMap(Map<String, List<String>> expected, Map<String, RHSHistory> actual) {
 		assertEqualMap("", expected, actual);
 	}
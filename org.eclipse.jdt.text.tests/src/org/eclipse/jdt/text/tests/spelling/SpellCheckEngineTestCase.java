@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,15 @@
  *******************************************************************************/
 package org.eclipse.jdt.text.tests.spelling;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
@@ -20,9 +27,11 @@ import org.eclipse.jface.preference.IPreferenceStore;
 
 import org.eclipse.jdt.ui.PreferenceConstants;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.text.spelling.SpellCheckEngine;
 import org.eclipse.jdt.internal.ui.text.spelling.engine.AbstractSpellDictionary;
 import org.eclipse.jdt.internal.ui.text.spelling.engine.DefaultPhoneticDistanceAlgorithm;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.DefaultPhoneticHashProvider;
 import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellCheckEngine;
 import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellChecker;
 import org.eclipse.jdt.internal.ui.text.spelling.engine.RankedWordProposal;
@@ -47,6 +56,42 @@ public class SpellCheckEngineTestCase extends TestCase {
 		}
 	}
 
+	protected static class FileDictionary extends AbstractSpellDictionary {
+
+		private final File fFile;
+
+		public FileDictionary(File file) {
+			fFile= file;
+		}
+
+		@Override
+		protected URL getURL() throws MalformedURLException {
+			return fFile.toURI().toURL();
+		}
+
+		@Override
+		protected String getEncoding() {
+			return "UTF-8"; //$NON-NLS-1$
+		}
+	}
+
+	protected static class CachedFileDictionary extends FileDictionary {
+
+		public CachedFileDictionary(File file) {
+			super(file);
+		}
+
+		@Override
+		protected boolean isImageCacheable() {
+			return true;
+		}
+
+		public File getImageFile() throws MalformedURLException {
+			String key= getURL().toExternalForm() + '|' + getEncoding() + '|' + DefaultPhoneticHashProvider.class.getName();
+			return JavaPlugin.getDefault().getStateLocation().append("spelling").append(Integer.toHexString(key.hashCode()) + ".dictionary").toFile(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
 	public static final String GLOBAL= "Global"; //$NON-NLS-1$
 	public static final String LASTWAGEN= "Lastwagen"; //$NON-NLS-1$
 	public static final String LORRY= "Lorry"; //$NON-NLS-1$
@@ -206,6 +251,89 @@ public class SpellCheckEngineTestCase extends TestCase {
 
 	}
 
+	private static Set<String> toStrings(Set<RankedWordProposal> proposals) {
+		Set<String> result= new HashSet<>();
+		for (Iterator<RankedWordProposal> iterator= proposals.iterator(); iterator.hasNext();) {
+			RankedWordProposal proposal= iterator.next();
+			result.add(proposal.getText() + ":" + proposal.getRank()); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+	public void testCompactDictionary() throws IOException {
+		String[] words= { "sentence", "Sentence", "sentences", "tense", "lorry", "Lorry", "truck", "trucks", "global", "Lastwagen", "\u00e4rger" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$
+
+		File file= File.createTempFile("dictionary", ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+		TestDictionary expected= new TestDictionary();
+		FileDictionary compact= new FileDictionary(file);
+		try {
+			try (Writer writer= new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) { //$NON-NLS-1$
+				for (int i= 0; i < words.length; i++) {
+					writer.write(words[i]);
+					writer.write('\n');
+					expected.addWord(words[i]);
+				}
+			}
+
+			String[] queries= { "sentense", "Sentence", "lory", "truk", "globall", "lastwagen", "\u00e4rgr", "xyz" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+			for (int i= 0; i < queries.length; i++) {
+				assertEquals(queries[i], toStrings(expected.getProposals(queries[i], false)), toStrings(compact.getProposals(queries[i], false)));
+				assertEquals(queries[i], toStrings(expected.getProposals(queries[i], true)), toStrings(compact.getProposals(queries[i], true)));
+				assertEquals(queries[i], expected.isCorrect(queries[i]), compact.isCorrect(queries[i]));
+			}
+			for (int i= 0; i < words.length; i++)
+				assertTrue(words[i], compact.isCorrect(words[i]));
+			assertTrue(compact.isLoaded());
+
+			compact.unload();
+			assertFalse(compact.isLoaded());
+			assertTrue(compact.isCorrect(TRUCK));
+		} finally {
+			expected.unload();
+			compact.unload();
+			file.delete();
+		}
+	}
+
+	public void testTruncatedImage() throws IOException {
+		String[] words= { "sentence", "tense", "lorry", "truck", "global" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+		File file= File.createTempFile("dictionary", ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+		CachedFileDictionary dictionary= new CachedFileDictionary(file);
+		File image= dictionary.getImageFile();
+		try {
+			try (Writer writer= new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) { //$NON-NLS-1$
+				for (int i= 0; i < words.length; i++) {
+					writer.write(words[i]);
+					writer.write('\n');
+				}
+			}
+			assertTrue(dictionary.isCorrect(TRUCK));
+			dictionary.unload();
+			assertTrue(image.isFile());
+			long length= image.length();
+
+			// cuts the image in the middle of the word bytes
+			try (RandomAccessFile output= new RandomAccessFile(image, "rw")) { //$NON-NLS-1$
+				output.setLength(length - 3);
+			}
+
+			// the truncated image is ignored and written again
+			dictionary= new CachedFileDictionary(file);
+			for (int i= 0; i < words.length; i++)
+				assertTrue(words[i], dictionary.isCorrect(words[i]));
+			assertEquals(length, image.length());
+
+			String[] names= image.getParentFile().list();
+			for (int i= 0; i < names.length; i++)
+				assertFalse(names[i], names[i].endsWith(".tmp")); //$NON-NLS-1$
+		} finally {
+			dictionary.unload();
+			file.delete();
+			image.delete();
+		}
+	}
+
 	public void testWordProposals() {
 		fPreferences.setValue(PreferenceConstants.SPELLING_LOCALE, Locale.US.toString());
 		final ISpellChecker checker= fEngine.getSpellChecker();
@@ -0,0 +1,258 @@
+package benchmark;
+
+import java.awt.Color;
+import java.util.Collections;
+
+/**
+ * An in-memory index of documents that is used as input for the benchmarks. The
+ * imports of this file are intentionally incomplete, so that organize imports has
+ * to resolve most of the simple type names.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the documents
+ */
+public class Corpus<K extends Comparable<K>, V extends Corpus.Document> implements Iterable<V>, Serializable {
+
+	private static final long serialVersionUID= 1L;
+
+	/**
+	 * A document of the index.
+	 */
+	public interface Document {
+
+		/**
+		 * Returns the words of this document.
+		 *
+		 * @return the words
+		 */
+		List<String> getWords();
+
+		/**
+		 * Returns the time stamp of the last modification.
+		 *
+		 * @return the time stamp in milliseconds
+		 */
+		long getTimeStamp();
+	}
+
+	/**
+	 * Listener that is informed about changes of the index.
+	 */
+	public interface Listener extends EventListener {
+
+		void documentAdded(Object key, Document document);
+
+		void documentRemoved(Object key);
+	}
+
+	private static final class Entry<K, V> {
+		final K fKey;
+		V fValue;
+		int fHits;
+
+		Entry(K key, V value) {
+			fKey= key;
+			fValue= value;
+		}
+
+		@Override
+		public String toString() {
+			return fKey + "=" + fValue + " (" + fHits + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private final Map<K, Entry<K, V>> fEntries= new HashMap<>();
+	private final SortedMap<String, Set<K>> fWordIndex= new TreeMap<>();
+	private final List<Listener> fListeners= new CopyOnWriteArrayList<>();
+	private final AtomicInteger fModificationCount= new AtomicInteger();
+	private transient ReadWriteLock fLock= new ReentrantReadWriteLock();
+
+	public void addListener(Listener listener) {
+		fListeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		fListeners.remove(listener);
+	}
+
+	/**
+	 * Adds a document to the index, replacing the document with the same key.
+	 *
+	 * @param key the key
+	 * @param document the document
+	 * @return the replaced document, or <code>null</code>
+	 */
+	public V put(K key, V document) {
+		Objects.requireNonNull(key);
+		Lock lock= fLock.writeLock();
+		lock.lock();
+		try {
+			Entry<K, V> entry= fEntries.get(key);
+			V previous= null;
+			if (entry == null) {
+				entry= new Entry<>(key, document);
+				fEntries.put(key, entry);
+			} else {
+				previous= entry.fValue;
+				unindex(key, previous);
+				entry.fValue= document;
+			}
+			for (String word : document.getWords()) {
+				Set<K> keys= fWordIndex.get(word);
+				if (keys == null) {
+					keys= new LinkedHashSet<>();
+					fWordIndex.put(word.toLowerCase(Locale.ENGLISH), keys);
+				}
+				keys.add(key);
+			}
+			fModificationCount.incrementAndGet();
+			for (Listener listener : fListeners)
+				listener.documentAdded(key, document);
+			return previous;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void unindex(K key, V document) {
+		for (Iterator<String> iter= document.getWords().iterator(); iter.hasNext();) {
+			Set<K> keys= fWordIndex.get(iter.next());
+			if (keys != null)
+				keys.remove(key);
+		}
+	}
+
+	public boolean remove(K key) {
+		Lock lock= fLock.writeLock();
+		lock.lock();
+		try {
+			Entry<K, V> entry= fEntries.remove(key);
+			if (entry == null)
+				return false;
+			unindex(key, entry.fValue);
+			fModificationCount.incrementAndGet();
+			fListeners.forEach(listener -> listener.documentRemoved(key));
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Finds the documents that contain all of the given words, most recently modified first.
+	 *
+	 * @param words the words to search
+	 * @param limit the maximal number of results
+	 * @return the documents
+	 */
+	public List<V> find(Collection<String> words, int limit) {
+		Lock lock= fLock.readLock();
+		lock.lock();
+		try {
+			Set<K> result= null;
+			for (String word : words) {
+				Set<K> keys= fWordIndex.getOrDefault(word.toLowerCase(Locale.ENGLISH), Collections.emptySet());
+				if (result == null)
+					result= new HashSet<>(keys);
+				else
+					result.retainAll(keys);
+				if (result.isEmpty())
+					return Collections.emptyList();
+			}
+			if (result == null)
+				return Collections.emptyList();
+
+			List<V> documents= result.stream()
+					.map(fEntries::get)
+					.peek(entry -> entry.fHits++)
+					.map(entry -> entry.fValue)
+					.sorted(Comparator.comparingLong(Document::getTimeStamp).reversed())
+					.limit(limit)
+					.collect(Collectors.toList());
+			return documents;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Map<K, Integer> getHits() {
+		Map<K, Integer> hits= new LinkedHashMap<>();
+		for (Entry<K, V> entry : fEntries.values()) {
+			hits.put(entry.fKey, Integer.valueOf(entry.fHits));
+		}
+		return hits;
+	}
+
+	public Optional<V> getNewest() {
+		return fEntries.values().stream().map(entry -> entry.fValue).max(Comparator.comparingLong(Document::getTimeStamp));
+	}
+
+	@Override
+	public Iterator<V> iterator() {
+		List<V> values= new ArrayList<>(fEntries.size());
+		for (Entry<K, V> entry : fEntries.values())
+			values.add(entry.fValue);
+		return values.iterator();
+	}
+
+	public int getModificationCount() {
+		return fModificationCount.get();
+	}
+
+	/**
+	 * Writes the keys and the words of all documents to the given file.
+	 *
+	 * @param file the file
+	 * @throws IOException if writing fails
+	 */
+	public void export(File file) throws IOException {
+		try (Writer writer= new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			for (Map.Entry<K, Entry<K, V>> entry : new TreeMap<>(fEntries).entrySet()) {
+				writer.write(String.valueOf(entry.getKey()));
+				char separator= ':';
+				for (String word : entry.getValue().fValue.getWords()) {
+					writer.write(separator);
+					writer.write(word);
+					separator= ',';
+				}
+				writer.write('\n');
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		fLock= new ReentrantReadWriteLock();
+	}
+
+	public static <K extends Comparable<K>, V extends Document> Corpus<K, V> of(Map<? extends K, ? extends V> documents) {
+		Corpus<K, V> corpus= new Corpus<>();
+		for (Map.Entry<? extends K, ? extends V> entry : documents.entrySet()) {
+			corpus.put(entry.getKey(), entry.getValue());
+		}
+		return corpus;
+	}
+
+	public static long elapsed(Date since) {
+		return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - since.getTime());
+	}
+
+	public static BigDecimal average(int[] values) {
+		if (values.length == 0)
+			return BigDecimal.ZERO;
+		BigInteger sum= BigInteger.ZERO;
+		for (int i= 0; i < values.length; i++) {
+			switch (Integer.signum(values[i])) {
+				case -1:
+					sum= sum.subtract(BigInteger.valueOf(-values[i]));
+					break;
+				case 1:
+					sum= sum.add(BigInteger.valueOf(values[i]));
+					break;
+				default:
+					continue;
+			}
+		}
+		return new BigDecimal(sum).divide(BigDecimal.valueOf(values.length), MathContext.DECIMAL64);
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+
+import org.eclipse.jdt.internal.corext.dom.ASTFlattener;
+
+/**
+ * Benchmarks {@link ASTFlattener} on the whole corpus and on the small expressions that
+ * quick assists and refactorings typically flatten.
+ */
+@State(Scope.Benchmark)
+public class ASTFlattenerBenchmark {
+
+	private ICompilationUnit fUnit;
+	private CompilationUnit fRoot;
+	private Expression[] fExpressions;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fUnit= BenchmarkCorpus.createProject();
+		fRoot= BenchmarkCorpus.parse(fUnit, false);
+		final List<Expression> expressions= new ArrayList<>();
+		fRoot.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(ExpressionStatement node) {
+				expressions.add(node.getExpression());
+				return true;
+			}
+
+			@Override
+			public boolean visit(MethodInvocation node) {
+				expressions.add(node);
+				return true;
+			}
+		});
+		fExpressions= expressions.toArray(new Expression[expressions.size()]);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		BenchmarkCorpus.deleteProject(fUnit);
+	}
+
+	@Benchmark
+	public String flattenCompilationUnit() {
+		return ASTFlattener.asString(fRoot);
+	}
+
+	@Benchmark
+	public void flattenExpressions(Blackhole blackhole) {
+		for (int i= 0; i < fExpressions.length; i++)
+			blackhole.consume(ASTFlattener.asString(fExpressions[i]));
+	}
+}
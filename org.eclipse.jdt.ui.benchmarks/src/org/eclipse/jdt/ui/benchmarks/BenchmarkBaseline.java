@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Baseline scores of the benchmarks. The baseline is a properties file that maps the fully
+ * qualified benchmark method name to its average time in microseconds per operation. A
+ * benchmark without a recorded score is skipped by the comparison and reported by
+ * {@link #getUnrecorded(Collection)}, so that its score can be recorded.
+ */
+public class BenchmarkBaseline {
+
+	private final Properties fScores;
+
+	private BenchmarkBaseline(Properties scores) {
+		fScores= scores;
+	}
+
+	/**
+	 * Loads the baseline from the given file.
+	 *
+	 * @param file the baseline file
+	 * @return the baseline, without scores if the file does not exist
+	 * @throws IOException if the file cannot be read
+	 */
+	public static BenchmarkBaseline load(File file) throws IOException {
+		Properties scores= new Properties();
+		if (file.isFile()) {
+			try (InputStream stream= new FileInputStream(file)) {
+				scores.load(stream);
+			}
+		}
+		return new BenchmarkBaseline(scores);
+	}
+
+	/**
+	 * Writes the scores of the given results in the baseline format.
+	 *
+	 * @param results the benchmark results
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void store(Collection<RunResult> results, File file) throws IOException {
+		Properties scores= new Properties();
+		for (Iterator<RunResult> iter= results.iterator(); iter.hasNext();) {
+			RunResult result= iter.next();
+			scores.setProperty(result.getParams().getBenchmark(), Double.toString(result.getPrimaryResult().getScore()));
+		}
+		file.getParentFile().mkdirs();
+		try (OutputStream stream= new FileOutputStream(file)) {
+			scores.store(stream, "Average time in us/op"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Compares the given results with this baseline.
+	 *
+	 * @param results the benchmark results
+	 * @param tolerance the allowed slowdown relative to the baseline, e.g. <code>0.25</code>
+	 * @return a description of each benchmark that is slower than the baseline allows or whose
+	 *         score in the baseline is invalid
+	 */
+	public List<String> compare(Collection<RunResult> results, double tolerance) {
+		List<String> regressions= new ArrayList<>();
+		for (Iterator<RunResult> iter= results.iterator(); iter.hasNext();) {
+			RunResult result= iter.next();
+			String benchmark= result.getParams().getBenchmark();
+			String recorded= fScores.getProperty(benchmark, "").trim(); //$NON-NLS-1$
+			if (recorded.length() == 0)
+				continue;
+
+			double baseline;
+			try {
+				baseline= Double.parseDouble(recorded);
+			} catch (NumberFormatException e) {
+				regressions.add(benchmark + ": invalid baseline score '" + recorded + '\''); //$NON-NLS-1$
+				continue;
+			}
+			Result<?> primary= result.getPrimaryResult();
+			double limit= baseline * (1 + tolerance);
+			if (primary.getScore() > limit) {
+				regressions.add(benchmark + ": " + primary.getScore() + ' ' + primary.getScoreUnit() //$NON-NLS-1$
+						+ ", baseline " + baseline + " (limit " + limit + ')'); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Returns the benchmarks of the given results that have no score in this baseline.
+	 *
+	 * @param results the benchmark results
+	 * @return the names of the benchmarks to record
+	 */
+	public List<String> getUnrecorded(Collection<RunResult> results) {
+		List<String> unrecorded= new ArrayList<>();
+		for (Iterator<RunResult> iter= results.iterator(); iter.hasNext();) {
+			String benchmark= iter.next().getParams().getBenchmark();
+			if (fScores.getProperty(benchmark, "").trim().length() == 0) //$NON-NLS-1$
+				unrecorded.add(benchmark);
+		}
+		return unrecorded;
+	}
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.osgi.framework.FrameworkUtil;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.dom.IASTSharedValues;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+/**
+ * Access to the checked-in corpora of the benchmarks.
+ */
+public final class BenchmarkCorpus {
+
+	/** The Java source corpus */
+	public static final String JAVA_CORPUS= "corpora/Corpus.java"; //$NON-NLS-1$
+
+	/** The prose corpus for the spelling engine */
+	public static final String SPELLING_CORPUS= "corpora/spelling.txt"; //$NON-NLS-1$
+
+	private static final String PROJECT_NAME= "Benchmarks"; //$NON-NLS-1$
+
+	private BenchmarkCorpus() {
+	}
+
+	/**
+	 * Reads a corpus of this bundle.
+	 *
+	 * @param path the bundle relative path of the corpus
+	 * @return the content of the corpus
+	 * @throws IOException if the corpus cannot be read
+	 */
+	public static String read(String path) throws IOException {
+		URL url= FileLocator.find(FrameworkUtil.getBundle(BenchmarkCorpus.class), new Path(path), null);
+		if (url == null)
+			throw new IOException("Corpus not found: " + path); //$NON-NLS-1$
+		try (InputStream stream= url.openStream()) {
+			ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+			byte[] buffer= new byte[8192];
+			int read;
+			while ((read= stream.read(buffer)) != -1)
+				bytes.write(buffer, 0, read);
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Creates a Java 1.8 project with the rt stubs and the Java source corpus.
+	 *
+	 * @return the compilation unit of the Java source corpus
+	 * @throws CoreException if the project cannot be created
+	 * @throws IOException if the corpus cannot be read
+	 */
+	public static ICompilationUnit createProject() throws CoreException, IOException {
+		IJavaProject project= JavaProjectHelper.createJavaProject(PROJECT_NAME, "bin"); //$NON-NLS-1$
+		JavaProjectHelper.addRTJar18(project);
+		JavaProjectHelper.set18CompilerOptions(project);
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(project, "src"); //$NON-NLS-1$
+		IPackageFragment pack= root.createPackageFragment("benchmark", true, null); //$NON-NLS-1$
+		return pack.createCompilationUnit("Corpus.java", read(JAVA_CORPUS), true, null); //$NON-NLS-1$
+	}
+
+	/**
+	 * Deletes the project created by {@link #createProject()}.
+	 *
+	 * @param unit the compilation unit returned by {@link #createProject()}
+	 * @throws CoreException if the project cannot be deleted
+	 */
+	public static void deleteProject(ICompilationUnit unit) throws CoreException {
+		if (unit != null)
+			JavaProjectHelper.delete(unit.getJavaProject());
+	}
+
+	/**
+	 * Parses the given compilation unit.
+	 *
+	 * @param unit the compilation unit
+	 * @param resolveBindings whether bindings should be resolved
+	 * @return the AST
+	 */
+	public static CompilationUnit parse(ICompilationUnit unit, boolean resolveBindings) {
+		ASTParser parser= ASTParser.newParser(IASTSharedValues.SHARED_AST_LEVEL);
+		parser.setSource(unit);
+		parser.setResolveBindings(resolveBindings);
+		return (CompilationUnit) parser.createAST(null);
+	}
+}
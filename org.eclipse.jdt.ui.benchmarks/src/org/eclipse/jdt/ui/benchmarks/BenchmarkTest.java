@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the JMH benchmarks of this bundle and compares the scores with the checked-in baseline.
+ * Benchmarks without a score in the baseline are skipped and listed as to be recorded.
+ * <p>
+ * The benchmarks run inside the test OSGi runtime, so they are not forked and share the JVM with
+ * the test harness. Their scores are too noisy for a strict gate, so the comparison is advisory:
+ * slower benchmarks are only reported, unless <code>jdt.benchmarks.enforce</code> is set, which
+ * is meant for dedicated, otherwise idle machines. The run is configured with the system
+ * properties:
+ * </p>
+ * <ul>
+ * <li><code>jdt.benchmarks.include</code>: regular expression of the benchmarks to run</li>
+ * <li><code>jdt.benchmarks.baseline</code>: the baseline properties file</li>
+ * <li><code>jdt.benchmarks.tolerance</code>: the allowed slowdown, default <code>0.25</code></li>
+ * <li><code>jdt.benchmarks.enforce</code>: whether benchmarks slower than the tolerance fail the
+ * test, default <code>false</code></li>
+ * <li><code>jdt.benchmarks.results</code>: file to write the scores to, in the baseline format</li>
+ * <li><code>jdt.benchmarks.json</code>: file to write the JMH JSON result to</li>
+ * </ul>
+ */
+public class BenchmarkTest extends TestCase {
+
+	private static final String PACKAGE= BenchmarkTest.class.getPackage().getName();
+
+	public void testBenchmarks() throws Exception {
+		ChainedOptionsBuilder options= new OptionsBuilder()
+				.include(PACKAGE + '.' + System.getProperty("jdt.benchmarks.include", ".*")) //$NON-NLS-1$ //$NON-NLS-2$
+				.forks(0)
+				.threads(1)
+				.mode(Mode.AverageTime)
+				.timeUnit(TimeUnit.MICROSECONDS)
+				.warmupIterations(5)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10)
+				.measurementTime(TimeValue.seconds(1))
+				.shouldFailOnError(true);
+		String json= System.getProperty("jdt.benchmarks.json"); //$NON-NLS-1$
+		if (json != null) {
+			new File(json).getParentFile().mkdirs();
+			options.result(json).resultFormat(ResultFormatType.JSON);
+		}
+
+		Collection<RunResult> results= new Runner(options.build()).run();
+		assertFalse("No benchmarks run", results.isEmpty()); //$NON-NLS-1$
+
+		String resultsFile= System.getProperty("jdt.benchmarks.results"); //$NON-NLS-1$
+		if (resultsFile != null)
+			BenchmarkBaseline.store(results, new File(resultsFile));
+
+		String baselineFile= System.getProperty("jdt.benchmarks.baseline"); //$NON-NLS-1$
+		if (baselineFile == null)
+			return;
+		double tolerance= Double.parseDouble(System.getProperty("jdt.benchmarks.tolerance", "0.25")); //$NON-NLS-1$ //$NON-NLS-2$
+		BenchmarkBaseline baseline= BenchmarkBaseline.load(new File(baselineFile));
+		List<String> unrecorded= baseline.getUnrecorded(results);
+		if (!unrecorded.isEmpty())
+			System.out.println("Skipped benchmarks without baseline score, record them:\n" + String.join("\n", unrecorded)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		List<String> regressions= baseline.compare(results, tolerance);
+		if (regressions.isEmpty())
+			return;
+		String message= "Baseline comparison failed:\n" + String.join("\n", regressions); //$NON-NLS-1$ //$NON-NLS-2$
+		if (Boolean.getBoolean("jdt.benchmarks.enforce")) //$NON-NLS-1$
+			fail(message);
+		System.out.println(message);
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.SimpleName;
+
+import org.eclipse.jdt.internal.corext.dom.ASTNodes;
+import org.eclipse.jdt.internal.corext.dom.Bindings;
+
+/**
+ * Benchmarks the {@link Bindings} and {@link ASTNodes} utilities that quick fixes and
+ * refactorings call for every visited node.
+ */
+@State(Scope.Benchmark)
+public class BindingsBenchmark {
+
+	private ICompilationUnit fUnit;
+	private SimpleName[] fNames;
+	private IMethodBinding[] fMethods;
+	private MethodInvocation[] fInvocations;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fUnit= BenchmarkCorpus.createProject();
+		CompilationUnit root= BenchmarkCorpus.parse(fUnit, true);
+		final List<SimpleName> names= new ArrayList<>();
+		final List<IMethodBinding> methods= new ArrayList<>();
+		final List<MethodInvocation> invocations= new ArrayList<>();
+		root.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(SimpleName node) {
+				names.add(node);
+				return true;
+			}
+
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				IMethodBinding binding= node.resolveBinding();
+				if (binding != null)
+					methods.add(binding);
+				return true;
+			}
+
+			@Override
+			public boolean visit(MethodInvocation node) {
+				invocations.add(node);
+				return true;
+			}
+		});
+		fNames= names.toArray(new SimpleName[names.size()]);
+		fMethods= methods.toArray(new IMethodBinding[methods.size()]);
+		fInvocations= invocations.toArray(new MethodInvocation[invocations.size()]);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		BenchmarkCorpus.deleteProject(fUnit);
+	}
+
+	@Benchmark
+	public void bindingOfParentType(Blackhole blackhole) {
+		for (int i= 0; i < fNames.length; i++)
+			blackhole.consume(Bindings.getBindingOfParentType(fNames[i]));
+	}
+
+	@Benchmark
+	public void findOverriddenMethod(Blackhole blackhole) {
+		for (int i= 0; i < fMethods.length; i++)
+			blackhole.consume(Bindings.findOverriddenMethod(fMethods[i], true));
+	}
+
+	@Benchmark
+	public void allSuperTypes(Blackhole blackhole) {
+		for (int i= 0; i < fMethods.length; i++)
+			blackhole.consume(Bindings.getAllSuperTypes(fMethods[i].getDeclaringClass()));
+	}
+
+	@Benchmark
+	public void receiverAndTargetTypes(Blackhole blackhole) {
+		for (int i= 0; i < fInvocations.length; i++) {
+			MethodInvocation invocation= fInvocations[i];
+			ITypeBinding receiver= ASTNodes.getReceiverTypeBinding(invocation);
+			blackhole.consume(receiver);
+			blackhole.consume(ASTNodes.getTargetType(invocation));
+		}
+	}
+
+	@Benchmark
+	public void nameClassification(Blackhole blackhole) {
+		for (int i= 0; i < fNames.length; i++) {
+			SimpleName name= fNames[i];
+			blackhole.consume(ASTNodes.isDeclaration(name));
+			blackhole.consume(ASTNodes.getEnclosingType(name));
+			blackhole.consume(ASTNodes.getVariableBinding(name));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.rules.FastPartitioner;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+import org.eclipse.jdt.internal.ui.text.JavaHeuristicScanner;
+import org.eclipse.jdt.internal.ui.text.JavaIndenter;
+
+/**
+ * Benchmarks the {@link JavaIndenter} and the {@link JavaHeuristicScanner} by computing the
+ * indentation of every line of the Java source corpus, as done by correct indentation.
+ */
+@State(Scope.Benchmark)
+public class JavaIndenterBenchmark {
+
+	private IDocument fDocument;
+	private FastPartitioner fPartitioner;
+	private int[] fLineOffsets;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fDocument= new Document(BenchmarkCorpus.read(BenchmarkCorpus.JAVA_CORPUS));
+		String[] types= new String[] {
+			IJavaPartitions.JAVA_DOC,
+			IJavaPartitions.JAVA_MULTI_LINE_COMMENT,
+			IJavaPartitions.JAVA_SINGLE_LINE_COMMENT,
+			IJavaPartitions.JAVA_STRING,
+			IJavaPartitions.JAVA_CHARACTER,
+			IDocument.DEFAULT_CONTENT_TYPE
+		};
+		fPartitioner= new FastPartitioner(new FastJavaPartitionScanner(), types);
+		fPartitioner.connect(fDocument);
+		fDocument.setDocumentPartitioner(IJavaPartitions.JAVA_PARTITIONING, fPartitioner);
+
+		fLineOffsets= new int[fDocument.getNumberOfLines()];
+		for (int i= 0; i < fLineOffsets.length; i++)
+			fLineOffsets[i]= fDocument.getLineOffset(i);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fPartitioner.disconnect();
+	}
+
+	@Benchmark
+	public void computeIndentation(Blackhole blackhole) throws BadLocationException {
+		JavaIndenter indenter= new JavaIndenter(fDocument, new JavaHeuristicScanner(fDocument));
+		for (int i= 0; i < fLineOffsets.length; i++)
+			blackhole.consume(indenter.computeIndentation(fLineOffsets[i]));
+	}
+}
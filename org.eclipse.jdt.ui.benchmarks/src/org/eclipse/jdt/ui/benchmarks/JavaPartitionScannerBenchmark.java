@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.rules.IToken;
+
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+
+/**
+ * Benchmarks a full scan of the Java source corpus with the {@link FastJavaPartitionScanner}.
+ */
+@State(Scope.Benchmark)
+public class JavaPartitionScannerBenchmark {
+
+	private IDocument fDocument;
+	private FastJavaPartitionScanner fScanner;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fDocument= new Document(BenchmarkCorpus.read(BenchmarkCorpus.JAVA_CORPUS));
+		fScanner= new FastJavaPartitionScanner();
+	}
+
+	@Benchmark
+	public int scan() {
+		fScanner.setRange(fDocument, 0, fDocument.getLength());
+		int partitions= 0;
+		IToken token;
+		while (!(token= fScanner.nextToken()).isEOF()) {
+			if (token.getData() != null)
+				partitions++;
+		}
+		return partitions;
+	}
+}
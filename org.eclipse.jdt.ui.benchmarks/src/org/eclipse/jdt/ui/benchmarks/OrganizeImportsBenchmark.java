@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.eclipse.text.edits.TextEdit;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.manipulation.OrganizeImportsOperation;
+import org.eclipse.jdt.core.manipulation.OrganizeImportsOperation.IChooseImportQuery;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+
+/**
+ * Benchmarks {@link OrganizeImportsOperation} on the Java source corpus, which misses most of
+ * its imports and has unused ones.
+ */
+@State(Scope.Benchmark)
+public class OrganizeImportsBenchmark {
+
+	private static final IChooseImportQuery FIRST_CHOICE= new IChooseImportQuery() {
+		@Override
+		public TypeNameMatch[] chooseImports(TypeNameMatch[][] openChoices, ISourceRange[] ranges) {
+			TypeNameMatch[] result= new TypeNameMatch[openChoices.length];
+			for (int i= 0; i < openChoices.length; i++)
+				result[i]= openChoices[i][0];
+			return result;
+		}
+	};
+
+	private ICompilationUnit fUnit;
+	private CompilationUnit fRoot;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fUnit= BenchmarkCorpus.createProject();
+		fRoot= BenchmarkCorpus.parse(fUnit, true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		BenchmarkCorpus.deleteProject(fUnit);
+	}
+
+	/**
+	 * Organizes the imports on a shared AST, as done from the editor.
+	 *
+	 * @return the edit
+	 * @throws Exception if the operation fails
+	 */
+	@Benchmark
+	public TextEdit organizeImports() throws Exception {
+		return new OrganizeImportsOperation(fUnit, fRoot, true, false, true, FIRST_CHOICE).createTextEdit(null);
+	}
+
+	/**
+	 * Organizes the imports including the creation of the AST, as done for a selection of
+	 * compilation units.
+	 *
+	 * @return the edit
+	 * @throws Exception if the operation fails
+	 */
+	@Benchmark
+	public TextEdit organizeImportsWithParse() throws Exception {
+		return new OrganizeImportsOperation(fUnit, null, true, false, true, FIRST_CHOICE).createTextEdit(null);
+	}
+}
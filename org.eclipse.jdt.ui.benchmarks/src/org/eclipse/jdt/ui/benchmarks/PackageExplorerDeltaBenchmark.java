@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.viewers.TreeViewer;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.packageview.PackageExplorerContentProvider;
+
+/**
+ * Benchmarks the Package Explorer delta processing by replaying recorded Java element deltas
+ * into a fully expanded tree viewer. The deltas remove compilation units from a package in
+ * several operations, as done by a branch switch; the tree is restored before each replay.
+ */
+@State(Scope.Benchmark)
+public class PackageExplorerDeltaBenchmark {
+
+	private static final String MERGE_THRESHOLD= "PackageExplorerContentProvider.mergeThreshold"; //$NON-NLS-1$
+
+	private static final int OPERATIONS= 10;
+	private static final int UNITS_PER_OPERATION= 20;
+
+	private ICompilationUnit fUnit;
+	private IPackageFragment fPackage;
+	private final List<ElementChangedEvent> fEvents= new ArrayList<>();
+
+	private Display fDisplay;
+	private Shell fShell;
+	private TreeViewer fViewer;
+	private PackageExplorerContentProvider fProvider;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fUnit= BenchmarkCorpus.createProject();
+		IPackageFragmentRoot root= (IPackageFragmentRoot) fUnit.getParent().getParent();
+		fPackage= root.createPackageFragment("replay", true, null); //$NON-NLS-1$
+		final ICompilationUnit[] units= new ICompilationUnit[OPERATIONS * UNITS_PER_OPERATION];
+		for (int i= 0; i < units.length; i++)
+			units[i]= fPackage.createCompilationUnit("Unit" + i + ".java", "package replay;\nclass Unit" + i + " {}\n", true, null); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+		IElementChangedListener recorder= new IElementChangedListener() {
+			@Override
+			public void elementChanged(ElementChangedEvent event) {
+				fEvents.add(event);
+			}
+		};
+		JavaCore.addElementChangedListener(recorder, ElementChangedEvent.POST_CHANGE);
+		try {
+			for (int i= 0; i < OPERATIONS; i++) {
+				final int first= i * UNITS_PER_OPERATION;
+				JavaCore.run(new IWorkspaceRunnable() {
+					@Override
+					public void run(IProgressMonitor monitor) throws CoreException {
+						for (int j= first; j < first + UNITS_PER_OPERATION; j++)
+							units[j].delete(true, null);
+					}
+				}, null);
+			}
+		} finally {
+			JavaCore.removeElementChangedListener(recorder);
+		}
+		// the replayed removals are applied to the tree, not to the model
+		for (int i= 0; i < units.length; i++)
+			fPackage.createCompilationUnit(units[i].getElementName(), "package replay;\nclass Unit" + i + " {}\n", true, null); //$NON-NLS-1$ //$NON-NLS-2$
+
+		fDisplay= Display.getDefault();
+		fDisplay.syncExec(new Runnable() {
+			@Override
+			public void run() {
+				fShell= new Shell(fDisplay);
+				fViewer= new TreeViewer(fShell, SWT.MULTI);
+				fProvider= new PackageExplorerContentProvider(true);
+				fViewer.setContentProvider(fProvider);
+				IJavaModel model= JavaCore.create(ResourcesPlugin.getWorkspace().getRoot());
+				fViewer.setInput(model);
+			}
+		});
+	}
+
+	@Setup(Level.Invocation)
+	public void restoreTree() {
+		fDisplay.syncExec(new Runnable() {
+			@Override
+			public void run() {
+				fViewer.refresh();
+				fViewer.expandAll();
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if (fDisplay != null) {
+			fDisplay.syncExec(new Runnable() {
+				@Override
+				public void run() {
+					fShell.dispose();
+				}
+			});
+		}
+		JavaPlugin.getDefault().getPreferenceStore().setToDefault(MERGE_THRESHOLD);
+		BenchmarkCorpus.deleteProject(fUnit);
+	}
+
+	/**
+	 * Replays the deltas with the default merge threshold: the removed compilation units are
+	 * removed from the tree item by item.
+	 */
+	@Benchmark
+	public void replayMerged() {
+		JavaPlugin.getDefault().getPreferenceStore().setToDefault(MERGE_THRESHOLD);
+		replay();
+	}
+
+	/**
+	 * Replays the deltas with merging disabled: each delta refreshes the source folder.
+	 */
+	@Benchmark
+	public void replayRefresh() {
+		JavaPlugin.getDefault().getPreferenceStore().setValue(MERGE_THRESHOLD, 0);
+		replay();
+	}
+
+	private void replay() {
+		fDisplay.syncExec(new Runnable() {
+			@Override
+			public void run() {
+				for (int i= 0; i < fEvents.size(); i++)
+					fProvider.elementChanged(fEvents.get(i));
+				fProvider.runPendingUpdates();
+			}
+		});
+	}
+}
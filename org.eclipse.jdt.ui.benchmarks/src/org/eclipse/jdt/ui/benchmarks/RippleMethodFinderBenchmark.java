@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.core.resources.IWorkspaceRunnable;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jdt.internal.corext.refactoring.rename.RippleHierarchyCache;
+import org.eclipse.jdt.internal.corext.refactoring.rename.RippleMethodFinder2;
+
+/**
+ * Benchmarks the ripple method computation of a method rename on a synthetic hierarchy of an
+ * interface with 10000 implementors. One implementor also inherits the method from a second
+ * interface, so that the computation has to look for types marrying both hierarchies.
+ */
+@State(Scope.Benchmark)
+public class RippleMethodFinderBenchmark {
+
+	private static final int IMPLEMENTORS= 10000;
+	private static final int IMPLEMENTORS_PER_UNIT= 100;
+
+	private ICompilationUnit fUnit;
+	private IMethod fMethod;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fUnit= BenchmarkCorpus.createProject();
+		IPackageFragmentRoot root= (IPackageFragmentRoot) fUnit.getParent().getParent();
+		final IPackageFragment pack= root.createPackageFragment("ripple", true, null); //$NON-NLS-1$
+		JavaCore.run(new IWorkspaceRunnable() {
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				pack.createCompilationUnit("I.java", "package ripple;\npublic interface I {\n\tvoid m();\n}\n", true, null); //$NON-NLS-1$ //$NON-NLS-2$
+				pack.createCompilationUnit("J.java", "package ripple;\npublic interface J {\n\tvoid m();\n}\n", true, null); //$NON-NLS-1$ //$NON-NLS-2$
+				pack.createCompilationUnit("K.java", "package ripple;\npublic class K extends C0 implements J {\n}\n", true, null); //$NON-NLS-1$ //$NON-NLS-2$
+				for (int unit= 0; unit < IMPLEMENTORS / IMPLEMENTORS_PER_UNIT; unit++) {
+					StringBuffer source= new StringBuffer("package ripple;\n"); //$NON-NLS-1$
+					for (int i= unit * IMPLEMENTORS_PER_UNIT; i < (unit + 1) * IMPLEMENTORS_PER_UNIT; i++)
+						source.append("class C").append(i).append(" implements I {\n\tpublic void m() {\n\t}\n}\n"); //$NON-NLS-1$ //$NON-NLS-2$
+					pack.createCompilationUnit("Implementors" + unit + ".java", source.toString(), true, null); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}, null);
+		fMethod= pack.getCompilationUnit("I.java").getType("I").getMethod("m", new String[0]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		RippleHierarchyCache.clear();
+		BenchmarkCorpus.deleteProject(fUnit);
+	}
+
+	/**
+	 * Computes the ripple methods with the hierarchies shared from earlier computations, as
+	 * done for the methods of a renamed type.
+	 */
+	@Benchmark
+	public IMethod[] rippleMethodsShared() throws CoreException {
+		return RippleMethodFinder2.getRelatedMethods(fMethod, new NullProgressMonitor(), null);
+	}
+
+	/**
+	 * Computes the ripple methods without shared hierarchies.
+	 */
+	@Benchmark
+	public IMethod[] rippleMethodsCold() throws CoreException {
+		RippleHierarchyCache.clear();
+		return RippleMethodFinder2.getRelatedMethods(fMethod, new NullProgressMonitor(), null);
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.net.URL;
+import java.util.Locale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Region;
+
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.jdt.ui.PreferenceConstants;
+
+import org.eclipse.jdt.internal.ui.text.spelling.SpellCheckIterator;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.DefaultSpellChecker;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEvent;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.ISpellEventListener;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.PersistentSpellDictionary;
+
+/**
+ * Benchmarks the spelling engine with the shipped en_US dictionary: checking the prose corpus,
+ * and computing the correction proposals for its misspelled words.
+ */
+@State(Scope.Benchmark)
+public class SpellCheckBenchmark {
+
+	private static final String DICTIONARY= "dictionaries/en_US.dictionary"; //$NON-NLS-1$
+
+	private PersistentSpellDictionary fDictionary;
+	private DefaultSpellChecker fChecker;
+	private IDocument fDocument;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		URL url= FileLocator.find(Platform.getBundle(JavaUI.ID_PLUGIN), new Path(DICTIONARY), null);
+		fDictionary= new PersistentSpellDictionary(url);
+		fChecker= new DefaultSpellChecker(PreferenceConstants.getPreferenceStore(), Locale.US);
+		fChecker.addDictionary(fDictionary);
+		fDocument= new Document(BenchmarkCorpus.read(BenchmarkCorpus.SPELLING_CORPUS));
+		fDictionary.isCorrect("load"); //$NON-NLS-1$
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fDictionary.unload();
+	}
+
+	@Benchmark
+	public int check() {
+		final int[] problems= new int[1];
+		fChecker.execute(new ISpellEventListener() {
+			@Override
+			public void handle(ISpellEvent event) {
+				problems[0]++;
+			}
+		}, new SpellCheckIterator(fDocument, new Region(0, fDocument.getLength()), Locale.US));
+		return problems[0];
+	}
+
+	@Benchmark
+	public int proposals() {
+		final int[] proposals= new int[1];
+		fChecker.execute(new ISpellEventListener() {
+			@Override
+			public void handle(ISpellEvent event) {
+				proposals[0]+= event.getProposals().size();
+			}
+		}, new SpellCheckIterator(fDocument, new Region(0, fDocument.getLength()), Locale.US));
+		return proposals[0];
+	}
+}
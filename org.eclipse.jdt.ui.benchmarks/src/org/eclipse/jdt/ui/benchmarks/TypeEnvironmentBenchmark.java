@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.Type;
+
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TypeEnvironment;
+
+/**
+ * Benchmarks the creation of {@link TType}s in a {@link TypeEnvironment} and the assignment
+ * compatibility checks of the type constraints based refactorings.
+ */
+@State(Scope.Benchmark)
+public class TypeEnvironmentBenchmark {
+
+	private ICompilationUnit fUnit;
+	private ITypeBinding[] fBindings;
+	private TType[] fTypes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fUnit= BenchmarkCorpus.createProject();
+		final Map<String, ITypeBinding> bindings= new LinkedHashMap<>();
+		BenchmarkCorpus.parse(fUnit, true).accept(new ASTVisitor() {
+			@Override
+			public void preVisit(ASTNode node) {
+				ITypeBinding binding= null;
+				if (node instanceof Expression)
+					binding= ((Expression) node).resolveTypeBinding();
+				else if (node instanceof Type)
+					binding= ((Type) node).resolveBinding();
+				if (binding != null && !binding.isRecovered())
+					bindings.putIfAbsent(binding.getKey(), binding);
+			}
+		});
+		fBindings= bindings.values().toArray(new ITypeBinding[bindings.size()]);
+		fTypes= new TypeEnvironment().create(fBindings);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		BenchmarkCorpus.deleteProject(fUnit);
+	}
+
+	@Benchmark
+	public TType[] createTypes() {
+		return new TypeEnvironment(true).create(fBindings);
+	}
+
+	@Benchmark
+	public int canAssignTo() {
+		int assignable= 0;
+		for (int i= 0; i < fTypes.length; i++) {
+			for (int j= 0; j < fTypes.length; j++) {
+				if (fTypes[i].canAssignTo(fTypes[j]))
+					assignable++;
+			}
+		}
+		return assignable;
+	}
+}
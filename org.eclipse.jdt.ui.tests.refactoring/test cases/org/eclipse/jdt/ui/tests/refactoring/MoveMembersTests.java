@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,8 @@ package org.eclipse.jdt.ui.tests.refactoring;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
+
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 import org.eclipse.ltk.core.refactoring.participants.MoveArguments;
 import org.eclipse.ltk.core.refactoring.participants.MoveRefactoring;
@@ -27,6 +29,7 @@ import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringAvailabilityTester;
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchEngine2;
 import org.eclipse.jdt.internal.corext.refactoring.structure.MoveStaticMembersProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.IDelegateUpdating;
 
@@ -662,4 +665,55 @@ public class MoveMembersTests extends RefactoringTest {
 		IPackageFragment packageForB= getRoot().createPackageFragment("r", false, null);
 		fieldMethodTypePackageHelper_passing(new String[] { "FOO" }, new String[0], new String[][]{new String[0]}, new String[0], getPackageP(), packageForB, true);
 	}
+
+	public void testSearchSession() throws Exception {
+		IPackageFragment pack= getPackageP();
+		ICompilationUnit cuA= createCU(pack, "A.java", "package p;\npublic class A {\n\tpublic static int f;\n}\n");
+		ICompilationUnit cuB= createCU(pack, "B.java", "package p;\npublic class B {\n}\n");
+		ICompilationUnit cuC= createCU(pack, "C.java", "package p;\nclass C {\n\tint m() {\n\t\treturn A.f;\n\t}\n}\n");
+
+		RefactoringSearchEngine2.beginSession();
+		try {
+			MoveRefactoring ref= createRefactoring(new IMember[] { getType(cuA, "A").getField("f") }, getType(cuB, "B"));
+			assertTrue(ref.checkAllConditions(new NullProgressMonitor()).isOK());
+
+			// checking again, as the wizard does when going back, reuses the references
+			int hits= RefactoringSearchEngine2.getCacheHits();
+			assertTrue(ref.checkAllConditions(new NullProgressMonitor()).isOK());
+			assertTrue("no cache hit", RefactoringSearchEngine2.getCacheHits() > hits);
+
+			// the added reference must not be missed by a stale cache entry
+			cuC.getBuffer().setContents("package p;\nclass C {\n\tint m() {\n\t\treturn A.f + A.f;\n\t}\n}\n");
+			cuC.save(null, true);
+			assertEquals("was supposed to pass", null, performRefactoring(ref));
+		} finally {
+			RefactoringSearchEngine2.endSession();
+		}
+		assertEqualLines("incorrect modification of C", "package p;\nclass C {\n\tint m() {\n\t\treturn B.f + B.f;\n\t}\n}\n", cuC.getSource());
+	}
+
+	public void testSearchSessionWorkingCopy() throws Exception {
+		IPackageFragment pack= getPackageP();
+		ICompilationUnit cuA= createCU(pack, "A.java", "package p;\npublic class A {\n\tpublic static int f;\n}\n");
+		ICompilationUnit cuB= createCU(pack, "B.java", "package p;\npublic class B {\n}\n");
+		ICompilationUnit cuC= createCU(pack, "C.java", "package p;\nclass C {\n\tint m() {\n\t\treturn A.f;\n\t}\n}\n");
+
+		cuC.becomeWorkingCopy(null);
+		RefactoringSearchEngine2.beginSession();
+		try {
+			MoveRefactoring ref= createRefactoring(new IMember[] { getType(cuA, "A").getField("f") }, getType(cuB, "B"));
+			assertTrue(ref.checkAllConditions(new NullProgressMonitor()).isOK());
+
+			// an unsaved edit of a working copy invalidates the entries of the search
+			int hits= RefactoringSearchEngine2.getCacheHits();
+			int misses= RefactoringSearchEngine2.getCacheMisses();
+			cuC.getBuffer().replace(cuC.getSource().indexOf("A.f"), 0, "A.f + ");
+			assertTrue(ref.checkAllConditions(new NullProgressMonitor()).isOK());
+			assertEquals(hits, RefactoringSearchEngine2.getCacheHits());
+			assertTrue("no cache miss", RefactoringSearchEngine2.getCacheMisses() > misses);
+		} finally {
+			RefactoringSearchEngine2.endSession();
+			cuC.discardWorkingCopy();
+		}
+	}
 }
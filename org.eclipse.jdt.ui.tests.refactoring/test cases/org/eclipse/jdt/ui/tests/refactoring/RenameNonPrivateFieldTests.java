@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,8 @@ import org.eclipse.jdt.internal.core.refactoring.descriptors.RefactoringSignatur
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenameFieldProcessor;
 import org.eclipse.jdt.internal.corext.util.JdtFlags;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -50,6 +52,8 @@ public class RenameNonPrivateFieldTests extends RefactoringTest {
 
 	private static final boolean BUG_79990_CORE_SEARCH_METHOD_DECL= true;
 
+	private static final String SPILL_THRESHOLD= "TextChangeManager.spillThreshold";
+
 	private String fPrefixPref;
 
 	//Test methods can configure these fields:
@@ -481,4 +485,30 @@ public class RenameNonPrivateFieldTests extends RefactoringTest {
 
 		return file;
 	}
+
+	public void testSpilledChanges() throws Exception {
+		// keeps a single change in memory, the preview edits of the spilled changes are analyzed in checkFinalConditions
+		IPackageFragment pack= getPackageP();
+		ICompilationUnit cuA= createCU(pack, "A.java", "package p;\npublic class A {\n\tpublic int f;\n}\n");
+		ICompilationUnit[] refs= new ICompilationUnit[20];
+		for (int i= 0; i < refs.length; i++) {
+			refs[i]= createCU(pack, "Ref" + i + ".java", "package p;\nclass Ref" + i + " {\n\tint use(A a) {\n\t\ta.f= 1;\n\t\treturn a.f;\n\t}\n}\n");
+		}
+
+		JavaPlugin.getDefault().getPreferenceStore().setValue(SPILL_THRESHOLD, 1);
+		try {
+			RenameJavaElementDescriptor descriptor= RefactoringSignatureDescriptorFactory.createRenameJavaElementDescriptor(IJavaRefactorings.RENAME_FIELD);
+			descriptor.setJavaElement(getType(cuA, "A").getField("f"));
+			descriptor.setNewName("g");
+			descriptor.setUpdateReferences(true);
+			assertEquals("was supposed to pass", null, performRefactoring(createRefactoring(descriptor)));
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(SPILL_THRESHOLD);
+		}
+
+		assertEqualLines("invalid renaming", "package p;\npublic class A {\n\tpublic int g;\n}\n", cuA.getSource());
+		for (int i= 0; i < refs.length; i++) {
+			assertEqualLines("invalid renaming", "package p;\nclass Ref" + i + " {\n\tint use(A a) {\n\t\ta.g= 1;\n\t\treturn a.g;\n\t}\n}\n", refs[i].getSource());
+		}
+	}
 }
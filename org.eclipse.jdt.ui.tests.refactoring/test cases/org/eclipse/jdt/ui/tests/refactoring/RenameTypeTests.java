@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -24,9 +24,15 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 
+import org.eclipse.ltk.core.refactoring.CategorizedTextEditGroup;
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.CreateChangeOperation;
 import org.eclipse.ltk.core.refactoring.Refactoring;
 import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextEditBasedChangeGroup;
 import org.eclipse.ltk.core.refactoring.participants.RenameArguments;
 import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
 
@@ -49,6 +55,9 @@ import org.eclipse.jdt.internal.core.refactoring.descriptors.RefactoringSignatur
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenameTypeProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenamingNameSuggestor;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.INameUpdating;
+import org.eclipse.jdt.internal.corext.refactoring.util.SpilledCompilationUnitChange;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 
 import org.eclipse.jdt.ui.tests.refactoring.infra.DebugUtils;
 
@@ -60,6 +69,8 @@ public class RenameTypeTests extends RefactoringTest {
 	private static final boolean BUG_54948= false;
 	private static final Class<RenameTypeTests> clazz= RenameTypeTests.class;
 	private static final String REFACTORING_PATH= "RenameType/";
+	private static final String PARALLELISM= "SearchResultGroupProcessor.parallelism";
+	private static final String SPILL_THRESHOLD= "TextChangeManager.spillThreshold";
 
 	public RenameTypeTests(String name) {
 		super(name);
@@ -1707,4 +1718,69 @@ public class RenameTypeTests extends RefactoringTest {
 		// Test references in annotations and type parameters
 		helper3("Try", "Bla", true, false, true);
 	}
+
+	public void testManyReferencingUnits() throws Exception {
+		// enough units for the reference updates to be created concurrently
+		IPackageFragment pack= getPackageP();
+		ICompilationUnit cuA= createCU(pack, "A.java", "package p;\npublic class A {\n}\n");
+		ICompilationUnit[] refs= new ICompilationUnit[250];
+		for (int i= 0; i < refs.length; i++) {
+			refs[i]= createCU(pack, "Ref" + i + ".java", "package p;\nclass Ref" + i + " {\n\tA a;\n\tA create() {\n\t\treturn new A();\n\t}\n}\n");
+		}
+
+		JavaPlugin.getDefault().getPreferenceStore().setValue(PARALLELISM, 4);
+		try {
+			assertEquals("was supposed to pass", null, performRefactoring(createRefactoringDescriptor(getType(cuA, "A"), "B")));
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(PARALLELISM);
+		}
+
+		assertTrue(pack.getCompilationUnit("B.java").exists());
+		for (int i= 0; i < refs.length; i++) {
+			assertEqualLines("invalid renaming", "package p;\nclass Ref" + i + " {\n\tB a;\n\tB create() {\n\t\treturn new B();\n\t}\n}\n", refs[i].getSource());
+		}
+	}
+
+	public void testSpilledChanges() throws Exception {
+		// keeps a single change in memory, the categorized reference updates are spilled to a temporary file
+		IPackageFragment pack= getPackageP();
+		ICompilationUnit cuA= createCU(pack, "A.java", "package p;\npublic class A {\n}\n");
+		ICompilationUnit[] refs= new ICompilationUnit[20];
+		for (int i= 0; i < refs.length; i++) {
+			refs[i]= createCU(pack, "Ref" + i + ".java", "package p;\nclass Ref" + i + " {\n\tA a;\n\tA create() {\n\t\treturn new A();\n\t}\n}\n");
+		}
+
+		Change change;
+		JavaPlugin.getDefault().getPreferenceStore().setValue(SPILL_THRESHOLD, 1);
+		try {
+			Refactoring refactoring= createRefactoring(createRefactoringDescriptor(getType(cuA, "A"), "B"));
+			CreateChangeOperation create= new CreateChangeOperation(new CheckConditionsOperation(refactoring, CheckConditionsOperation.ALL_CONDITIONS), RefactoringStatus.FATAL);
+			create.run(new NullProgressMonitor());
+			assertFalse(create.getConditionCheckingStatus().hasError());
+			change= create.getChange();
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(SPILL_THRESHOLD);
+		}
+
+		int spilled= 0;
+		Change[] children= ((CompositeChange) change).getChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (children[i] instanceof SpilledCompilationUnitChange && children[i].getName().startsWith("Ref")) {
+				SpilledCompilationUnitChange spilledChange= (SpilledCompilationUnitChange) children[i];
+				assertFalse(spilledChange.isRestored());
+				TextEditBasedChangeGroup[] groups= spilledChange.load().getChangeGroups();
+				assertEquals(3, groups.length);
+				for (int j= 0; j < groups.length; j++)
+					assertTrue(groups[j].getTextEditGroup() instanceof CategorizedTextEditGroup);
+				spilled++;
+			}
+		}
+		assertEquals(refs.length, spilled);
+
+		performChange(change);
+		assertTrue(pack.getCompilationUnit("B.java").exists());
+		for (int i= 0; i < refs.length; i++) {
+			assertEqualLines("invalid renaming", "package p;\nclass Ref" + i + " {\n\tB a;\n\tB create() {\n\t\treturn new B();\n\t}\n}\n", refs[i].getSource());
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,7 @@ import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.refactoring.IJavaRefactorings;
@@ -31,6 +32,8 @@ import org.eclipse.jdt.internal.core.refactoring.descriptors.RefactoringSignatur
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenameMethodProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenameVirtualMethodProcessor;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 public class RenameVirtualMethodInClassTests extends RefactoringTest {
 
 	private static final Class<RenameVirtualMethodInClassTests> clazz= RenameVirtualMethodInClassTests.class;
@@ -38,6 +41,8 @@ public class RenameVirtualMethodInClassTests extends RefactoringTest {
 
 	private static final boolean BUG_83217_IMPLICIT_ENUM_METHODS= true;
 
+	private static final String SPILL_THRESHOLD= "TextChangeManager.spillThreshold";
+
 	public RenameVirtualMethodInClassTests(String name) {
 		super(name);
 	}
@@ -543,4 +548,33 @@ public class RenameVirtualMethodInClassTests extends RefactoringTest {
 		// overridden delegates in local type
 		helperDelegate();
 	}
+
+	public void testSpilledChanges() throws Exception {
+		// keeps a single change in memory, the preview edits of the spilled changes are analyzed in checkFinalConditions
+		IPackageFragment pack= getPackageP();
+		ICompilationUnit cuA= createCU(pack, "A.java", "package p;\npublic class A {\n\tpublic void m() {\n\t}\n}\n");
+		ICompilationUnit[] refs= new ICompilationUnit[20];
+		for (int i= 0; i < refs.length; i++) {
+			refs[i]= createCU(pack, "Ref" + i + ".java", "package p;\nclass Ref" + i + " {\n\tvoid use(A a) {\n\t\ta.m();\n\t\ta.m();\n\t}\n}\n");
+		}
+
+		JavaPlugin.getDefault().getPreferenceStore().setValue(SPILL_THRESHOLD, 1);
+		try {
+			RenameJavaElementDescriptor descriptor= RefactoringSignatureDescriptorFactory.createRenameJavaElementDescriptor(IJavaRefactorings.RENAME_METHOD);
+			descriptor.setJavaElement(getType(cuA, "A").getMethod("m", new String[0]));
+			descriptor.setNewName("k");
+			descriptor.setUpdateReferences(true);
+			RefactoringStatus status= new RefactoringStatus();
+			Refactoring refactoring= descriptor.createRefactoring(status);
+			assertTrue("status should be ok", status.isOK());
+			assertEquals("was supposed to pass", null, performRefactoring(refactoring));
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(SPILL_THRESHOLD);
+		}
+
+		assertEqualLines("invalid renaming", "package p;\npublic class A {\n\tpublic void k() {\n\t}\n}\n", cuA.getSource());
+		for (int i= 0; i < refs.length; i++) {
+			assertEqualLines("invalid renaming", "package p;\nclass Ref" + i + " {\n\tvoid use(A a) {\n\t\ta.k();\n\t\ta.k();\n\t}\n}\n", refs[i].getSource());
+		}
+	}
 }
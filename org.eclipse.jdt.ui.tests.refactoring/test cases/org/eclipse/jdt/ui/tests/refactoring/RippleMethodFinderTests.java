@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,8 @@ package org.eclipse.jdt.ui.tests.refactoring;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.Test;
@@ -24,7 +26,9 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
 
+import org.eclipse.jdt.internal.corext.refactoring.rename.RippleHierarchyCache;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RippleMethodFinder2;
 
 import org.eclipse.jdt.ui.tests.refactoring.infra.AbstractCUTestCase;
@@ -130,4 +134,33 @@ public class RippleMethodFinderTests extends AbstractCUTestCase {
 		perform();
 	}
 
+	public void testSharedHierarchy() throws Exception {
+		IPackageFragment pack= RefactoringTestSetup.getPackageP();
+		ICompilationUnit cu= createCU(pack, "A_testSharedHierarchy.java",
+				"package p;\n" +
+				"interface I {\n\tvoid m();\n}\n" +
+				"interface J {\n\tvoid m();\n}\n" +
+				"class C implements I {\n\tpublic void m() {\n\t}\n}\n" +
+				"class K extends C implements J {\n}\n");
+		try {
+			IType typeI= cu.getType("I");
+			IMethod target= typeI.getMethod("m", new String[0]);
+			IMethod[] expected= { target, cu.getType("J").getMethod("m", new String[0]), cu.getType("C").getMethod("m", new String[0]) };
+			RippleHierarchyCache.clear();
+			assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(Arrays.asList(RippleMethodFinder2.getRelatedMethods(target, new NullProgressMonitor(), null))));
+
+			int hits= RippleHierarchyCache.getCacheHits();
+			assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(Arrays.asList(RippleMethodFinder2.getRelatedMethods(target, new NullProgressMonitor(), null))));
+			assertTrue("hierarchy not shared", RippleHierarchyCache.getCacheHits() > hits);
+
+			// K does not marry the hierarchies anymore
+			cu.getBuffer().setContents(cu.getBuffer().getContents().replace("class K extends C implements J", "class K extends C"));
+			cu.save(null, true);
+			expected= new IMethod[] { target, cu.getType("C").getMethod("m", new String[0]) };
+			assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(Arrays.asList(RippleMethodFinder2.getRelatedMethods(target, new NullProgressMonitor(), null))));
+		} finally {
+			RippleHierarchyCache.clear();
+			cu.delete(true, null);
+		}
+	}
 }
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.junit.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jdt.internal.junit.model.ITestRunListener2;
+import org.eclipse.jdt.internal.junit.model.RemoteTestRunnerClient;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageWriter;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
+
+/**
+ * Tests the binary protocol between the RemoteTestRunner and the {@link RemoteTestRunnerClient}.
+ *
+ * @since 3.14
+ */
+public class BinaryMessageProtocolTest extends TestCase {
+
+	private static final long TIMEOUT= 10000;
+
+	private static class RecordingListener implements ITestRunListener2 {
+
+		private final List<String> fEvents= new ArrayList<>();
+
+		private synchronized void record(String event) {
+			fEvents.add(event);
+			notifyAll();
+		}
+
+		public synchronized String[] waitFor(String lastEvent) throws InterruptedException {
+			long timeout= System.currentTimeMillis() + TIMEOUT;
+			while (!fEvents.contains(lastEvent) && System.currentTimeMillis() < timeout)
+				wait(100);
+			return fEvents.toArray(new String[fEvents.size()]);
+		}
+
+		@Override
+		public void testRunStarted(int testCount) {
+			record("runStarted " + testCount);
+		}
+
+		@Override
+		public void testRunEnded(long elapsedTime) {
+			record("runEnded " + elapsedTime);
+		}
+
+		@Override
+		public void testRunStopped(long elapsedTime) {
+			record("runStopped " + elapsedTime);
+		}
+
+		@Override
+		public void testStarted(String testId, String testName) {
+			record("started " + testId + " " + testName);
+		}
+
+		@Override
+		public void testEnded(String testId, String testName) {
+			record("ended " + testId + " " + testName);
+		}
+
+		@Override
+		public void testRunTerminated() {
+			record("runTerminated");
+		}
+
+		@Override
+		public void testTreeEntry(String description) {
+			record("tree " + description);
+		}
+
+		@Override
+		public void testFailed(int status, String testId, String testName, String trace, String expected, String actual) {
+			record("failed " + testId + " " + testName);
+		}
+
+		@Override
+		public void testReran(String testId, String testClass, String testName, int status, String trace, String expected, String actual) {
+			record("reran " + testId);
+		}
+	}
+
+	private static String[] readMessages(byte[] bytes, int[] frameCount) throws IOException {
+		DataInputStream input= new DataInputStream(new ByteArrayInputStream(bytes));
+		byte[] header= new byte[MessageIds.BINARY_PROTOCOL.length()];
+		input.readFully(header);
+		assertEquals(MessageIds.BINARY_PROTOCOL, new String(header, StandardCharsets.US_ASCII));
+		assertEquals(MessageIds.BINARY_PROTOCOL_VERSION, input.readInt());
+
+		List<String> messages= new ArrayList<>();
+		while (input.available() > 0) {
+			int length= input.readInt();
+			int count= input.readInt();
+			int read= 4;
+			for (int i= 0; i < count; i++) {
+				byte[] message= new byte[input.readInt()];
+				input.readFully(message);
+				messages.add(new String(message, StandardCharsets.UTF_8));
+				read+= 4 + message.length;
+			}
+			assertEquals(length, read);
+			frameCount[0]++;
+		}
+		return messages.toArray(new String[messages.size()]);
+	}
+
+	public void testWriterFrames() throws Exception {
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output);
+		writer.sendMessage(MessageIds.TEST_RUN_START + "1 v2");
+		writer.sendMessage(MessageIds.TEST_START + "1,testA(p.A)");
+		writer.sendMessage(MessageIds.TEST_END + "1,testA(p.A) \u00e4");
+		writer.close();
+		writer.sendMessage(MessageIds.TEST_RUN_END + "10");
+
+		int[] frameCount= new int[1];
+		String[] messages= readMessages(output.toByteArray(), frameCount);
+		assertEquals(1, frameCount[0]);
+		assertEquals(3, messages.length);
+		assertEquals(MessageIds.TEST_RUN_START + "1 v2", messages[0]);
+		assertEquals(MessageIds.TEST_START + "1,testA(p.A)", messages[1]);
+		assertEquals(MessageIds.TEST_END + "1,testA(p.A) \u00e4", messages[2]);
+	}
+
+	public void testWriterLargeFrames() throws Exception {
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output);
+		StringBuffer trace= new StringBuffer();
+		for (int i= 0; i < 1000; i++)
+			trace.append("\tat p.A.method(A.java:").append(i).append(')');
+		for (int i= 0; i < 10; i++)
+			writer.sendMessage(i + trace.toString());
+		writer.close();
+
+		int[] frameCount= new int[1];
+		String[] messages= readMessages(output.toByteArray(), frameCount);
+		assertTrue(frameCount[0] > 1);
+		assertEquals(10, messages.length);
+		for (int i= 0; i < messages.length; i++)
+			assertEquals(i + trace.toString(), messages[i]);
+	}
+
+	public void testWriterDeferredFlush() throws Exception {
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output);
+		try {
+			writer.sendMessage(MessageIds.TEST_START + "1,testA(p.A)");
+			writer.flush();
+			writer.sendMessage(MessageIds.TEST_START + "2,testB(p.A)");
+			writer.flush();
+
+			// the second flush is deferred, but not for longer than the latency
+			long timeout= System.currentTimeMillis() + TIMEOUT;
+			String[] messages;
+			do {
+				Thread.sleep(20);
+				messages= readMessages(output.toByteArray(), new int[1]);
+			} while (messages.length < 2 && System.currentTimeMillis() < timeout);
+			assertEquals(2, messages.length);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static int findFreePort() throws IOException {
+		try (ServerSocket socket= new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static Socket connect(int port) throws Exception {
+		long timeout= System.currentTimeMillis() + TIMEOUT;
+		while (true) {
+			try {
+				return new Socket("127.0.0.1", port);
+			} catch (ConnectException e) {
+				if (System.currentTimeMillis() > timeout)
+					throw e;
+				Thread.sleep(50);
+			}
+		}
+	}
+
+	public void testClientReadsFrames() throws Exception {
+		RecordingListener listener= new RecordingListener();
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		int port= findFreePort();
+		client.startListening(new ITestRunListener2[] { listener }, port);
+
+		try (Socket socket= connect(port)) {
+			BinaryMessageWriter writer= new BinaryMessageWriter(socket.getOutputStream());
+			writer.sendMessage(MessageIds.TEST_RUN_START + "2 v2");
+			writer.sendMessage(MessageIds.TEST_START + "1,testA(p.A)");
+			writer.sendMessage(MessageIds.TEST_END + "1,testA(p.A)");
+			writer.flush();
+			writer.sendMessage(MessageIds.TEST_START + "2,testB(p.A)");
+			writer.sendMessage(MessageIds.TEST_END + "2,testB(p.A)");
+			writer.sendMessage(MessageIds.TEST_RUN_END + "10");
+			writer.close();
+
+			String[] events= listener.waitFor("runEnded 10");
+			assertEquals(6, events.length);
+			assertEquals("runStarted 2", events[0]);
+			assertEquals("started 1 testA(p.A)", events[1]);
+			assertEquals("ended 1 testA(p.A)", events[2]);
+			assertEquals("started 2 testB(p.A)", events[3]);
+			assertEquals("ended 2 testB(p.A)", events[4]);
+			assertEquals("runEnded 10", events[5]);
+		} finally {
+			client.stopWaiting();
+		}
+	}
+
+	public void testClientNotifiesListenersPerFrame() throws Exception {
+		RecordingListener failingListener= new RecordingListener() {
+			@Override
+			public void testStarted(String testId, String testName) {
+				throw new IllegalStateException("expected failure");
+			}
+		};
+		RecordingListener listener= new RecordingListener();
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		int port= findFreePort();
+		client.startListening(new ITestRunListener2[] { failingListener, listener }, port);
+
+		try (Socket socket= connect(port)) {
+			BinaryMessageWriter writer= new BinaryMessageWriter(socket.getOutputStream());
+			writer.sendMessage(MessageIds.TEST_RUN_START + "1 v2");
+			writer.sendMessage(MessageIds.TEST_START + "1,testA(p.A)");
+			writer.sendMessage(MessageIds.TEST_FAILED + "1,testA(p.A)");
+			writer.sendMessage(MessageIds.TRACE_START);
+			writer.sendMessage("trace");
+			writer.sendMessage(MessageIds.TRACE_END);
+			writer.sendMessage(MessageIds.TEST_END + "1,testA(p.A)");
+			writer.sendMessage(MessageIds.TEST_RUN_END + "10");
+			writer.close();
+
+			String[] events= listener.waitFor("runEnded 10");
+			assertEquals(5, events.length);
+			assertEquals("runStarted 1", events[0]);
+			assertEquals("started 1 testA(p.A)", events[1]);
+			assertEquals("failed 1 testA(p.A)", events[2]);
+			assertEquals("ended 1 testA(p.A)", events[3]);
+			assertEquals("runEnded 10", events[4]);
+
+			// a failing notification does not drop the later events of the frame
+			events= failingListener.waitFor("runEnded 10");
+			assertEquals(4, events.length);
+			assertEquals("failed 1 testA(p.A)", events[1]);
+			assertEquals("runEnded 10", events[3]);
+		} finally {
+			client.stopWaiting();
+		}
+	}
+
+	public void testClientStopsReadingOnShutDown() throws Exception {
+		RecordingListener listener= new RecordingListener();
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		int port= findFreePort();
+		client.startListening(new ITestRunListener2[] { listener }, port);
+
+		try (Socket socket= connect(port)) {
+			BinaryMessageWriter writer= new BinaryMessageWriter(socket.getOutputStream());
+			writer.sendMessage(MessageIds.TEST_RUN_START + "1 v2");
+			writer.sendMessage(MessageIds.TEST_START + "1,testA(p.A)");
+			// shuts the client down while it reads the frame
+			writer.sendMessage(MessageIds.TEST_STOPPED + "5");
+			writer.flush();
+
+			String[] events= listener.waitFor("runStopped 5");
+			assertEquals(3, events.length);
+			assertEquals("runStopped 5", events[2]);
+
+			long timeout= System.currentTimeMillis() + TIMEOUT;
+			while (client.isRunning() && System.currentTimeMillis() < timeout)
+				Thread.sleep(20);
+			assertFalse(client.isRunning());
+
+			writer.sendMessage(MessageIds.TEST_RUN_END + "10");
+			writer.close();
+			Thread.sleep(200);
+			events= listener.waitFor("runStopped 5");
+			assertEquals(3, events.length);
+		}
+	}
+}
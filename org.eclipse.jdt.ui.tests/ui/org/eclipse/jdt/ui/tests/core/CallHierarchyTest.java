@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,12 +13,20 @@ package org.eclipse.jdt.ui.tests.core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 
 import org.eclipse.jdt.core.IInitializer;
 import org.eclipse.jdt.core.IMember;
@@ -26,6 +34,7 @@ import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
 
 import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
+import org.eclipse.jdt.internal.corext.callhierarchy.MethodCall;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 
 import org.eclipse.jdt.ui.tests.callhierarchy.CallHierarchyTestHelper;
@@ -36,6 +45,79 @@ public class CallHierarchyTest extends TestCase {
 
     private CallHierarchyTestHelper helper;
 
+    /**
+     * A wrapper whose search finds the given member, after the search has been released.
+     */
+    private static class BlockingMethodWrapper extends MethodWrapper {
+        final AtomicInteger fSearches= new AtomicInteger();
+        final CountDownLatch fStarted= new CountDownLatch(1);
+        final CountDownLatch fReleased= new CountDownLatch(1);
+        private final IMember fCall;
+        boolean fCancel;
+
+        BlockingMethodWrapper(IMember member, IMember call) {
+            super(null, new MethodCall(member));
+            fCall= call;
+        }
+
+        @Override
+        protected String getTaskName() {
+            return ""; //$NON-NLS-1$
+        }
+
+        @Override
+        protected MethodWrapper createMethodWrapper(MethodCall methodCall) {
+            return new BlockingMethodWrapper(methodCall.getMember(), fCall);
+        }
+
+        @Override
+        public boolean canHaveChildren() {
+            return true;
+        }
+
+        @Override
+        protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor) {
+            fSearches.incrementAndGet();
+            fStarted.countDown();
+            try {
+                fReleased.await();
+            } catch (InterruptedException e) {
+                throw new OperationCanceledException();
+            }
+            if (fCancel)
+                progressMonitor.setCanceled(true);
+            Map<String, MethodCall> result= new HashMap<>();
+            MethodCall methodCall= new MethodCall(fCall);
+            result.put(methodCall.getKey(), methodCall);
+            return result;
+        }
+    }
+
+    /**
+     * Calls {@link MethodWrapper#getCalls(IProgressMonitor)} in a separate thread.
+     */
+    private static class GetCallsThread extends Thread {
+        private final MethodWrapper fWrapper;
+        final IProgressMonitor fMonitor= new NullProgressMonitor();
+        MethodWrapper[] fCalls;
+        Throwable fException;
+
+        GetCallsThread(MethodWrapper wrapper) {
+            fWrapper= wrapper;
+            setDaemon(true);
+            start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                fCalls= fWrapper.getCalls(fMonitor);
+            } catch (Throwable e) {
+                fException= e;
+            }
+        }
+    }
+
     public CallHierarchyTest(String name) {
         super(name);
     }
@@ -92,6 +174,36 @@ public class CallHierarchyTest extends TestCase {
         helper.assertCalls(expectedSecondLevelMethods, wrapper2.getCalls(new NullProgressMonitor()));
     }
 
+    public void testCallersStreamed() throws Exception {
+        helper.createSimpleClasses();
+
+        Collection<IMember> expectedMethods= new ArrayList<>();
+        expectedMethods.add(helper.getMethod2());
+        expectedMethods.add(helper.getMethod3());
+
+        MethodWrapper wrapper= getSingleCallerRoot(helper.getMethod1());
+        final List<MethodWrapper> found= new ArrayList<>();
+        MethodWrapper[] calls= wrapper.getCalls(new NullProgressMonitor(), new MethodWrapper.ICallListener() {
+            @Override
+            public void callFound(MethodWrapper call) {
+                found.add(call);
+            }
+        });
+        helper.assertCalls(expectedMethods, calls);
+        // each caller is reported once while it is searched
+        helper.assertCalls(expectedMethods, found);
+
+        // cached calls are not reported again
+        found.clear();
+        helper.assertCalls(expectedMethods, wrapper.getCalls(new NullProgressMonitor(), new MethodWrapper.ICallListener() {
+            @Override
+            public void callFound(MethodWrapper call) {
+                found.add(call);
+            }
+        }));
+        assertTrue(found.isEmpty());
+    }
+
     public void testCallersNoResults() throws Exception {
         helper.createSimpleClasses();
 
@@ -452,6 +564,74 @@ public class CallHierarchyTest extends TestCase {
         assertEquals("Wrong line number", 12, recursiveMethod2Wrapper.getMethodCall().getFirstCallLocation().getLineNumber());
     }
 
+    public void testDefaultPrefetchDepth() throws Exception {
+        assertEquals(0, CallHierarchy.getDefault().getPrefetchDepth());
+    }
+
+    public void testConcurrentGetCalls() throws Exception {
+        helper.createSimpleClasses();
+
+        BlockingMethodWrapper wrapper= new BlockingMethodWrapper(helper.getMethod1(), helper.getMethod2());
+        GetCallsThread first= new GetCallsThread(wrapper);
+        assertTrue(wrapper.fStarted.await(10, TimeUnit.SECONDS));
+        GetCallsThread second= new GetCallsThread(wrapper);
+        second.join(500);
+        assertTrue("Second request must wait for the search", second.isAlive());
+
+        wrapper.fReleased.countDown();
+        first.join(10000);
+        second.join(10000);
+        assertNull(first.fException);
+        assertNull(second.fException);
+        assertEquals(1, first.fCalls.length);
+        assertEquals(1, second.fCalls.length);
+        assertEquals(helper.getMethod2(), second.fCalls[0].getMember());
+        assertEquals(1, wrapper.fSearches.get());
+
+        assertEquals(1, wrapper.getCalls(new NullProgressMonitor()).length);
+        assertEquals(1, wrapper.fSearches.get());
+    }
+
+    public void testCanceledSearchNotPublished() throws Exception {
+        helper.createSimpleClasses();
+
+        BlockingMethodWrapper wrapper= new BlockingMethodWrapper(helper.getMethod1(), helper.getMethod2());
+        wrapper.fCancel= true;
+        wrapper.fReleased.countDown();
+        try {
+            wrapper.getCalls(new NullProgressMonitor());
+            fail("Search must be canceled");
+        } catch (OperationCanceledException e) {
+            // expected
+        }
+        assertEquals(1, wrapper.fSearches.get());
+
+        wrapper.fCancel= false;
+        MethodWrapper[] calls= wrapper.getCalls(new NullProgressMonitor());
+        assertEquals(1, calls.length);
+        assertEquals(2, wrapper.fSearches.get());
+    }
+
+    public void testCanceledWaiter() throws Exception {
+        helper.createSimpleClasses();
+
+        BlockingMethodWrapper wrapper= new BlockingMethodWrapper(helper.getMethod1(), helper.getMethod2());
+        GetCallsThread first= new GetCallsThread(wrapper);
+        assertTrue(wrapper.fStarted.await(10, TimeUnit.SECONDS));
+        GetCallsThread second= new GetCallsThread(wrapper);
+        second.fMonitor.setCanceled(true);
+        second.join(10000);
+        assertFalse("Canceled request must not wait for the search", second.isAlive());
+        assertTrue(second.fException instanceof OperationCanceledException);
+        assertTrue(first.isAlive());
+
+        wrapper.fReleased.countDown();
+        first.join(10000);
+        assertNull(first.fException);
+        assertEquals(1, first.fCalls.length);
+        assertEquals(1, wrapper.fSearches.get());
+    }
+
     private void assertRecursive(MethodWrapper[] callResults, boolean shouldBeRecursive) {
         for (int i= 0; i < callResults.length; i++) {
             assertEquals(
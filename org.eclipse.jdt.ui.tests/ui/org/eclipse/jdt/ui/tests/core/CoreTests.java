@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -67,6 +67,8 @@ public class CoreTests extends TestCase {
 		suite.addTest(SelectionHistoryTest.suite());
 		suite.addTest(ASTProviderTest.suite());
 		suite.addTest(JDTFlagsTest18.suite());
+		suite.addTest(ProblemMarkerManagerTest.suite());
+		suite.addTest(ProblemSeverityCacheTest.suite());
 
 		return new ProjectTestSetup(suite);
 	}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.viewsupport.IProblemChangedListener;
+import org.eclipse.jdt.internal.ui.viewsupport.ProblemMarkerManager;
+
+public class ProblemMarkerManagerTest extends TestCase {
+
+	private static final Class<ProblemMarkerManagerTest> THIS= ProblemMarkerManagerTest.class;
+
+	private static final IProblemChangedListener LISTENER= new IProblemChangedListener() {
+		@Override
+		public void problemsChanged(IResource[] changedResources, boolean isMarkerChange) {
+			// only the tracked states are tested
+		}
+	};
+
+	private IProject fProject;
+	private IFile fFile;
+	private ProblemMarkerManager fManager;
+
+	public ProblemMarkerManagerTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		JavaPlugin.getDefault().getPreferenceStore().setValue(ProblemMarkerManager.PREF_COALESCING_WINDOW, 1);
+		fProject= ResourcesPlugin.getWorkspace().getRoot().getProject("ProblemMarkerManagerTest");
+		fProject.create(null);
+		fProject.open(null);
+		IFolder folder= fProject.getFolder("folder");
+		folder.create(true, true, null);
+		fFile= folder.getFile("file.txt");
+		fFile.create(new ByteArrayInputStream(new byte[0]), true, null);
+
+		fManager= new ProblemMarkerManager();
+		fManager.addListener(LISTENER);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fManager.removeListener(LISTENER);
+		fProject.delete(true, true, null);
+		JavaPlugin.getDefault().getPreferenceStore().setToDefault(ProblemMarkerManager.PREF_COALESCING_WINDOW);
+	}
+
+	private IMarker createProblem(int severity) throws Exception {
+		IMarker marker= fFile.createMarker(IMarker.PROBLEM);
+		marker.setAttribute(IMarker.SEVERITY, severity);
+		return marker;
+	}
+
+	private void assertTrackedResources(int expected) throws Exception {
+		long timeout= System.currentTimeMillis() + 10000;
+		while (fManager.getTrackedResourceCount() != expected && System.currentTimeMillis() < timeout)
+			Thread.sleep(20);
+		assertEquals(expected, fManager.getTrackedResourceCount());
+	}
+
+	public void testDefaultCoalescingWindow() throws Exception {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		assertEquals(100, store.getDefaultInt(ProblemMarkerManager.PREF_COALESCING_WINDOW));
+	}
+
+	public void testSeverityReturnsToNone() throws Exception {
+		IMarker marker= createProblem(IMarker.SEVERITY_ERROR);
+		// the file, its folder and the project
+		assertTrackedResources(3);
+
+		marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+		assertTrackedResources(3);
+
+		marker.delete();
+		assertTrackedResources(0);
+	}
+
+	public void testDeletedResource() throws Exception {
+		createProblem(IMarker.SEVERITY_ERROR);
+		assertTrackedResources(3);
+
+		fFile.delete(true, null);
+		assertTrackedResources(0);
+	}
+
+	public void testClosedProject() throws Exception {
+		createProblem(IMarker.SEVERITY_WARNING);
+		assertTrackedResources(3);
+
+		fProject.close(null);
+		assertTrackedResources(0);
+		fProject.open(null);
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.text.source.AnnotationModel;
+
+import org.eclipse.ui.texteditor.MarkerAnnotation;
+
+import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitAnnotationModelEvent;
+import org.eclipse.jdt.internal.ui.viewsupport.IProblemChangedListener;
+import org.eclipse.jdt.internal.ui.viewsupport.ProblemMarkerManager;
+import org.eclipse.jdt.internal.ui.viewsupport.ProblemSeverityCache;
+
+public class ProblemSeverityCacheTest extends TestCase {
+
+	private static final Class<ProblemSeverityCacheTest> THIS= ProblemSeverityCacheTest.class;
+
+	private static final IProblemChangedListener LISTENER= new IProblemChangedListener() {
+		@Override
+		public void problemsChanged(IResource[] changedResources, boolean isMarkerChange) {
+			// only the cached severities are tested
+		}
+	};
+
+	private IProject fProject;
+	private IFolder fFolder;
+	private IFile fFile;
+	private ProblemMarkerManager fManager;
+	private ProblemSeverityCache fCache;
+
+	public ProblemSeverityCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fProject= ResourcesPlugin.getWorkspace().getRoot().getProject("ProblemSeverityCacheTest");
+		fProject.create(null);
+		fProject.open(null);
+		fFolder= fProject.getFolder("folder");
+		fFolder.create(true, true, null);
+		fFile= fFolder.getFile("file.txt");
+		fFile.create(new ByteArrayInputStream(new byte[0]), true, null);
+
+		fManager= new ProblemMarkerManager();
+		fManager.addListener(LISTENER);
+		fCache= fManager.getSeverityCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fManager.removeListener(LISTENER);
+		fProject.delete(true, true, null);
+	}
+
+	private void assertSeverities(int expected) throws CoreException {
+		assertEquals(expected, fCache.findMaxProblemSeverity(fFile, IMarker.PROBLEM, IResource.DEPTH_ZERO));
+		assertEquals(expected, fCache.findMaxProblemSeverity(fFolder, IMarker.PROBLEM, IResource.DEPTH_ONE));
+		assertEquals(expected, fCache.findMaxProblemSeverity(fProject, IMarker.PROBLEM, IResource.DEPTH_INFINITE));
+	}
+
+	private void fireAnnotationModelChange(IResource resource, IMarker marker) {
+		CompilationUnitAnnotationModelEvent event= new CompilationUnitAnnotationModelEvent(new AnnotationModel(), resource);
+		if (marker != null)
+			event.annotationAdded(new MarkerAnnotation(marker));
+		fManager.modelChanged(event);
+	}
+
+	public void testResourceChange() throws Exception {
+		assertSeverities(-1);
+
+		IMarker marker= fFile.createMarker(IMarker.PROBLEM);
+		marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_ERROR);
+		assertSeverities(IMarker.SEVERITY_ERROR);
+
+		marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+		assertSeverities(IMarker.SEVERITY_WARNING);
+
+		marker.delete();
+		assertSeverities(-1);
+	}
+
+	public void testResourceChangeOfPositions() throws Exception {
+		assertEquals(0, fCache.findProblemMarkerPositions(fFile).length);
+
+		IMarker marker= fFile.createMarker(IMarker.PROBLEM);
+		marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_ERROR);
+		marker.setAttribute(IMarker.CHAR_START, 10);
+		int[] positions= fCache.findProblemMarkerPositions(fFile);
+		assertEquals(2, positions.length);
+		assertEquals(10, positions[0]);
+		assertEquals(IMarker.SEVERITY_ERROR, positions[1]);
+
+		marker.setAttribute(IMarker.CHAR_START, 20);
+		positions= fCache.findProblemMarkerPositions(fFile);
+		assertEquals(2, positions.length);
+		assertEquals(20, positions[0]);
+	}
+
+	public void testAnnotationModelChange() throws Exception {
+		// the resource delta is only sent at the end of the operation
+		ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				assertSeverities(-1);
+				IMarker marker= fFile.createMarker(IMarker.PROBLEM);
+				marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_ERROR);
+				assertSeverities(-1);
+
+				// changes without problem annotations keep the cached severities
+				fireAnnotationModelChange(fFile, null);
+				assertEquals(-1, fCache.findMaxProblemSeverity(fFile, IMarker.PROBLEM, IResource.DEPTH_ZERO));
+
+				fireAnnotationModelChange(fFile, marker);
+				assertEquals(IMarker.SEVERITY_ERROR, fCache.findMaxProblemSeverity(fFile, IMarker.PROBLEM, IResource.DEPTH_ZERO));
+			}
+		}, null);
+		assertSeverities(IMarker.SEVERITY_ERROR);
+	}
+
+	public void testDisabledCache() throws Exception {
+		fManager.removeListener(LISTENER);
+		try {
+			ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+				@Override
+				public void run(IProgressMonitor monitor) throws CoreException {
+					assertSeverities(-1);
+					IMarker marker= fFile.createMarker(IMarker.PROBLEM);
+					marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_ERROR);
+					// nothing is cached without listeners
+					assertSeverities(IMarker.SEVERITY_ERROR);
+				}
+			}, null);
+		} finally {
+			fManager.addListener(LISTENER);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,7 +16,22 @@ import java.util.Comparator;
 
 import org.w3c.dom.Element;
 
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+
 import org.eclipse.jdt.internal.corext.util.History;
+import org.eclipse.jdt.internal.corext.util.OpenTypeHistory;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -27,6 +42,11 @@ public class SelectionHistoryTest extends TestCase {
 
 	private static final Class<SelectionHistoryTest> THIS= SelectionHistoryTest.class;
 
+	/** The job family of the consistency check of the {@link OpenTypeHistory} */
+	private static final String UPDATE_JOB_FAMILY= "org.eclipse.jdt.internal.corext.util.OpenTypeHistory$UpdateJob";
+
+	private static final long TIMEOUT= 10000;
+
 	public SelectionHistoryTest(String name) {
 		super(name);
 	}
@@ -193,4 +213,175 @@ public class SelectionHistoryTest extends TestCase {
 		assertEquals(strings, expected);
 	}
 
+	public void testOrganizeImportHistory06() throws Exception {
+		History<String, String> history= new TestHistory();
+		Comparator<String> comparator= new TestHistoryComparator(history);
+
+		String[] strings= {"a", "b", "c", "d"};
+		history.accessed("a");
+		history.accessed("b");
+		history.accessed("c");
+		history.remove("b");
+		String[] expected= {"c", "a", "b", "d"};
+
+		Arrays.sort(strings, comparator);
+		assertEquals(strings, expected);
+		assertFalse(history.contains("b"));
+		assertEquals(-1, history.getPosition("b"));
+		assertEquals(1.0f, history.getNormalizedPosition("c"), 0.0f);
+		assertEquals(0.5f, history.getNormalizedPosition("a"), 0.0f);
+	}
+
+	public void testConcurrentReaders() throws Exception {
+		final History<String, String> history= new TestHistory();
+		final Throwable[] failure= new Throwable[1];
+		Thread reader= new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (int i= 0; i < 10000; i++) {
+						int position= history.getPosition("a");
+						float normalized= history.getNormalizedPosition("a");
+						assertTrue(position >= -1);
+						assertTrue(normalized >= 0.0f && normalized <= 1.0f);
+					}
+				} catch (Throwable e) {
+					failure[0]= e;
+				}
+			}
+		};
+		reader.start();
+		for (int i= 0; i < 10000; i++) {
+			history.accessed(String.valueOf(i % 100));
+			history.accessed("a");
+			if (i % 3 == 0)
+				history.remove("a");
+		}
+		reader.join();
+		assertNull(String.valueOf(failure[0]), failure[0]);
+	}
+
+	private static void joinConsistencyCheck() throws Exception {
+		Job.getJobManager().join(UPDATE_JOB_FAMILY, null);
+	}
+
+	private static TypeNameMatch findType(OpenTypeHistory history, IType type) {
+		TypeNameMatch[] infos= history.getTypeInfos();
+		for (int i= 0; i < infos.length; i++) {
+			if (infos[i].getType().equals(type))
+				return infos[i];
+		}
+		return null;
+	}
+
+	private static void removeTypes(OpenTypeHistory history, IJavaProject project) {
+		TypeNameMatch[] infos= history.getTypeInfos();
+		for (int i= 0; i < infos.length; i++) {
+			if (project.equals(infos[i].getType().getJavaProject()))
+				history.remove(infos[i]);
+		}
+	}
+
+	public void testTypeChangeChecksOnlyChangedType() throws Exception {
+		IJavaProject project= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(project, "src");
+		OpenTypeHistory history= OpenTypeHistory.getInstance();
+		try {
+			IPackageFragment pack1= sourceFolder.createPackageFragment("pack1", false, null);
+			ICompilationUnit cuA= pack1.createCompilationUnit("A.java", "package pack1;\npublic class A {\n}\n", false, null);
+			IPackageFragment pack2= sourceFolder.createPackageFragment("pack2", false, null);
+			// the modification of A must change the time stamp, see OpenTypeHistory#checkConsistency(TypeNameMatch)
+			cuA.getResource().setLocalTimeStamp(1000);
+			history.checkConsistency(new NullProgressMonitor());
+			joinConsistencyCheck();
+
+			IType typeA= cuA.getType("A");
+			history.accessed(SearchEngine.createTypeNameMatch(typeA, Flags.AccPublic));
+			// does not exist, so any check of this entry removes it
+			IType missing= pack2.getCompilationUnit("Missing.java").getType("Missing");
+			history.accessed(SearchEngine.createTypeNameMatch(missing, Flags.AccPublic));
+
+			pack1.createCompilationUnit("A.java", "package pack1;\npublic final class A {\n}\n", true, null);
+			joinConsistencyCheck();
+
+			TypeNameMatch match= findType(history, typeA);
+			assertNotNull(match);
+			assertEquals(Flags.AccPublic | Flags.AccFinal, match.getModifiers());
+			assertNotNull(findType(history, missing));
+
+			// a full check removes it
+			history.markAsInconsistent();
+			history.checkConsistency(new NullProgressMonitor());
+			joinConsistencyCheck();
+			assertNull(findType(history, missing));
+			assertNotNull(findType(history, typeA));
+		} finally {
+			removeTypes(history, project);
+			JavaProjectHelper.removeSourceContainer(project, "src");
+		}
+	}
+
+	public void testFilteredTypeInfosDuringConsistencyCheck() throws Exception {
+		IJavaProject project= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(project, "src");
+		final OpenTypeHistory history= OpenTypeHistory.getInstance();
+		try {
+			IPackageFragment pack1= sourceFolder.createPackageFragment("pack1", false, null);
+			final IType missing= pack1.getCompilationUnit("Missing.java").getType("Missing");
+			history.accessed(SearchEngine.createTypeNameMatch(missing, Flags.AccPublic));
+
+			final Object release= new Object();
+			final boolean[] locked= new boolean[1];
+			// blocks the removal of the missing type in the middle of the consistency check
+			Thread writer= new Thread() {
+				@Override
+				public void run() {
+					synchronized (history) {
+						synchronized (release) {
+							locked[0]= true;
+							release.notifyAll();
+							try {
+								release.wait(TIMEOUT);
+							} catch (InterruptedException e) {
+								// release the history
+							}
+						}
+					}
+				}
+			};
+			final TypeNameMatch[][] result= new TypeNameMatch[1][];
+			Thread reader= new Thread() {
+				@Override
+				public void run() {
+					result[0]= history.getFilteredTypeInfos(null);
+				}
+			};
+			synchronized (release) {
+				writer.start();
+				while (!locked[0])
+					release.wait();
+			}
+			try {
+				history.markAsInconsistent();
+				assertTrue(history.needConsistencyCheck());
+
+				reader.start();
+				reader.join(TIMEOUT);
+				assertFalse(reader.isAlive());
+				assertEquals(missing, result[0][0].getType());
+			} finally {
+				synchronized (release) {
+					release.notifyAll();
+				}
+				writer.join();
+			}
+
+			joinConsistencyCheck();
+			assertNull(findType(history, missing));
+		} finally {
+			removeTypes(history, project);
+			JavaProjectHelper.removeSourceContainer(project, "src");
+		}
+	}
+
 }
@@ -22,7 +22,9 @@ import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.jdt.testplugin.JavaTestPlugin;
 import org.eclipse.jdt.testplugin.StringAsserts;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
@@ -30,6 +32,7 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.manipulation.TypeNameMatchCollector;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
@@ -38,6 +41,9 @@ import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.TypeNameMatch;
 import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
 
+import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
+import org.eclipse.jdt.internal.corext.util.TypeNameIndex;
+
 
 
 public class TypeInfoTest extends TestCase {
@@ -229,4 +235,71 @@ public class TypeInfoTest extends TestCase {
 
 	}
 
+	public void testTypeNameIndex() throws Exception {
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("com.oti", true, null);
+		ICompilationUnit cu1= pack1.getCompilationUnit("V.java");
+		cu1.createType("public class V {\n static class VInner {\n}\n}\n", null, true, null);
+
+		TypeNameIndex index= TypeNameIndex.getInstance();
+		List<TypeNameMatch> result= index.getCandidates(createFilter("VIn"));
+		if (result == null) {
+			Job.getJobManager().join(index, null);
+			result= index.getCandidates(createFilter("VIn"));
+		}
+		assertNotNull(result);
+		findTypeRef(result, "com.oti.V.VInner");
+		for (int i= 0; i < result.size(); i++)
+			assertTrue(result.get(i).getSimpleTypeName().toLowerCase().startsWith("vin"));
+
+		findTypeRef(index.getCandidates(createFilter("v*Inn")), "com.oti.V.VInner");
+		findTypeRef(index.getCandidates(createFilter("VI")), "com.oti.V.VInner");
+
+		ICompilationUnit cu2= pack1.getCompilationUnit("VNew.java");
+		cu2.createType("public class VNew {\n}\n", null, true, null);
+		findTypeRef(index.getCandidates(createFilter("VNe")), "com.oti.VNew");
+
+		cu2.delete(true, null);
+		assertEquals(0, index.getCandidates(createFilter("VNew<")).size());
+	}
+
+	public void testTypeNameIndexChangedWhileBuilding() throws Exception {
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("com.oti", true, null);
+		final ICompilationUnit cu1= pack1.getCompilationUnit("V.java");
+		cu1.createType("public class V {\n}\n", null, true, null);
+		final ICompilationUnit cu2= pack1.getCompilationUnit("VNew.java");
+
+		// start from an index that has not been built
+		TypeNameIndex.shutdown();
+		TypeNameIndex index= TypeNameIndex.getInstance();
+		index.build(new NullProgressMonitor() {
+			private boolean fChanged;
+
+			@Override
+			public boolean isCanceled() {
+				// polled by the search of the build
+				if (!fChanged) {
+					fChanged= true;
+					try {
+						cu1.getType("V").createField("int fCount;", null, false, null);
+						cu2.createType("public class VNew {\n}\n", null, true, null);
+					} catch (JavaModelException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				return false;
+			}
+		});
+		findTypeRef(index.getCandidates(createFilter("VNe")), "com.oti.VNew");
+		findTypeRef(index.getCandidates(createFilter("V")), "com.oti.V");
+
+		cu2.delete(true, null);
+		assertEquals(0, index.getCandidates(createFilter("VNew<")).size());
+	}
+
+	private static TypeInfoFilter createFilter(String text) {
+		return new TypeInfoFilter(text, SearchEngine.createWorkspaceScope(), IJavaSearchConstants.TYPE, null);
+	}
+
 }
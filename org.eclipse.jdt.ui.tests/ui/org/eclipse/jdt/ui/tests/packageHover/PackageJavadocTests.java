@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 IBM Corporation and others.
+ * Copyright (c) 2013, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,9 @@
 package org.eclipse.jdt.ui.tests.packageHover;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -21,8 +23,10 @@ import org.junit.Assert;
 import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.jdt.testplugin.JavaTestPlugin;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
 
 import org.eclipse.core.resources.ResourcesPlugin;
 
@@ -33,8 +37,10 @@ import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaCore;
 
 import org.eclipse.jdt.internal.core.JavaElement;
@@ -43,8 +49,11 @@ import org.eclipse.jdt.internal.corext.CorextMessages;
 import org.eclipse.jdt.ui.tests.core.CoreTests;
 import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.text.java.hover.JavadocBrowserInformationControlInput;
 import org.eclipse.jdt.internal.ui.text.java.hover.JavadocHover;
+import org.eclipse.jdt.internal.ui.text.javadoc.JavadocContentAccess2;
+import org.eclipse.jdt.internal.ui.text.javadoc.JavadocContentCache;
 
 
 /**
@@ -157,6 +166,126 @@ public class PackageJavadocTests extends CoreTests {
 	}
 
 
+	public void testCachedDocFromArchive() throws Exception {
+		File clsJarPath= JavaTestPlugin.getDefault().getFileInPlugin(new Path("/testresources/PackageJavadocTests/testData.zip"));
+		File srcJarPath= JavaTestPlugin.getDefault().getFileInPlugin(new Path("/testresources/PackageJavadocTests/testData_src.zip"));
+		JavaProjectHelper.addLibraryWithImport(fJProject1, new Path(clsJarPath.getAbsolutePath()), new Path(srcJarPath.getAbsolutePath()), null);
+		IPackageFragmentRoot jarRoot= fJProject1.getPackageFragmentRoot(ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/TestSetupProject/testData.zip")));
+		IPackageFragment packageFragment= jarRoot.getPackageFragment("org.eclipse.jdt.ui.tests");
+		assertTrue(packageFragment.exists());
+		assertNotNull(JavadocContentCache.getKey(packageFragment, true));
+
+		JavadocContentCache.getInstance().clear();
+		String content= JavadocContentAccess2.getHTMLContent(packageFragment, true);
+		assertNotNull(content);
+		Assert.assertTrue(content, content.contains("This is the package documentation for org.eclipse.jdt.ui.tests"));
+		assertSame(content, JavadocContentAccess2.getHTMLContent(packageFragment, true));
+
+		// source elements are not cached
+		assertNull(JavadocContentCache.getKey(fJProject1, true));
+	}
+
+	public void testCachedDocKeyCoversSuperTypes() throws Exception {
+		File clsJarPath= JavaTestPlugin.getDefault().getFileInPlugin(new Path("/testresources/PackageJavadocTests/testData.zip"));
+		File srcJarPath= JavaTestPlugin.getDefault().getFileInPlugin(new Path("/testresources/PackageJavadocTests/testData_src.zip"));
+		JavaProjectHelper.addLibraryWithImport(fJProject1, new Path(clsJarPath.getAbsolutePath()), new Path(srcJarPath.getAbsolutePath()), null);
+		IType type= fJProject1.findType("org.eclipse.jdt.ui.tests.noJavadoc.TestClassNoJavaDoc");
+		assertNotNull(type);
+		IMethod[] methods= type.getMethods();
+		assertTrue(methods.length > 0);
+
+		// inherited Javadoc comes from the super types, which are in the JRE
+		IPackageFragmentRoot objectRoot= (IPackageFragmentRoot) fJProject1.findType("java.lang.Object").getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+		String key= JavadocContentCache.getKey(methods[0], true);
+		assertNotNull(key);
+		assertTrue(key, key.contains("|" + objectRoot.getPath() + "|"));
+
+		// types do not inherit Javadoc
+		assertFalse(JavadocContentCache.getKey(type, true).contains("|" + objectRoot.getPath() + "|"));
+	}
+
+	public void testStoredCacheOmitsMissingDoc() throws Exception {
+		final String persist= "JavadocContentCache.persist";
+		final int[] computed= new int[1];
+		JavadocContentCache.IContentComputer noContent= new JavadocContentCache.IContentComputer() {
+			@Override
+			public String compute() throws CoreException {
+				computed[0]++;
+				return null;
+			}
+		};
+		JavadocContentCache.IContentComputer content= new JavadocContentCache.IContentComputer() {
+			@Override
+			public String compute() throws CoreException {
+				computed[0]++;
+				return "content";
+			}
+		};
+
+		JavaPlugin.getDefault().getPreferenceStore().setValue(persist, true);
+		try {
+			JavadocContentCache.shutdown();
+			JavadocContentCache cache= JavadocContentCache.getInstance();
+			cache.clear();
+			assertNull(cache.get("noContent", noContent));
+			assertEquals("content", cache.get("content", content));
+			assertNull(cache.get("noContent", noContent));
+			assertEquals(2, computed[0]);
+
+			JavadocContentCache.shutdown();
+			cache= JavadocContentCache.getInstance();
+			assertEquals("content", cache.get("content", content));
+			assertEquals(2, computed[0]);
+			// elements without Javadoc are computed again in a new session
+			assertNull(cache.get("noContent", noContent));
+			assertEquals(3, computed[0]);
+			cache.clear();
+			JavadocContentCache.shutdown();
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(persist);
+		}
+	}
+
+	public void testStoredCacheRejectsInvalidLength() throws Exception {
+		final String persist= "JavadocContentCache.persist";
+		final int[] computed= new int[1];
+		JavadocContentCache.IContentComputer content= new JavadocContentCache.IContentComputer() {
+			@Override
+			public String compute() throws CoreException {
+				computed[0]++;
+				return "content";
+			}
+		};
+
+		JavaPlugin.getDefault().getPreferenceStore().setValue(persist, true);
+		try {
+			JavadocContentCache.shutdown();
+			JavadocContentCache cache= JavadocContentCache.getInstance();
+			cache.clear();
+			assertEquals("content", cache.get("content", content));
+			JavadocContentCache.shutdown();
+
+			// magic, language, count and key precede the content length
+			File file= JavaPlugin.getDefault().getStateLocation().append("javadocContentCache.bin").toFile();
+			int offset= 4 + 2 + Platform.getNL().getBytes(StandardCharsets.UTF_8).length + 4 + 2 + "content".length();
+			try (RandomAccessFile output= new RandomAccessFile(file, "rw")) {
+				output.seek(offset);
+				assertEquals("content".length(), output.readInt());
+				output.seek(offset);
+				output.writeInt(Integer.MAX_VALUE);
+			}
+
+			// the invalid file is ignored
+			cache= JavadocContentCache.getInstance();
+			assertEquals("content", cache.get("content", content));
+			assertEquals(2, computed[0]);
+			cache.clear();
+			JavadocContentCache.shutdown();
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(persist);
+		}
+	}
+
 	public void testGetDocFromSourceAttachmentRootPath() throws Exception {
 		File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(new Path("testresources/PackageJavadocTests/JavadocHover_src.zip"));
 		assertTrue("junit src not found", junitSrcArchive != null && junitSrcArchive.exists());
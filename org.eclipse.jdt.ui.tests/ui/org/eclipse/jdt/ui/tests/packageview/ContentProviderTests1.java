@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,7 @@ import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceDescription;
 import org.eclipse.core.resources.ResourcesPlugin;
 
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 
 import org.eclipse.ui.IViewPart;
@@ -43,6 +44,7 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.util.CoreUtility;
 import org.eclipse.jdt.internal.ui.wizards.buildpaths.CPListElement;
 
@@ -247,8 +249,30 @@ public class ContentProviderTests1 extends TestCase {
 		//force events from display
 		while(fMyPart.getTreeViewer().getControl().getDisplay().readAndDispatch()) {}
 
-		// removing more than one CU now results in a refresh.
-		assertEquals("One refresh", 1, fMyPart.getRefreshedObject().size()); //$NON-NLS-1$
+		// removing a few CUs is merged into the removal of their items
+		assertTrue("Correct remove", fMyPart.getRemovedObjects().contains(fCU2)); //$NON-NLS-1$
+		assertTrue("Correct remove", fMyPart.getRemovedObjects().contains(fCU3)); //$NON-NLS-1$
+		assertEquals("No refreshes", 0, fMyPart.getRefreshedObject().size()); //$NON-NLS-1$
+	}
+
+	public void testRemoveCUsFromPackageFragmentPastMergeThreshold() throws Exception {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		store.setValue("PackageExplorerContentProvider.mergeThreshold", 1); //$NON-NLS-1$
+		try {
+			//send a delta indicating fragment deleted
+			IElementChangedListener listener= (IElementChangedListener) fProvider;
+			IJavaElementDelta delta= TestDelta.createCUDelta(new ICompilationUnit[] { fCU2, fCU3 }, fPack6, IJavaElementDelta.REMOVED);
+			listener.elementChanged(new ElementChangedEvent(delta, ElementChangedEvent.POST_CHANGE));
+
+			//force events from display
+			while(fMyPart.getTreeViewer().getControl().getDisplay().readAndDispatch()) {}
+
+			// removing more CUs than the threshold allows results in a refresh.
+			assertEquals("One refresh", 1, fMyPart.getRefreshedObject().size()); //$NON-NLS-1$
+			assertFalse("No remove", fMyPart.hasRemoveHappened()); //$NON-NLS-1$
+		} finally {
+			store.setToDefault("PackageExplorerContentProvider.mergeThreshold"); //$NON-NLS-1$
+		}
 	}
 
 	public void testRemoveCUFromPackageFragment() throws Exception {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -256,8 +256,10 @@ public class ContentProviderTests3 extends TestCase {
 		while(fMyPart.getTreeViewer().getControl().getDisplay().readAndDispatch()) {
 		}
 
-		// removing more than one CU now results in a refresh.
-		assertEquals("One refresh", 1, fMyPart.getRefreshedObject().size()); //$NON-NLS-1$
+		// removing a few CUs is merged into the removal of their items
+		assertTrue("Correct remove", fMyPart.getRemovedObjects().contains(fCU2)); //$NON-NLS-1$
+		assertTrue("Correct remove", fMyPart.getRemovedObjects().contains(fCU3)); //$NON-NLS-1$
+		assertEquals("No refreshes", 0, fMyPart.getRefreshedObject().size()); //$NON-NLS-1$
 	}
 
 	public void testRemoveCUFromPackageFragment() throws Exception {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@
 package org.eclipse.jdt.ui.tests.packageview;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.swt.SWT;
@@ -128,6 +129,19 @@ public class MockPluginView extends PackageExplorerPart {
 			fRemovedObjects.add(object);
 		}
 
+		@Override
+		public void remove(Object[] objects) {
+			fRemoveHappened= true;
+			fRemovedObjects.addAll(Arrays.asList(objects));
+		}
+
+		@Override
+		public void add(Object parentObject, Object[] objects) {
+			fAddHappened= true;
+			fAddedObject= objects[objects.length - 1];
+			fAddedParentObject= parentObject;
+		}
+
 		@Override
 		public void add(Object parentObject, Object object){
 			fAddHappened= true;
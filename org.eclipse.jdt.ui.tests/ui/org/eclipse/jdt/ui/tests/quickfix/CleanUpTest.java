@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,13 +12,19 @@
  *******************************************************************************/
 package org.eclipse.jdt.ui.tests.quickfix;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.jdt.testplugin.TestOptions;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
 import org.eclipse.core.resources.IncrementalProjectBuilder;
@@ -38,14 +44,20 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
 
 import org.eclipse.jdt.internal.corext.dom.IASTSharedValues;
+import org.eclipse.jdt.internal.corext.fix.CleanUpBatchEngine;
 import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 
 import org.eclipse.jdt.ui.PreferenceConstants;
+import org.eclipse.jdt.ui.cleanup.CleanUpContext;
 import org.eclipse.jdt.ui.cleanup.CleanUpOptions;
+import org.eclipse.jdt.ui.cleanup.ICleanUp;
+import org.eclipse.jdt.ui.cleanup.ICleanUpFix;
 import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.AbstractCleanUp;
 import org.eclipse.jdt.internal.ui.fix.Java50CleanUp;
 import org.eclipse.jdt.internal.ui.fix.UnimplementedCodeCleanUp;
 import org.eclipse.jdt.internal.ui.text.correction.ProblemLocation;
@@ -57,6 +69,48 @@ public class CleanUpTest extends CleanUpTestCase {
 
 	private static final Class<CleanUpTest> THIS= CleanUpTest.class;
 
+	/**
+	 * Records the units it is asked to fix in an unsynchronized list, and reports them as post
+	 * condition infos.
+	 */
+	public static class RecordingCleanUp extends AbstractCleanUp {
+
+		private List<ICompilationUnit> fUnits;
+
+		public RecordingCleanUp() {
+		}
+
+		@Override
+		public RefactoringStatus checkPreConditions(IJavaProject project, ICompilationUnit[] compilationUnits, IProgressMonitor monitor) throws CoreException {
+			fUnits= new ArrayList<>();
+			return super.checkPreConditions(project, compilationUnits, monitor);
+		}
+
+		@Override
+		public AbstractCleanUp copy() {
+			// copies of a parallel run are not initialized by checkPreConditions
+			RecordingCleanUp result= (RecordingCleanUp) super.copy();
+			result.fUnits= new ArrayList<>();
+			return result;
+		}
+
+		@Override
+		public ICleanUpFix createFix(CleanUpContext context) throws CoreException {
+			fUnits.add(context.getCompilationUnit());
+			return null;
+		}
+
+		@Override
+		public RefactoringStatus checkPostConditions(IProgressMonitor monitor) throws CoreException {
+			RefactoringStatus result= new RefactoringStatus();
+			for (int i= 0; i < fUnits.size(); i++) {
+				result.addInfo("recorded " + fUnits.get(i).getParent().getElementName() + "." + fUnits.get(i).getElementName());
+			}
+			fUnits= null;
+			return result;
+		}
+	}
+
 	public CleanUpTest(String name) {
 		super(name);
 	}
@@ -8839,6 +8893,117 @@ public class CleanUpTest extends CleanUpTestCase {
 		assertRefactoringResultAsExpected(new ICompilationUnit[] { cu1 }, new String[] { expected1 });
 	}
 
+	public void testOrganizeImportsBatchEngine() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("import java.util.List;\n");
+		buf.append("public class E1 {\n");
+		buf.append("    ArrayList foo;\n");
+		buf.append("}\n");
+		ICompilationUnit cu1= pack1.createCompilationUnit("E1.java", buf.toString(), false, null);
+
+		buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class E2 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu2= pack1.createCompilationUnit("E2.java", buf.toString(), false, null);
+		String expected2= buf.toString();
+
+		enable(CleanUpConstants.ORGANIZE_IMPORTS);
+
+		CleanUpBatchEngine engine= new CleanUpBatchEngine(JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps());
+		engine.setUseOptionsFromProfile(true);
+		RefactoringStatus status= engine.run(new ICompilationUnit[] { cu1, cu2 }, null);
+		assertFalse(status.toString(), status.hasFatalError());
+
+		buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("\n");
+		buf.append("import java.util.ArrayList;\n");
+		buf.append("\n");
+		buf.append("public class E1 {\n");
+		buf.append("    ArrayList foo;\n");
+		buf.append("}\n");
+		String expected1= buf.toString();
+
+		assertEqualStringsIgnoreOrder(new String[] { cu1.getBuffer().getContents(), cu2.getBuffer().getContents() }, new String[] { expected1, expected2 });
+
+		CleanUpBatchEngine.Statistics statistics= engine.getStatistics();
+		assertEquals(2, statistics.getProcessedUnits());
+		assertEquals(1, statistics.getChangedUnits());
+		assertTrue(statistics.getPeakHeapUsage() > 0);
+	}
+
+	public void testParallelCleanUp() throws Exception {
+		int packageCount= 6;
+		int unitsPerPackage= 5;
+		ICompilationUnit[] cus= new ICompilationUnit[packageCount * unitsPerPackage];
+		String[] sources= new String[cus.length];
+		for (int i= 0; i < packageCount; i++) {
+			IPackageFragment pack= fSourceFolder.createPackageFragment("test" + i, false, null);
+			for (int j= 0; j < unitsPerPackage; j++) {
+				StringBuffer buf= new StringBuffer();
+				buf.append("package test" + i + ";\n");
+				buf.append("import java.util.List;\n");
+				buf.append("public class E" + j + " {\n");
+				buf.append("    int b;\n");
+				buf.append("    ArrayList a;\n");
+				buf.append("    void d() {}\n");
+				buf.append("    void c() {}\n");
+				buf.append("}\n");
+				int index= i * unitsPerPackage + j;
+				sources[index]= buf.toString();
+				cus[index]= pack.createCompilationUnit("E" + j + ".java", sources[index], false, null);
+			}
+		}
+
+		enable(CleanUpConstants.ORGANIZE_IMPORTS);
+		enable(CleanUpConstants.SORT_MEMBERS);
+		enable(CleanUpConstants.SORT_MEMBERS_ALL);
+
+		CleanUpRefactoring serial= new CleanUpRefactoring();
+		serial.setUseOptionsFromProfile(true);
+		serial.setParallelism(1);
+		RefactoringStatus serialStatus= performRefactoring(serial, cus, createCleanUpsWithRecorder());
+		String[] expected= new String[cus.length];
+		for (int i= 0; i < cus.length; i++) {
+			expected[i]= cus[i].getBuffer().getContents();
+			cus[i].getBuffer().setContents(sources[i]);
+			cus[i].save(null, true);
+		}
+
+		CleanUpRefactoring parallel= new CleanUpRefactoring();
+		parallel.setUseOptionsFromProfile(true);
+		parallel.setParallelism(4);
+		RefactoringStatus parallelStatus= performRefactoring(parallel, cus, createCleanUpsWithRecorder());
+		for (int i= 0; i < cus.length; i++) {
+			assertEquals(expected[i], cus[i].getBuffer().getContents());
+		}
+
+		// every unit is recorded once by the clean up instance of its chunk
+		assertEquals(getRecordedUnits(serialStatus), getRecordedUnits(parallelStatus));
+		assertEquals(cus.length, getRecordedUnits(parallelStatus).size());
+	}
+
+	private static ICleanUp[] createCleanUpsWithRecorder() {
+		ICleanUp[] cleanUps= JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps();
+		ICleanUp[] result= new ICleanUp[cleanUps.length + 1];
+		System.arraycopy(cleanUps, 0, result, 0, cleanUps.length);
+		result[cleanUps.length]= new RecordingCleanUp();
+		return result;
+	}
+
+	private static Set<String> getRecordedUnits(RefactoringStatus status) {
+		Set<String> result= new HashSet<>();
+		RefactoringStatusEntry[] entries= status.getEntries();
+		for (int i= 0; i < entries.length; i++) {
+			if (entries[i].isInfo() && entries[i].getMessage().startsWith("recorded "))
+				assertTrue("duplicate " + entries[i].getMessage(), result.add(entries[i].getMessage()));
+		}
+		return result;
+	}
+
 	public void testOrganizeImportsBug229570() throws Exception {
 		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
 		StringBuffer buf= new StringBuffer();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,7 @@ import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
 import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
 import org.eclipse.jdt.ui.text.java.correction.CUCorrectionProposal;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.text.correction.AssistContext;
 
 import junit.framework.Test;
@@ -39,6 +40,8 @@ public class ContributedQuickFixTest extends QuickFixTest {
 
 	private static final Class<ContributedQuickFixTest> THIS= ContributedQuickFixTest.class;
 
+	private static final String CONCURRENT= "JavaCorrectionProcessor.concurrent";
+
 	private IJavaProject fJProject1;
 	private IPackageFragmentRoot fSourceFolder;
 
@@ -141,6 +144,78 @@ public class ContributedQuickFixTest extends QuickFixTest {
 
 	}
 
+	public void testContributedQuickFixConcurrent() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class A {\n");
+		buf.append("    public int foo() {\n");
+		buf.append("        return 99999999999999999;\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		ICompilationUnit cu= pack1.createCompilationUnit("A.java", buf.toString(), false, null);
+
+		CompilationUnit astRoot= getASTRoot(cu);
+		ArrayList<IJavaCompletionProposal> proposals;
+		JavaPlugin.getDefault().getPreferenceStore().setValue(CONCURRENT, true);
+		try {
+			proposals= collectCorrections(cu, astRoot);
+		} finally {
+			JavaPlugin.getDefault().getPreferenceStore().setToDefault(CONCURRENT);
+		}
+
+		assertNumberOfProposals(proposals, 1);
+		assertCorrectLabels(proposals);
+
+		CUCorrectionProposal proposal= (CUCorrectionProposal) proposals.get(0);
+		String preview1= getPreviewContent(proposal);
+
+		buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class A {\n");
+		buf.append("    public int foo() {\n");
+		buf.append("        return 0;\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		String expected1= buf.toString();
+
+		assertEqualStringsIgnoreOrder(new String[] { preview1 }, new String[] { expected1 });
+	}
+
+	public void testQuickAssistsConcurrent() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("import java.util.ArrayList;\n");
+		buf.append("import java.util.List;\n");
+		buf.append("public class E {\n");
+		buf.append("    private List<String> fNames= new ArrayList<String>();\n");
+		buf.append("    public void foo(boolean b) {\n");
+		buf.append("        List<String> names= b ? fNames : new ArrayList<String>(fNames);\n");
+		buf.append("        for (int i= 0; i < names.size(); i++) {\n");
+		buf.append("            System.out.println(names.get(i).length());\n");
+		buf.append("        }\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		ICompilationUnit cu= pack1.createCompilationUnit("E.java", buf.toString(), false, null);
+
+		// the processors resolve bindings of the AST they share
+		int[] offsets= { buf.toString().indexOf("names="), buf.toString().indexOf("for ("), buf.toString().indexOf("get(i)") };
+		for (int i= 0; i < offsets.length; i++) {
+			List<IJavaCompletionProposal> expected= collectAssists(getCorrectionContext(cu, offsets[i], 0), false);
+			List<IJavaCompletionProposal> actual;
+			JavaPlugin.getDefault().getPreferenceStore().setValue(CONCURRENT, true);
+			try {
+				actual= collectAssists(getCorrectionContext(cu, offsets[i], 0), false);
+			} finally {
+				JavaPlugin.getDefault().getPreferenceStore().setToDefault(CONCURRENT);
+			}
+			assertTrue(expected.size() > 0);
+			assertNumberOfProposals(actual, expected.size());
+			assertEqualStringsIgnoreOrder(getPreviewContents(actual), getPreviewContents(expected));
+		}
+	}
+
 	public void testContributedQuickFix2() throws Exception {
 		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
 		StringBuffer buf= new StringBuffer();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,8 @@ import org.eclipse.core.runtime.CoreException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 
@@ -33,6 +35,7 @@ import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaModelMarker;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
@@ -44,8 +47,11 @@ import org.eclipse.jdt.ui.PreferenceConstants;
 import org.eclipse.jdt.ui.examples.AddTestMarkersAction;
 import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
 
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring.MultiFixTarget;
+
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jdt.internal.ui.text.correction.CorrectionMarkerResolutionGenerator.CorrectionMarkerResolution;
 import org.eclipse.jdt.internal.ui.text.correction.JavaCorrectionAssistant;
 import org.eclipse.jdt.internal.ui.text.correction.JavaCorrectionProcessor;
 
@@ -240,4 +246,42 @@ public class MarkerResolutionTest extends QuickFixTest {
 		}
 	}
 
+	public void testGetCleanUpTargets() throws Exception {
+		Hashtable<String, String> options= JavaCore.getOptions();
+		options.put(JavaCore.COMPILER_PB_UNUSED_IMPORT, JavaCore.WARNING);
+		JavaCore.setOptions(options);
+
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("import java.util.List;\n");
+		buf.append("import java.util.Vector;\n");
+		buf.append("public class E {\n");
+		buf.append("}\n");
+		ICompilationUnit cu1= pack1.createCompilationUnit("E.java", buf.toString(), false, null);
+
+		IPackageFragment pack2= fSourceFolder.createPackageFragment("test2", false, null);
+		buf= new StringBuffer();
+		buf.append("package test2;\n");
+		buf.append("import java.util.List;\n");
+		buf.append("import java.util.Vector;\n");
+		buf.append("public class F {\n");
+		buf.append("}\n");
+		ICompilationUnit cu2= pack2.createCompilationUnit("F.java", buf.toString(), false, null);
+
+		fJProject1.getProject().build(IncrementalProjectBuilder.FULL_BUILD, null);
+
+		IMarker[] markers= fSourceFolder.getResource().findMarkers(IJavaModelMarker.JAVA_MODEL_PROBLEM_MARKER, true, IResource.DEPTH_INFINITE);
+		assertNumberOf("markers", markers.length, 4);
+
+		MultiFixTarget[] targets= CorrectionMarkerResolution.getCleanUpTargets(markers);
+		assertNumberOf("targets", targets.length, 2);
+		for (int i= 0; i < targets.length; i++) {
+			ICompilationUnit cu= targets[i].getCompilationUnit();
+			assertTrue(cu.equals(cu1) || cu.equals(cu2));
+			assertNumberOf("problems", targets[i].getProblems().length, 2);
+		}
+		assertFalse(targets[0].getCompilationUnit().equals(targets[1].getCompilationUnit()));
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -47,6 +47,11 @@ public class CallHierarchy {
     private static final String PREF_USE_FILTERS = "PREF_USE_FILTERS"; //$NON-NLS-1$
     private static final String PREF_FILTERS_LIST = "PREF_FILTERS_LIST"; //$NON-NLS-1$
     private static final String PREF_FILTER_TESTCODE= "PREF_FILTER_TESTCODE"; //$NON-NLS-1$
+    private static final String PREF_PREFETCH_DEPTH= "PREF_PREFETCH_DEPTH"; //$NON-NLS-1$
+    private static final String PREF_SEARCH_PARALLELISM= "PREF_SEARCH_PARALLELISM"; //$NON-NLS-1$
+
+    private static final int DEFAULT_PREFETCH_DEPTH= 0;
+    private static final int MAX_SEARCH_PARALLELISM= 4;
 
     private static final String DEFAULT_IGNORE_FILTERS = "java.*,javax.*"; //$NON-NLS-1$
     private static CallHierarchy fgInstance;
@@ -85,6 +90,48 @@ public class CallHierarchy {
         settings.setValue(PREF_FILTER_TESTCODE, enabled);
     }
 
+    /**
+     * Returns the number of levels below an expanded node whose calls are searched in the
+     * background. Prefetching is disabled by default.
+     *
+     * @return the prefetch depth, <code>0</code> if prefetching is disabled
+     * @see CallHierarchyPrefetcher
+     */
+    public int getPrefetchDepth() {
+        IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
+        if (!settings.contains(PREF_PREFETCH_DEPTH))
+            return DEFAULT_PREFETCH_DEPTH;
+
+        return Math.max(0, settings.getInt(PREF_PREFETCH_DEPTH));
+    }
+
+    public void setPrefetchDepth(int depth) {
+        IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
+
+        settings.setValue(PREF_PREFETCH_DEPTH, depth);
+    }
+
+    /**
+     * Returns the maximal number of searches for sibling nodes that run concurrently, both for
+     * expanded nodes and while prefetching.
+     *
+     * @return the search parallelism, at least <code>1</code>
+     * @see CallHierarchyPrefetcher
+     */
+    public int getSearchParallelism() {
+        IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
+        int parallelism= settings.getInt(PREF_SEARCH_PARALLELISM);
+        if (parallelism < 1)
+            parallelism= Math.min(MAX_SEARCH_PARALLELISM, Runtime.getRuntime().availableProcessors());
+
+        return Math.max(1, parallelism);
+    }
+
+    public void setSearchParallelism(int parallelism) {
+        IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
+
+        settings.setValue(PREF_SEARCH_PARALLELISM, parallelism);
+    }
 
     public Collection<IJavaElement> getImplementingMethods(IMethod method) {
         if (isSearchUsingImplementorsEnabled()) {
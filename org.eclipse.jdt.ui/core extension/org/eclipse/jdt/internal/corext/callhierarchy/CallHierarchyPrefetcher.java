@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.callhierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubProgressMonitor;
+
+import org.eclipse.jdt.internal.corext.util.SynchronizedProgressMonitor;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Searches the calls of method wrappers several levels ahead of the expansion in the call
+ * hierarchy view.
+ * <p>
+ * The hierarchy is traversed level by level. The searches for the wrappers of one level run
+ * concurrently on a bounded thread pool, wrappers of the same member are only searched once. The
+ * results are kept in the method cache shared by all wrappers of a hierarchy, so expanding a
+ * prefetched node does not search again.
+ * </p>
+ *
+ * @since 3.14
+ */
+public class CallHierarchyPrefetcher {
+
+	private final int fDepth;
+	private final int fParallelism;
+	private final int fMaxLevel;
+
+	/**
+	 * Creates a new prefetcher.
+	 *
+	 * @param depth the number of levels to search below the given wrappers
+	 * @param parallelism the maximal number of concurrent searches
+	 * @param maxLevel the level of the deepest wrappers to search
+	 */
+	public CallHierarchyPrefetcher(int depth, int parallelism, int maxLevel) {
+		fDepth= depth;
+		fParallelism= Math.max(1, parallelism);
+		fMaxLevel= maxLevel;
+	}
+
+	/**
+	 * Searches the calls of the given wrappers and of their calls, down to the prefetch depth.
+	 *
+	 * @param wrappers the method wrappers
+	 * @param monitor the progress monitor
+	 * @throws OperationCanceledException if the monitor has been canceled
+	 */
+	public void prefetch(MethodWrapper[] wrappers, IProgressMonitor monitor) {
+		if (fDepth <= 0 || wrappers.length == 0)
+			return;
+
+		monitor.beginTask(CallHierarchyMessages.CallHierarchyPrefetcher_taskname, IProgressMonitor.UNKNOWN);
+		final IProgressMonitor sharedMonitor= new SynchronizedProgressMonitor(monitor);
+		ExecutorService executor= Executors.newFixedThreadPool(fParallelism);
+		try {
+			List<MethodWrapper> level= Arrays.asList(wrappers);
+			for (int depth= 0; depth < fDepth && !level.isEmpty(); depth++) {
+				List<Future<MethodWrapper[]>> futures= new ArrayList<>(level.size());
+				Set<String> searched= new HashSet<>();
+				for (Iterator<MethodWrapper> iter= level.iterator(); iter.hasNext();) {
+					final MethodWrapper wrapper= iter.next();
+					if (!shouldSearch(wrapper) || !searched.add(wrapper.getMethodCall().getKey()))
+						continue;
+
+					futures.add(executor.submit(new Callable<MethodWrapper[]>() {
+						@Override
+						public MethodWrapper[] call() {
+							return wrapper.getCalls(new SubProgressMonitor(sharedMonitor, 1));
+						}
+					}));
+				}
+
+				List<MethodWrapper> next= new ArrayList<>();
+				for (Iterator<Future<MethodWrapper[]>> iter= futures.iterator(); iter.hasNext();) {
+					next.addAll(Arrays.asList(getCalls(iter.next())));
+				}
+				level= next;
+			}
+		} finally {
+			executor.shutdownNow();
+			monitor.done();
+		}
+	}
+
+	private boolean shouldSearch(MethodWrapper wrapper) {
+		return wrapper.getLevel() <= fMaxLevel && wrapper.canHaveChildren() && !wrapper.isRecursive();
+	}
+
+	private static MethodWrapper[] getCalls(Future<MethodWrapper[]> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof OperationCanceledException)
+				throw (OperationCanceledException) cause;
+			JavaPlugin.log(cause);
+			return new MethodWrapper[0];
+		}
+	}
+}
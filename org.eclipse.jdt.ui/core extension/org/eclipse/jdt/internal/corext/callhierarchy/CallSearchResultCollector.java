@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -50,14 +50,27 @@ class CallSearchResultCollector {
                 if (methodCall == null) {
                     methodCall = new MethodCall(calledMember);
                     fCalledMembers.put(calledMember.getHandleIdentifier(), methodCall);
+                    methodCall.addCallLocation(new CallLocation(member, calledMember, start,
+                            end, lineNumber));
+                    callFound(methodCall);
+                } else {
+                    methodCall.addCallLocation(new CallLocation(member, calledMember, start,
+                            end, lineNumber));
                 }
-
-                methodCall.addCallLocation(new CallLocation(member, calledMember, start,
-                        end, lineNumber));
             }
         }
     }
 
+    /**
+     * Called when a member is found that has not been found before. The default
+     * implementation does nothing.
+     *
+     * @param methodCall the call of the member, with its first location
+     * @since 3.14
+     */
+    protected void callFound(MethodCall methodCall) {
+    }
+
     protected Map<String, MethodCall> createCalledMethodsData() {
         return new HashMap<>();
     }
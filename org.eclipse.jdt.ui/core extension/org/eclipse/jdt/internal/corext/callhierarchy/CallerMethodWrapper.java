@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -95,6 +95,16 @@ public class CallerMethodWrapper extends MethodWrapper {
 	 */
 	@Override
 	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor) {
+		return findChildren(progressMonitor, null);
+	}
+
+	/**
+	 * @return The result of the search for children
+	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#findChildren(org.eclipse.core.runtime.IProgressMonitor, org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper.ICallListener)
+	 * @since 3.14
+	 */
+	@Override
+	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor, final ICallListener listener) {
 		try {
 
 			IProgressMonitor monitor= new SubProgressMonitor(progressMonitor, 95, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL);
@@ -112,7 +122,7 @@ public class CallerMethodWrapper extends MethodWrapper {
 			if (type != null) {
 				if (type.isAnonymous()) {
 					// search engine does not find reference to anonymous, see https://bugs.eclipse.org/bugs/show_bug.cgi?id=207774
-					CallSearchResultCollector resultCollector= new CallSearchResultCollector();
+					CallSearchResultCollector resultCollector= createResultCollector(listener);
 					IJavaElement parent= type.getParent();
 					if (parent instanceof IMember) {
 						IMember parentMember= (IMember) parent;
@@ -145,7 +155,7 @@ public class CallerMethodWrapper extends MethodWrapper {
 			}
 
 			SearchEngine searchEngine= new SearchEngine();
-			MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor();
+			MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor(createResultCollector(listener));
 			IJavaSearchScope defaultSearchScope= getSearchScope();
 			boolean isWorkspaceScope= SearchEngine.createWorkspaceScope().equals(defaultSearchScope);
 			IJavaSearchScope searchScope= isWorkspaceScope ? getAccurateSearchScope(defaultSearchScope, member) : defaultSearchScope;
@@ -159,6 +169,17 @@ public class CallerMethodWrapper extends MethodWrapper {
 		}
 	}
 
+	private CallSearchResultCollector createResultCollector(final ICallListener listener) {
+		if (listener == null)
+			return new CallSearchResultCollector();
+		return new CallSearchResultCollector() {
+			@Override
+			protected void callFound(MethodCall methodCall) {
+				listener.callFound(createMethodWrapper(methodCall));
+			}
+		};
+	}
+
 	private IJavaSearchScope getAccurateSearchScope(IJavaSearchScope defaultSearchScope, IMember member) throws JavaModelException {
 		if (! JdtFlags.isPrivate(member))
 			return defaultSearchScope;
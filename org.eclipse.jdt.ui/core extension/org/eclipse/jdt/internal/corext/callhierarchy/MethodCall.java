@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,14 +11,18 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.callhierarchy;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jdt.core.IMember;
 
 public class MethodCall {
     private IMember fMember;
+    /*
+     * Locations may still be added by the search after the call has been shown,
+     * see MethodWrapper.ICallListener.
+     */
     private List<CallLocation> fCallLocations;
 
     /**
@@ -66,7 +70,7 @@ public class MethodCall {
      */
     public void addCallLocation(CallLocation location) {
         if (fCallLocations == null) {
-            fCallLocations = new ArrayList<>();
+            fCallLocations = new CopyOnWriteArrayList<>();
         }
 
         fCallLocations.add(location);
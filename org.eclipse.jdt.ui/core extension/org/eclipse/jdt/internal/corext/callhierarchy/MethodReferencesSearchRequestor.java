@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,7 +23,11 @@ class MethodReferencesSearchRequestor extends SearchRequestor {
     private boolean fRequireExactMatch = true;
 
     MethodReferencesSearchRequestor() {
-        fSearchResults = new CallSearchResultCollector();
+        this(new CallSearchResultCollector());
+    }
+
+    MethodReferencesSearchRequestor(CallSearchResultCollector searchResults) {
+        fSearchResults = searchResults;
     }
 
     public Map<String, MethodCall> getCallers() {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,12 @@ package org.eclipse.jdt.internal.corext.callhierarchy;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -36,12 +42,38 @@ import org.eclipse.jdt.internal.ui.callhierarchy.MethodWrapperWorkbenchAdapter;
  *
  */
 public abstract class MethodWrapper extends PlatformObject {
+
+    /**
+     * Receives the calls of a method wrapper while they are searched.
+     *
+     * @since 3.14
+     */
+    public interface ICallListener {
+
+        /**
+         * Called when the search finds a call that has not been found before. Further
+         * locations may be added to the call until the search has completed.
+         *
+         * @param call the method wrapper of the call
+         */
+        void callFound(MethodWrapper call);
+    }
+
     private Map<String, MethodCall> fElements = null;
+    /*
+     * The search for the calls of this wrapper that is in progress, or null.
+     * Concurrent requests wait for this search instead of starting their own.
+     * Guarded by this wrapper, like fElements.
+     */
+    private FutureTask<Map<String, MethodCall>> fSearch;
 
     /*
      * A cache of previously found methods. This cache should be searched
      * before adding a "new" method object reference to the list of elements.
      * This way previously found methods won't be searched again.
+     * The cache is shared by all wrappers of a hierarchy, which may be
+     * searched concurrently (see CallHierarchyPrefetcher). An entry is only
+     * added once the search for the method has completed.
      */
     private Map<String, Map<String, MethodCall>> fMethodCache;
     private final MethodCall fMethodCall;
@@ -57,7 +89,7 @@ public abstract class MethodWrapper extends PlatformObject {
         Assert.isNotNull(methodCall);
 
         if (parent == null) {
-            setMethodCache(new HashMap<String, Map<String, MethodCall>>());
+            setMethodCache(new ConcurrentHashMap<String, Map<String, MethodCall>>());
             fLevel = 1;
         } else {
             setMethodCache(parent.getMethodCache());
@@ -80,16 +112,42 @@ public abstract class MethodWrapper extends PlatformObject {
 	    }
 	}
 
+    /**
+     * Returns the calls of this wrapper, searching for them if necessary.
+     * <p>
+     * Concurrent requests for the same wrapper wait for the first search. A
+     * waiting request that is canceled returns without waiting for the search
+     * to complete. The calls are only stored once the search has completed.
+     * </p>
+     *
+     * @param progressMonitor the progress monitor
+     * @return the method wrappers of the calls
+     */
     public MethodWrapper[] getCalls(IProgressMonitor progressMonitor) {
-        if (fElements == null) {
-            doFindChildren(progressMonitor);
-        }
+        return getCalls(progressMonitor, null);
+    }
+
+    /**
+     * Returns the calls of this wrapper, searching for them if necessary. The listener is
+     * notified about each call as soon as the search finds it.
+     * <p>
+     * The listener is only notified if this request performs the search. Calls that have
+     * been found by an earlier or a concurrent search are only returned.
+     * </p>
+     *
+     * @param progressMonitor the progress monitor
+     * @param listener the listener to notify about found calls, or <code>null</code>
+     * @return the method wrappers of all calls
+     * @since 3.14
+     */
+    public MethodWrapper[] getCalls(IProgressMonitor progressMonitor, ICallListener listener) {
+        Map<String, MethodCall> elements = getElements(progressMonitor, listener);
 
-        MethodWrapper[] result = new MethodWrapper[fElements.size()];
+        MethodWrapper[] result = new MethodWrapper[elements.size()];
         int i = 0;
 
-        for (Iterator<String> iter = fElements.keySet().iterator(); iter.hasNext();) {
-            MethodCall methodCall = getMethodCallFromMap(fElements, iter.next());
+        for (Iterator<String> iter = elements.keySet().iterator(); iter.hasNext();) {
+            MethodCall methodCall = getMethodCallFromMap(elements, iter.next());
             result[i++] = createMethodWrapper(methodCall);
         }
 
@@ -203,11 +261,6 @@ public abstract class MethodWrapper extends PlatformObject {
 
     protected abstract String getTaskName();
 
-    private void addCallToCache(MethodCall methodCall) {
-        Map<String, MethodCall> cachedCalls = lookupMethod(this.getMethodCall());
-        cachedCalls.put(methodCall.getKey(), methodCall);
-    }
-
 	/**
 	 * Creates a method wrapper for the child of the receiver.
 	 * 
@@ -216,28 +269,120 @@ public abstract class MethodWrapper extends PlatformObject {
 	 */
     protected abstract MethodWrapper createMethodWrapper(MethodCall methodCall);
 
-    private void doFindChildren(IProgressMonitor progressMonitor) {
-        Map<String, MethodCall> existingResults = lookupMethod(getMethodCall());
+    private Map<String, MethodCall> getElements(final IProgressMonitor progressMonitor, final ICallListener listener) {
+        while (true) {
+            FutureTask<Map<String, MethodCall>> search;
+            boolean owner = false;
+            synchronized (this) {
+                if (fElements != null) {
+                    return fElements;
+                }
+                search = fSearch;
+                if (search == null) {
+                    search = new FutureTask<>(new Callable<Map<String, MethodCall>>() {
+                        @Override
+                        public Map<String, MethodCall> call() {
+                            return doFindChildren(progressMonitor, listener);
+                        }
+                    });
+                    fSearch = search;
+                    owner = true;
+                }
+            }
 
-        if (existingResults != null && !existingResults.isEmpty()) {
-            fElements = new HashMap<>();
-            fElements.putAll(existingResults);
-        } else {
-            initCalls();
+            if (owner) {
+                search.run();
+            }
 
-            if (progressMonitor != null) {
-                progressMonitor.beginTask(getTaskName(), 100);
+            Map<String, MethodCall> elements;
+            try {
+                elements = waitForSearch(search, progressMonitor);
+            } catch (OperationCanceledException e) {
+                // this request has been canceled, the search continues for the others
+                throw e;
+            } catch (RuntimeException e) {
+                discardSearch(search);
+                throw e;
+            } catch (Error e) {
+                discardSearch(search);
+                throw e;
             }
 
+            if (elements != null) {
+                synchronized (this) {
+                    if (fSearch == search) {
+                        fSearch = null;
+                        fElements = elements;
+                        getMethodCache().put(getMethodCall().getKey(), new HashMap<>(elements));
+                    }
+                }
+                return elements;
+            }
+
+            // the search has been canceled by the request that started it
+            discardSearch(search);
+            if (owner) {
+                throw new OperationCanceledException();
+            }
+            checkCanceled(progressMonitor);
+        }
+    }
+
+    /**
+     * Waits for the given search to complete.
+     *
+     * @param search the search
+     * @param progressMonitor the progress monitor of the waiting request
+     * @return the calls found by the search, or <code>null</code> if the search has been
+     *         canceled
+     * @exception OperationCanceledException if the waiting request has been canceled
+     */
+    private Map<String, MethodCall> waitForSearch(FutureTask<Map<String, MethodCall>> search, IProgressMonitor progressMonitor) {
+        while (true) {
             try {
-                performSearch(progressMonitor);
-            } catch (OperationCanceledException e){
-            	fElements= null;
-            	throw e;
-            } finally {
-                if (progressMonitor != null) {
-                    progressMonitor.done();
+                return search.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                checkCanceled(progressMonitor);
+            } catch (InterruptedException e) {
+                throw new OperationCanceledException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof OperationCanceledException) {
+                    return null;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
                 }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private synchronized void discardSearch(FutureTask<Map<String, MethodCall>> search) {
+        if (fSearch == search) {
+            fSearch = null;
+        }
+    }
+
+    private Map<String, MethodCall> doFindChildren(IProgressMonitor progressMonitor, ICallListener listener) {
+        Map<String, MethodCall> existingResults = lookupMethod(getMethodCall());
+
+        if (existingResults != null && !existingResults.isEmpty()) {
+            return new HashMap<>(existingResults);
+        }
+
+        if (progressMonitor != null) {
+            progressMonitor.beginTask(getTaskName(), 100);
+        }
+
+        try {
+            return performSearch(progressMonitor, listener);
+        } finally {
+            if (progressMonitor != null) {
+                progressMonitor.done();
             }
         }
     }
@@ -279,14 +424,28 @@ public abstract class MethodWrapper extends PlatformObject {
      */
     protected abstract Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor);
 
-    private Map<String, Map<String, MethodCall>> getMethodCache() {
-        return fMethodCache;
+    /**
+     * This method finds the children of the current IMember and notifies the listener about
+     * each child as soon as it is found. The default implementation notifies the listener
+     * about all children found by {@link #findChildren(IProgressMonitor)} once they are found.
+     *
+     * @param progressMonitor a progress monitor
+     * @param listener the listener to notify about found children, or <code>null</code>
+     * @return a map from handle identifier ({@link String}) to {@link MethodCall}
+     * @since 3.14
+     */
+    protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor, ICallListener listener) {
+        Map<String, MethodCall> children = findChildren(progressMonitor);
+        if (listener != null) {
+            for (Iterator<MethodCall> iter = children.values().iterator(); iter.hasNext();) {
+                listener.callFound(createMethodWrapper(iter.next()));
+            }
+        }
+        return children;
     }
 
-    private void initCalls() {
-        this.fElements = new HashMap<>();
-
-        initCacheForMethod();
+    private Map<String, Map<String, MethodCall>> getMethodCache() {
+        return fMethodCache;
     }
 
     /**
@@ -298,26 +457,17 @@ public abstract class MethodWrapper extends PlatformObject {
         return getMethodCache().get(methodCall.getKey());
     }
 
-    private void performSearch(IProgressMonitor progressMonitor) {
-        fElements = findChildren(progressMonitor);
-
-        for (Iterator<String> iter = fElements.keySet().iterator(); iter.hasNext();) {
-            checkCanceled(progressMonitor);
+    private Map<String, MethodCall> performSearch(IProgressMonitor progressMonitor, ICallListener listener) {
+        Map<String, MethodCall> elements = findChildren(progressMonitor, listener);
+        checkCanceled(progressMonitor);
 
-            MethodCall methodCall = getMethodCallFromMap(fElements, iter.next());
-            addCallToCache(methodCall);
-        }
+        return elements;
     }
 
     private MethodCall getMethodCallFromMap(Map<String, MethodCall> elements, String key) {
         return elements.get(key);
     }
 
-    private void initCacheForMethod() {
-        Map<String, MethodCall> cachedCalls = new HashMap<>();
-        getMethodCache().put(this.getMethodCall().getKey(), cachedCalls);
-    }
-
     /**
      * Checks with the progress monitor to see whether the creation of the type hierarchy
      * should be canceled. Should be regularly called
@@ -365,8 +515,9 @@ public abstract class MethodWrapper extends PlatformObject {
 	 *
 	 * @since 3.6
 	 */
-	public void removeFromCache() {
+	public synchronized void removeFromCache() {
 		fElements= null;
+		fSearch= null;
 		fMethodCache.remove(getMethodCall().getKey());
 	}
 }
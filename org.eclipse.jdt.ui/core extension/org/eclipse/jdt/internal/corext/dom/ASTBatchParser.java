@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2016 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -81,6 +81,7 @@ public class ASTBatchParser {
 
 				if (units.length <= MAX_AT_ONCE) {
 					createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, new SubProgressMonitor(monitor, units.length));
+					batchDone();
 				} else {
 					List<ICompilationUnit> list= Arrays.asList(units);
 					int end= 0;
@@ -91,6 +92,7 @@ public class ASTBatchParser {
 
 						createParser(units[0].getJavaProject()).createASTs(toParse.toArray(new ICompilationUnit[toParse.size()]), bindingKeys, requestor,
 								new SubProgressMonitor(monitor, toParse.size()));
+						batchDone();
 						cursor= end;
 					}
 				}
@@ -118,6 +120,19 @@ public class ASTBatchParser {
 		return result;
 	}
 
+	/**
+	 * Called after the ASTs of a subset of the compilation units have been passed to the
+	 * requestor and before the ASTs of the next subset are created. Changes which must not be
+	 * seen by the parser of the current subset can be written here.
+	 * <p>
+	 * Subclasses may override, the default implementation does nothing.
+	 * </p>
+	 *
+	 * @since 3.14
+	 */
+	protected void batchDone() {
+	}
+
 	private static ICompilationUnit[][] splitByProject(ICompilationUnit[] units) {
 		if (hasOnlyOneProject(units))
 			return new ICompilationUnit[][] { units };
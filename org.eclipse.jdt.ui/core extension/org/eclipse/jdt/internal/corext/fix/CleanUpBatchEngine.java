@@ -0,0 +1,462 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.fix;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubProgressMonitor;
+
+import org.eclipse.core.resources.ProjectScope;
+
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.TextEdit;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring.CleanUpChange;
+import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
+import org.eclipse.jdt.internal.corext.util.Messages;
+
+import org.eclipse.jdt.ui.cleanup.CleanUpContext;
+import org.eclipse.jdt.ui.cleanup.CleanUpOptions;
+import org.eclipse.jdt.ui.cleanup.ICleanUp;
+
+import org.eclipse.jdt.internal.ui.IJavaStatusConstants;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.JavaUIStatus;
+import org.eclipse.jdt.internal.ui.fix.MapCleanUpOptions;
+import org.eclipse.jdt.internal.core.manipulation.util.BasicElementLabels;
+
+/**
+ * Headless engine which runs a set of clean ups over compilation units without building a
+ * {@link CleanUpRefactoring} change tree.
+ * <p>
+ * Each compilation unit is streamed through the clean up pipeline on its own: the fixes are
+ * calculated and applied to a private working copy. The AST and the changes of a unit are released
+ * right after its working copy has been modified, so memory consumption does not grow with the
+ * number of units.
+ * </p>
+ * <p>
+ * If the clean ups require an AST, the modified working copies are committed after each batch of
+ * the {@link ASTBatchParser} has been processed, so that the parser never resolves the bindings of
+ * a unit against files which have been changed while the batch is parsed. Otherwise each unit is
+ * committed before the next one is processed.
+ * </p>
+ * <p>
+ * The engine does not support undo. Clients should call {@link #run(ICompilationUnit[], IProgressMonitor)}
+ * inside a workspace runnable to batch the resource change notifications.
+ * </p>
+ *
+ * @since 3.14
+ */
+public class CleanUpBatchEngine {
+
+	/**
+	 * Throughput metrics of a {@link CleanUpBatchEngine} run.
+	 */
+	public static final class Statistics {
+
+		private final MemoryMXBean fMemoryBean;
+		private final long fStartTime;
+		private long fEndTime;
+		private int fProcessedUnits;
+		private int fChangedUnits;
+		private long fPeakHeapUsage;
+
+		private Statistics() {
+			fMemoryBean= ManagementFactory.getMemoryMXBean();
+			fStartTime= System.currentTimeMillis();
+			fEndTime= fStartTime;
+			sampleHeapUsage();
+		}
+
+		private void unitProcessed(boolean changed) {
+			fProcessedUnits++;
+			if (changed)
+				fChangedUnits++;
+			sampleHeapUsage();
+		}
+
+		private void finish() {
+			fEndTime= System.currentTimeMillis();
+			sampleHeapUsage();
+		}
+
+		private void sampleHeapUsage() {
+			long used= fMemoryBean.getHeapMemoryUsage().getUsed();
+			if (used > fPeakHeapUsage)
+				fPeakHeapUsage= used;
+		}
+
+		/**
+		 * @return the number of compilation units which have been cleaned up
+		 */
+		public int getProcessedUnits() {
+			return fProcessedUnits;
+		}
+
+		/**
+		 * @return the number of compilation units which have been modified and written to disk
+		 */
+		public int getChangedUnits() {
+			return fChangedUnits;
+		}
+
+		/**
+		 * @return the elapsed time in milliseconds
+		 */
+		public long getElapsedTime() {
+			return fEndTime - fStartTime;
+		}
+
+		/**
+		 * @return the number of processed units per second
+		 */
+		public double getUnitsPerSecond() {
+			long elapsed= getElapsedTime();
+			if (elapsed == 0)
+				return fProcessedUnits;
+
+			return fProcessedUnits * 1000.0 / elapsed;
+		}
+
+		/**
+		 * @return the highest heap usage in bytes observed between two compilation units
+		 */
+		public long getPeakHeapUsage() {
+			return fPeakHeapUsage;
+		}
+
+		@Override
+		public String toString() {
+			StringBuffer buf= new StringBuffer();
+			buf.append("units= ").append(fProcessedUnits); //$NON-NLS-1$
+			buf.append(", changed= ").append(fChangedUnits); //$NON-NLS-1$
+			buf.append(", time= ").append(getElapsedTime()).append("ms"); //$NON-NLS-1$ //$NON-NLS-2$
+			buf.append(", units/s= ").append(Math.round(getUnitsPerSecond())); //$NON-NLS-1$
+			buf.append(", peak heap= ").append(fPeakHeapUsage / (1 << 20)).append("MiB"); //$NON-NLS-1$ //$NON-NLS-2$
+			return buf.toString();
+		}
+	}
+
+	private static class CleanUpException extends RuntimeException {
+
+		private static final long serialVersionUID= 1L;
+
+		private final CoreException fException;
+
+		public CleanUpException(CoreException exception) {
+			fException= exception;
+		}
+
+		public CoreException getException() {
+			return fException;
+		}
+	}
+
+	private final ICleanUp[] fCleanUps;
+	private boolean fUseOptionsFromProfile;
+	private Statistics fStatistics;
+
+	public CleanUpBatchEngine(ICleanUp[] cleanUps) {
+		fCleanUps= cleanUps;
+		fUseOptionsFromProfile= false;
+	}
+
+	/**
+	 * @param enabled <code>true</code> to configure the clean ups with the profile of each project
+	 *            before processing its compilation units
+	 */
+	public void setUseOptionsFromProfile(boolean enabled) {
+		fUseOptionsFromProfile= enabled;
+	}
+
+	/**
+	 * @return the metrics of the last run, or <code>null</code> if the engine has not been run yet
+	 */
+	public Statistics getStatistics() {
+		return fStatistics;
+	}
+
+	/**
+	 * Cleans up the given compilation units and writes each modified unit to disk.
+	 *
+	 * @param units the compilation units to clean up
+	 * @param monitor the progress monitor or <code>null</code>
+	 * @return the merged status of the pre and post condition checks of the clean ups
+	 * @throws CoreException if a fix could not be calculated or a unit could not be written
+	 */
+	public RefactoringStatus run(ICompilationUnit[] units, IProgressMonitor monitor) throws CoreException {
+		if (monitor == null)
+			monitor= new NullProgressMonitor();
+
+		fStatistics= new Statistics();
+		RefactoringStatus result= new RefactoringStatus();
+
+		Map<IJavaProject, List<ICompilationUnit>> projects= new LinkedHashMap<>();
+		for (int i= 0; i < units.length; i++) {
+			IJavaProject project= units[i].getJavaProject();
+			List<ICompilationUnit> list= projects.get(project);
+			if (list == null) {
+				list= new ArrayList<>();
+				projects.put(project, list);
+			}
+			list.add(units[i]);
+		}
+
+		monitor.beginTask("", 2 * units.length); //$NON-NLS-1$
+		try {
+			for (Iterator<Entry<IJavaProject, List<ICompilationUnit>>> iter= projects.entrySet().iterator(); iter.hasNext();) {
+				Entry<IJavaProject, List<ICompilationUnit>> entry= iter.next();
+				List<ICompilationUnit> list= entry.getValue();
+
+				result.merge(cleanUpProject(entry.getKey(), list.toArray(new ICompilationUnit[list.size()]), new SubProgressMonitor(monitor, 2 * list.size())));
+				if (result.hasFatalError())
+					return result;
+			}
+		} finally {
+			fStatistics.finish();
+			monitor.done();
+		}
+		return result;
+	}
+
+	private RefactoringStatus cleanUpProject(final IJavaProject project, ICompilationUnit[] units, final IProgressMonitor monitor) throws CoreException {
+		RefactoringStatus result= new RefactoringStatus();
+
+		monitor.beginTask("", 2 * units.length); //$NON-NLS-1$
+		try {
+			if (fUseOptionsFromProfile) {
+				Map<String, String> options= CleanUpPreferenceUtil.loadOptions(new ProjectScope(project.getProject()));
+				if (options == null)
+					return RefactoringStatus.createFatalErrorStatus(Messages.format(FixMessages.CleanUpRefactoring_could_not_retrive_profile, BasicElementLabels.getResourceName(project.getProject())));
+
+				CleanUpOptions cleanUpOptions= new MapCleanUpOptions(options);
+				for (int i= 0; i < fCleanUps.length; i++)
+					fCleanUps[i].setOptions(cleanUpOptions);
+			}
+
+			IProgressMonitor preMonitor= new SubProgressMonitor(monitor, units.length);
+			preMonitor.beginTask("", fCleanUps.length); //$NON-NLS-1$
+			preMonitor.subTask(Messages.format(FixMessages.CleanUpRefactoring_Initialize_message, BasicElementLabels.getResourceName(project.getProject())));
+			try {
+				for (int i= 0; i < fCleanUps.length; i++) {
+					result.merge(fCleanUps[i].checkPreConditions(project, units, new SubProgressMonitor(preMonitor, 1)));
+					if (result.hasFatalError())
+						return result;
+				}
+			} finally {
+				preMonitor.done();
+			}
+
+			final int size= units.length;
+			final List<ICompilationUnit> modified= new ArrayList<>();
+			if (requiresAST(fCleanUps)) {
+				ASTRequestor requestor= new ASTRequestor() {
+					@Override
+					public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+						monitor.subTask(getSubTaskMessage(source, size));
+						try {
+							ICompilationUnit workingCopy= cleanUpUnit(source, ast);
+							if (workingCopy != null)
+								modified.add(workingCopy);
+						} catch (CoreException e) {
+							throw new CleanUpException(e);
+						}
+					}
+				};
+				try {
+					createBatchParser(modified).createASTs(units, new String[0], requestor, new SubProgressMonitor(monitor, units.length));
+				} catch (CleanUpException e) {
+					throw e.getException();
+				} finally {
+					// the working copies of a failed batch are not written
+					discard(modified);
+				}
+			} else {
+				for (int i= 0; i < units.length; i++) {
+					if (monitor.isCanceled())
+						throw new OperationCanceledException();
+
+					monitor.subTask(getSubTaskMessage(units[i], size));
+					ICompilationUnit workingCopy= cleanUpUnit(units[i], null);
+					if (workingCopy != null) {
+						modified.add(workingCopy);
+						commit(modified);
+					}
+					monitor.worked(1);
+				}
+			}
+
+			for (int i= 0; i < fCleanUps.length; i++) {
+				result.merge(fCleanUps[i].checkPostConditions(new NullProgressMonitor()));
+			}
+		} finally {
+			monitor.done();
+		}
+		return result;
+	}
+
+	private String getSubTaskMessage(ICompilationUnit unit, int size) {
+		return Messages.format(FixMessages.CleanUpRefactoring_ProcessingCompilationUnit_message, new Object[] { Integer.valueOf(fStatistics.getProcessedUnits() + 1), Integer.valueOf(size), BasicElementLabels.getFileName(unit) });
+	}
+
+	/**
+	 * Runs all clean ups on the given unit until no clean up is left over. Clean ups which require
+	 * a fresh AST or whose changes overlap with the changes of a previous clean up are run again on
+	 * the modified working copy.
+	 *
+	 * @param unit the unit to clean up
+	 * @param ast the AST of <code>unit</code> or <code>null</code> if no clean up requires an AST
+	 * @return the modified working copy, which must be committed and discarded by the caller, or
+	 *         <code>null</code> if the unit has not been changed
+	 * @throws CoreException if a fix could not be calculated
+	 */
+	private ICompilationUnit cleanUpUnit(ICompilationUnit unit, CompilationUnit ast) throws CoreException {
+		ICompilationUnit workingCopy= null;
+		boolean success= false;
+		try {
+			ICleanUp[] cleanUps= fCleanUps;
+			CleanUpContext context= new CleanUpContext(unit, ast);
+			while (true) {
+				List<ICleanUp> undone= new ArrayList<>();
+				CleanUpChange change= CleanUpRefactoring.calculateChange(context, cleanUps, undone, null);
+				if (change != null) {
+					if (workingCopy == null)
+						workingCopy= unit.getWorkingCopy(new WorkingCopyOwner() {}, null);
+					applyEdit(workingCopy, change.getEdit());
+				}
+
+				if (undone.isEmpty())
+					break;
+
+				cleanUps= undone.toArray(new ICleanUp[undone.size()]);
+				ICompilationUnit source= workingCopy != null ? workingCopy : unit;
+				context= new CleanUpContext(source, requiresAST(cleanUps) ? parse(source) : null);
+			}
+
+			fStatistics.unitProcessed(workingCopy != null);
+			success= true;
+			return workingCopy;
+		} finally {
+			if (!success && workingCopy != null)
+				workingCopy.discardWorkingCopy();
+		}
+	}
+
+	/**
+	 * Writes the given working copies to disk and discards them.
+	 *
+	 * @param workingCopies the modified working copies, the list is cleared
+	 * @throws CoreException if a unit could not be written
+	 */
+	private static void commit(List<ICompilationUnit> workingCopies) throws CoreException {
+		try {
+			for (int i= 0; i < workingCopies.size(); i++)
+				workingCopies.get(i).commitWorkingCopy(false, null);
+		} finally {
+			discard(workingCopies);
+		}
+	}
+
+	private static void discard(List<ICompilationUnit> workingCopies) {
+		for (int i= 0; i < workingCopies.size(); i++) {
+			try {
+				workingCopies.get(i).discardWorkingCopy();
+			} catch (JavaModelException e) {
+				JavaPlugin.log(e);
+			}
+		}
+		workingCopies.clear();
+	}
+
+	private static void applyEdit(ICompilationUnit workingCopy, TextEdit edit) throws CoreException {
+		IDocument document= new Document(workingCopy.getBuffer().getContents());
+		try {
+			edit.copy().apply(document, TextEdit.NONE);
+		} catch (MalformedTreeException e) {
+			throw new CoreException(JavaUIStatus.createError(IJavaStatusConstants.INTERNAL_ERROR, e));
+		} catch (BadLocationException e) {
+			throw new CoreException(JavaUIStatus.createError(IJavaStatusConstants.INTERNAL_ERROR, e));
+		}
+		workingCopy.getBuffer().setContents(document.get());
+	}
+
+	private CompilationUnit parse(ICompilationUnit unit) {
+		ASTParser parser= createParser(unit.getJavaProject());
+		parser.setSource(unit);
+		return (CompilationUnit)parser.createAST(null);
+	}
+
+	private ASTBatchParser createBatchParser(final List<ICompilationUnit> modified) {
+		return new ASTBatchParser() {
+			@Override
+			protected ASTParser createParser(IJavaProject project) {
+				return CleanUpBatchEngine.this.createParser(project);
+			}
+
+			@Override
+			protected void batchDone() {
+				try {
+					commit(modified);
+				} catch (CoreException e) {
+					throw new CleanUpException(e);
+				}
+			}
+		};
+	}
+
+	private ASTParser createParser(IJavaProject project) {
+		ASTParser result= CleanUpRefactoring.createCleanUpASTParser();
+		result.setProject(project);
+
+		Map<String, String> options= RefactoringASTParser.getCompilerOptions(project);
+		for (int i= 0; i < fCleanUps.length; i++) {
+			Map<String, String> cleanUpOptions= fCleanUps[i].getRequirements().getCompilerOptions();
+			if (cleanUpOptions != null)
+				options.putAll(cleanUpOptions);
+		}
+		result.setCompilerOptions(options);
+		return result;
+	}
+
+	private static boolean requiresAST(ICleanUp[] cleanUps) {
+		for (int i= 0; i < cleanUps.length; i++) {
+			if (cleanUps[i].getRequirements().requiresAST())
+				return true;
+		}
+		return false;
+	}
+}
@@ -1085,6 +1085,19 @@ public class CleanUpConstants {
 	 */
 	public static final String SHOW_CLEAN_UP_WIZARD= "cleanup.showwizard"; //$NON-NLS-1$
 
+	/**
+	 * Number of worker threads used to calculate the clean up changes. A value of <code>1</code>
+	 * processes all compilation units one after another, larger values split the units of a
+	 * project into per package chunks which are parsed and cleaned up concurrently.<br>
+	 * <br>
+	 * Possible values: positive integer value<br>
+	 * Default value: <code><b>1</b></code><br>
+	 * <br>
+	 * 
+	 * @since 3.14
+	 */
+	public static final String CLEAN_UP_PARALLELISM= "cleanup.parallelism"; //$NON-NLS-1$
+
 	/**
 	 * A key to a serialized string in the <code>InstanceScope</code> containing all the profiles.<br>
 	 * Following code snippet can load the profiles:
@@ -1349,6 +1362,7 @@ public class CleanUpConstants {
 		}
 
 		store.setDefault(SHOW_CLEAN_UP_WIZARD, true);
+		store.setDefault(CLEAN_UP_PARALLELISM, 1);
 		store.setDefault(CLEANUP_PROFILE, DEFAULT_PROFILE);
 		store.setDefault(CLEANUP_ON_SAVE_PROFILE, DEFAULT_SAVE_PARTICIPANT_PROFILE);
 	}
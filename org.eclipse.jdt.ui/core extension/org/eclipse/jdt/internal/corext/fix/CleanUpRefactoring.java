@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.swt.widgets.Display;
 
@@ -74,6 +80,7 @@ import org.eclipse.jdt.internal.corext.refactoring.changes.MultiStateCompilation
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextEditUtil;
 import org.eclipse.jdt.internal.corext.util.Messages;
+import org.eclipse.jdt.internal.corext.util.SynchronizedProgressMonitor;
 
 import org.eclipse.jdt.ui.JavaElementLabels;
 import org.eclipse.jdt.ui.cleanup.CleanUpContext;
@@ -84,6 +91,7 @@ import org.eclipse.jdt.ui.text.java.IProblemLocation;
 
 import org.eclipse.jdt.internal.ui.IJavaStatusConstants;
 import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.fix.AbstractCleanUp;
 import org.eclipse.jdt.internal.ui.fix.IMultiFix.MultiFixContext;
 import org.eclipse.jdt.internal.ui.fix.MapCleanUpOptions;
 import org.eclipse.jdt.internal.corext.dom.IASTSharedValues;
@@ -521,6 +529,8 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 	private boolean fUseOptionsFromProfile;
 
+	private int fParallelism;
+
 	public CleanUpRefactoring() {
 		this(FixMessages.CleanUpRefactoring_Refactoring_name);
 	}
@@ -530,12 +540,40 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		fCleanUps= new ArrayList<>();
 		fProjects= new Hashtable<>();
 		fUseOptionsFromProfile= false;
+		fParallelism= getDefaultParallelism();
 	}
 
 	public void setUseOptionsFromProfile(boolean enabled) {
 		fUseOptionsFromProfile= enabled;
 	}
 
+	/**
+	 * Sets the number of worker threads used to calculate the changes. If greater than
+	 * <code>1</code>, the targets of a project are split into per package chunks which are parsed
+	 * and cleaned up concurrently. The resulting changes are merged in package order. Each chunk
+	 * uses its own copies of the clean ups, see {@link AbstractCleanUp#copy()}. If a clean up
+	 * cannot be copied, the targets are cleaned up sequentially.
+	 * 
+	 * @param parallelism the number of worker threads, values smaller than <code>1</code> are
+	 *            treated as <code>1</code>
+	 * @see CleanUpConstants#CLEAN_UP_PARALLELISM
+	 */
+	public void setParallelism(int parallelism) {
+		fParallelism= Math.max(1, parallelism);
+	}
+
+	public int getParallelism() {
+		return fParallelism;
+	}
+
+	private static int getDefaultParallelism() {
+		JavaPlugin plugin= JavaPlugin.getDefault();
+		if (plugin == null)
+			return 1;
+
+		return Math.max(1, plugin.getPreferenceStore().getInt(CleanUpConstants.CLEAN_UP_PARALLELISM));
+	}
+
 	public void addCompilationUnit(ICompilationUnit unit) {
 		addCleanUpTarget(new CleanUpTarget(unit));
 	}
@@ -657,7 +695,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 				if (result.hasFatalError())
 					return result;
 
-				Change[] changes= cleanUpProject(project, targets, cleanUps, pm);
+				Change[] changes= cleanUpProject(project, targets, cleanUps, result, pm);
 
 				result.merge(checkPostConditions(new SubProgressMonitor(pm, cleanUps.length)));
 				if (result.hasFatalError())
@@ -693,7 +731,13 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
-	private Change[] cleanUpProject(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, IProgressMonitor monitor) throws CoreException {
+	private Change[] cleanUpProject(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, RefactoringStatus status, IProgressMonitor monitor) throws CoreException {
+		if (fParallelism > 1) {
+			List<CleanUpTarget[]> chunks= createChunks(targets);
+			if (chunks.size() > 1 && canCopyCleanUps(cleanUps))
+				return cleanUpProjectParallel(project, chunks, targets.length, cleanUps, status, monitor);
+		}
+
 		CleanUpFixpointIterator iter= new CleanUpFixpointIterator(targets, cleanUps);
 
 		SubProgressMonitor subMonitor= new SubProgressMonitor(monitor, 2 * targets.length * cleanUps.length);
@@ -711,6 +755,155 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	/**
+	 * Splits the targets into chunks of targets from the same package. The chunks are sorted by
+	 * package and keep the order of the targets within each package, so that the merged result does
+	 * not depend on the order in which the chunks are processed.
+	 * 
+	 * @param targets the targets to split
+	 * @return the chunks
+	 */
+	private static List<CleanUpTarget[]> createChunks(CleanUpTarget[] targets) {
+		Map<String, List<CleanUpTarget>> packages= new TreeMap<>();
+		for (int i= 0; i < targets.length; i++) {
+			String key= targets[i].getCompilationUnit().getParent().getHandleIdentifier();
+			List<CleanUpTarget> list= packages.get(key);
+			if (list == null) {
+				list= new ArrayList<>();
+				packages.put(key, list);
+			}
+			list.add(targets[i]);
+		}
+
+		List<CleanUpTarget[]> result= new ArrayList<>(packages.size());
+		for (Iterator<List<CleanUpTarget>> iter= packages.values().iterator(); iter.hasNext();) {
+			List<CleanUpTarget> list= iter.next();
+			result.add(list.toArray(new CleanUpTarget[list.size()]));
+		}
+		return result;
+	}
+
+	/**
+	 * @param cleanUps the clean ups of this refactoring
+	 * @return <code>true</code> if all clean ups can be copied for a parallel run
+	 */
+	private static boolean canCopyCleanUps(ICleanUp[] cleanUps) {
+		for (int i= 0; i < cleanUps.length; i++) {
+			if (!(cleanUps[i] instanceof AbstractCleanUp) || !((AbstractCleanUp)cleanUps[i]).canCopy())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a fresh set of clean ups for one chunk of a parallel run, so that no clean up instance
+	 * is used by two threads. The copies are initialized from the clean ups of this refactoring,
+	 * whose pre conditions have already been checked.
+	 *
+	 * @param cleanUps the clean ups of this refactoring, which {@link #canCopyCleanUps(ICleanUp[]) can be copied}
+	 * @return the copies
+	 */
+	private static ICleanUp[] copyCleanUps(ICleanUp[] cleanUps) {
+		ICleanUp[] result= new ICleanUp[cleanUps.length];
+		for (int i= 0; i < cleanUps.length; i++) {
+			result[i]= ((AbstractCleanUp)cleanUps[i]).copy();
+		}
+		return result;
+	}
+
+	private Change[] cleanUpProjectParallel(final IJavaProject project, List<CleanUpTarget[]> chunks, int targetCount, final ICleanUp[] cleanUps, RefactoringStatus status, IProgressMonitor monitor) throws CoreException {
+		SubProgressMonitor subMonitor= new SubProgressMonitor(monitor, 2 * targetCount * cleanUps.length);
+		subMonitor.beginTask("", targetCount); //$NON-NLS-1$
+		subMonitor.subTask(Messages.format(FixMessages.CleanUpRefactoring_Parser_Startup_message, BasicElementLabels.getResourceName(project.getProject())));
+
+		final IProgressMonitor sharedMonitor= new SynchronizedProgressMonitor(subMonitor);
+		ExecutorService executor= Executors.newFixedThreadPool(Math.min(fParallelism, chunks.size()));
+		try {
+			List<Future<Change[]>> futures= new ArrayList<>(chunks.size());
+			final List<RefactoringStatus> statuses= new ArrayList<>(chunks.size());
+			for (Iterator<CleanUpTarget[]> iter= chunks.iterator(); iter.hasNext();) {
+				final CleanUpTarget[] chunk= iter.next();
+				final RefactoringStatus chunkStatus= new RefactoringStatus();
+				statuses.add(chunkStatus);
+				futures.add(executor.submit(new Callable<Change[]>() {
+					@Override
+					public Change[] call() throws CoreException {
+						return cleanUpChunk(chunk, copyCleanUps(cleanUps), chunkStatus, new SubProgressMonitor(sharedMonitor, chunk.length));
+					}
+				}));
+			}
+
+			List<Change> result= new ArrayList<>();
+			for (int i= 0; i < futures.size(); i++) {
+				Change[] changes= getChunkResult(futures.get(i));
+				for (int j= 0; j < changes.length; j++) {
+					result.add(changes[j]);
+				}
+				status.merge(statuses.get(i));
+			}
+			return result.toArray(new Change[result.size()]);
+		} finally {
+			executor.shutdownNow();
+			subMonitor.done();
+		}
+	}
+
+	/**
+	 * Cleans up the targets of one chunk with the given copies of the clean ups. The copies have
+	 * been initialized from the clean ups of this refactoring, whose pre conditions have already
+	 * been checked. The post conditions of the copies are merged into the given status once the
+	 * chunk has been cleaned up successfully.
+	 *
+	 * @param targets the targets of the chunk
+	 * @param cleanUps the copies of the clean ups, used by this chunk only
+	 * @param status the status to merge the post conditions into
+	 * @param monitor the progress monitor
+	 * @return the changes of the chunk
+	 * @throws CoreException if a clean up failed
+	 */
+	private Change[] cleanUpChunk(CleanUpTarget[] targets, ICleanUp[] cleanUps, RefactoringStatus status, IProgressMonitor monitor) throws CoreException {
+		CleanUpFixpointIterator iter= new CleanUpFixpointIterator(targets, cleanUps);
+
+		Change[] result;
+		monitor.beginTask("", targets.length); //$NON-NLS-1$
+		try {
+			while (iter.hasNext()) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+
+				iter.next(monitor);
+			}
+
+			result= iter.getResult();
+		} finally {
+			iter.dispose();
+			monitor.done();
+		}
+
+		for (int i= 0; i < cleanUps.length; i++) {
+			status.merge(cleanUps[i].checkPostConditions(new NullProgressMonitor()));
+		}
+		return result;
+	}
+
+	private static Change[] getChunkResult(Future<Change[]> future) throws CoreException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException)cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IJavaStatusConstants.INTERNAL_ERROR, cause.getMessage(), cause));
+		}
+	}
+
 	private RefactoringStatus setOptionsFromProfile(IJavaProject javaProject, ICleanUp[] cleanUps) {
 		Map<String, String> options= CleanUpPreferenceUtil.loadOptions(new ProjectScope(javaProject.getProject()));
 		if (options == null)
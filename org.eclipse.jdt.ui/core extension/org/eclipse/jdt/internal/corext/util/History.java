@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,10 +16,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Hashtable;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -60,7 +62,12 @@ import org.eclipse.jdt.internal.core.manipulation.util.BasicElementLabels;
  * from the list. An element can be added/renewed with a call to <code>accessed(Object)</code>.
  *
  * The history can be stored to/loaded from an xml file.
- * 
+ * <p>
+ * Modifications are synchronized and publish an immutable snapshot of the history. Queries
+ * read the current snapshot and never block, not even while a subclass holds the lock for a
+ * longer modification.
+ * </p>
+ *
  * @param <K> key type
  * @param <V> value type
  */
@@ -74,8 +81,27 @@ public abstract class History<K, V> {
 		return new JavaUIException(JavaUIStatus.createError(IStatus.ERROR, message, t));
 	}
 
+	/**
+	 * Immutable state of the history handed out to queries.
+	 *
+	 * @param <K> key type
+	 * @param <V> value type
+	 * @since 3.14
+	 */
+	private static final class Snapshot<K, V> {
+		/** The values, from the eldest to the newest */
+		final List<V> fValues;
+		/** The positions of the keys, in the order of the values */
+		final Map<K, Integer> fPositions;
+
+		Snapshot(List<V> values, Map<K, Integer> positions) {
+			fValues= Collections.unmodifiableList(values);
+			fPositions= Collections.unmodifiableMap(positions);
+		}
+	}
+
 	private final Map<K, V> fHistory;
-	private final Hashtable<K, Integer> fPositions;
+	private volatile Snapshot<K, V> fSnapshot;
 	private final String fFileName;
 	private final String fRootNodeName;
 	private final String fInfoNodeName;
@@ -91,7 +117,7 @@ public abstract class History<K, V> {
 		fFileName= fileName;
 		fRootNodeName= rootNodeName;
 		fInfoNodeName= infoNodeName;
-		fPositions= new Hashtable<>(MAX_HISTORY_SIZE);
+		fSnapshot= new Snapshot<>(Collections.<V>emptyList(), Collections.<K, Integer>emptyMap());
 	}
 
 	public History(String fileName) {
@@ -103,16 +129,16 @@ public abstract class History<K, V> {
 		rebuildPositions();
 	}
 
-	public synchronized boolean contains(V object) {
-		return fHistory.containsKey(getKey(object));
+	public boolean contains(V object) {
+		return containsKey(getKey(object));
 	}
 
-	public synchronized boolean containsKey(K key) {
-		return fHistory.containsKey(key);
+	public boolean containsKey(K key) {
+		return fSnapshot.fPositions.containsKey(key);
 	}
 
-	public synchronized boolean isEmpty() {
-		return fHistory.isEmpty();
+	public boolean isEmpty() {
+		return fSnapshot.fValues.isEmpty();
 	}
 
 	public synchronized Object remove(V object) {
@@ -136,14 +162,16 @@ public abstract class History<K, V> {
 	 * @param key The key of the object to inspect
 	 * @return value in [0.0, 1.0] the lower the older the element
 	 */
-	public synchronized float getNormalizedPosition(K key) {
-		if (!containsKey(key))
+	public float getNormalizedPosition(K key) {
+		Snapshot<K, V> snapshot= fSnapshot;
+		Integer position= snapshot.fPositions.get(key);
+		if (position == null)
 			return 0.0f;
 
-		int pos= fPositions.get(key).intValue() + 1;
+		int pos= position.intValue() + 1;
 
 		//containsKey(key) implies fHistory.size()>0
-		return (float)pos / (float)fHistory.size();
+		return (float)pos / (float)snapshot.fValues.size();
 	}
 
 	/**
@@ -154,11 +182,12 @@ public abstract class History<K, V> {
 	 * @param key The key of the object to inspect
 	 * @return value between 0 and MAX_HISTORY_SIZE - 1, or -1
 	 */
-	public synchronized int getPosition(K key) {
-		if (!containsKey(key))
+	public int getPosition(K key) {
+		Integer position= fSnapshot.fPositions.get(key);
+		if (position == null)
 			return -1;
 
-		return fPositions.get(key).intValue();
+		return position.intValue();
 	}
 
 	public synchronized void load() {
@@ -210,12 +239,24 @@ public abstract class History<K, V> {
 		}
 	}
 
+	/**
+	 * Returns the keys of the history. The returned set is an unmodifiable snapshot that
+	 * is not affected by later modifications of the history.
+	 *
+	 * @return the keys, from the eldest to the newest
+	 */
 	protected Set<K> getKeys() {
-		return fHistory.keySet();
+		return fSnapshot.fPositions.keySet();
 	}
 
+	/**
+	 * Returns the values of the history. The returned collection is an unmodifiable snapshot
+	 * that is not affected by later modifications of the history.
+	 *
+	 * @return the values, from the eldest to the newest
+	 */
 	protected Collection<V> getValues() {
-		return fHistory.values();
+		return fSnapshot.fValues;
 	}
 
 	/**
@@ -242,15 +283,20 @@ public abstract class History<K, V> {
 	 */
 	protected abstract K getKey(V object);
 
+	/**
+	 * Publishes a new snapshot of the history. Must be called with the lock held after every
+	 * modification.
+	 */
 	private void rebuildPositions() {
-		fPositions.clear();
-		Collection<V> values= fHistory.values();
+		List<V> values= new ArrayList<>(fHistory.values());
+		Map<K, Integer> positions= new LinkedHashMap<>((int) (values.size() / 0.75f) + 1);
 		int pos=0;
 		for (Iterator<V> iter= values.iterator(); iter.hasNext();) {
 			V element= iter.next();
-			fPositions.put(getKey(element), Integer.valueOf(pos));
+			positions.put(getKey(element), Integer.valueOf(pos));
 			pos++;
 		}
+		fSnapshot= new Snapshot<>(values, positions);
 	}
 
 	private void load(InputSource inputSource) throws CoreException {
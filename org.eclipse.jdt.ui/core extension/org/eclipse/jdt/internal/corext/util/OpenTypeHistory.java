@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,10 +14,12 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.w3c.dom.Element;
 
@@ -60,20 +62,20 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	private static class TypeHistoryDeltaListener implements IElementChangedListener {
 		@Override
 		public void elementChanged(ElementChangedEvent event) {
-			if (processDelta(event.getDelta())) {
-				OpenTypeHistory.getInstance().markAsInconsistent();
+			Set<IJavaElement> affected= new HashSet<>();
+			processDelta(event.getDelta(), affected);
+			if (!affected.isEmpty()) {
+				OpenTypeHistory.getInstance().markAsInconsistent(affected);
 			}
 		}
 
 		/**
-		 * Computes whether the history needs a consistency check or not.
+		 * Collects the elements whose types in the history need a consistency check.
 		 *
 		 * @param delta the Java element delta
-		 *
-		 * @return <code>true</code> if consistency must be checked
-		 *  <code>false</code> otherwise.
+		 * @param affected the set to add the affected elements to
 		 */
-		private boolean processDelta(IJavaElementDelta delta) {
+		private void processDelta(IJavaElementDelta delta, Set<IJavaElement> affected) {
 			IJavaElement elem= delta.getElement();
 
 			boolean isChanged= delta.getKind() == IJavaElementDelta.CHANGED;
@@ -83,44 +85,55 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 				case IJavaElement.JAVA_PROJECT:
 					if (isRemoved || (isChanged &&
 							(delta.getFlags() & IJavaElementDelta.F_CLOSED) != 0)) {
-						return true;
+						affected.add(elem);
+						return;
 					}
-					return processChildrenDelta(delta);
+					processChildrenDelta(delta, affected);
+					return;
 				case IJavaElement.PACKAGE_FRAGMENT_ROOT:
 					if (isRemoved || (isChanged && (
 							(delta.getFlags() & IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED) != 0 ||
 							(delta.getFlags() & IJavaElementDelta.F_REMOVED_FROM_CLASSPATH) != 0))) {
-						return true;
+						affected.add(elem);
+						return;
 					}
-					return processChildrenDelta(delta);
+					processChildrenDelta(delta, affected);
+					return;
 				case IJavaElement.TYPE:
 					if (isChanged && (delta.getFlags() & IJavaElementDelta.F_MODIFIERS) != 0) {
-						return true;
+						affected.add(elem);
+						return;
 					}
 					if (isRemoved) {
-						return true;
+						affected.add(elem);
+						return;
 					}
-					return processChildrenDelta(delta);
+					processChildrenDelta(delta, affected);
+					return;
 				case IJavaElement.JAVA_MODEL:
 				case IJavaElement.PACKAGE_FRAGMENT:
 				case IJavaElement.CLASS_FILE:
 					if (isRemoved) {
-						return true;
+						affected.add(elem);
+						return;
 					}
-					return processChildrenDelta(delta);
+					processChildrenDelta(delta, affected);
+					return;
 				case IJavaElement.COMPILATION_UNIT:
 					// Not the primary compilation unit. Ignore it
 					if (!JavaModelUtil.isPrimary((ICompilationUnit) elem)) {
-						return false;
+						return;
 					}
 
 					if (isRemoved || (isChanged && isUnknownStructuralChange(delta.getFlags()))) {
-						return true;
+						affected.add(elem);
+						return;
 					}
-					return processChildrenDelta(delta);
+					processChildrenDelta(delta, affected);
+					return;
 				default:
 					// fields, methods, imports ect
-					return false;
+					return;
 			}
 		}
 
@@ -136,14 +149,11 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 		}
 		*/
 
-		private boolean processChildrenDelta(IJavaElementDelta delta) {
+		private void processChildrenDelta(IJavaElementDelta delta, Set<IJavaElement> affected) {
 			IJavaElementDelta[] children= delta.getAffectedChildren();
 			for (int i= 0; i < children.length; i++) {
-				if (processDelta(children[i])) {
-					return true;
-				}
+				processDelta(children[i], affected);
 			}
-			return false;
 		}
 	}
 
@@ -166,8 +176,12 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 
 	// Needs to be volatile since accesses aren't synchronized.
 	private volatile boolean fNeedsConsistencyCheck;
+	// Whether all types have to be checked, not only the dirty ones
+	private volatile boolean fCheckAll;
+	// Types that have to be checked by the next consistency check
+	private final Set<TypeNameMatch> fDirtyTypes;
 	// Map of cached time stamps
-	private Map<TypeNameMatch, Long> fTimestampMapping;
+	private final Map<TypeNameMatch, Long> fTimestampMapping;
 
 	private final IElementChangedListener fDeltaListener;
 	private final UpdateJob fUpdateJob;
@@ -195,8 +209,10 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 
 	private OpenTypeHistory() {
 		super(FILENAME, NODE_ROOT, NODE_TYPE_INFO);
-		fTimestampMapping= new HashMap<>();
+		fTimestampMapping= new ConcurrentHashMap<>();
+		fDirtyTypes= Collections.newSetFromMap(new ConcurrentHashMap<TypeNameMatch, Boolean>());
 		fNeedsConsistencyCheck= true;
+		fCheckAll= true;
 		load();
 		fDeltaListener= new TypeHistoryDeltaListener();
 		JavaCore.addElementChangedListener(fDeltaListener);
@@ -210,12 +226,46 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	}
 
 	public void markAsInconsistent() {
+		fCheckAll= true;
+		scheduleConsistencyCheck();
+	}
+
+	/**
+	 * Marks the types in the history that are contained in one of the given elements as
+	 * inconsistent. Types in other containers keep their last consistency state.
+	 *
+	 * @param elements the changed or removed elements
+	 * @since 3.14
+	 */
+	public void markAsInconsistent(Collection<IJavaElement> elements) {
+		boolean found= false;
+		for (Iterator<TypeNameMatch> iter= getValues().iterator(); iter.hasNext();) {
+			TypeNameMatch type= iter.next();
+			if (isContainedIn(type.getType(), elements)) {
+				fDirtyTypes.add(type);
+				found= true;
+			}
+		}
+		if (found)
+			scheduleConsistencyCheck();
+	}
+
+	private void scheduleConsistencyCheck() {
 		fNeedsConsistencyCheck= true;
 		// cancel the old job. If no job is running this is a NOOP.
 		fUpdateJob.cancel();
 		fUpdateJob.schedule();
 	}
 
+	private static boolean isContainedIn(IJavaElement element, Collection<IJavaElement> containers) {
+		while (element != null) {
+			if (containers.contains(element))
+				return true;
+			element= element.getParent();
+		}
+		return false;
+	}
+
 	public boolean needConsistencyCheck() {
 		return fNeedsConsistencyCheck;
 	}
@@ -240,16 +290,12 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	}
 
 	@Override
-	public synchronized boolean contains(TypeNameMatch type) {
-		return super.contains(type);
-	}
-
-	@Override
-	public synchronized void accessed(TypeNameMatch info) {
+	public void accessed(TypeNameMatch info) {
 		// Fetching the timestamp might not be cheap (remote file system
-		// external Jars. So check if we alreay have one.
+		// external Jars. So check if we alreay have one. Done outside
+		// of the lock so that writers don't wait on the file system.
 		if (!fTimestampMapping.containsKey(info)) {
-			fTimestampMapping.put(info, Long.valueOf(getContainerTimestamp(info)));
+			fTimestampMapping.putIfAbsent(info, Long.valueOf(getContainerTimestamp(info)));
 		}
 		super.accessed(info);
 	}
@@ -257,17 +303,22 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	@Override
 	public synchronized TypeNameMatch remove(TypeNameMatch info) {
 		fTimestampMapping.remove(info);
+		fDirtyTypes.remove(info);
 		return (TypeNameMatch)super.remove(info);
 	}
 
-	public synchronized void replace(TypeNameMatch old, TypeNameMatch newMatch) {
-		fTimestampMapping.remove(old);
-		fTimestampMapping.put(newMatch, Long.valueOf(getContainerTimestamp(newMatch)));
-		super.remove(old);
-		super.accessed(newMatch);
+	public void replace(TypeNameMatch old, TypeNameMatch newMatch) {
+		Long timestamp= Long.valueOf(getContainerTimestamp(newMatch));
+		synchronized (this) {
+			fTimestampMapping.remove(old);
+			fDirtyTypes.remove(old);
+			fTimestampMapping.put(newMatch, timestamp);
+			super.remove(old);
+			super.accessed(newMatch);
+		}
 	}
 
-	public synchronized TypeNameMatch[] getTypeInfos() {
+	public TypeNameMatch[] getTypeInfos() {
 		Collection<TypeNameMatch> values= getValues();
 		int size= values.size();
 		TypeNameMatch[] result= new TypeNameMatch[size];
@@ -279,7 +330,15 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 		return result;
 	}
 
-	public synchronized TypeNameMatch[] getFilteredTypeInfos(TypeInfoFilter filter) {
+	/**
+	 * Returns the types of the history that match the given filter, the newest first. Does not
+	 * wait for a running consistency check; the result reflects the history at the time of the
+	 * call.
+	 *
+	 * @param filter the filter or <code>null</code>
+	 * @return the matching types
+	 */
+	public TypeNameMatch[] getFilteredTypeInfos(TypeInfoFilter filter) {
 		Collection<TypeNameMatch> values= getValues();
 		List<TypeNameMatch> result= new ArrayList<>();
 		for (Iterator<TypeNameMatch> iter= values.iterator(); iter.hasNext();) {
@@ -297,41 +356,71 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 		return object;
 	}
 
-	private synchronized void internalCheckConsistency(IProgressMonitor monitor) throws OperationCanceledException {
+	/**
+	 * Checks the types that were marked as inconsistent, or all types after
+	 * {@link #markAsInconsistent()}. The check does not hold the lock of the history while it
+	 * accesses the Java model; every removal or replacement is applied on its own, so that
+	 * readers and writers are never blocked for the duration of the check.
+	 *
+	 * @param monitor the progress monitor
+	 * @throws OperationCanceledException if the check was canceled
+	 */
+	private void internalCheckConsistency(IProgressMonitor monitor) throws OperationCanceledException {
 		// Setting fNeedsConsistencyCheck is necessary here since
 		// markAsInconsistent isn't synchronized.
 		fNeedsConsistencyCheck= true;
-		List<TypeNameMatch> typesToCheck= new ArrayList<>(getKeys());
+		boolean checkAll= fCheckAll;
+		fCheckAll= false;
+		Set<TypeNameMatch> typesToCheck= new HashSet<>(fDirtyTypes);
+		fDirtyTypes.removeAll(typesToCheck);
+		if (checkAll)
+			typesToCheck.addAll(getKeys());
 		monitor.beginTask(CorextMessages.TypeInfoHistory_consistency_check, typesToCheck.size());
 		monitor.setTaskName(CorextMessages.TypeInfoHistory_consistency_check);
-		for (Iterator<TypeNameMatch> iter= typesToCheck.iterator(); iter.hasNext();) {
-			TypeNameMatch type= iter.next();
-			long currentTimestamp= getContainerTimestamp(type);
-			Long lastTested= fTimestampMapping.get(type);
-			if (lastTested != null && currentTimestamp != IResource.NULL_STAMP && currentTimestamp == lastTested.longValue() && !isContainerDirty(type))
-				continue;
-			try {
-				IType jType= type.getType();
-				if (jType == null || !jType.exists()) {
-					remove(type);
+		try {
+			for (Iterator<TypeNameMatch> iter= typesToCheck.iterator(); iter.hasNext();) {
+				TypeNameMatch type= iter.next();
+				if (contains(type))
+					checkConsistency(type);
+				iter.remove();
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				monitor.worked(1);
+			}
+		} finally {
+			if (!typesToCheck.isEmpty()) {
+				// Canceled: the remaining types still need to be checked
+				if (checkAll)
+					fCheckAll= true;
+				else
+					fDirtyTypes.addAll(typesToCheck);
+			}
+			monitor.done();
+			fNeedsConsistencyCheck= fCheckAll || !fDirtyTypes.isEmpty();
+		}
+	}
+
+	private void checkConsistency(TypeNameMatch type) {
+		long currentTimestamp= getContainerTimestamp(type);
+		Long lastTested= fTimestampMapping.get(type);
+		if (lastTested != null && currentTimestamp != IResource.NULL_STAMP && currentTimestamp == lastTested.longValue() && !isContainerDirty(type))
+			return;
+		try {
+			IType jType= type.getType();
+			if (jType == null || !jType.exists()) {
+				remove(type);
+			} else {
+				// copy over the modifiers since they may have changed
+				int modifiers= jType.getFlags();
+				if (modifiers != type.getModifiers()) {
+					replace(type, SearchEngine.createTypeNameMatch(jType, modifiers));
 				} else {
-					// copy over the modifiers since they may have changed
-					int modifiers= jType.getFlags();
-					if (modifiers != type.getModifiers()) {
-						replace(type, SearchEngine.createTypeNameMatch(jType, modifiers));
-					} else {
-						fTimestampMapping.put(type, Long.valueOf(currentTimestamp));
-					}
+					fTimestampMapping.put(type, Long.valueOf(currentTimestamp));
 				}
-			} catch (JavaModelException e) {
-				remove(type);
 			}
-			if (monitor.isCanceled())
-				throw new OperationCanceledException();
-			monitor.worked(1);
+		} catch (JavaModelException e) {
+			remove(type);
 		}
-		monitor.done();
-		fNeedsConsistencyCheck= false;
 	}
 
 	private long getContainerTimestamp(TypeNameMatch match) {
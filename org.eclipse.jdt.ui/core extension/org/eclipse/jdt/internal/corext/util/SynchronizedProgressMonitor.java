@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.util;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * A progress monitor wrapper which serializes all calls to the wrapped monitor. Can be
+ * shared by worker threads that each report to their own sub progress monitor.
+ */
+public class SynchronizedProgressMonitor extends ProgressMonitorWrapper {
+
+	public SynchronizedProgressMonitor(IProgressMonitor monitor) {
+		super(monitor);
+	}
+
+	@Override
+	public synchronized void beginTask(String name, int totalWork) {
+		super.beginTask(name, totalWork);
+	}
+
+	@Override
+	public synchronized void done() {
+		super.done();
+	}
+
+	@Override
+	public synchronized void internalWorked(double work) {
+		super.internalWorked(work);
+	}
+
+	@Override
+	public synchronized void setTaskName(String name) {
+		super.setTaskName(name);
+	}
+
+	@Override
+	public synchronized void subTask(String name) {
+		super.subTask(name);
+	}
+
+	@Override
+	public synchronized void worked(int work) {
+		super.worked(work);
+	}
+
+	@Override
+	public synchronized boolean isCanceled() {
+		return super.isCanceled();
+	}
+
+	@Override
+	public synchronized void setCanceled(boolean b) {
+		super.setCanceled(b);
+	}
+}
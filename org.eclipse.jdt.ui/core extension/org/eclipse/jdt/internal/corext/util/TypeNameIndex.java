@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
+
+import org.eclipse.jdt.internal.corext.CorextMessages;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * In-memory index of all type names in the workspace, used by the open type dialog.
+ * <p>
+ * The index is built once per session by a background job and afterwards kept up to date from
+ * Java element deltas: changed compilation units, class files and packages are searched again,
+ * changes to the class path or to projects discard the index. The entries are sorted by their
+ * simple name ignoring case, so {@link #getCandidates(TypeInfoFilter)} narrows a filter to the
+ * range of entries that share its literal prefix without running a search.
+ * </p>
+ *
+ * @since 3.14
+ */
+public class TypeNameIndex {
+
+	private class TypeNameIndexDeltaListener implements IElementChangedListener {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			// also during the build, whose search may miss the change, see #build(IProgressMonitor)
+			if (!fRequested)
+				return;
+			Set<IJavaElement> affected= new HashSet<>();
+			if (processDelta(event.getDelta(), affected)) {
+				invalidate();
+			} else if (!affected.isEmpty()) {
+				synchronized (fPending) {
+					fPending.addAll(affected);
+				}
+			}
+		}
+
+		/**
+		 * Collects the containers whose types have to be searched again.
+		 *
+		 * @param delta the Java element delta
+		 * @param affected the set to add the affected containers to
+		 * @return <code>true</code> if the whole index has to be rebuilt
+		 */
+		private boolean processDelta(IJavaElementDelta delta, Set<IJavaElement> affected) {
+			IJavaElement elem= delta.getElement();
+
+			boolean isChanged= delta.getKind() == IJavaElementDelta.CHANGED;
+			int flags= delta.getFlags();
+
+			switch (elem.getElementType()) {
+				case IJavaElement.JAVA_MODEL:
+					return processChildrenDelta(delta, affected);
+				case IJavaElement.JAVA_PROJECT:
+					if (!isChanged || (flags & (IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED
+							| IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+						return true;
+					}
+					return processChildrenDelta(delta, affected);
+				case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+					if (!isChanged || (flags & (IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED
+							| IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH)) != 0) {
+						return true;
+					}
+					return processChildrenDelta(delta, affected);
+				case IJavaElement.PACKAGE_FRAGMENT:
+					if (!isChanged) {
+						affected.add(elem);
+						return false;
+					}
+					return processChildrenDelta(delta, affected);
+				case IJavaElement.CLASS_FILE:
+					affected.add(elem);
+					return false;
+				case IJavaElement.COMPILATION_UNIT:
+					// Not the primary compilation unit. Ignore it
+					if (!JavaModelUtil.isPrimary((ICompilationUnit) elem))
+						return false;
+
+					if (!isChanged || (flags & IJavaElementDelta.F_PRIMARY_WORKING_COPY) != 0
+							|| ((flags & IJavaElementDelta.F_CONTENT) != 0 && (flags & IJavaElementDelta.F_FINE_GRAINED) == 0)) {
+						affected.add(elem);
+						return false;
+					}
+					return processChildrenDelta(delta, affected);
+				case IJavaElement.TYPE:
+					if (!isChanged || (flags & IJavaElementDelta.F_MODIFIERS) != 0) {
+						affected.add((IJavaElement) elem.getOpenable());
+						return false;
+					}
+					return processChildrenDelta(delta, affected);
+				default:
+					// fields, methods, imports ect
+					return false;
+			}
+		}
+
+		private boolean processChildrenDelta(IJavaElementDelta delta, Set<IJavaElement> affected) {
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++) {
+				if (processDelta(children[i], affected))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	private class BuildJob extends Job {
+		public BuildJob() {
+			super(CorextMessages.TypeNameIndex_build);
+		}
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				build(monitor);
+			} catch (OperationCanceledException e) {
+				return Status.CANCEL_STATUS;
+			} catch (JavaModelException e) {
+				JavaPlugin.log(e);
+			}
+			return Status.OK_STATUS;
+		}
+		@Override
+		public boolean belongsTo(Object family) {
+			return family == TypeNameIndex.this;
+		}
+	}
+
+	private static class Collector extends TypeNameMatchRequestor {
+		private final List<TypeNameMatch> fResult= new ArrayList<>();
+		private final Collection<IJavaElement> fContainers;
+
+		public Collector(Collection<IJavaElement> containers) {
+			fContainers= containers;
+		}
+
+		@Override
+		public void acceptTypeNameMatch(TypeNameMatch match) {
+			if (fContainers == null || isContainedIn(match.getType(), fContainers))
+				fResult.add(match);
+		}
+	}
+
+	/**
+	 * Immutable content of the index.
+	 */
+	private static final class Entries {
+		/** The matches, sorted by their keys */
+		final TypeNameMatch[] fMatches;
+		/** The normalized simple names of the matches */
+		final String[] fKeys;
+
+		Entries(TypeNameMatch[] matches, String[] keys) {
+			fMatches= matches;
+			fKeys= keys;
+		}
+	}
+
+	private static TypeNameIndex fgInstance;
+
+	/** The content of the index, or <code>null</code> if not built */
+	private volatile Entries fEntries;
+	/** Containers changed since the last update */
+	private final Set<IJavaElement> fPending;
+	/** Incremented whenever the index is discarded */
+	private volatile int fVersion;
+	/** Whether the index has been requested, changes are only recorded from then on */
+	private volatile boolean fRequested;
+
+	private final IElementChangedListener fDeltaListener;
+	private final BuildJob fBuildJob;
+
+	public static synchronized TypeNameIndex getInstance() {
+		if (fgInstance == null)
+			fgInstance= new TypeNameIndex();
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		if (fgInstance == null)
+			return;
+		fgInstance.doShutdown();
+		fgInstance= null;
+	}
+
+	private TypeNameIndex() {
+		fPending= new HashSet<>();
+		fDeltaListener= new TypeNameIndexDeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener);
+		fBuildJob= new BuildJob();
+		fBuildJob.setSystem(true);
+		fBuildJob.setPriority(Job.LONG);
+	}
+
+	/**
+	 * Returns the entries of the index that can match the given filter, i.e. the entries whose
+	 * simple name starts with the literal prefix of the filter's name pattern. The caller still
+	 * has to apply the filter to the returned entries.
+	 * <p>
+	 * If the index has not been built yet, the build is started in the background and
+	 * <code>null</code> is returned, so that the caller can fall back to the search engine
+	 * instead of waiting for the build.
+	 * </p>
+	 *
+	 * @param filter the filter
+	 * @return the candidates, or <code>null</code> if the index is not available
+	 * @throws JavaModelException if searching the changed containers fails
+	 */
+	public List<TypeNameMatch> getCandidates(TypeInfoFilter filter) throws JavaModelException {
+		fRequested= true;
+		if (fEntries == null) {
+			if (fBuildJob.getState() == Job.NONE)
+				fBuildJob.schedule();
+			return null;
+		}
+		update();
+
+		Entries entries= fEntries;
+		if (entries == null)
+			return null;
+		TypeNameMatch[] matches= entries.fMatches;
+		String[] keys= entries.fKeys;
+
+		String prefix= normalize(getLiteralPrefix(filter));
+		if (prefix.length() == 0)
+			return Collections.unmodifiableList(Arrays.asList(matches));
+		int start= lowerBound(keys, prefix);
+		int end= start;
+		while (end < keys.length && keys[end].startsWith(prefix))
+			end++;
+		return Collections.unmodifiableList(Arrays.asList(matches).subList(start, end));
+	}
+
+	/**
+	 * Returns the part of the name pattern that all matching simple names start with, ignoring
+	 * case.
+	 *
+	 * @param filter the filter
+	 * @return the literal prefix, may be empty
+	 */
+	private static String getLiteralPrefix(TypeInfoFilter filter) {
+		if (filter.getText().length() == 0)
+			return ""; //$NON-NLS-1$
+		String pattern= filter.getNamePattern();
+		switch (filter.getSearchFlags()) {
+			case SearchPattern.R_EXACT_MATCH:
+			case SearchPattern.R_PREFIX_MATCH:
+				return pattern;
+			case SearchPattern.R_PATTERN_MATCH:
+				for (int i= 0; i < pattern.length(); i++) {
+					char ch= pattern.charAt(i);
+					if (ch == '*' || ch == '?')
+						return pattern.substring(0, i);
+				}
+				return pattern;
+			default:
+				// camel case: only the first character is guaranteed to match
+				return pattern.length() > 0 ? pattern.substring(0, 1) : pattern;
+		}
+	}
+
+	private static int lowerBound(String[] keys, String prefix) {
+		int low= 0;
+		int high= keys.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (keys[mid].compareTo(prefix) < 0)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Maps the characters of the given name such that two names are equal after the mapping if
+	 * and only if they are equal ignoring case in the sense of
+	 * {@link String#regionMatches(boolean, int, String, int, int)}.
+	 *
+	 * @param name the name
+	 * @return the normalized name
+	 */
+	private static String normalize(String name) {
+		char[] chars= name.toCharArray();
+		for (int i= 0; i < chars.length; i++)
+			chars[i]= Character.toLowerCase(Character.toUpperCase(chars[i]));
+		return new String(chars);
+	}
+
+	/**
+	 * Builds the index in the calling thread, unless it has already been built. The containers
+	 * that change while the workspace is searched are searched again by the next request.
+	 *
+	 * @param monitor the progress monitor, can be <code>null</code>
+	 * @throws JavaModelException if the search fails
+	 */
+	public synchronized void build(IProgressMonitor monitor) throws JavaModelException {
+		fRequested= true;
+		if (fEntries != null)
+			return;
+		int version= fVersion;
+		Collector collector= new Collector(null);
+		new SearchEngine((WorkingCopyOwner) null).searchAllTypeNames(null, SearchPattern.R_EXACT_MATCH, null, SearchPattern.R_PREFIX_MATCH,
+				IJavaSearchConstants.TYPE, SearchEngine.createWorkspaceScope(), collector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+		if (version != fVersion) {
+			// discarded while searching
+			fBuildJob.schedule();
+			return;
+		}
+		publish(collector.fResult);
+	}
+
+	/**
+	 * Searches the containers that changed since the last update again.
+	 *
+	 * @throws JavaModelException if the search fails
+	 */
+	private synchronized void update() throws JavaModelException {
+		Entries entries= fEntries;
+		if (entries == null)
+			return;
+		Set<IJavaElement> containers;
+		synchronized (fPending) {
+			if (fPending.isEmpty())
+				return;
+			containers= new HashSet<>(fPending);
+			fPending.clear();
+		}
+		TypeNameMatch[] matches= entries.fMatches;
+
+		List<TypeNameMatch> result= new ArrayList<>(matches.length);
+		for (int i= 0; i < matches.length; i++) {
+			if (!isContainedIn(matches[i].getType(), containers))
+				result.add(matches[i]);
+		}
+
+		List<IJavaElement> existing= new ArrayList<>(containers.size());
+		for (Iterator<IJavaElement> iter= containers.iterator(); iter.hasNext();) {
+			IJavaElement container= iter.next();
+			if (container.exists())
+				existing.add(container);
+		}
+		if (!existing.isEmpty()) {
+			Collector collector= new Collector(existing);
+			IJavaSearchScope scope= SearchEngine.createJavaSearchScope(existing.toArray(new IJavaElement[existing.size()]));
+			new SearchEngine((WorkingCopyOwner) null).searchAllTypeNames(null, SearchPattern.R_EXACT_MATCH, null, SearchPattern.R_PREFIX_MATCH,
+					IJavaSearchConstants.TYPE, scope, collector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, null);
+			result.addAll(collector.fResult);
+		}
+		if (fEntries == entries)
+			publish(result);
+	}
+
+	private void publish(List<TypeNameMatch> result) {
+		int size= result.size();
+		final String[] names= new String[size];
+		Integer[] order= new Integer[size];
+		for (int i= 0; i < size; i++) {
+			names[i]= normalize(result.get(i).getSimpleTypeName());
+			order[i]= Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return names[i1.intValue()].compareTo(names[i2.intValue()]);
+			}
+		});
+		TypeNameMatch[] matches= new TypeNameMatch[size];
+		String[] keys= new String[size];
+		for (int i= 0; i < size; i++) {
+			int index= order[i].intValue();
+			matches[i]= result.get(index);
+			keys[i]= names[index];
+		}
+		fEntries= new Entries(matches, keys);
+	}
+
+	/**
+	 * Discards the index. It is built again on the next request.
+	 */
+	private void invalidate() {
+		fVersion++;
+		fEntries= null;
+		synchronized (fPending) {
+			fPending.clear();
+		}
+	}
+
+	private static boolean isContainedIn(IJavaElement element, Collection<IJavaElement> containers) {
+		while (element != null) {
+			if (containers.contains(element))
+				return true;
+			element= element.getParent();
+		}
+		return false;
+	}
+
+	private void doShutdown() {
+		JavaCore.removeElementChangedListener(fDeltaListener);
+		Job.getJobManager().cancel(this);
+		invalidate();
+	}
+}
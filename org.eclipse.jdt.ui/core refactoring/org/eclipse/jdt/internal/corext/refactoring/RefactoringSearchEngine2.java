@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,10 +16,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -33,7 +35,12 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
 
+import org.eclipse.jdt.core.BufferChangedEvent;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.IBufferChangedListener;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
@@ -59,10 +66,170 @@ import org.eclipse.jdt.internal.core.manipulation.util.BasicElementLabels;
  * - does not allow users to modify search matches
  * - generates boilerplate error messages and has no way to configure them
  *
+ * The results of {@link #searchPattern(IProgressMonitor)} are cached while a search session is
+ * active, see {@link #beginSession()}.
+ *
  * @since 3.1
  */
 public final class RefactoringSearchEngine2 {
 
+	/**
+	 * Cache of the raw search matches of a search session. Entries are keyed by the elements and
+	 * the limit of the search pattern, the elements of the scope and the working copies, and are
+	 * validated against the stamps of the resources with matches and the modification stamps of
+	 * the working copy buffers. Any Java element change clears the cache, as it may add matches to
+	 * other resources.
+	 */
+	private static final class SearchCache implements IElementChangedListener, IBufferChangedListener {
+
+		private static final int MAX_ENTRIES= 100;
+
+		private static final class CacheEntry {
+
+			/** The working copy owner of the search, or <code>null</code> */
+			private final WorkingCopyOwner fOwner;
+
+			/** The raw search matches */
+			private final List<SearchMatch> fMatches;
+
+			/** The stamps of the resources with matches */
+			private final Map<IResource, Long> fResourceStamps;
+
+			/** The modification stamps of the working copies used by the search */
+			private final Map<ICompilationUnit, Long> fWorkingCopyStamps;
+
+			private CacheEntry(WorkingCopyOwner owner, List<SearchMatch> matches, Map<IResource, Long> resourceStamps, Map<ICompilationUnit, Long> workingCopyStamps) {
+				fOwner= owner;
+				fMatches= matches;
+				fResourceStamps= resourceStamps;
+				fWorkingCopyStamps= workingCopyStamps;
+			}
+		}
+
+		private final LinkedHashMap<String, CacheEntry> fEntries= new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+
+		/**
+		 * The modification stamps of the working copy buffers used by searches. The stamps are
+		 * drawn from a sequence, so that a reopened buffer never repeats the stamp of its
+		 * predecessor.
+		 */
+		private final Map<IBuffer, Long> fBufferStamps= new HashMap<>();
+
+		private long fBufferSequence= 0;
+
+		@Override
+		public synchronized void elementChanged(ElementChangedEvent event) {
+			fEntries.clear();
+		}
+
+		@Override
+		public synchronized void bufferChanged(BufferChangedEvent event) {
+			final IBuffer buffer= event.getBuffer();
+			if (buffer.isClosed())
+				fBufferStamps.remove(buffer);
+			else if (fBufferStamps.containsKey(buffer))
+				fBufferStamps.put(buffer, Long.valueOf(++fBufferSequence));
+		}
+
+		/**
+		 * Returns the modification stamp of a working copy buffer. The buffer is tracked from its
+		 * first use until the cache is disposed.
+		 *
+		 * @param buffer the buffer
+		 * @return the modification stamp
+		 */
+		public synchronized long getModificationStamp(IBuffer buffer) {
+			Long stamp= fBufferStamps.get(buffer);
+			if (stamp == null) {
+				stamp= Long.valueOf(++fBufferSequence);
+				fBufferStamps.put(buffer, stamp);
+				buffer.addBufferChangedListener(this);
+			}
+			return stamp.longValue();
+		}
+
+		/**
+		 * Releases the entries and stops tracking the working copy buffers.
+		 */
+		public synchronized void dispose() {
+			for (final Iterator<IBuffer> iterator= fBufferStamps.keySet().iterator(); iterator.hasNext();)
+				iterator.next().removeBufferChangedListener(this);
+			fBufferStamps.clear();
+			fEntries.clear();
+		}
+
+		/**
+		 * Returns the cached matches of a search.
+		 *
+		 * @param key the key of the search
+		 * @param owner the working copy owner of the search, or <code>null</code>
+		 * @param workingCopyStamps the current modification stamps of the working copies used by the search
+		 * @return the raw search matches, or <code>null</code> if there is no valid entry
+		 */
+		public synchronized List<SearchMatch> get(String key, WorkingCopyOwner owner, Map<ICompilationUnit, Long> workingCopyStamps) {
+			CacheEntry entry= fEntries.get(key);
+			if (entry != null && entry.fOwner == owner && entry.fWorkingCopyStamps.equals(workingCopyStamps) && isValid(entry.fResourceStamps)) {
+				fgCacheHits.incrementAndGet();
+				return entry.fMatches;
+			}
+			fgCacheMisses.incrementAndGet();
+			return null;
+		}
+
+		/**
+		 * Stores the matches of a search.
+		 *
+		 * @param key the key of the search
+		 * @param owner the working copy owner of the search, or <code>null</code>
+		 * @param matches the raw search matches
+		 * @param workingCopyStamps the modification stamps of the working copies before the search
+		 */
+		public synchronized void put(String key, WorkingCopyOwner owner, List<SearchMatch> matches, Map<ICompilationUnit, Long> workingCopyStamps) {
+			final Map<IResource, Long> resourceStamps= new HashMap<>();
+			for (final Iterator<SearchMatch> iterator= matches.iterator(); iterator.hasNext();) {
+				final IResource resource= iterator.next().getResource();
+				if (resource != null && !resourceStamps.containsKey(resource))
+					resourceStamps.put(resource, Long.valueOf(resource.getModificationStamp()));
+			}
+			fEntries.put(key, new CacheEntry(owner, matches, resourceStamps, workingCopyStamps));
+		}
+
+		private static boolean isValid(Map<IResource, Long> resourceStamps) {
+			for (final Iterator<Map.Entry<IResource, Long>> iterator= resourceStamps.entrySet().iterator(); iterator.hasNext();) {
+				final Map.Entry<IResource, Long> entry= iterator.next();
+				if (entry.getKey().getModificationStamp() != entry.getValue().longValue())
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/** Search requestor which records the raw matches passed to another requestor */
+	private static final class RecordingSearchRequestor extends SearchRequestor {
+
+		private final SearchRequestor fDelegate;
+
+		private final List<SearchMatch> fMatches= new ArrayList<>();
+
+		private RecordingSearchRequestor(SearchRequestor delegate) {
+			fDelegate= delegate;
+		}
+
+		@Override
+		public final void acceptSearchMatch(final SearchMatch match) throws CoreException {
+			fMatches.add(match);
+			fDelegate.acceptSearchMatch(match);
+		}
+	}
+
 	/** Default implementation of a search requestor */
 	private static class DefaultSearchRequestor implements IRefactoringSearchRequestor {
 
@@ -225,12 +392,24 @@ public final class RefactoringSearchEngine2 {
 	/** The search pattern, or <code>null</code> */
 	private SearchPattern fPattern= null;
 
+	/**
+	 * The elements, limit and match rule the search pattern has been created from, or
+	 * <code>null</code> if the pattern has been set directly
+	 */
+	private String fPatternKey= null;
+
 	/** The search requestor */
 	private IRefactoringSearchRequestor fRequestor= new DefaultSearchRequestor();
 
 	/** The search scope */
 	private IJavaSearchScope fScope= SearchEngine.createWorkspaceScope();
 
+	/**
+	 * The kind and the elements the search scope has been created from, or <code>null</code> if
+	 * the scope has been set directly
+	 */
+	private String fScopeKey= "workspace"; //$NON-NLS-1$
+
 	/** The severity */
 	private int fSeverity= RefactoringStatus.WARNING;
 
@@ -240,6 +419,75 @@ public final class RefactoringSearchEngine2 {
 	/** The working copies */
 	private ICompilationUnit[] fWorkingCopies= {};
 
+	/** The search cache of the active search session, or <code>null</code> */
+	private static SearchCache fgCache= null;
+
+	/** The number of nested search sessions */
+	private static int fgSessions= 0;
+
+	/** The number of searches answered from the cache */
+	private static final AtomicInteger fgCacheHits= new AtomicInteger();
+
+	/** The number of searches not answered from the cache while a session was active */
+	private static final AtomicInteger fgCacheMisses= new AtomicInteger();
+
+	/**
+	 * Begins a search session, typically spanning the condition checking and the change
+	 * creation of a refactoring. While a session is active, searches for the same pattern, scope
+	 * and working copies reuse the matches of an earlier search, unless the resources with matches
+	 * or the working copies have changed since. Only searches whose pattern has been created from
+	 * elements and whose scope is the workspace or has been set by
+	 * {@link #setReferenceScope(IJavaElement)} are cached. Sessions can be nested, and each call must be
+	 * followed by a call to {@link #endSession()}.
+	 *
+	 * @since 3.14
+	 */
+	public static synchronized void beginSession() {
+		if (fgSessions++ == 0) {
+			fgCache= new SearchCache();
+			JavaCore.addElementChangedListener(fgCache, ElementChangedEvent.POST_CHANGE);
+		}
+	}
+
+	/**
+	 * Ends a search session begun by {@link #beginSession()}. The cache is released when the
+	 * outermost session ends.
+	 *
+	 * @since 3.14
+	 */
+	public static synchronized void endSession() {
+		Assert.isTrue(fgSessions > 0);
+		if (--fgSessions == 0) {
+			JavaCore.removeElementChangedListener(fgCache);
+			fgCache.dispose();
+			fgCache= null;
+		}
+	}
+
+	/**
+	 * Returns the number of searches answered from the cache of a search session.
+	 *
+	 * @return the number of cache hits since startup
+	 * @since 3.14
+	 */
+	public static int getCacheHits() {
+		return fgCacheHits.get();
+	}
+
+	/**
+	 * Returns the number of searches performed while a search session was active.
+	 *
+	 * @return the number of cache misses since startup
+	 * @since 3.14
+	 */
+	public static int getCacheMisses() {
+		return fgCacheMisses.get();
+	}
+
+	private static synchronized SearchCache getCache() {
+		return fgCache;
+	}
+
 	/**
 	 * Creates a new refactoring search engine.
 	 */
@@ -257,6 +505,18 @@ public final class RefactoringSearchEngine2 {
 		fPattern= pattern;
 	}
 
+	/**
+	 * Creates a new refactoring search engine.
+	 *
+	 * @param element the element to search for
+	 * @param limitTo determines the nature of the expected matches. This is a combination of {@link org.eclipse.jdt.core.search.IJavaSearchConstants}.
+	 * @param matchRule the match rule of the search pattern
+	 * @since 3.14
+	 */
+	public RefactoringSearchEngine2(final IJavaElement element, final int limitTo, final int matchRule) {
+		setPattern(element, limitTo, matchRule);
+	}
+
 	/**
 	 * Clears all results found so far, and sets resets the status to {@link RefactoringStatus#OK}.
 	 */
@@ -491,12 +751,22 @@ public final class RefactoringSearchEngine2 {
 			monitor.beginTask("", 1); //$NON-NLS-1$
 			monitor.setTaskName(RefactoringCoreMessages.RefactoringSearchEngine_searching_occurrences);
 			try {
-				SearchEngine engine= null;
-				if (fOwner != null)
-					engine= new SearchEngine(fOwner);
-				else
-					engine= new SearchEngine(fWorkingCopies);
-				engine.search(fPattern, SearchUtils.getDefaultSearchParticipants(), fScope, getCollector(), new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				final String key= getCacheKey();
+				final SearchCache cache= key != null ? getCache() : null;
+				final Map<ICompilationUnit, Long> stamps= cache != null ? getWorkingCopyStamps(cache) : null;
+				final List<SearchMatch> matches= cache != null ? cache.get(key, fOwner, stamps) : null;
+				if (cache == null) {
+					search(getCollector(), new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				} else if (matches != null) {
+					final RefactoringSearchCollector collector= getCollector();
+					for (final Iterator<SearchMatch> iterator= matches.iterator(); iterator.hasNext();)
+						collector.acceptSearchMatch(iterator.next());
+					monitor.worked(1);
+				} else {
+					final RecordingSearchRequestor requestor= new RecordingSearchRequestor(getCollector());
+					search(requestor, new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					cache.put(key, fOwner, requestor.fMatches, stamps);
+				}
 			} catch (CoreException exception) {
 				throw new JavaModelException(exception);
 			}
@@ -505,6 +775,58 @@ public final class RefactoringSearchEngine2 {
 		}
 	}
 
+	private void search(SearchRequestor requestor, IProgressMonitor monitor) throws CoreException {
+		SearchEngine engine= null;
+		if (fOwner != null)
+			engine= new SearchEngine(fOwner);
+		else
+			engine= new SearchEngine(fWorkingCopies);
+		engine.search(fPattern, SearchUtils.getDefaultSearchParticipants(), fScope, requestor, monitor);
+	}
+
+	/**
+	 * Returns the key of the current search in the search cache. Patterns and scopes are compared
+	 * by the elements they have been created from, the working copy owner by identity.
+	 *
+	 * @return the cache key, or <code>null</code> if the search cannot be cached
+	 */
+	private String getCacheKey() {
+		if (fPatternKey == null || fScopeKey == null)
+			return null;
+		final StringBuffer buffer= new StringBuffer();
+		buffer.append(fPatternKey).append('|').append(fScopeKey);
+		if (fOwner != null)
+			buffer.append('|').append(System.identityHashCode(fOwner));
+		for (int index= 0; index < fWorkingCopies.length; index++)
+			buffer.append('|').append(fWorkingCopies[index].getHandleIdentifier());
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns the modification stamps of the working copies the current search takes into account:
+	 * the primary working copies, and the working copies of the owner or the explicit ones.
+	 *
+	 * @param cache the search cache tracking the working copy buffers
+	 * @return the modification stamps of the working copies
+	 * @throws JavaModelException if a working copy cannot be accessed
+	 */
+	private Map<ICompilationUnit, Long> getWorkingCopyStamps(SearchCache cache) throws JavaModelException {
+		final Map<ICompilationUnit, Long> stamps= new HashMap<>();
+		addWorkingCopyStamps(cache, JavaCore.getWorkingCopies(null), stamps);
+		if (fOwner != null)
+			addWorkingCopyStamps(cache, JavaCore.getWorkingCopies(fOwner), stamps);
+		else
+			addWorkingCopyStamps(cache, fWorkingCopies, stamps);
+		return stamps;
+	}
+
+	private static void addWorkingCopyStamps(SearchCache cache, ICompilationUnit[] units, Map<ICompilationUnit, Long> stamps) throws JavaModelException {
+		for (int index= 0; index < units.length; index++) {
+			final IBuffer buffer= units[index].getBuffer();
+			stamps.put(units[index], Long.valueOf(buffer != null ? cache.getModificationStamp(buffer) : -1));
+		}
+	}
+
 	/**
 	 * Performs the search of referenced fields.
 	 *
@@ -653,6 +975,7 @@ public final class RefactoringSearchEngine2 {
 		Assert.isNotNull(first);
 		Assert.isNotNull(second);
 		fPattern= SearchPattern.createOrPattern(first, second);
+		fPatternKey= null;
 	}
 
 	/**
@@ -684,6 +1007,31 @@ public final class RefactoringSearchEngine2 {
 			pattern= SearchPattern.createOrPattern(pattern, SearchPattern.createPattern(element, limitTo, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE));
 		}
 		setPattern(pattern);
+		fPatternKey= getPatternKey(elements, limitTo, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
+	}
+
+	/**
+	 * Sets the search pattern to be used during search.
+	 * <p>
+	 * This method must be called before {@link RefactoringSearchEngine2#searchPattern(IProgressMonitor)}
+	 *
+	 * @param element the element to search for
+	 * @param limitTo determines the nature of the expected matches. This is a combination of {@link org.eclipse.jdt.core.search.IJavaSearchConstants}.
+	 * @param matchRule the match rule of the search pattern
+	 * @since 3.14
+	 */
+	public final void setPattern(final IJavaElement element, final int limitTo, final int matchRule) {
+		Assert.isNotNull(element);
+		setPattern(SearchPattern.createPattern(element, limitTo, matchRule));
+		fPatternKey= getPatternKey(new IJavaElement[] { element }, limitTo, matchRule);
+	}
+
+	private static String getPatternKey(final IJavaElement[] elements, final int limitTo, final int matchRule) {
+		final StringBuffer buffer= new StringBuffer();
+		buffer.append(limitTo).append('|').append(matchRule);
+		for (int index= 0; index < elements.length; index++)
+			buffer.append('|').append(elements[index].getHandleIdentifier());
+		return buffer.toString();
 	}
 
 	/**
@@ -696,6 +1044,7 @@ public final class RefactoringSearchEngine2 {
 	public final void setPattern(final SearchPattern pattern) {
 		Assert.isNotNull(pattern);
 		fPattern= pattern;
+		fPatternKey= null;
 	}
 
 	/**
@@ -720,6 +1069,23 @@ public final class RefactoringSearchEngine2 {
 	public final void setScope(final IJavaSearchScope scope) {
 		Assert.isNotNull(scope);
 		fScope= scope;
+		fScopeKey= null;
+	}
+
+	/**
+	 * Sets the search scope to all compilation units possibly referencing the given element, see
+	 * {@link RefactoringScopeFactory#create(IJavaElement)}.
+	 * <p>
+	 * This method must be called before start searching.
+	 *
+	 * @param element the referenced element
+	 * @throws JavaModelException if an error occurs
+	 * @since 3.14
+	 */
+	public final void setReferenceScope(final IJavaElement element) throws JavaModelException {
+		Assert.isNotNull(element);
+		fScope= RefactoringScopeFactory.create(element);
+		fScopeKey= "references|" + element.getHandleIdentifier(); //$NON-NLS-1$
 	}
 
 	/**
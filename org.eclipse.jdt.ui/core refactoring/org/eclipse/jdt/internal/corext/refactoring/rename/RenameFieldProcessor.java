@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -85,6 +85,7 @@ import org.eclipse.jdt.internal.corext.refactoring.tagging.IReferenceUpdating;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.ITextUpdating;
 import org.eclipse.jdt.internal.corext.refactoring.util.JavaElementUtil;
 import org.eclipse.jdt.internal.corext.refactoring.util.ResourceUtil;
+import org.eclipse.jdt.internal.corext.refactoring.util.SearchResultGroupProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
 import org.eclipse.jdt.internal.corext.util.JdtFlags;
@@ -782,19 +783,20 @@ public class RenameFieldProcessor extends JavaRenameProcessor implements IRefere
 
 	}
 
-	private void addReferenceUpdates(IProgressMonitor pm) {
-		pm.beginTask("", fReferences.length); //$NON-NLS-1$
-		String editName= RefactoringCoreMessages.RenameFieldRefactoring_Update_field_reference;
-		for (int i= 0; i < fReferences.length; i++){
-			ICompilationUnit cu= fReferences[i].getCompilationUnit();
-			if (cu == null)
-				continue;
-			SearchMatch[] results= fReferences[i].getSearchResults();
-			for (int j= 0; j < results.length; j++){
-				addTextEdit(fChangeManager.get(cu), editName, createTextChange(results[j]));
+	private void addReferenceUpdates(IProgressMonitor pm) throws CoreException {
+		final String editName= RefactoringCoreMessages.RenameFieldRefactoring_Update_field_reference;
+		new SearchResultGroupProcessor(fChangeManager) {
+			@Override
+			protected void processGroup(SearchResultGroup group) {
+				ICompilationUnit cu= group.getCompilationUnit();
+				if (cu == null)
+					return;
+				SearchMatch[] results= group.getSearchResults();
+				for (int j= 0; j < results.length; j++){
+					addTextEdit(fChangeManager.get(cu), editName, createTextChange(results[j]));
+				}
 			}
-			pm.worked(1);
-		}
+		}.process(fReferences, pm);
 	}
 
 	private TextEdit createTextChange(SearchMatch match) {
@@ -809,25 +811,30 @@ public class RenameFieldProcessor extends JavaRenameProcessor implements IRefere
 		addAccessorOccurrences(pm, getSetter(), RefactoringCoreMessages.RenameFieldRefactoring_Update_setter_occurrence, getNewSetterName(), status);
 	}
 
-	private void addAccessorOccurrences(IProgressMonitor pm, IMethod accessor, String editName, String newAccessorName, RefactoringStatus status) throws CoreException {
+	private void addAccessorOccurrences(IProgressMonitor pm, IMethod accessor, final String editName, final String newAccessorName, RefactoringStatus status) throws CoreException {
 		Assert.isTrue(accessor.exists());
 
+		pm.beginTask("", 2); //$NON-NLS-1$
 		IJavaSearchScope scope= RefactoringScopeFactory.create(accessor);
 		SearchPattern pattern= SearchPattern.createPattern(accessor, IJavaSearchConstants.ALL_OCCURRENCES, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
 		SearchResultGroup[] groupedResults= RefactoringSearchEngine.search(
-			pattern, scope, new MethodOccurenceCollector(accessor.getElementName()), pm, status);
-
-		for (int i= 0; i < groupedResults.length; i++) {
-			ICompilationUnit cu= groupedResults[i].getCompilationUnit();
-			if (cu == null)
-				continue;
-			SearchMatch[] results= groupedResults[i].getSearchResults();
-			for (int j= 0; j < results.length; j++){
-				SearchMatch searchResult= results[j];
-				TextEdit edit= new ReplaceEdit(searchResult.getOffset(), searchResult.getLength(), newAccessorName);
-				addTextEdit(fChangeManager.get(cu), editName, edit);
+			pattern, scope, new MethodOccurenceCollector(accessor.getElementName()), new SubProgressMonitor(pm, 1), status);
+
+		new SearchResultGroupProcessor(fChangeManager) {
+			@Override
+			protected void processGroup(SearchResultGroup group) {
+				ICompilationUnit cu= group.getCompilationUnit();
+				if (cu == null)
+					return;
+				SearchMatch[] results= group.getSearchResults();
+				for (int j= 0; j < results.length; j++){
+					SearchMatch searchResult= results[j];
+					TextEdit edit= new ReplaceEdit(searchResult.getOffset(), searchResult.getLength(), newAccessorName);
+					addTextEdit(fChangeManager.get(cu), editName, edit);
+				}
 			}
-		}
+		}.process(groupedResults, new SubProgressMonitor(pm, 1));
+		pm.done();
 	}
 
 	private void addTextMatches(IProgressMonitor pm) throws CoreException {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,7 +20,6 @@ import java.util.Set;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
 import org.eclipse.core.resources.IFile;
@@ -82,6 +81,7 @@ import org.eclipse.jdt.internal.corext.refactoring.structure.CompilationUnitRewr
 import org.eclipse.jdt.internal.corext.refactoring.tagging.IDelegateUpdating;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.IReferenceUpdating;
 import org.eclipse.jdt.internal.corext.refactoring.util.ResourceUtil;
+import org.eclipse.jdt.internal.corext.refactoring.util.SearchResultGroupProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 import org.eclipse.jdt.internal.corext.util.CollectionsUtil;
 import org.eclipse.jdt.internal.corext.util.JavaConventionsUtil;
@@ -779,73 +779,74 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 	 * @param status the status
 	 * @throws CoreException if change creation failed
 	 */
-	protected void addOccurrences(TextChangeManager manager, IProgressMonitor pm, RefactoringStatus status) throws CoreException/*thrown in subtype*/{
-		pm.beginTask("", fOccurrences.length);				 //$NON-NLS-1$
-		for (int i= 0; i < fOccurrences.length; i++){
-			ICompilationUnit cu= fOccurrences[i].getCompilationUnit();
-			if (cu == null)
-				continue;
+	protected void addOccurrences(final TextChangeManager manager, IProgressMonitor pm, RefactoringStatus status) throws CoreException/*thrown in subtype*/{
+		new SearchResultGroupProcessor(manager) {
+			@Override
+			protected void processGroup(SearchResultGroup group) throws CoreException {
+				addOccurrencesInCu(manager, group);
+			}
+		}.process(fOccurrences, pm);
+	}
 
-			SearchMatch[] results= fOccurrences[i].getSearchResults();
+	private void addOccurrencesInCu(TextChangeManager manager, SearchResultGroup group) throws CoreException {
+		ICompilationUnit cu= group.getCompilationUnit();
+		if (cu == null)
+			return;
 
-			// Split matches into declaration and non-declaration matches
+		SearchMatch[] results= group.getSearchResults();
 
-			List<SearchMatch> declarationsInThisCu= new ArrayList<>();
-			List<SearchMatch> referencesInThisCu= new ArrayList<>();
+		// Split matches into declaration and non-declaration matches
 
-			for (int j= 0; j < results.length; j++) {
-				if (results[j] instanceof MethodDeclarationMatch)
-					declarationsInThisCu.add(results[j]);
-				else
-					referencesInThisCu.add(results[j]);
-			}
+		List<SearchMatch> declarationsInThisCu= new ArrayList<>();
+		List<SearchMatch> referencesInThisCu= new ArrayList<>();
 
-			// First, handle the declarations
-			if (declarationsInThisCu.size() > 0) {
-
-				if (fDelegateUpdating) {
-					// Update with delegates
-					CompilationUnitRewrite rewrite= new CompilationUnitRewrite(cu);
-					rewrite.setResolveBindings(true);
-
-					for (Iterator<SearchMatch> iter= declarationsInThisCu.iterator(); iter.hasNext();) {
-						SearchMatch element= iter.next();
-						MethodDeclaration method= ASTNodeSearchUtil.getMethodDeclarationNode((IMethod) element.getElement(), rewrite.getRoot());
-						DelegateCreator creator= new DelegateMethodCreator();
-						creator.setDeclareDeprecated(fDelegateDeprecation);
-						creator.setDeclaration(method);
-						creator.setSourceRewrite(rewrite);
-						creator.setNewElementName(getNewElementName());
-						creator.prepareDelegate();
-						creator.createEdit();
-					}
-					// Need to handle all delegates first as this
-					// creates a completely new change object.
-					TextChange changeForThisCu= rewrite.createChange(true);
-					changeForThisCu.setKeepPreviewEdits(true);
-					manager.manage(cu, changeForThisCu);
-				}
+		for (int j= 0; j < results.length; j++) {
+			if (results[j] instanceof MethodDeclarationMatch)
+				declarationsInThisCu.add(results[j]);
+			else
+				referencesInThisCu.add(results[j]);
+		}
+
+		// First, handle the declarations
+		if (declarationsInThisCu.size() > 0) {
+
+			if (fDelegateUpdating) {
+				// Update with delegates, the only case which needs an AST
+				CompilationUnitRewrite rewrite= new CompilationUnitRewrite(cu);
+				rewrite.setResolveBindings(true);
 
-				// Update the normal methods
 				for (Iterator<SearchMatch> iter= declarationsInThisCu.iterator(); iter.hasNext();) {
 					SearchMatch element= iter.next();
-					simpleUpdate(element, cu, manager.get(cu));
+					MethodDeclaration method= ASTNodeSearchUtil.getMethodDeclarationNode((IMethod) element.getElement(), rewrite.getRoot());
+					DelegateCreator creator= new DelegateMethodCreator();
+					creator.setDeclareDeprecated(fDelegateDeprecation);
+					creator.setDeclaration(method);
+					creator.setSourceRewrite(rewrite);
+					creator.setNewElementName(getNewElementName());
+					creator.prepareDelegate();
+					creator.createEdit();
 				}
+				// Need to handle all delegates first as this
+				// creates a completely new change object.
+				TextChange changeForThisCu= rewrite.createChange(true);
+				changeForThisCu.setKeepPreviewEdits(true);
+				manager.manage(cu, changeForThisCu);
 			}
 
-			// Second, handle references
-			if (fUpdateReferences) {
-				for (Iterator<SearchMatch> iter= referencesInThisCu.iterator(); iter.hasNext();) {
-					SearchMatch element= iter.next();
-					simpleUpdate(element, cu, manager.get(cu));
-				}
+			// Update the normal methods
+			for (Iterator<SearchMatch> iter= declarationsInThisCu.iterator(); iter.hasNext();) {
+				SearchMatch element= iter.next();
+				simpleUpdate(element, cu, manager.get(cu));
 			}
+		}
 
-			pm.worked(1);
-			if (pm.isCanceled())
-				throw new OperationCanceledException();
+		// Second, handle references
+		if (fUpdateReferences) {
+			for (Iterator<SearchMatch> iter= referencesInThisCu.iterator(); iter.hasNext();) {
+				SearchMatch element= iter.next();
+				simpleUpdate(element, cu, manager.get(cu));
+			}
 		}
-		pm.done();
 	}
 
 	private void simpleUpdate(SearchMatch element, ICompilationUnit cu, TextChange textChange) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,7 @@ import org.eclipse.jdt.internal.corext.refactoring.base.JavaStatusContext;
 import org.eclipse.jdt.internal.corext.refactoring.delegates.DelegateMethodCreator;
 import org.eclipse.jdt.internal.corext.refactoring.structure.ASTNodeSearchUtil;
 import org.eclipse.jdt.internal.corext.refactoring.structure.CompilationUnitRewrite;
+import org.eclipse.jdt.internal.corext.refactoring.util.SearchResultGroupProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 import org.eclipse.jdt.internal.corext.util.Messages;
 
@@ -134,8 +135,10 @@ public class RenameNonVirtualMethodProcessor extends RenameMethodProcessor {
 		// declaration update must be registered first
 		addDeclarationUpdate(manager);
 		if (getUpdateReferences())
-			addReferenceUpdates(manager, pm);
-		pm.worked(1);
+			addReferenceUpdates(manager, new SubProgressMonitor(pm, 1));
+		else
+			pm.worked(1);
+		pm.done();
 	}
 
 	private ICompilationUnit getDeclaringCU() {
@@ -170,23 +173,23 @@ public class RenameNonVirtualMethodProcessor extends RenameMethodProcessor {
 		addTextEdit(manager.get(getDeclaringCU()), editName, replaceEdit);
 	}
 
-	private void addReferenceUpdates(TextChangeManager manager, IProgressMonitor pm) {
-		SearchResultGroup[] grouped= getOccurrences();
-		for (int i= 0; i < grouped.length; i++) {
-			SearchResultGroup group= grouped[i];
-			SearchMatch[] results= group.getSearchResults();
-			ICompilationUnit cu= group.getCompilationUnit();
-			TextChange change= manager.get(cu);
-			for (int j= 0; j < results.length; j++){
-				SearchMatch match= results[j];
-				if (!(match instanceof MethodDeclarationMatch)) {
-					ReplaceEdit replaceEdit= createReplaceEdit(match, cu);
-					String editName= RefactoringCoreMessages.RenamePrivateMethodRefactoring_update;
-					addTextEdit(change, editName, replaceEdit);
+	private void addReferenceUpdates(final TextChangeManager manager, IProgressMonitor pm) throws CoreException {
+		new SearchResultGroupProcessor(manager) {
+			@Override
+			protected void processGroup(SearchResultGroup group) {
+				SearchMatch[] results= group.getSearchResults();
+				ICompilationUnit cu= group.getCompilationUnit();
+				TextChange change= manager.get(cu);
+				for (int j= 0; j < results.length; j++){
+					SearchMatch match= results[j];
+					if (!(match instanceof MethodDeclarationMatch)) {
+						ReplaceEdit replaceEdit= createReplaceEdit(match, cu);
+						String editName= RefactoringCoreMessages.RenamePrivateMethodRefactoring_update;
+						addTextEdit(change, editName, replaceEdit);
+					}
 				}
 			}
-		}
-		pm.done();
+		}.process(getOccurrences(), pm);
 	}
 
 	@Override
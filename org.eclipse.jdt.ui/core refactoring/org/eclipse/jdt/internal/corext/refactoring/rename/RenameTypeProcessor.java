@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -111,6 +111,7 @@ import org.eclipse.jdt.internal.corext.refactoring.util.QualifiedNameFinder;
 import org.eclipse.jdt.internal.corext.refactoring.util.QualifiedNameSearchResult;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 import org.eclipse.jdt.internal.corext.refactoring.util.ResourceUtil;
+import org.eclipse.jdt.internal.corext.refactoring.util.SearchResultGroupProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
 import org.eclipse.jdt.internal.corext.util.JdtFlags;
@@ -1199,23 +1200,25 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 		}
 	}
 
-	private void addReferenceUpdates(TextChangeManager manager, IProgressMonitor pm) {
-		pm.beginTask("", fReferences.length); //$NON-NLS-1$
-		for (int i= 0; i < fReferences.length; i++){
-			ICompilationUnit cu= fReferences[i].getCompilationUnit();
-			if (cu == null)
-				continue;
+	private void addReferenceUpdates(final TextChangeManager manager, IProgressMonitor pm) throws CoreException {
+		final String name= RefactoringCoreMessages.RenameTypeRefactoring_update_reference;
+		final String newName= getNewElementName();
+		new SearchResultGroupProcessor(manager) {
+			@Override
+			protected void processGroup(SearchResultGroup group) {
+				ICompilationUnit cu= group.getCompilationUnit();
+				if (cu == null)
+					return;
 
-			String name= RefactoringCoreMessages.RenameTypeRefactoring_update_reference;
-			SearchMatch[] results= fReferences[i].getSearchResults();
+				SearchMatch[] results= group.getSearchResults();
 
-			for (int j= 0; j < results.length; j++){
-				SearchMatch match= results[j];
-				ReplaceEdit replaceEdit= new ReplaceEdit(match.getOffset(), match.getLength(), getNewElementName());
-				TextChangeCompatibility.addTextEdit(manager.get(cu), name, replaceEdit, CATEGORY_TYPE_RENAME);
+				for (int j= 0; j < results.length; j++){
+					SearchMatch match= results[j];
+					ReplaceEdit replaceEdit= new ReplaceEdit(match.getOffset(), match.getLength(), newName);
+					TextChangeCompatibility.addTextEdit(manager.get(cu), name, replaceEdit, CATEGORY_TYPE_RENAME);
+				}
 			}
-			pm.worked(1);
-		}
+		}.process(fReferences, pm);
 	}
 
 	private void computeQualifiedNameMatches(IProgressMonitor pm) {
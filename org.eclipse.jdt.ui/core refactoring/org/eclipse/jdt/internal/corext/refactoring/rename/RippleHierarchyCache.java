@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.rename;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.ITypeHierarchyChangedListener;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+
+/**
+ * A thread-safe cache for the type hierarchies built by {@link RippleMethodFinder2}, shared by
+ * the ripple computations of all refactorings. Renaming a type or a method of a widely
+ * implemented interface computes the ripple methods of many methods in the same hierarchy.
+ * <p>
+ * A hierarchy is removed from the cache as soon as it changes. Only hierarchies of the primary
+ * working copies are cached.
+ * </p>
+ *
+ * @since 3.14
+ */
+public class RippleHierarchyCache {
+
+	private static class HierarchyCacheEntry implements ITypeHierarchyChangedListener {
+
+		private ITypeHierarchy fTypeHierarchy;
+
+		public HierarchyCacheEntry(ITypeHierarchy hierarchy) {
+			fTypeHierarchy= hierarchy;
+			fTypeHierarchy.addTypeHierarchyChangedListener(this);
+		}
+
+		@Override
+		public void typeHierarchyChanged(ITypeHierarchy typeHierarchy) {
+			removeHierarchyEntryFromCache(this);
+		}
+
+		public ITypeHierarchy getTypeHierarchy() {
+			return fTypeHierarchy;
+		}
+
+		public void dispose() {
+			if (fTypeHierarchy != null) {
+				fTypeHierarchy.removeTypeHierarchyChangedListener(this);
+				fTypeHierarchy= null;
+			}
+		}
+	}
+
+	private static final int CACHE_SIZE= 8;
+
+	/** The cache entries by focus type, in access order */
+	private static final LinkedHashMap<IType, HierarchyCacheEntry> fgHierarchyCache= new LinkedHashMap<>(16, 0.75f, true);
+
+	private static int fgCacheHits= 0;
+	private static int fgCacheMisses= 0;
+
+	private RippleHierarchyCache() {
+	}
+
+	/**
+	 * Returns a type hierarchy that contains the given type and all its subtypes. The returned
+	 * hierarchy may be based on a supertype of the requested type.
+	 *
+	 * @param type the focus type
+	 * @param owner the working copy owner, or <code>null</code> for the primary working copies
+	 * @param monitor the progress monitor
+	 * @return a type hierarchy that contains all subtypes of <code>type</code>
+	 * @throws JavaModelException if the hierarchy cannot be built
+	 */
+	public static ITypeHierarchy getTypeHierarchy(IType type, WorkingCopyOwner owner, IProgressMonitor monitor) throws JavaModelException {
+		if (owner != null)
+			return type.newTypeHierarchy(owner, monitor);
+
+		ITypeHierarchy hierarchy= findTypeHierarchyInCache(type);
+		if (hierarchy != null)
+			return hierarchy;
+		hierarchy= type.newTypeHierarchy(monitor);
+		synchronized (fgHierarchyCache) {
+			HierarchyCacheEntry previous= fgHierarchyCache.put(type, new HierarchyCacheEntry(hierarchy));
+			if (previous != null)
+				previous.dispose();
+			if (fgHierarchyCache.size() > CACHE_SIZE) {
+				Iterator<HierarchyCacheEntry> iter= fgHierarchyCache.values().iterator();
+				iter.next().dispose();
+				iter.remove();
+			}
+		}
+		return hierarchy;
+	}
+
+	private static ITypeHierarchy findTypeHierarchyInCache(IType type) throws JavaModelException {
+		List<ITypeHierarchy> candidates;
+		synchronized (fgHierarchyCache) {
+			HierarchyCacheEntry entry= fgHierarchyCache.get(type);
+			if (entry != null) {
+				fgCacheHits++;
+				return entry.getTypeHierarchy();
+			}
+			candidates= new ArrayList<>(fgHierarchyCache.size());
+			for (Iterator<HierarchyCacheEntry> iter= fgHierarchyCache.values().iterator(); iter.hasNext();)
+				candidates.add(iter.next().getTypeHierarchy());
+		}
+		// the hierarchy of a supertype contains all subtypes of the type as well
+		for (int i= candidates.size() - 1; i >= 0; i--) {
+			ITypeHierarchy hierarchy= candidates.get(i);
+			if (hierarchy.contains(type) && isSupertype(hierarchy, hierarchy.getType(), type)) {
+				synchronized (fgHierarchyCache) {
+					fgCacheHits++;
+				}
+				return hierarchy;
+			}
+		}
+		synchronized (fgHierarchyCache) {
+			fgCacheMisses++;
+		}
+		return null;
+	}
+
+	private static boolean isSupertype(ITypeHierarchy hierarchy, IType supertype, IType type) {
+		IType[] supertypes= hierarchy.getAllSupertypes(type);
+		for (int i= 0; i < supertypes.length; i++) {
+			if (supertypes[i].equals(supertype))
+				return true;
+		}
+		return false;
+	}
+
+	private static void removeHierarchyEntryFromCache(HierarchyCacheEntry entry) {
+		synchronized (fgHierarchyCache) {
+			for (Iterator<HierarchyCacheEntry> iter= fgHierarchyCache.values().iterator(); iter.hasNext();) {
+				if (iter.next() == entry) {
+					iter.remove();
+					break;
+				}
+			}
+			entry.dispose();
+		}
+	}
+
+	/**
+	 * Removes all hierarchies from the cache.
+	 */
+	public static void clear() {
+		synchronized (fgHierarchyCache) {
+			for (Iterator<HierarchyCacheEntry> iter= fgHierarchyCache.values().iterator(); iter.hasNext();)
+				iter.next().dispose();
+			fgHierarchyCache.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of times a hierarchy could be taken from the cache. Used for testing.
+	 *
+	 * @return the number of cache hits
+	 */
+	public static int getCacheHits() {
+		synchronized (fgHierarchyCache) {
+			return fgCacheHits;
+		}
+	}
+
+	/**
+	 * Gets the number of times a hierarchy was built. Used for testing.
+	 *
+	 * @return the number of cache misses
+	 */
+	public static int getCacheMisses() {
+		synchronized (fgHierarchyCache) {
+			return fgCacheMisses;
+		}
+	}
+}
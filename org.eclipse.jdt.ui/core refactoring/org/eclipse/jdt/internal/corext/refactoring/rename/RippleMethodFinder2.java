@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -57,6 +57,7 @@ public class RippleMethodFinder2 {
 	private MultiMap<IType, IType> fRootReps;
 	private Map<IType, ITypeHierarchy> fRootHierarchies;
 	private UnionFind fUnionFind;
+	private Set<IType> fUnitedTypes;
 
 	private final boolean fExcludeBinaries;
 	private final ReferencesInBinaryContext fBinaryRefs;
@@ -199,6 +200,7 @@ public class RippleMethodFinder2 {
 
 		fHierarchy= null;
 		fRootTypes= null;
+		fUnitedTypes= null;
 
 		Map<IType, List<IType>> partitioning= new HashMap<>();
 		for (Iterator<IType> iter= fTypeToMethod.keySet().iterator(); iter.hasNext();) {
@@ -258,7 +260,7 @@ public class RippleMethodFinder2 {
 				IType relatedType= iter.next();
 				ITypeHierarchy hierarchy= getCachedHierarchy(relatedType, owner, new SubProgressMonitor(pm, 1));
 				if (hierarchy == null)
-					hierarchy= relatedType.newTypeHierarchy(owner, new SubProgressMonitor(pm, 1));
+					hierarchy= RippleHierarchyCache.getTypeHierarchy(relatedType, owner, new SubProgressMonitor(pm, 1));
 				IType[] allSubTypes= hierarchy.getAllSubtypes(relatedType);
 				for (int i= 0; i < allSubTypes.length; i++)
 					relatedSubTypes.add(allSubTypes[i]);
@@ -273,7 +275,7 @@ public class RippleMethodFinder2 {
 				IMethod alienMethod= fTypeToMethod.get(alienType);
 				ITypeHierarchy hierarchy= getCachedHierarchy(alienType, owner, new SubProgressMonitor(pm, 1));
 				if (hierarchy == null)
-					hierarchy= alienType.newTypeHierarchy(owner, new SubProgressMonitor(pm, 1));
+					hierarchy= RippleHierarchyCache.getTypeHierarchy(alienType, owner, new SubProgressMonitor(pm, 1));
 				IType[] allSubtypes= hierarchy.getAllSubtypes(alienType);
 				for (int i= 0; i < allSubtypes.length; i++) {
 					IType subtype= allSubtypes[i];
@@ -318,7 +320,7 @@ public class RippleMethodFinder2 {
 				IType root= iter.next();
 				ITypeHierarchy hierarchy= fRootHierarchies.get(root);
 				if (hierarchy == null) {
-					hierarchy= root.newTypeHierarchy(owner, new SubProgressMonitor(monitor, 1));
+					hierarchy= RippleHierarchyCache.getTypeHierarchy(root, owner, new SubProgressMonitor(monitor, 1));
 					fRootHierarchies.put(root, hierarchy);
 				}
 				if (hierarchy.contains(type))
@@ -375,6 +377,7 @@ public class RippleMethodFinder2 {
 
 	private void createUnionFind() throws JavaModelException {
 		fRootTypes= new HashSet<>(fTypeToMethod.keySet());
+		fUnitedTypes= new HashSet<>();
 		fUnionFind= new UnionFind();
 		for (Iterator<IType> iter= fTypeToMethod.keySet().iterator(); iter.hasNext();) {
 			IType type= iter.next();
@@ -395,6 +398,9 @@ public class RippleMethodFinder2 {
 	}
 
 	private void uniteWithSupertypes(IType anchor, IType type) throws JavaModelException {
+		// the supertypes of a declaring type are united once, not again for each of its subtypes
+		if (anchor == type && !fUnitedTypes.add(type))
+			return;
 		IType[] supertypes= fHierarchy.getSupertypes(type);
 		for (int i= 0; i < supertypes.length; i++) {
 			IType supertype= supertypes[i];
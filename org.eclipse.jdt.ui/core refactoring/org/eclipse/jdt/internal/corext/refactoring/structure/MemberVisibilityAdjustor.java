@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -550,10 +550,10 @@ public final class MemberVisibilityAdjustor {
 	 * @throws JavaModelException if an error occurs during search
 	 */
 	private SearchResultGroup[] findReferences(final IMember member, final IProgressMonitor monitor) throws JavaModelException {
-		final RefactoringSearchEngine2 engine= new RefactoringSearchEngine2(SearchPattern.createPattern(member, IJavaSearchConstants.REFERENCES, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE));
+		final RefactoringSearchEngine2 engine= new RefactoringSearchEngine2(member, IJavaSearchConstants.REFERENCES, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
 		engine.setOwner(fOwner);
 		engine.setFiltering(true, true);
-		engine.setScope(RefactoringScopeFactory.create(member));
+		engine.setReferenceScope(member);
 		engine.searchPattern(new SubProgressMonitor(monitor, 1));
 		return (SearchResultGroup[]) engine.getResults();
 	}
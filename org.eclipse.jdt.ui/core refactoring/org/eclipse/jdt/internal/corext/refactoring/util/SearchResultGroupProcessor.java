@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.jdt.internal.corext.refactoring.SearchResultGroup;
+import org.eclipse.jdt.internal.corext.util.SynchronizedProgressMonitor;
+
+import org.eclipse.jdt.internal.ui.IJavaStatusConstants;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Processes the search result groups of a refactoring, typically to add the text edits of the
+ * matches to the changes of a {@link TextChangeManager}. Large numbers of groups can be processed
+ * concurrently, which is disabled by default.
+ * <p>
+ * Each group is processed by one thread. The groups must have different compilation units, as
+ * the groups returned by <code>RefactoringSearchEngine</code>, so that
+ * {@link #processGroup(SearchResultGroup)} can modify the text change of its compilation unit
+ * without further synchronization. Anything else shared by the groups must be thread-safe.
+ * </p>
+ *
+ * @since 3.14
+ */
+public abstract class SearchResultGroupProcessor {
+
+	/**
+	 * Preference key for the number of threads processing the groups, <code>1</code> (the
+	 * default) processes them sequentially.
+	 */
+	private static final String PARALLELISM= "SearchResultGroupProcessor.parallelism"; //$NON-NLS-1$
+
+	/** Number of groups below which the groups are processed sequentially */
+	private static final int MIN_CONCURRENT_GROUPS= 200;
+
+	/** The threads shared by all processors, created on demand */
+	private static ExecutorService fgExecutor;
+
+	private final TextChangeManager fManager;
+
+	/**
+	 * Creates a processor for groups whose matches are added to the changes of the given manager.
+	 *
+	 * @param manager the text change manager, whose changes are released by each thread once it
+	 *            has processed its groups
+	 */
+	public SearchResultGroupProcessor(TextChangeManager manager) {
+		fManager= manager;
+	}
+
+	/**
+	 * Processes the matches of one compilation unit.
+	 *
+	 * @param group the search result group
+	 * @throws CoreException if processing failed
+	 */
+	protected abstract void processGroup(SearchResultGroup group) throws CoreException;
+
+	/**
+	 * Processes all groups and returns once all are done.
+	 *
+	 * @param groups the groups, with different compilation units
+	 * @param pm the progress monitor
+	 * @throws CoreException if processing a group failed
+	 */
+	public final void process(SearchResultGroup[] groups, IProgressMonitor pm) throws CoreException {
+		pm.beginTask("", groups.length); //$NON-NLS-1$
+		try {
+			int parallelism= getParallelism();
+			if (parallelism <= 1 || groups.length < MIN_CONCURRENT_GROUPS) {
+				for (int i= 0; i < groups.length; i++) {
+					processGroup(groups[i]);
+					pm.worked(1);
+					if (pm.isCanceled())
+						throw new OperationCanceledException();
+				}
+			} else {
+				processConcurrently(groups, parallelism, pm);
+			}
+		} finally {
+			pm.done();
+		}
+	}
+
+	private void processConcurrently(final SearchResultGroup[] groups, int parallelism, IProgressMonitor pm) throws CoreException {
+		final IProgressMonitor sharedMonitor= new SynchronizedProgressMonitor(pm);
+		final AtomicInteger next= new AtomicInteger();
+		ExecutorService executor= getExecutor();
+		List<Future<Object>> futures= new ArrayList<>(parallelism);
+		try {
+			for (int i= 0; i < parallelism; i++) {
+				futures.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws CoreException {
+						try {
+							for (int index= next.getAndIncrement(); index < groups.length; index= next.getAndIncrement()) {
+								processGroup(groups[index]);
+								sharedMonitor.worked(1);
+								if (sharedMonitor.isCanceled())
+									throw new OperationCanceledException();
+							}
+							return null;
+						} finally {
+							fManager.releaseThread();
+						}
+					}
+				}));
+			}
+			for (Iterator<Future<Object>> iter= futures.iterator(); iter.hasNext();) {
+				getResult(iter.next());
+			}
+		} finally {
+			// stop the other workers if one failed, and wait until none modifies a change anymore
+			next.set(groups.length);
+			for (Iterator<Future<Object>> iter= futures.iterator(); iter.hasNext();) {
+				awaitDone(iter.next());
+			}
+		}
+	}
+
+	private static void awaitDone(Future<Object> future) {
+		boolean interrupted= false;
+		while (!future.isDone()) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				interrupted= true;
+			} catch (ExecutionException e) {
+				// reported by the worker that failed first
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			int threads= Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor executor= new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Search Result Group Processor"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			fgExecutor= executor;
+		}
+		return fgExecutor;
+	}
+
+	private static void getResult(Future<Object> future) throws CoreException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IJavaStatusConstants.INTERNAL_ERROR, cause.getMessage(), cause));
+		}
+	}
+
+	private static int getParallelism() {
+		JavaPlugin plugin= JavaPlugin.getDefault();
+		if (plugin == null || !plugin.getPreferenceStore().contains(PARALLELISM))
+			return 1;
+		return Math.max(1, plugin.getPreferenceStore().getInt(PARALLELISM));
+	}
+}
@@ -0,0 +1,545 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.RangeMarker;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.TextEditGroup;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+
+import org.eclipse.ltk.core.refactoring.CategorizedTextEditGroup;
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.GroupCategory;
+import org.eclipse.ltk.core.refactoring.GroupCategorySet;
+import org.eclipse.ltk.core.refactoring.TextChange;
+import org.eclipse.ltk.core.refactoring.TextEditBasedChangeGroup;
+import org.eclipse.ltk.core.refactoring.TextEditChangeGroup;
+
+import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
+
+import org.eclipse.jdt.internal.ui.IJavaStatusConstants;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * A compilation unit change whose edit tree and text edit groups have been written to a
+ * temporary file by a bounded {@link TextChangeManager}.
+ * <p>
+ * Performing the change and computing the preview of all its edits read the edits into a
+ * temporary change, so that they are not kept in memory. All other accesses to the edits or
+ * groups, such as adding edits or the preview of single groups, restore them into this change
+ * first. Since {@link #getChangeGroups()} cannot be overridden, clients listing the groups of a
+ * change must call {@link #restore()} before.
+ * </p>
+ * <p>
+ * The copies of the edits made for a preview are not spilled. If the preview edits are requested
+ * before a preview has been computed on this change, the preview of all edits is computed again,
+ * which creates the same copies as the preview computed before the change was spilled.
+ * </p>
+ *
+ * @since 3.14
+ */
+public class SpilledCompilationUnitChange extends CompilationUnitChange {
+
+	/**
+	 * The temporary file holding the spilled changes of a text change manager. The file is only
+	 * open while it is read or written, and it is deleted once no spilled change refers to it
+	 * anymore. The sections of restored or disposed changes are reclaimed by compacting the file
+	 * when they make up most of it.
+	 * <p>
+	 * The group category sets of the spilled changes are kept in memory, since there are only a
+	 * few of them and their categories cannot be recreated from outside.
+	 * </p>
+	 */
+	static final class Store {
+
+		/**
+		 * The section of the file holding one spilled change.
+		 */
+		static final class Entry {
+			private long fOffset;
+			private final int fLength;
+
+			private Entry(long offset, int length) {
+				fOffset= offset;
+				fLength= length;
+			}
+		}
+
+		/** Number of unused bytes the file must exceed before it is compacted */
+		private static final long COMPACT_THRESHOLD= 1 << 20;
+
+		private File fLocation;
+		private long fSize;
+		private long fLiveSize;
+		private final Set<Entry> fEntries= new LinkedHashSet<>();
+		private final List<GroupCategorySet> fCategorySets= new ArrayList<>();
+		private final Map<List<GroupCategory>, Integer> fCategorySetIndices= new HashMap<>();
+
+		synchronized Entry write(byte[] bytes) throws IOException {
+			if (fLocation == null) {
+				fLocation= createFile();
+				fSize= 0;
+			}
+			try (RandomAccessFile file= new RandomAccessFile(fLocation, "rw")) { //$NON-NLS-1$
+				file.seek(fSize);
+				file.write(bytes);
+			}
+			Entry entry= new Entry(fSize, bytes.length);
+			fSize+= bytes.length;
+			fLiveSize+= bytes.length;
+			fEntries.add(entry);
+			return entry;
+		}
+
+		synchronized byte[] read(Entry entry) throws IOException {
+			if (!fEntries.contains(entry))
+				throw new IOException("Spilled text change has been released"); //$NON-NLS-1$
+			try (RandomAccessFile file= new RandomAccessFile(fLocation, "r")) { //$NON-NLS-1$
+				return read(file, entry);
+			}
+		}
+
+		private static byte[] read(RandomAccessFile file, Entry entry) throws IOException {
+			byte[] bytes= new byte[entry.fLength];
+			file.seek(entry.fOffset);
+			file.readFully(bytes);
+			return bytes;
+		}
+
+		synchronized void release(Entry entry) {
+			if (!fEntries.remove(entry))
+				return;
+			fLiveSize-= entry.fLength;
+			if (fEntries.isEmpty()) {
+				fLocation.delete();
+				fLocation= null;
+				fSize= 0;
+				fLiveSize= 0;
+			} else if (fSize - fLiveSize > COMPACT_THRESHOLD && fSize - fLiveSize > fLiveSize) {
+				compact();
+			}
+		}
+
+		/**
+		 * Copies the sections of the spilled changes to a new file.
+		 */
+		private void compact() {
+			File location= null;
+			try {
+				location= createFile();
+				long[] offsets= new long[fEntries.size()];
+				try (RandomAccessFile source= new RandomAccessFile(fLocation, "r"); RandomAccessFile target= new RandomAccessFile(location, "rw")) { //$NON-NLS-1$ //$NON-NLS-2$
+					int i= 0;
+					for (Iterator<Entry> iter= fEntries.iterator(); iter.hasNext(); i++) {
+						offsets[i]= target.getFilePointer();
+						target.write(read(source, iter.next()));
+					}
+				}
+				int i= 0;
+				for (Iterator<Entry> iter= fEntries.iterator(); iter.hasNext(); i++)
+					iter.next().fOffset= offsets[i];
+				fLocation.delete();
+				fLocation= location;
+				fSize= fLiveSize;
+			} catch (IOException e) {
+				// keep the current file
+				JavaPlugin.log(e);
+				if (location != null)
+					location.delete();
+			}
+		}
+
+		private static File createFile() throws IOException {
+			File location= File.createTempFile("textChanges", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+			location.deleteOnExit();
+			return location;
+		}
+
+		synchronized int getIndex(GroupCategorySet categories) {
+			List<GroupCategory> key= categories.asList();
+			Integer index= fCategorySetIndices.get(key);
+			if (index == null) {
+				index= Integer.valueOf(fCategorySets.size());
+				fCategorySets.add(categories);
+				fCategorySetIndices.put(key, index);
+			}
+			return index.intValue();
+		}
+
+		synchronized GroupCategorySet getCategorySet(int index) {
+			return fCategorySets.get(index);
+		}
+	}
+
+	private static final byte ROOT= 0;
+	private static final byte REPLACE= 1;
+	private static final byte INSERT= 2;
+	private static final byte DELETE= 3;
+	private static final byte RANGE_MARKER= 4;
+
+	private Store fStore;
+	private final Store.Entry fEntry;
+	private boolean fRestored;
+	private boolean fHasPreviewEdits;
+
+	private SpilledCompilationUnitChange(CompilationUnitChange change, Store store, Store.Entry entry) {
+		super(change.getName(), change.getCompilationUnit());
+		setSaveMode(change.getSaveMode());
+		setKeepPreviewEdits(change.getKeepPreviewEdits());
+		setEnabled(change.isEnabled());
+		fStore= store;
+		fEntry= entry;
+	}
+
+	/**
+	 * Writes the edits and groups of the given change to the store.
+	 *
+	 * @param change the change to spill
+	 * @param store the store
+	 * @return the spilled change, or <code>null</code> if the change contains edits or groups that
+	 *         cannot be spilled
+	 * @throws IOException if the change could not be written
+	 */
+	static SpilledCompilationUnitChange spill(TextChange change, Store store) throws IOException {
+		boolean restored= change instanceof SpilledCompilationUnitChange && ((SpilledCompilationUnitChange) change).isRestored();
+		if (change.getClass() != CompilationUnitChange.class && !restored || ((CompilationUnitChange) change).getDescriptor() != null)
+			return null;
+		Map<TextEdit, Integer> indices= new IdentityHashMap<>();
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		try (DataOutputStream output= new DataOutputStream(bytes)) {
+			TextEdit root= change.getEdit();
+			output.writeBoolean(root != null);
+			if (root != null) {
+				if (root.getClass() != MultiTextEdit.class || !writeEdit(root, true, output, indices))
+					return null;
+			}
+			TextEditBasedChangeGroup[] groups= change.getChangeGroups();
+			output.writeInt(groups.length);
+			for (int i= 0; i < groups.length; i++) {
+				TextEditBasedChangeGroup group= groups[i];
+				if (group.getClass() != TextEditChangeGroup.class || !group.isEnabled())
+					return null;
+				TextEditGroup editGroup= group.getTextEditGroup();
+				if (editGroup.getClass() == CategorizedTextEditGroup.class) {
+					output.writeInt(store.getIndex(((CategorizedTextEditGroup) editGroup).getGroupCategorySet()));
+				} else if (editGroup.getClass() == TextEditGroup.class) {
+					output.writeInt(-1);
+				} else {
+					return null;
+				}
+				TextEdit[] edits= editGroup.getTextEdits();
+				output.writeUTF(group.getName());
+				output.writeInt(edits.length);
+				for (int j= 0; j < edits.length; j++) {
+					Integer index= indices.get(edits[j]);
+					if (index == null)
+						return null;
+					output.writeInt(index.intValue());
+				}
+			}
+		}
+		byte[] data= bytes.toByteArray();
+		return new SpilledCompilationUnitChange((CompilationUnitChange) change, store, store.write(data));
+	}
+
+	private static boolean writeEdit(TextEdit edit, boolean root, DataOutputStream output, Map<TextEdit, Integer> indices) throws IOException {
+		indices.put(edit, Integer.valueOf(indices.size()));
+		Class<? extends TextEdit> kind= edit.getClass();
+		if (root) {
+			output.writeByte(ROOT);
+		} else if (kind == ReplaceEdit.class) {
+			output.writeByte(REPLACE);
+			writeString(((ReplaceEdit) edit).getText(), output);
+		} else if (kind == InsertEdit.class) {
+			output.writeByte(INSERT);
+			writeString(((InsertEdit) edit).getText(), output);
+		} else if (kind == DeleteEdit.class) {
+			output.writeByte(DELETE);
+		} else if (kind == RangeMarker.class) {
+			output.writeByte(RANGE_MARKER);
+		} else {
+			return false;
+		}
+		output.writeInt(edit.getOffset());
+		output.writeInt(edit.getLength());
+		TextEdit[] children= edit.getChildren();
+		output.writeInt(children.length);
+		for (int i= 0; i < children.length; i++) {
+			if (!writeEdit(children[i], false, output, indices))
+				return false;
+		}
+		return true;
+	}
+
+	private static void writeString(String string, DataOutputStream output) throws IOException {
+		// writeUTF is limited to 64K bytes
+		output.writeInt(string.length());
+		output.writeChars(string);
+	}
+
+	/**
+	 * Creates a compilation unit change with the edits and groups of this change. The returned
+	 * change is not referenced by this change.
+	 *
+	 * @return the restored change
+	 * @throws CoreException if the edits could not be read
+	 */
+	public CompilationUnitChange load() throws CoreException {
+		CompilationUnitChange change= new CompilationUnitChange(getName(), getCompilationUnit());
+		change.setSaveMode(getSaveMode());
+		change.setKeepPreviewEdits(getKeepPreviewEdits());
+		change.setEnabled(isEnabled());
+		read(change);
+		return change;
+	}
+
+	/**
+	 * Restores the edits and groups into this change, where they are kept in memory from now on.
+	 *
+	 * @throws CoreException if the edits could not be read
+	 */
+	public synchronized void restore() throws CoreException {
+		if (fRestored)
+			return;
+		fRestored= true;
+		read(this);
+		releaseStore();
+	}
+
+	/**
+	 * Returns whether the edits of this change have been restored into this change.
+	 *
+	 * @return <code>true</code> if the edits are kept in memory
+	 */
+	public synchronized boolean isRestored() {
+		return fRestored;
+	}
+
+	/**
+	 * Releases the temporary store of this change, if its edits are not needed anymore.
+	 */
+	synchronized void releaseStore() {
+		if (fStore != null) {
+			fStore.release(fEntry);
+			fStore= null;
+		}
+	}
+
+	private void read(TextChange change) throws CoreException {
+		Store store;
+		synchronized (this) {
+			store= fStore;
+		}
+		if (store == null)
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IJavaStatusConstants.INTERNAL_ERROR, "Spilled text change has been disposed: " + getName(), null)); //$NON-NLS-1$
+		try (DataInputStream input= new DataInputStream(new ByteArrayInputStream(store.read(fEntry)))) {
+			TextEdit[] edits= new TextEdit[0];
+			if (input.readBoolean()) {
+				List<TextEdit> all= new ArrayList<>();
+				TextEdit root= readEdit(input, all);
+				change.setEdit(root);
+				edits= all.toArray(new TextEdit[all.size()]);
+			}
+			for (int i= 0, groups= input.readInt(); i < groups; i++) {
+				int categories= input.readInt();
+				String name= input.readUTF();
+				TextEdit[] groupEdits= new TextEdit[input.readInt()];
+				for (int j= 0; j < groupEdits.length; j++)
+					groupEdits[j]= edits[input.readInt()];
+				if (categories < 0)
+					change.addTextEditGroup(new TextEditGroup(name, groupEdits));
+				else
+					change.addTextEditGroup(new CategorizedTextEditGroup(name, groupEdits, store.getCategorySet(categories)));
+			}
+		} catch (IOException | MalformedTreeException e) {
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IJavaStatusConstants.INTERNAL_ERROR, e.getMessage(), e));
+		}
+	}
+
+	private static TextEdit readEdit(DataInputStream input, List<TextEdit> all) throws IOException {
+		byte kind= input.readByte();
+		String text= kind == REPLACE || kind == INSERT ? readString(input) : null;
+		int offset= input.readInt();
+		int length= input.readInt();
+		TextEdit edit;
+		switch (kind) {
+			case ROOT:
+				edit= new MultiTextEdit();
+				break;
+			case REPLACE:
+				edit= new ReplaceEdit(offset, length, text);
+				break;
+			case INSERT:
+				edit= new InsertEdit(offset, text);
+				break;
+			case DELETE:
+				edit= new DeleteEdit(offset, length);
+				break;
+			case RANGE_MARKER:
+				edit= new RangeMarker(offset, length);
+				break;
+			default:
+				throw new IOException("Unknown edit kind: " + kind); //$NON-NLS-1$
+		}
+		all.add(edit);
+		for (int i= 0, children= input.readInt(); i < children; i++)
+			edit.addChild(readEdit(input, all));
+		return edit;
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		char[] chars= new char[input.readInt()];
+		for (int i= 0; i < chars.length; i++)
+			chars[i]= input.readChar();
+		return new String(chars);
+	}
+
+	void restoreUnchecked() {
+		try {
+			restore();
+		} catch (CoreException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public Change perform(IProgressMonitor pm) throws CoreException {
+		if (isRestored())
+			return super.perform(pm);
+		return load().perform(pm);
+	}
+
+	@Override
+	public IDocument getPreviewDocument(IProgressMonitor pm) throws CoreException {
+		// the copied preview edits are looked up on this change later
+		if (isRestored() || getKeepPreviewEdits()) {
+			restore();
+			IDocument document= super.getPreviewDocument(pm);
+			previewComputed();
+			return document;
+		}
+		return load().getPreviewDocument(pm);
+	}
+
+	@Override
+	public String getPreviewContent(TextEditBasedChangeGroup[] changeGroups, IRegion region, boolean expandRegionToFullLine, int surroundingLines, IProgressMonitor pm) throws CoreException {
+		restore();
+		String content= super.getPreviewContent(changeGroups, region, expandRegionToFullLine, surroundingLines, pm);
+		previewComputed();
+		return content;
+	}
+
+	private synchronized void previewComputed() {
+		fHasPreviewEdits= getKeepPreviewEdits();
+	}
+
+	/**
+	 * Computes the preview of all edits again if the preview edits of this change have been lost by
+	 * spilling the change.
+	 */
+	private void computePreviewEdits() {
+		synchronized (this) {
+			if (fHasPreviewEdits || !getKeepPreviewEdits())
+				return;
+		}
+		try {
+			getPreviewDocument(new NullProgressMonitor());
+		} catch (CoreException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void setKeepPreviewEdits(boolean keep) {
+		super.setKeepPreviewEdits(keep);
+		if (!keep)
+			previewComputed();
+	}
+
+	@Override
+	public TextEdit getEdit() {
+		restoreUnchecked();
+		return super.getEdit();
+	}
+
+	@Override
+	public void setEdit(TextEdit edit) {
+		restoreUnchecked();
+		super.setEdit(edit);
+	}
+
+	@Override
+	public void addEdit(TextEdit edit) throws MalformedTreeException {
+		restoreUnchecked();
+		super.addEdit(edit);
+	}
+
+	@Override
+	public void addChangeGroup(TextEditBasedChangeGroup group) {
+		restoreUnchecked();
+		super.addChangeGroup(group);
+	}
+
+	@Override
+	public TextEditChangeGroup[] getTextEditChangeGroups() {
+		restoreUnchecked();
+		return super.getTextEditChangeGroups();
+	}
+
+	@Override
+	public TextEdit getPreviewEdit(TextEdit original) {
+		restoreUnchecked();
+		computePreviewEdits();
+		return super.getPreviewEdit(original);
+	}
+
+	@Override
+	public TextEdit[] getPreviewEdits(TextEdit[] originals) {
+		restoreUnchecked();
+		computePreviewEdits();
+		return super.getPreviewEdits(originals);
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		releaseStore();
+	}
+}
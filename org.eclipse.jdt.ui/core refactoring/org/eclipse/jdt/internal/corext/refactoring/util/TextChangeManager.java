@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,9 +10,12 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.util;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,23 +24,61 @@ import org.eclipse.ltk.core.refactoring.TextChange;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 /**
  * A <code>TextChangeManager</code> manages associations between <code>ICompilationUnit</code>
  * or <code>IFile</code> and <code>TextChange</code> objects.
+ * <p>
+ * The manager is thread-safe, so that the changes of different compilation units can be created
+ * concurrently, see {@link SearchResultGroupProcessor}.
+ * </p>
+ * <p>
+ * If the number of changes kept in memory is bounded by a preference, the least recently used
+ * changes are written to a temporary file and replaced by a {@link SpilledCompilationUnitChange}.
+ * The change last returned by {@link #get(ICompilationUnit)} to a thread is not spilled until the
+ * thread requests another change or calls {@link #releaseThread()}, so a change must not be
+ * modified after the same thread has requested the change of another compilation unit.
+ * {@link #getAllChanges()} spills all changes.
+ * </p>
  */
 public class TextChangeManager {
 
+	/**
+	 * Preference key for the number of changes kept in memory, <code>0</code> keeps all changes in
+	 * memory.
+	 */
+	private static final String SPILL_THRESHOLD= "TextChangeManager.spillThreshold"; //$NON-NLS-1$
+
 	private Map<ICompilationUnit, TextChange> fMap= new HashMap<>(10);
 
 	private final boolean fKeepExecutedTextEdits;
 
+	private final int fSpillThreshold;
+
+	/** The compilation units of the changes in memory, least recently used first */
+	private final Set<ICompilationUnit> fInMemory= new LinkedHashSet<>();
+
+	/** The compilation unit of the change last returned to each thread */
+	private final Map<Thread, ICompilationUnit> fInFlight= new HashMap<>();
+
+	private SpilledCompilationUnitChange.Store fStore;
+
 	public TextChangeManager() {
 		this(false);
 	}
 
 	public TextChangeManager(boolean keepExecutedTextEdits) {
 		fKeepExecutedTextEdits= keepExecutedTextEdits;
+		fSpillThreshold= getSpillThreshold();
+	}
+
+	private static int getSpillThreshold() {
+		JavaPlugin plugin= JavaPlugin.getDefault();
+		if (plugin == null || !plugin.getPreferenceStore().contains(SPILL_THRESHOLD))
+			return 0;
+		return plugin.getPreferenceStore().getInt(SPILL_THRESHOLD);
 	}
 
 	/**
@@ -47,8 +88,10 @@ public class TextChangeManager {
 	 * @param cu the compilation unit (key)
 	 * @param change the change associated with the compilation unit
 	 */
-	public void manage(ICompilationUnit cu, TextChange change) {
+	public synchronized void manage(ICompilationUnit cu, TextChange change) {
 		fMap.put(cu, change);
+		if (fSpillThreshold > 0)
+			used(cu);
 	}
 
 	/**
@@ -58,16 +101,60 @@ public class TextChangeManager {
 	 * @param cu the compilation unit for which the text buffer change is requested
 	 * @return the text change associated with the given compilation unit.
 	 */
-	public TextChange get(ICompilationUnit cu) {
+	public synchronized TextChange get(ICompilationUnit cu) {
 		TextChange result= fMap.get(cu);
 		if (result == null) {
 			result= new CompilationUnitChange(cu.getElementName(), cu);
 			result.setKeepPreviewEdits(fKeepExecutedTextEdits);
 			fMap.put(cu, result);
+		} else if (result instanceof SpilledCompilationUnitChange) {
+			((SpilledCompilationUnitChange) result).restoreUnchecked();
 		}
+		if (fSpillThreshold > 0)
+			used(cu);
 		return result;
 	}
 
+	private void used(ICompilationUnit cu) {
+		fInFlight.put(Thread.currentThread(), cu);
+		fInMemory.remove(cu);
+		fInMemory.add(cu);
+		spill(fSpillThreshold);
+	}
+
+	/**
+	 * Spills the least recently used changes until at most <code>limit</code> changes are kept in
+	 * memory, not counting changes that cannot be spilled.
+	 *
+	 * @param limit the number of changes to keep in memory
+	 */
+	private void spill(int limit) {
+		for (Iterator<ICompilationUnit> iter= fInMemory.iterator(); iter.hasNext() && fInMemory.size() > limit;) {
+			ICompilationUnit unit= iter.next();
+			if (fInFlight.containsValue(unit))
+				continue;
+			iter.remove();
+			try {
+				if (fStore == null)
+					fStore= new SpilledCompilationUnitChange.Store();
+				SpilledCompilationUnitChange spilled= SpilledCompilationUnitChange.spill(fMap.get(unit), fStore);
+				if (spilled != null)
+					fMap.put(unit, spilled);
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Allows the change last returned to the current thread to be spilled. Threads that do not
+	 * request further changes, such as the workers of a {@link SearchResultGroupProcessor}, call
+	 * this method once they are done.
+	 */
+	public synchronized void releaseThread() {
+		fInFlight.remove(Thread.currentThread());
+	}
+
 	/**
 	 * Removes the <tt>TextChange</tt> managed under the given key
 	 * <code>unit<code>.
@@ -75,7 +162,8 @@ public class TextChangeManager {
 	 * @param unit the key determining the <tt>TextChange</tt> to be removed.
 	 * @return the removed <tt>TextChange</tt>.
 	 */
-	public TextChange remove(ICompilationUnit unit) {
+	public synchronized TextChange remove(ICompilationUnit unit) {
+		fInMemory.remove(unit);
 		return fMap.remove(unit);
 	}
 
@@ -84,7 +172,11 @@ public class TextChangeManager {
 	 *
 	 * @return all text changes managed by this instance
 	 */
-	public TextChange[] getAllChanges(){
+	public synchronized TextChange[] getAllChanges(){
+		if (fSpillThreshold > 0) {
+			fInFlight.clear();
+			spill(0);
+		}
 		Set<ICompilationUnit> cuSet= fMap.keySet();
 		ICompilationUnit[] cus= cuSet.toArray(new ICompilationUnit[cuSet.size()]);
 		// sort by cu name:
@@ -109,15 +201,17 @@ public class TextChangeManager {
 	 *
 	 * @return all compilation units managed by this instance
 	 */
-	public ICompilationUnit[] getAllCompilationUnits(){
+	public synchronized ICompilationUnit[] getAllCompilationUnits(){
 		return fMap.keySet().toArray(new ICompilationUnit[fMap.keySet().size()]);
 	}
 
 	/**
 	 * Clears all associations between resources and text changes.
 	 */
-	public void clear() {
+	public synchronized void clear() {
 		fMap.clear();
+		fInMemory.clear();
+		fInFlight.clear();
 	}
 
 	/**
@@ -126,7 +220,7 @@ public class TextChangeManager {
 	 * @param cu the compilation unit
 	 * @return <code>true</code> if any text changes are managed for the specified compilation unit and <code>false</code> otherwise
 	 */
-	public boolean containsChangesIn(ICompilationUnit cu){
+	public synchronized boolean containsChangesIn(ICompilationUnit cu){
 		return fMap.containsKey(cu);
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -39,8 +39,11 @@ import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.ISourceReference;
 import org.eclipse.jdt.core.JavaModelException;
 
+import org.eclipse.jdt.internal.corext.refactoring.util.SpilledCompilationUnitChange;
+
 import org.eclipse.jdt.ui.JavaElementLabels;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.viewsupport.JavaElementImageProvider;
 
 public class CompilationUnitChangeNode extends TextEditChangeNode {
@@ -137,6 +140,14 @@ public class CompilationUnitChangeNode extends TextEditChangeNode {
 	}
 
 	private TextEditBasedChangeGroup[] getSortedChangeGroups(TextEditBasedChange change) {
+		if (change instanceof SpilledCompilationUnitChange) {
+			// getChangeGroups() cannot restore the spilled edits on demand
+			try {
+				((SpilledCompilationUnitChange) change).restore();
+			} catch (CoreException e) {
+				JavaPlugin.log(e);
+			}
+		}
 		TextEditBasedChangeGroup[] edits= change.getChangeGroups();
 		List<TextEditBasedChangeGroup> result= new ArrayList<>(edits.length);
 		for (int i= 0; i < edits.length; i++) {
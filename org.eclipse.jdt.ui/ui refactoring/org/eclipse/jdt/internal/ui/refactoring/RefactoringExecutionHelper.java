@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,7 @@ import org.eclipse.ltk.core.refactoring.RefactoringCore;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 import org.eclipse.ltk.ui.refactoring.RefactoringUI;
 
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchEngine2;
 import org.eclipse.jdt.internal.corext.util.Messages;
 
 import org.eclipse.jdt.ui.refactoring.RefactoringSaveHelper;
@@ -101,6 +102,8 @@ public class RefactoringExecutionHelper {
 
 				fPerformChangeOperation= new PerformChangeOperation(fChange);//RefactoringUI.createUIAwareChangeOperation(fChange);
 				fPerformChangeOperation.setUndoManager(RefactoringCore.getUndoManager(), fRefactoring.getName());
+				// validates and reads ahead the many compilation unit changes of a refactoring concurrently
+				fPerformChangeOperation.setBatched(true);
 				if (fRefactoring instanceof IScheduledRefactoring)
 					fPerformChangeOperation.setSchedulingRule(((IScheduledRefactoring)fRefactoring).getSchedulingRule());
 
@@ -190,6 +193,8 @@ public class RefactoringExecutionHelper {
 				throw new InterruptedException();
 			final Operation op= new Operation(fork, forkChangeExecution);
 			fRefactoring.setValidationContext(fParent);
+			// condition checking and change creation share the search results
+			RefactoringSearchEngine2.beginSession();
 			try{
 				fExecContext.run(fork, cancelable, new WorkbenchRunnableAdapter(op, rule, true));
 				if (fork && !forkChangeExecution && op.fPerformChangeOperation != null)
@@ -223,6 +228,7 @@ public class RefactoringExecutionHelper {
 			} catch (OperationCanceledException e) {
 				throw new InterruptedException(e.getMessage());
 			} finally {
+				RefactoringSearchEngine2.endSession();
 				saveHelper.triggerIncrementalBuild();
 			}
 		} finally {
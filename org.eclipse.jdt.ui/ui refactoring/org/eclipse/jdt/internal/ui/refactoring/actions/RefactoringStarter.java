@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,8 @@ import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 import org.eclipse.ltk.ui.refactoring.RefactoringWizard;
 import org.eclipse.ltk.ui.refactoring.RefactoringWizardOpenOperation;
 
+import org.eclipse.jdt.internal.corext.refactoring.RefactoringSearchEngine2;
+
 import org.eclipse.jdt.ui.refactoring.RefactoringSaveHelper;
 
 
@@ -33,6 +35,8 @@ public class RefactoringStarter {
 		if (! canActivate(saveHelper, parent))
 			return false;
 
+		// the wizard pages check conditions and create the change repeatedly on the same input
+		RefactoringSearchEngine2.beginSession();
 		try {
 			RefactoringWizardOpenOperation op= new RefactoringWizardOpenOperation(wizard);
 			int result= op.run(parent, dialogTitle);
@@ -45,6 +49,8 @@ public class RefactoringStarter {
 			}
 		} catch (InterruptedException e) {
 			return false; // User action got cancelled
+		} finally {
+			RefactoringSearchEngine2.endSession();
 		}
 	}
 
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Hashtable;
@@ -93,6 +94,7 @@ import org.eclipse.jdt.internal.corext.template.java.SWTContextType;
 import org.eclipse.jdt.internal.corext.util.OpenTypeHistory;
 import org.eclipse.jdt.internal.corext.util.QualifiedTypeNameHistory;
 import org.eclipse.jdt.internal.corext.util.TypeFilter;
+import org.eclipse.jdt.internal.corext.util.TypeNameIndex;
 
 import org.eclipse.jdt.ui.IContextMenuConstants;
 import org.eclipse.jdt.ui.JavaUI;
@@ -104,6 +106,7 @@ import org.eclipse.jdt.internal.ui.javaeditor.ClassFileDocumentProvider;
 import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitDocumentProvider;
 import org.eclipse.jdt.internal.ui.javaeditor.DocumentAdapter;
 import org.eclipse.jdt.internal.ui.javaeditor.ICompilationUnitDocumentProvider;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingCache;
 import org.eclipse.jdt.internal.ui.javaeditor.WorkingCopyManager;
 import org.eclipse.jdt.internal.ui.javaeditor.saveparticipant.SaveParticipantRegistry;
 import org.eclipse.jdt.internal.ui.preferences.MembersOrderPreferenceCache;
@@ -113,6 +116,7 @@ import org.eclipse.jdt.internal.ui.text.PreferencesAdapter;
 import org.eclipse.jdt.internal.ui.text.folding.JavaFoldingStructureProviderRegistry;
 import org.eclipse.jdt.internal.ui.text.java.ContentAssistHistory;
 import org.eclipse.jdt.internal.ui.text.java.hover.JavaEditorTextHoverDescriptor;
+import org.eclipse.jdt.internal.ui.text.javadoc.JavadocContentCache;
 import org.eclipse.jdt.internal.ui.text.spelling.SpellCheckEngine;
 import org.eclipse.jdt.internal.ui.viewsupport.ImageDescriptorRegistry;
 import org.eclipse.jdt.internal.ui.viewsupport.ImagesOnFileSystemRegistry;
@@ -157,6 +161,11 @@ public class JavaPlugin extends AbstractUIPlugin implements DebugOptionsListener
 	 * @since 3.0
 	 */
 	private static final String CODE_TEMPLATES_MIGRATION_KEY= "org.eclipse.jdt.ui.text.code_templates_migrated"; //$NON-NLS-1$
+	/**
+	 * The name of the file in the state location that stores the content assist history.
+	 * @since 3.14
+	 */
+	private static final String CONTENT_ASSIST_HISTORY_FILE= "contentAssistHistory.bin"; //$NON-NLS-1$
 
 	public static boolean DEBUG_AST_PROVIDER;
 
@@ -476,6 +485,8 @@ public class JavaPlugin extends AbstractUIPlugin implements DebugOptionsListener
 				fASTProvider= null;
 			}
 
+			SemanticHighlightingCache.shutdown();
+
 			if (fWorkingCopyManager != null) {
 				fWorkingCopyManager.shutdown();
 				fWorkingCopyManager= null;
@@ -497,7 +508,13 @@ public class JavaPlugin extends AbstractUIPlugin implements DebugOptionsListener
 			}
 
 			if (fContentAssistHistory != null) {
-				ContentAssistHistory.store(fContentAssistHistory, getPluginPreferences(), PreferenceConstants.CODEASSIST_LRU_HISTORY);
+				try {
+					ContentAssistHistory.store(fContentAssistHistory, getContentAssistHistoryFile());
+					// the history of previous versions is only dropped once the file has been written
+					getPluginPreferences().setToDefault(PreferenceConstants.CODEASSIST_LRU_HISTORY);
+				} catch (CoreException e) {
+					log(e);
+				}
 				fContentAssistHistory= null;
 			}
 
@@ -544,6 +561,10 @@ public class JavaPlugin extends AbstractUIPlugin implements DebugOptionsListener
 
 			OpenTypeHistory.shutdown();
 
+			TypeNameIndex.shutdown();
+
+			JavadocContentCache.shutdown();
+
 			JavaManipulation.setPreferenceNodeId(null);
 		} finally {
 			super.stop(context);
@@ -952,7 +973,9 @@ public class JavaPlugin extends AbstractUIPlugin implements DebugOptionsListener
 	public ContentAssistHistory getContentAssistHistory() {
 		if (fContentAssistHistory == null) {
 			try {
-				fContentAssistHistory= ContentAssistHistory.load(getPluginPreferences(), PreferenceConstants.CODEASSIST_LRU_HISTORY);
+				fContentAssistHistory= ContentAssistHistory.load(getContentAssistHistoryFile());
+				if (fContentAssistHistory == null) // migrate the history of previous versions
+					fContentAssistHistory= ContentAssistHistory.load(getPluginPreferences(), PreferenceConstants.CODEASSIST_LRU_HISTORY);
 			} catch (CoreException x) {
 				log(x);
 			}
@@ -963,6 +986,10 @@ public class JavaPlugin extends AbstractUIPlugin implements DebugOptionsListener
 		return fContentAssistHistory;
 	}
 
+	private File getContentAssistHistoryFile() {
+		return getStateLocation().append(CONTENT_ASSIST_HISTORY_FILE).toFile();
+	}
+
 	/**
 	 * Returns a section in the Java plugin's dialog settings. If the section doesn't exist yet, it is created.
 	 *
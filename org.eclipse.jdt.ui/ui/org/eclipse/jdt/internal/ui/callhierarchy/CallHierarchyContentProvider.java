@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,10 +12,17 @@
 package org.eclipse.jdt.internal.ui.callhierarchy;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jface.operation.IRunnableContext;
 import org.eclipse.jface.operation.IRunnableWithProgress;
@@ -30,6 +37,8 @@ import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 
+import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
+import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchyPrefetcher;
 import org.eclipse.jdt.internal.corext.callhierarchy.CallerMethodWrapper;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodCall;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
@@ -62,6 +71,14 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
 
     private DeferredTreeContentManager fManager;
     private CallHierarchyViewPart fPart;
+    /**
+     * The number of deferred fetches that are running, they may run concurrently for siblings.
+     */
+    private final AtomicInteger fFetching= new AtomicInteger();
+    /**
+     * The prefetch job of the last expansion, or <code>null</code>.
+     */
+    private Job fPrefetchJob;
 
     private class MethodWrapperRunnable implements IRunnableWithProgress {
         private MethodWrapper fMethodWrapper;
@@ -451,6 +468,7 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
      * @param wrappers the parents to cancel jobs for
      */
     void cancelJobs(MethodWrapper[] wrappers) {
+        Job.getJobManager().cancel(this);
         if (fManager != null && wrappers != null) {
         	for (int i= 0; i < wrappers.length; i++) {
 				MethodWrapper wrapper= wrappers[i];
@@ -462,11 +480,89 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
         }
     }
 
+    /**
+     * Searches the calls of the given elements in the background, down to the
+     * {@link CallHierarchy#getPrefetchDepth() prefetch depth}, so that expanding them does
+     * not wait for a search.
+     *
+     * @param elements the elements that have been added to the viewer
+     * @since 3.14
+     */
+    void prefetch(Object[] elements) {
+        cancelPrefetch();
+        final int depth= CallHierarchy.getDefault().getPrefetchDepth();
+        if (depth == 0)
+            return;
+
+        List<MethodWrapper> wrappers= new ArrayList<>(elements.length);
+        for (int i= 0; i < elements.length; i++) {
+            if (elements[i] instanceof MethodWrapper)
+                wrappers.add((MethodWrapper) elements[i]);
+        }
+        if (wrappers.isEmpty())
+            return;
+
+        final CallHierarchyPrefetcher prefetcher= new CallHierarchyPrefetcher(depth, CallHierarchy.getDefault().getSearchParallelism(), CallHierarchyUI.getDefault().getMaxCallDepth());
+        final MethodWrapper[] toPrefetch= wrappers.toArray(new MethodWrapper[wrappers.size()]);
+        Job job= new Job(org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchyMessages.CallHierarchyPrefetcher_taskname) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    prefetcher.prefetch(toPrefetch, monitor);
+                } catch (OperationCanceledException e) {
+                    return Status.CANCEL_STATUS;
+                }
+                return Status.OK_STATUS;
+            }
+
+            @Override
+            public boolean belongsTo(Object family) {
+                return family == CallHierarchyContentProvider.this;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+        synchronized (this) {
+            fPrefetchJob= job;
+        }
+        job.schedule();
+    }
+
+    /**
+     * Cancels the prefetch job of the previous expansion, which is superseded by a new one.
+     */
+    private synchronized void cancelPrefetch() {
+        if (fPrefetchJob != null) {
+            fPrefetchJob.cancel();
+            fPrefetchJob= null;
+        }
+    }
+
+    /**
+     * Updates the labels of the given elements, whose number of call locations may have
+     * changed after they have been added to the viewer.
+     *
+     * @param elements the elements to update
+     * @since 3.14
+     */
+    void updateLabels(final Object[] elements) {
+        if (elements.length == 0)
+            return;
+        Display.getDefault().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                CallHierarchyViewPart viewPart= getViewPart();
+                if (viewPart != null && !viewPart.getViewer().getControl().isDisposed())
+                    viewPart.getViewer().update(elements, null);
+            }
+        });
+    }
+
     /**
      *
      */
     public void doneFetching() {
-        if (fPart != null) {
+        if (fFetching.decrementAndGet() <= 0 && fPart != null) {
             fPart.setCancelEnabled(false);
         }
     }
@@ -475,6 +571,7 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
      *
      */
     public void startFetching() {
+        fFetching.incrementAndGet();
         if (fPart != null) {
             fPart.setCancelEnabled(true);
         }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,11 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.callhierarchy;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -20,16 +25,77 @@ import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.ui.progress.IDeferredWorkbenchAdapter;
 import org.eclipse.ui.progress.IElementCollector;
 
+import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 
 public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter implements IDeferredWorkbenchAdapter {
+    /**
+     * The minimal time in milliseconds between two additions of found calls to the viewer.
+     */
+    private static final long ADD_INTERVAL= 100;
+
     private final CallHierarchyContentProvider fProvider;
 
+    /**
+     * Adds the calls to the viewer while they are found. The calls are added in batches, so
+     * that the viewer is not updated for every single call.
+     */
+    private static class CallStreamer implements MethodWrapper.ICallListener {
+        private final IElementCollector fCollector;
+        private final IProgressMonitor fMonitor;
+        private final Set<String> fAdded= new HashSet<>();
+        private final List<MethodWrapper> fPending= new ArrayList<>();
+        private long fLastAdd= System.currentTimeMillis();
+
+        CallStreamer(IElementCollector collector, IProgressMonitor monitor) {
+            fCollector= collector;
+            fMonitor= monitor;
+        }
+
+        @Override
+        public void callFound(MethodWrapper call) {
+            if (!fAdded.add(call.getMethodCall().getKey()))
+                return;
+            fPending.add(call);
+            if (System.currentTimeMillis() - fLastAdd >= ADD_INTERVAL)
+                addPending();
+        }
+
+        private void addPending() {
+            if (!fPending.isEmpty()) {
+                fCollector.add(fPending.toArray(), fMonitor);
+                fPending.clear();
+            }
+            fLastAdd= System.currentTimeMillis();
+        }
+
+        /**
+         * Adds the calls that have not been added while they were found.
+         *
+         * @param calls all calls of the searched wrapper
+         * @return the calls that have been added while they were found, their number of
+         *         locations may have changed since then
+         */
+        Object[] addRemaining(MethodWrapper[] calls) {
+            List<MethodWrapper> streamed= new ArrayList<>();
+            for (int i= 0; i < calls.length; i++) {
+                if (fAdded.contains(calls[i].getMethodCall().getKey()))
+                    streamed.add(calls[i]);
+                else
+                    fPending.add(calls[i]);
+            }
+            addPending();
+            return streamed.toArray();
+        }
+    }
+
     /**
      * A simple job scheduling rule for serializing jobs that shouldn't be run
-     * concurrently.
+     * concurrently. The jobs for sibling nodes get different rules, up to the
+     * {@link CallHierarchy#getSearchParallelism() search parallelism}, so that they
+     * can search concurrently.
      */
     private class BatchSimilarSchedulingRule implements ISchedulingRule {
         public String id;
@@ -63,17 +129,16 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
         this.fProvider = provider;
     }
 
-    private Object getCalls(IProgressMonitor monitor) {
-        return getMethodWrapper().getCalls(monitor);
-    }
-
     @Override
 	public void fetchDeferredChildren(Object object, IElementCollector collector, IProgressMonitor monitor) {
     	final DeferredMethodWrapper deferredMethodWrapper= (DeferredMethodWrapper)object;
     	try {
             fProvider.startFetching();
-            collector.add((Object[]) deferredMethodWrapper.getCalls(monitor), monitor);
+            CallStreamer streamer= new CallStreamer(collector, monitor);
+            MethodWrapper[] calls= deferredMethodWrapper.getMethodWrapper().getCalls(monitor, streamer);
+            fProvider.updateLabels(streamer.addRemaining(calls));
             collector.done();
+            fProvider.prefetch(calls);
         } catch (OperationCanceledException e) {
         	final MethodWrapper methodWrapper= deferredMethodWrapper.getMethodWrapper();
 			if (!CallHierarchyContentProvider.isExpandWithConstructors(methodWrapper)) {
@@ -100,7 +165,9 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
 
     @Override
 	public ISchedulingRule getRule(Object o) {
-        return new BatchSimilarSchedulingRule("org.eclipse.jdt.ui.callhierarchy.methodwrapper"); //$NON-NLS-1$
+        int parallelism= CallHierarchy.getDefault().getSearchParallelism();
+        int slot= (getMethodWrapper().getMethodCall().getKey().hashCode() & Integer.MAX_VALUE) % parallelism;
+        return new BatchSimilarSchedulingRule("org.eclipse.jdt.ui.callhierarchy.methodwrapper." + slot); //$NON-NLS-1$
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -33,7 +34,9 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
@@ -96,6 +99,7 @@ import org.eclipse.jdt.internal.corext.util.Strings;
 import org.eclipse.jdt.internal.corext.util.TypeFilter;
 import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
 import org.eclipse.jdt.internal.corext.util.TypeInfoRequestorAdapter;
+import org.eclipse.jdt.internal.corext.util.TypeNameIndex;
 
 import org.eclipse.jdt.launching.IVMInstall;
 import org.eclipse.jdt.launching.IVMInstallType;
@@ -134,6 +138,15 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	 */
 	private static final boolean BUG_184693= true;
 
+	/** The name of the performance event that measures the time to the first result of a filter. */
+	private static final String PERFORMANCE_EVENT= JavaPlugin.getPluginId() + "/perf/open_type/firstResult"; //$NON-NLS-1$
+
+	/**
+	 * If <code>true</code>, the time from starting to fill the content provider to the first
+	 * result is measured and forwarded to core's {@link PerformanceStats} service.
+	 */
+	private static final boolean MEASURE_PERFORMANCE= PerformanceStats.isEnabled(PERFORMANCE_EVENT);
+
 	private static final String DIALOG_SETTINGS= "org.eclipse.jdt.internal.ui.dialogs.FilteredTypesSelectionDialog"; //$NON-NLS-1$
 
 	private static final String SHOW_CONTAINER_FOR_DUPLICATES= "ShowContainerForDuplicates"; //$NON-NLS-1$
@@ -499,10 +512,45 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	@Override
 	protected void fillContentProvider(AbstractContentProvider provider, ItemsFilter itemsFilter, IProgressMonitor progressMonitor) throws CoreException {
 		TypeItemsFilter typeSearchFilter= (TypeItemsFilter) itemsFilter;
-		TypeSearchRequestor requestor= new TypeSearchRequestor(provider, typeSearchFilter);
+		PerformanceStats stats= null;
+		if (MEASURE_PERFORMANCE) {
+			stats= PerformanceStats.getStats(PERFORMANCE_EVENT, this);
+			stats.startRun(typeSearchFilter.getPattern());
+		}
+		TypeSearchRequestor requestor= new TypeSearchRequestor(provider, typeSearchFilter, stats);
+		progressMonitor.setTaskName(JavaUIMessages.FilteredTypesSelectionDialog_searchJob_taskName);
+		try {
+			// the index is not available until it has been built in the background
+			List<TypeNameMatch> candidates= TypeNameIndex.getInstance().getCandidates(typeSearchFilter.getTypeInfoFilter());
+			if (candidates != null)
+				fillFromIndex(candidates, requestor, typeSearchFilter, progressMonitor);
+			else
+				fillFromSearchEngine(requestor, typeSearchFilter, progressMonitor);
+		} finally {
+			requestor.done();
+		}
+	}
+
+	private void fillFromIndex(List<TypeNameMatch> candidates, TypeSearchRequestor requestor, TypeItemsFilter typeSearchFilter, IProgressMonitor progressMonitor) {
+		TypeInfoFilter filter= typeSearchFilter.getTypeInfoFilter();
+		// the candidates are filtered here, see fillFromSearchEngine
+		typeSearchFilter.setMatchEverythingMode(true);
+		try {
+			for (Iterator<TypeNameMatch> iter= candidates.iterator(); iter.hasNext();) {
+				if (progressMonitor.isCanceled())
+					throw new OperationCanceledException();
+				TypeNameMatch match= iter.next();
+				if (filter.matchesHistoryElement(match))
+					requestor.acceptTypeNameMatch(match);
+			}
+		} finally {
+			typeSearchFilter.setMatchEverythingMode(false);
+		}
+	}
+
+	private void fillFromSearchEngine(TypeSearchRequestor requestor, TypeItemsFilter typeSearchFilter, IProgressMonitor progressMonitor) throws CoreException {
 		SearchEngine engine= new SearchEngine((WorkingCopyOwner) null);
 		String packPattern= typeSearchFilter.getPackagePattern();
-		progressMonitor.setTaskName(JavaUIMessages.FilteredTypesSelectionDialog_searchJob_taskName);
 
 		/*
 		 * Setting the filter into match everything mode avoids filtering twice
@@ -1030,6 +1078,10 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			return true;
 		}
 
+		public TypeInfoFilter getTypeInfoFilter() {
+			return fTypeInfoFilter;
+		}
+
 		public int getElementKind() {
 			return fTypeInfoFilter.getElementKind();
 		}
@@ -1159,10 +1211,13 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 
 		private final TypeItemsFilter fTypeItemsFilter;
 
-		public TypeSearchRequestor(AbstractContentProvider contentProvider, TypeItemsFilter typeItemsFilter) {
+		private PerformanceStats fStats;
+
+		public TypeSearchRequestor(AbstractContentProvider contentProvider, TypeItemsFilter typeItemsFilter, PerformanceStats stats) {
 			super();
 			fContentProvider= contentProvider;
 			fTypeItemsFilter= typeItemsFilter;
+			fStats= stats;
 		}
 
 		@Override
@@ -1171,8 +1226,20 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 				return;
 			if (TypeFilter.isFiltered(match))
 				return;
-			if (fTypeItemsFilter.matchesFilterExtension(match))
+			if (fTypeItemsFilter.matchesFilterExtension(match)) {
 				fContentProvider.add(match, fTypeItemsFilter);
+				done();
+			}
+		}
+
+		/**
+		 * Ends the measurement of the time to the first result, if not yet done.
+		 */
+		public void done() {
+			if (fStats != null) {
+				fStats.endRun();
+				fStats= null;
+			}
 		}
 
 	}
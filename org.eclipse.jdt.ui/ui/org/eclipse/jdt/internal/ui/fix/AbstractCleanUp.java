@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -101,6 +101,48 @@ public abstract class AbstractCleanUp implements ICleanUp {
 		return new RefactoringStatus();
 	}
 
+	/**
+	 * Tells whether {@link #copy()} can create a copy of this clean up. Clean ups which keep
+	 * state that is shared between instances cannot be copied.
+	 *
+	 * @return <code>true</code> if this clean up can be copied
+	 * @since 3.14
+	 */
+	public boolean canCopy() {
+		if (fOptions == null)
+			return false;
+		try {
+			getClass().getConstructor();
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a new instance of this clean up with the same options, so that fixes for different
+	 * compilation units can be created by several threads at the same time, each with its own
+	 * instance. The copy is created with the no-argument constructor after
+	 * {@link #checkPreConditions(IJavaProject, ICompilationUnit[], IProgressMonitor)} has been
+	 * called on this clean up. Subclasses which initialize state in <code>checkPreConditions</code>
+	 * must extend this method to initialize the copy.
+	 *
+	 * @return the copy
+	 * @throws IllegalStateException if this clean up {@link #canCopy() cannot be copied}
+	 * @since 3.14
+	 */
+	public AbstractCleanUp copy() {
+		if (!canCopy())
+			throw new IllegalStateException();
+		try {
+			AbstractCleanUp result= getClass().getConstructor().newInstance();
+			result.setOptions(fOptions);
+			return result;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * @param key the name of the option
 	 * @return <code>true</code> if option with <code>key</code> is enabled
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -85,6 +85,20 @@ public class ImportsCleanUp extends AbstractCleanUp {
     	}
     }
 
+	/*
+	 * @see org.eclipse.jdt.internal.ui.fix.AbstractCleanUp#copy()
+	 * @since 3.14
+	 */
+	@Override
+	public AbstractCleanUp copy() {
+		ImportsCleanUp result= (ImportsCleanUp) super.copy();
+		// the copy shares the settings and reports its problems in its own status
+		result.fCodeGeneratorSettings= fCodeGeneratorSettings;
+		if (fStatus != null)
+			result.fStatus= new RefactoringStatus();
+		return result;
+	}
+
     @Override
 	public String[] getStepDescriptions() {
     	if (isEnabled(CleanUpConstants.ORGANIZE_IMPORTS))
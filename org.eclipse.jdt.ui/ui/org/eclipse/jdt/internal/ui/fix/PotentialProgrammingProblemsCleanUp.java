@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -145,6 +145,14 @@ public class PotentialProgrammingProblemsCleanUp extends AbstractMultiFix {
 		return PotentialProgrammingProblemsFix.checkPostConditions(monitor);
 	}
 
+	@Override
+	public boolean canCopy() {
+		if (!super.canCopy())
+			return false;
+		// the context of generated serial version IDs is shared by all instances
+		return !(isEnabled(CleanUpConstants.ADD_MISSING_SERIAL_VERSION_ID) && isEnabled(CleanUpConstants.ADD_MISSING_SERIAL_VERSION_ID_GENERATED));
+	}
+
 	@Override
 	public int computeNumberOfFixes(CompilationUnit compilationUnit) {
 		if ((isEnabled(CleanUpConstants.ADD_MISSING_SERIAL_VERSION_ID) && isEnabled(CleanUpConstants.ADD_MISSING_SERIAL_VERSION_ID_GENERATED)) ||
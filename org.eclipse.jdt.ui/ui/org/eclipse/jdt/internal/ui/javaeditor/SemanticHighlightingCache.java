@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.javaeditor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import org.eclipse.jdt.ui.PreferenceConstants;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingManager.Highlighting;
+
+/**
+ * Persistent cache of the semantic highlighting positions of compilation units.
+ * <p>
+ * The positions of an editor are stored when it is closed without unsaved changes and without
+ * pending reconciles, and are presented right away when the same content is opened again, before
+ * the reconciler has built the first AST. The first reconcile then only updates the positions that
+ * differ. An entry is keyed by the compilation unit and is only used if the content and the
+ * fingerprint of the compiler options and enabled highlightings are unchanged.
+ * </p>
+ * <p>
+ * Only the semantic highlighting positions are cached. The reconciler still resolves the first
+ * AST of a reopened editor, which the other AST consumers, such as mark occurrences, folding and
+ * the override indicators, compute their results from.
+ * </p>
+ * <p>
+ * The positions also depend on the bindings of other compilation units, for example whether a
+ * referenced field is static or deprecated. The entries of a project and of the projects that
+ * require it are therefore discarded on Java element deltas that may change bindings: added or
+ * removed compilation units, structural changes of compilation units, changed archives and
+ * classpath changes. Changes inside method bodies keep the entries.
+ * </p>
+ *
+ * @since 3.14
+ */
+public final class SemanticHighlightingCache implements IElementChangedListener {
+
+	/**
+	 * Preference key that enables the cache. The value is a boolean, <code>false</code> by
+	 * default.
+	 */
+	public static final String PREFERENCE_KEY= PreferenceConstants.EDITOR_SEMANTIC_HIGHLIGHTING_PREFIX + "persistentCache"; //$NON-NLS-1$
+
+	/** Name of the cache folder in the plug-in state location */
+	private static final String CACHE_FOLDER= "semanticHighlightingCache"; //$NON-NLS-1$
+
+	/** File format version */
+	private static final int VERSION= 2;
+
+	/** The compiler options that affect the AST and thereby the highlighting positions */
+	private static final String[] FINGERPRINT_OPTIONS= {
+			JavaCore.COMPILER_SOURCE,
+			JavaCore.COMPILER_COMPLIANCE,
+			JavaCore.COMPILER_DOC_COMMENT_SUPPORT
+	};
+
+	/** Maximal number of cached compilation units per project */
+	private static final int MAX_ENTRIES_PER_PROJECT= 500;
+
+	private static SemanticHighlightingCache fgInstance;
+
+	/**
+	 * Returns the cache if it is enabled in the given preference store.
+	 *
+	 * @param store the preference store
+	 * @return the cache or <code>null</code> if disabled
+	 */
+	public static synchronized SemanticHighlightingCache getCache(IPreferenceStore store) {
+		if (!store.getBoolean(PREFERENCE_KEY))
+			return null;
+		if (fgInstance == null) {
+			fgInstance= new SemanticHighlightingCache(JavaPlugin.getDefault().getStateLocation().append(CACHE_FOLDER).toFile());
+			JavaCore.addElementChangedListener(fgInstance, ElementChangedEvent.POST_CHANGE);
+		}
+		return fgInstance;
+	}
+
+	/**
+	 * Removes the element changed listener of the cache, if any.
+	 */
+	public static synchronized void shutdown() {
+		if (fgInstance != null) {
+			JavaCore.removeElementChangedListener(fgInstance);
+			fgInstance= null;
+		}
+	}
+
+	/** The cache folder */
+	private final File fFolder;
+
+	private SemanticHighlightingCache(File folder) {
+		fFolder= folder;
+	}
+
+	/**
+	 * Computes the fingerprint of the settings that affect the semantic highlighting positions of
+	 * the given compilation unit.
+	 *
+	 * @param unit the compilation unit
+	 * @param highlightings the highlightings
+	 * @return the fingerprint
+	 */
+	public static String getFingerprint(ICompilationUnit unit, Highlighting[] highlightings) {
+		IJavaProject project= unit.getJavaProject();
+		StringBuilder buffer= new StringBuilder(32 + highlightings.length);
+		for (int i= 0; i < FINGERPRINT_OPTIONS.length; i++) {
+			buffer.append(project.getOption(FINGERPRINT_OPTIONS[i], true));
+			buffer.append(':');
+		}
+		for (int i= 0; i < highlightings.length; i++)
+			buffer.append(highlightings[i].isEnabled() ? '1' : '0');
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns the cached positions of the given compilation unit.
+	 *
+	 * @param unit the compilation unit
+	 * @param content the current content of the compilation unit
+	 * @param fingerprint the current fingerprint, see {@link #getFingerprint(ICompilationUnit, Highlighting[])}
+	 * @return the positions as triples of offset, length and highlighting index, or
+	 *         <code>null</code> if there is no valid entry
+	 */
+	public int[] get(ICompilationUnit unit, String content, String fingerprint) {
+		File file= getFile(unit);
+		if (!file.isFile())
+			return null;
+		try (DataInputStream input= new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != VERSION
+					|| !unit.getPrimary().getHandleIdentifier().equals(input.readUTF())
+					|| input.readInt() != content.length()
+					|| input.readLong() != hash(content)
+					|| !fingerprint.equals(input.readUTF()))
+				return null;
+			int[] positions= new int[3 * input.readInt()];
+			for (int i= 0; i < positions.length; i++)
+				positions[i]= input.readInt();
+			return positions;
+		} catch (IOException e) {
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the positions of the given compilation unit in a background job.
+	 *
+	 * @param unit the compilation unit
+	 * @param content the content the positions belong to
+	 * @param fingerprint the fingerprint, see {@link #getFingerprint(ICompilationUnit, Highlighting[])}
+	 * @param positions the positions as triples of offset, length and highlighting index
+	 */
+	public void put(final ICompilationUnit unit, final String content, final String fingerprint, final int[] positions) {
+		Job job= new Job(JavaEditorMessages.SemanticHighlighting_job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				write(unit, content, fingerprint, positions);
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				return family == getJobFamily();
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
+	}
+
+	/**
+	 * Returns the family of the jobs that store positions, see {@link Job#belongsTo(Object)}.
+	 *
+	 * @return the job family
+	 */
+	public Object getJobFamily() {
+		return this;
+	}
+
+	private synchronized void write(ICompilationUnit unit, String content, String fingerprint, int[] positions) {
+		File file= getFile(unit);
+		File folder= file.getParentFile();
+		if (!folder.isDirectory() && !folder.mkdirs())
+			return;
+		try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(VERSION);
+			output.writeUTF(unit.getPrimary().getHandleIdentifier());
+			output.writeInt(content.length());
+			output.writeLong(hash(content));
+			output.writeUTF(fingerprint);
+			output.writeInt(positions.length / 3);
+			for (int i= 0; i < positions.length; i++)
+				output.writeInt(positions[i]);
+		} catch (IOException e) {
+			file.delete();
+			JavaPlugin.log(e);
+			return;
+		}
+		evict(folder);
+	}
+
+	/**
+	 * Deletes the oldest entries of the given project folder if it holds too many entries.
+	 *
+	 * @param folder the project folder
+	 */
+	private static void evict(File folder) {
+		File[] files= folder.listFiles();
+		if (files == null || files.length <= MAX_ENTRIES_PER_PROJECT)
+			return;
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (int i= 0, n= files.length - MAX_ENTRIES_PER_PROJECT; i < n; i++)
+			files[i].delete();
+	}
+
+	/*
+	 * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+	 */
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		processDelta(event.getDelta());
+	}
+
+	/**
+	 * Processes a delta and discards the entries whose bindings may have changed.
+	 *
+	 * @param delta the delta
+	 * @return <code>true</code> if the entries of the project of the delta have been discarded
+	 */
+	private boolean processDelta(IJavaElementDelta delta) {
+		IJavaElement element= delta.getElement();
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+				break;
+			case IJavaElement.JAVA_PROJECT:
+				if (delta.getKind() == IJavaElementDelta.REMOVED
+						|| (delta.getFlags() & (IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+					removeProject((IJavaProject) element);
+					return true;
+				}
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				if (delta.getKind() == IJavaElementDelta.REMOVED
+						|| (delta.getFlags() & IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED) != 0) {
+					removeProject(element.getJavaProject());
+					return true;
+				}
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT:
+				if (delta.getKind() == IJavaElementDelta.REMOVED) {
+					removeProject(element.getJavaProject());
+					return true;
+				}
+				break;
+			case IJavaElement.COMPILATION_UNIT:
+				ICompilationUnit unit= (ICompilationUnit) element;
+				if (unit.getOwner() == null && isStructuralChange(delta)) {
+					removeProject(unit.getJavaProject());
+					return true;
+				}
+				return false;
+			default:
+				return false;
+		}
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (processDelta(children[i]) && element.getElementType() != IJavaElement.JAVA_MODEL)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the given delta of a compilation unit may change the bindings of other
+	 * compilation units. A content change without fine-grained information is considered
+	 * structural.
+	 *
+	 * @param delta the delta of a compilation unit
+	 * @return <code>true</code> if the change is not confined to method bodies
+	 */
+	private static boolean isStructuralChange(IJavaElementDelta delta) {
+		if (delta.getKind() != IJavaElementDelta.CHANGED)
+			return true;
+		int flags= delta.getFlags();
+		if ((flags & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_CHILDREN)) == 0)
+			return false;
+		return (flags & IJavaElementDelta.F_FINE_GRAINED) == 0 || delta.getAffectedChildren().length > 0;
+	}
+
+	/**
+	 * Discards the entries of the given project and of all projects that require it, directly
+	 * or indirectly.
+	 *
+	 * @param project the project
+	 */
+	private synchronized void removeProject(IJavaProject project) {
+		Set<String> names= new HashSet<>();
+		names.add(project.getElementName());
+		try {
+			IJavaProject[] projects= project.getJavaModel().getJavaProjects();
+			boolean added= true;
+			while (added) {
+				added= false;
+				for (int i= 0; i < projects.length; i++) {
+					if (!names.contains(projects[i].getElementName()) && requiresAny(projects[i], names)) {
+						names.add(projects[i].getElementName());
+						added= true;
+					}
+				}
+			}
+		} catch (JavaModelException e) {
+			// the dependent projects are unknown, discard all entries
+			File[] folders= fFolder.listFiles();
+			for (int i= 0; folders != null && i < folders.length; i++)
+				removeFolder(folders[i]);
+			return;
+		}
+		for (Iterator<String> iter= names.iterator(); iter.hasNext();)
+			removeFolder(getProjectFolder(iter.next()));
+	}
+
+	private static boolean requiresAny(IJavaProject project, Set<String> names) throws JavaModelException {
+		String[] required= project.getRequiredProjectNames();
+		for (int i= 0; i < required.length; i++) {
+			if (names.contains(required[i]))
+				return true;
+		}
+		return false;
+	}
+
+	private static void removeFolder(File folder) {
+		File[] files= folder.listFiles();
+		if (files == null)
+			return;
+		for (int i= 0; i < files.length; i++)
+			files[i].delete();
+	}
+
+	private File getProjectFolder(String projectName) {
+		return new File(fFolder, Integer.toHexString(projectName.hashCode()));
+	}
+
+	private File getFile(ICompilationUnit unit) {
+		ICompilationUnit primary= unit.getPrimary();
+		return new File(getProjectFolder(primary.getJavaProject().getElementName()), Integer.toHexString(primary.getHandleIdentifier().hashCode()));
+	}
+
+	/**
+	 * Computes a 64-bit FNV-1a hash of the given content.
+	 *
+	 * @param content the content
+	 * @return the hash
+	 */
+	private static long hash(String content) {
+		long hash= 0xcbf29ce484222325L;
+		for (int i= 0, n= content.length(); i < n; i++) {
+			hash^= content.charAt(i);
+			hash*= 0x100000001b3L;
+		}
+		return hash;
+	}
+}
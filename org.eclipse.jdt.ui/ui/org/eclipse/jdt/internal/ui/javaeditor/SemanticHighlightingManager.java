@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -337,6 +337,7 @@ public class SemanticHighlightingManager implements IPropertyChangeListener {
 
 		if (fEditor != null) {
 			fReconciler= new SemanticHighlightingReconciler();
+			fReconciler.setIncremental(fPreferenceStore.getBoolean(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL));
 			fReconciler.install(fEditor, fSourceViewer, fPresenter, fSemanticHighlightings, fHighlightings);
 		} else {
 			fPresenter.updatePresentation(null, createHardcodedPositions(), new HighlightedPosition[0]);
@@ -490,6 +491,12 @@ public class SemanticHighlightingManager implements IPropertyChangeListener {
 		if (fConfiguration != null)
 			fConfiguration.handlePropertyChangeEvent(event);
 
+		if (SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL.equals(event.getProperty())) {
+			if (fReconciler != null)
+				fReconciler.setIncremental(fPreferenceStore.getBoolean(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL));
+			return;
+		}
+
 		if (SemanticHighlightings.affectsEnablement(fPreferenceStore, event)) {
 			if (isEnabled())
 				enable();
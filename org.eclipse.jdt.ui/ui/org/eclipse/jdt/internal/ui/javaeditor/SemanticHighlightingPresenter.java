@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -272,6 +272,29 @@ public class SemanticHighlightingPresenter implements ITextPresentationListener,
 		}
 	}
 
+	/**
+	 * Adds all current positions which start inside the given range to the given list.
+	 * <p>
+	 * NOTE: Called from background thread.
+	 * </p>
+	 *
+	 * @param list The list
+	 * @param offset The range offset
+	 * @param length The range length
+	 * @since 3.14
+	 */
+	public void addAllPositions(List<Position> list, int offset, int length) {
+		synchronized (fPositionLock) {
+			int end= offset + length;
+			for (int i= computeIndexAtOffset(fPositions, offset), n= fPositions.size(); i < n; i++) {
+				Position position= fPositions.get(i);
+				if (position.getOffset() >= end)
+					break;
+				list.add(position);
+			}
+		}
+	}
+
 	/**
 	 * Create a text presentation in the background.
 	 * <p>
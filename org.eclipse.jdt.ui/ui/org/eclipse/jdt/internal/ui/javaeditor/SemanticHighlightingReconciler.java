@@ -12,6 +12,7 @@
 package org.eclipse.jdt.internal.ui.javaeditor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.swt.widgets.Display;
@@ -22,7 +23,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.TextPresentation;
@@ -30,15 +33,21 @@ import org.eclipse.jface.text.source.ISourceViewer;
 
 import org.eclipse.ui.IWorkbenchPartSite;
 
+import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.BooleanLiteral;
 import org.eclipse.jdt.core.dom.CharacterLiteral;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SimpleType;
@@ -46,6 +55,7 @@ import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
 
 import org.eclipse.jdt.internal.corext.dom.GenericVisitor;
 
+import org.eclipse.jdt.ui.PreferenceConstants;
 import org.eclipse.jdt.ui.SharedASTProvider;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
@@ -63,6 +73,13 @@ import org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener;
  */
 public class SemanticHighlightingReconciler implements IJavaReconcilingListener, ITextInputListener {
 
+	/**
+	 * Preference key that enables the incremental mode, see {@link #setIncremental(boolean)}. The
+	 * value is a boolean, <code>true</code> by default.
+	 * @since 3.14
+	 */
+	public static final String PREFERENCE_INCREMENTAL= PreferenceConstants.EDITOR_SEMANTIC_HIGHLIGHTING_PREFIX + "incremental"; //$NON-NLS-1$
+
 	/**
 	 * Collects positions from the AST.
 	 */
@@ -243,6 +260,103 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		}
 	}
 
+	/**
+	 * A document range which has been modified since the last reconcile, in the coordinates of the
+	 * current document.
+	 *
+	 * @since 3.14
+	 */
+	private static class DirtyRegion {
+
+		/** The start offset, inclusive */
+		private int fStart;
+		/** The end offset, exclusive */
+		private int fEnd;
+
+		public DirtyRegion(int start, int end) {
+			fStart= start;
+			fEnd= end;
+		}
+
+		/**
+		 * Updates this region to cover the given document change.
+		 *
+		 * @param offset the offset of the replaced text
+		 * @param length the length of the replaced text
+		 * @param textLength the length of the inserted text
+		 */
+		public void update(int offset, int length, int textLength) {
+			int delta= textLength - length;
+			int replacedEnd= offset + length;
+
+			if (fStart > offset)
+				fStart= fStart >= replacedEnd ? fStart + delta : offset;
+			if (fEnd > offset)
+				fEnd= fEnd >= replacedEnd ? fEnd + delta : offset + textLength;
+
+			fStart= Math.min(fStart, offset);
+			fEnd= Math.max(fEnd, offset + textLength);
+		}
+
+		public void add(DirtyRegion region) {
+			fStart= Math.min(fStart, region.fStart);
+			fEnd= Math.max(fEnd, region.fEnd);
+		}
+
+		public int getStart() {
+			return fStart;
+		}
+
+		public int getEnd() {
+			return fEnd;
+		}
+	}
+
+	/**
+	 * Tracks the document changes between two reconciles. Changes are recorded in the UI thread and
+	 * consumed by the reconciler thread.
+	 *
+	 * @since 3.14
+	 */
+	private class DirtyRegionTracker implements IDocumentListener, ITextInputListener {
+
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			// Do nothing
+		}
+
+		@Override
+		public void documentChanged(DocumentEvent event) {
+			int textLength= event.getText() == null ? 0 : event.getText().length();
+			synchronized (fDirtyRegionLock) {
+				if (fDirtyRegion == null)
+					fDirtyRegion= new DirtyRegion(event.getOffset(), event.getOffset() + textLength);
+				else
+					fDirtyRegion.update(event.getOffset(), event.getLength(), textLength);
+
+				if (fReconcilingRegion != null)
+					fReconcilingRegion.update(event.getOffset(), event.getLength(), textLength);
+			}
+		}
+
+		@Override
+		public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+			if (oldInput != null)
+				oldInput.removeDocumentListener(this);
+		}
+
+		@Override
+		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+			synchronized (fDirtyRegionLock) {
+				fDirtyRegion= null;
+				fReconcilingRegion= null;
+				fFullReconcileRequired= true;
+			}
+			if (newInput != null)
+				newInput.addDocumentListener(this);
+		}
+	}
+
 	/** Position collector */
 	private PositionCollector fCollector= new PositionCollector();
 
@@ -293,12 +407,67 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 */
 	private Highlighting fJobDeprecatedMemberHighlighting;
 
+	/**
+	 * <code>true</code> if only the body declarations affected by the document changes since the
+	 * last reconcile are re-visited, <code>false</code> if the whole AST is re-visited every time.
+	 * @since 3.14
+	 */
+	private boolean fIncremental= true;
+	/**
+	 * Dirty region tracker, <code>null</code> if not installed.
+	 * @since 3.14
+	 */
+	private DirtyRegionTracker fDirtyRegionTracker;
+	/**
+	 * Dirty region lock.
+	 * @since 3.14
+	 */
+	private final Object fDirtyRegionLock= new Object();
+	/**
+	 * Document range changed since the start of the last reconcile or <code>null</code> if none.
+	 * @since 3.14
+	 */
+	private DirtyRegion fDirtyRegion;
+	/**
+	 * Document range handled by the current reconcile or <code>null</code> if none.
+	 * @since 3.14
+	 */
+	private DirtyRegion fReconcilingRegion;
+	/**
+	 * <code>true</code> if the next reconcile must re-visit the whole AST.
+	 * @since 3.14
+	 */
+	private boolean fFullReconcileRequired= true;
+
+	/**
+	 * Enables or disables the incremental mode. In incremental mode, only the method and
+	 * initializer bodies containing the document changes since the last reconcile are re-visited
+	 * and their positions are spliced into the presenter's positions. Any other change causes a full
+	 * reconcile.
+	 *
+	 * @param incremental <code>true</code> to enable the incremental mode
+	 * @see #PREFERENCE_INCREMENTAL
+	 * @since 3.14
+	 */
+	public void setIncremental(boolean incremental) {
+		synchronized (fDirtyRegionLock) {
+			fIncremental= incremental;
+			fFullReconcileRequired= true;
+		}
+	}
+
 	/*
 	 * @see org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener#aboutToBeReconciled()
 	 */
 	@Override
 	public void aboutToBeReconciled() {
-		// Do nothing
+		synchronized (fDirtyRegionLock) {
+			if (fReconcilingRegion != null && fDirtyRegion != null)
+				fReconcilingRegion.add(fDirtyRegion);
+			else if (fDirtyRegion != null)
+				fReconcilingRegion= fDirtyRegion;
+			fDirtyRegion= null;
+		}
 	}
 
 	/*
@@ -317,6 +486,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		fJobSemanticHighlightings= fSemanticHighlightings;
 		fJobHighlightings= fHighlightings;
 
+		boolean completed= false;
 		try {
 			if (fJobPresenter == null || fJobSemanticHighlightings == null || fJobHighlightings == null)
 				return;
@@ -326,11 +496,13 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			if (ast == null || fJobPresenter.isCanceled())
 				return;
 
-			ASTNode[] subtrees= getAffectedSubtrees(ast);
-			if (subtrees.length == 0)
+			ASTNode[] subtrees= getAffectedSubtrees(ast, forced);
+			if (subtrees.length == 0) {
+				completed= true;
 				return;
+			}
 
-			startReconcilingPositions();
+			startReconcilingPositions(subtrees, ast);
 
 			if (!fJobPresenter.isCanceled()) {
 				fJobDeprecatedMemberHighlighting= null;
@@ -348,11 +520,26 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			if (!fJobPresenter.isCanceled())
 				textPresentation= fJobPresenter.createPresentation(fAddedPositions, fRemovedPositions);
 
-			if (!fJobPresenter.isCanceled())
+			if (!fJobPresenter.isCanceled()) {
 				updatePresentation(textPresentation, fAddedPositions, fRemovedPositions);
+				completed= true;
+			}
 
 			stopReconcilingPositions();
 		} finally {
+			synchronized (fDirtyRegionLock) {
+				if (completed) {
+					fReconcilingRegion= null;
+					fFullReconcileRequired= false;
+				} else if (fReconcilingRegion != null) {
+					// retry the region with the next reconcile
+					if (fDirtyRegion != null)
+						fReconcilingRegion.add(fDirtyRegion);
+					fDirtyRegion= fReconcilingRegion;
+					fReconcilingRegion= null;
+				}
+			}
+
 			fJobPresenter= null;
 			fJobSemanticHighlightings= null;
 			fJobHighlightings= null;
@@ -364,19 +551,84 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	}
 
 	/**
+	 * Returns the subtrees that may be affected by the document changes since the last reconcile.
+	 * <p>
+	 * Only changes inside a single method or initializer body are reconciled incrementally: such
+	 * changes cannot alter the bindings of any other body declaration. All other changes affect the
+	 * whole AST.
+	 * </p>
+	 *
 	 * @param node Root node
+	 * @param forced <code>true</code> iff this reconciliation was forced
 	 * @return Array of subtrees that may be affected by past document changes
 	 */
-	private ASTNode[] getAffectedSubtrees(ASTNode node) {
-		// TODO: only return nodes which are affected by document changes - would require an 'anchor' concept for taking distant effects into account
-		return new ASTNode[] { node };
+	private ASTNode[] getAffectedSubtrees(CompilationUnit node, boolean forced) {
+		DirtyRegion region;
+		synchronized (fDirtyRegionLock) {
+			if (!fIncremental || forced || fFullReconcileRequired || fDirtyRegionTracker == null)
+				return new ASTNode[] { node };
+			region= fReconcilingRegion;
+		}
+		if (region == null)
+			return new ASTNode[] { node };
+
+		BodyDeclaration declaration= findEnclosingBody(node.types(), region.getStart(), region.getEnd());
+		if (declaration == null)
+			return new ASTNode[] { node };
+
+		return new ASTNode[] { declaration };
+	}
+
+	/**
+	 * Finds the method or initializer whose body strictly encloses the given range.
+	 *
+	 * @param types the type declarations to search
+	 * @param start the range start, inclusive
+	 * @param end the range end, exclusive
+	 * @return the body declaration or <code>null</code> if the range is not inside a body
+	 */
+	private static BodyDeclaration findEnclosingBody(List<?> types, int start, int end) {
+		for (int i= 0, n= types.size(); i < n; i++) {
+			Object type= types.get(i);
+			if (!(type instanceof AbstractTypeDeclaration))
+				continue;
+
+			List<?> declarations= ((AbstractTypeDeclaration)type).bodyDeclarations();
+			for (int j= 0, m= declarations.size(); j < m; j++) {
+				BodyDeclaration declaration= (BodyDeclaration)declarations.get(j);
+				if (start < declaration.getStartPosition() || end > declaration.getStartPosition() + declaration.getLength())
+					continue;
+
+				if (declaration instanceof AbstractTypeDeclaration)
+					return findEnclosingBody(declarations.subList(j, j + 1), start, end);
+
+				Block body= null;
+				if (declaration instanceof MethodDeclaration)
+					body= ((MethodDeclaration)declaration).getBody();
+				else if (declaration instanceof Initializer)
+					body= ((Initializer)declaration).getBody();
+
+				if (body != null && start > body.getStartPosition() && end < body.getStartPosition() + body.getLength() - 1)
+					return declaration;
+				return null;
+			}
+		}
+		return null;
 	}
 
 	/**
 	 * Start reconciling positions.
+	 *
+	 * @param subtrees the AST subtrees
+	 * @param root the root of the AST
 	 */
-	private void startReconcilingPositions() {
-		fJobPresenter.addAllPositions(fRemovedPositions);
+	private void startReconcilingPositions(ASTNode[] subtrees, ASTNode root) {
+		if (subtrees.length == 1 && subtrees[0] == root) {
+			fJobPresenter.addAllPositions(fRemovedPositions);
+		} else {
+			for (int i= 0, n= subtrees.length; i < n; i++)
+				fJobPresenter.addAllPositions(fRemovedPositions, subtrees[i].getStartPosition(), subtrees[i].getLength());
+		}
 		fNOfRemovedPositions= fRemovedPositions.size();
 	}
 
@@ -386,10 +638,6 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @param subtrees the AST subtrees
 	 */
 	private void reconcilePositions(ASTNode[] subtrees) {
-		// FIXME: remove positions not covered by subtrees
-
-
-
 		for (int i= 0, n= subtrees.length; i < n; i++)
 			subtrees[i].accept(fCollector);
 		List<Position> oldPositions= fRemovedPositions;
@@ -459,7 +707,13 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		fSourceViewer= sourceViewer;
 
 		if (fEditor instanceof CompilationUnitEditor) {
+			fDirtyRegionTracker= new DirtyRegionTracker();
+			fSourceViewer.addTextInputListener(fDirtyRegionTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.addDocumentListener(fDirtyRegionTracker);
 			((CompilationUnitEditor)fEditor).addReconcileListener(this);
+			restoreCachedPositions();
 		} else if (fEditor == null) {
 			fSourceViewer.addTextInputListener(this);
 			scheduleJob();
@@ -470,6 +724,8 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * Uninstall this reconciler from the editor
 	 */
 	public void uninstall() {
+		storeCachedPositions();
+
 		if (fPresenter != null)
 			fPresenter.setCanceled(true);
 
@@ -481,12 +737,107 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			fEditor= null;
 		}
 
+		if (fDirtyRegionTracker != null) {
+			fSourceViewer.removeTextInputListener(fDirtyRegionTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.removeDocumentListener(fDirtyRegionTracker);
+			fDirtyRegionTracker= null;
+		}
+
 		fSourceViewer= null;
 		fSemanticHighlightings= null;
 		fHighlightings= null;
 		fPresenter= null;
 	}
 
+	/**
+	 * Presents the positions from the {@link SemanticHighlightingCache}, if enabled and valid for
+	 * the current content. The first reconcile then only updates the positions that differ.
+	 * <p>
+	 * NOTE: Called from the UI thread.
+	 * </p>
+	 *
+	 * @since 3.14
+	 */
+	private void restoreCachedPositions() {
+		SemanticHighlightingCache cache= SemanticHighlightingCache.getCache(JavaPlugin.getDefault().getPreferenceStore());
+		ITypeRoot element= fEditor.getInputJavaElement();
+		IDocument document= fSourceViewer.getDocument();
+		if (cache == null || !(element instanceof ICompilationUnit) || document == null)
+			return;
+
+		ICompilationUnit unit= (ICompilationUnit) element;
+		int[] cached= cache.get(unit, document.get(), SemanticHighlightingCache.getFingerprint(unit, fHighlightings));
+		if (cached == null)
+			return;
+
+		List<HighlightedPosition> positions= new ArrayList<>(cached.length / 3);
+		for (int i= 0; i + 2 < cached.length; i+= 3) {
+			int index= cached[i + 2];
+			if (index >= 0 && index < fHighlightings.length)
+				positions.add(fPresenter.createHighlightedPosition(cached[i], cached[i + 1], fHighlightings[index]));
+		}
+		fPresenter.updatePresentation(null, positions.toArray(new HighlightedPosition[positions.size()]), new HighlightedPosition[0]);
+	}
+
+	/**
+	 * Stores the presented positions in the {@link SemanticHighlightingCache}, if enabled and if
+	 * the positions are up to date with the saved content.
+	 * <p>
+	 * NOTE: Called from the UI thread.
+	 * </p>
+	 *
+	 * @since 3.14
+	 */
+	private void storeCachedPositions() {
+		if (!(fEditor instanceof CompilationUnitEditor) || fPresenter == null || fEditor.isDirty())
+			return;
+		SemanticHighlightingCache cache= SemanticHighlightingCache.getCache(JavaPlugin.getDefault().getPreferenceStore());
+		ITypeRoot element= fEditor.getInputJavaElement();
+		IDocument document= fSourceViewer.getDocument();
+		if (cache == null || !(element instanceof ICompilationUnit) || document == null)
+			return;
+
+		synchronized (fReconcileLock) {
+			if (fIsReconciling)
+				return;
+		}
+		synchronized (fDirtyRegionLock) {
+			if (fFullReconcileRequired || fDirtyRegion != null || fReconcilingRegion != null)
+				return;
+		}
+
+		List<Position> positions= new ArrayList<>();
+		fPresenter.addAllPositions(positions);
+		int[] entries= new int[3 * positions.size()];
+		int size= 0;
+		for (int i= 0, n= positions.size(); i < n; i++) {
+			HighlightedPosition position= (HighlightedPosition) positions.get(i);
+			if (position.isDeleted())
+				continue;
+			int index= indexOf(position.getHighlighting());
+			if (index == -1)
+				continue;
+			entries[size++]= position.getOffset();
+			entries[size++]= position.getLength();
+			entries[size++]= index;
+		}
+		if (size < entries.length)
+			entries= Arrays.copyOf(entries, size);
+
+		ICompilationUnit unit= (ICompilationUnit) element;
+		cache.put(unit, document.get(), SemanticHighlightingCache.getFingerprint(unit, fHighlightings), entries);
+	}
+
+	private int indexOf(Highlighting highlighting) {
+		for (int i= 0; i < fHighlightings.length; i++) {
+			if (fHighlightings[i] == highlighting)
+				return i;
+		}
+		return -1;
+	}
+
 	/**
 	 * Schedule a background job for retrieving the AST and reconciling the Semantic Highlighting model.
 	 */
@@ -559,6 +910,9 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @since 3.2
 	 */
 	public void refresh() {
+		synchronized (fDirtyRegionLock) {
+			fFullReconcileRequired= true;
+		}
 		scheduleJob();
 	}
 }
@@ -2076,6 +2076,8 @@ public class SemanticHighlightings {
 			store.setDefault(SemanticHighlightings.getEnabledPreferenceKey(semanticHighlighting), semanticHighlighting.isEnabledByDefault());
 		}
 
+		store.setDefault(SemanticHighlightingReconciler.PREFERENCE_INCREMENTAL, true);
+
 		convertMethodHighlightingPreferences(store);
 		convertAnnotationHighlightingPreferences(store);
 	}
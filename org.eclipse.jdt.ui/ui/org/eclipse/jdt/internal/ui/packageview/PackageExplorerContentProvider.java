@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,13 @@ package org.eclipse.jdt.internal.ui.packageview;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
@@ -30,6 +35,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.viewers.IBasicPropertyConstants;
@@ -79,11 +85,20 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	protected static final int GRANT_PARENT= 1 << 1;
 	protected static final int PROJECT= 1 << 2;
 
+	/**
+	 * Preference key for the maximal number of viewer updates of a project that are merged and
+	 * applied one by one. Past this threshold the project is refreshed instead. <code>0</code>
+	 * disables the merging: more than one added or removed child refreshes the parent.
+	 */
+	private static final String MERGE_THRESHOLD= "PackageExplorerContentProvider.mergeThreshold"; //$NON-NLS-1$
+	private static final int DEFAULT_MERGE_THRESHOLD= 200;
+
 	private TreeViewer fViewer;
 	private Object fInput;
 	private boolean fIsFlatLayout;
 	private boolean fShowLibrariesNode;
 	private boolean fFoldPackages;
+	private int fMergeThreshold;
 
 	private Collection<Runnable> fPendingUpdates;
 
@@ -106,6 +121,7 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 		fShowLibrariesNode= false;
 		fIsFlatLayout= false;
 		fFoldPackages= arePackagesFoldedInHierarchicalLayout();
+		fMergeThreshold= getMergeThreshold();
 		fPendingUpdates= null;
 		JavaPlugin.getDefault().getPreferenceStore().addPropertyChangeListener(this);
 
@@ -117,6 +133,24 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 		return PreferenceConstants.getPreferenceStore().getBoolean(PreferenceConstants.APPEARANCE_FOLD_PACKAGES_IN_PACKAGE_EXPLORER);
 	}
 
+	private static int getMergeThreshold() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		if (!store.contains(MERGE_THRESHOLD))
+			return DEFAULT_MERGE_THRESHOLD;
+		return Math.max(0, store.getInt(MERGE_THRESHOLD));
+	}
+
+	/**
+	 * Tells whether the given number of added or removed children is better handled by
+	 * refreshing their parent than by updating the children one by one.
+	 *
+	 * @param count the number of added or removed children
+	 * @return <code>true</code> if the parent should be refreshed
+	 */
+	private boolean exceedsMergeThreshold(int count) {
+		return count > 1 && (fMergeThreshold == 0 || count > fMergeThreshold);
+	}
+
 	protected Object getViewerInput() {
 		return fInput;
 	}
@@ -201,6 +235,8 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	}
 
 	private void runUpdates(Collection<Runnable> runnables) {
+		if (fMergeThreshold > 0 && runnables.size() > 1)
+			runnables= mergeUpdates(runnables);
 		Iterator<Runnable> runnableIterator = runnables.iterator();
 		while (runnableIterator.hasNext()){
 			runnableIterator.next().run();
@@ -559,8 +595,8 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	// ------ delta processing ------
 
 	/**
-	 * Processes a delta recursively. When more than two children are affected the
-	 * tree is fully refreshed starting at this node.
+	 * Processes a delta recursively. When more children are affected than the merge threshold
+	 * allows, the tree is fully refreshed starting at this node.
 	 *
 	 * @param delta the delta to process
 	 * @param runnables the resulting view changes as runnables (type {@link Runnable})
@@ -802,8 +838,8 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 			}
 		}
 
-		if (count > 1) {
-			// more than one child changed, refresh from here downwards
+		if (exceedsMergeThreshold(count)) {
+			// too many children changed, refresh from here downwards
 			if (element instanceof IPackageFragment) {
 				// a package fragment might become non empty refresh from the parent
 				IJavaElement parent= (IJavaElement) internalGetParent(element);
@@ -855,13 +891,7 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	 * @param runnables the resulting view changes as runnables (type {@link Runnable})
 	 */
 	 private void postUpdateIcon(final IJavaElement element, Collection<Runnable> runnables) {
-		 runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				// 1GF87WR: ITPUI:ALL - SWTEx + NPE closing a workbench window.
-				fViewer.update(element, new String[]{IBasicPropertyConstants.P_IMAGE});
-			}
-		});
+		 runnables.add(new UpdateIcon(element));
 	 }
 
 	/**
@@ -920,7 +950,7 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 			int kind= resourceDeltas[i].getKind();
 			if (kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED) {
 				count++;
-				if (count > 1) {
+				if (exceedsMergeThreshold(count)) {
 					postRefresh(parent, PARENT, resource, runnables);
 					return true;
 				}
@@ -973,48 +1003,15 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	}
 
 	protected void postRefresh(final List<Object> toRefresh, final boolean updateLabels, Collection<Runnable> runnables) {
-		runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				Object[] elements= toRefresh.toArray();
-				for (int i= 0; i < elements.length; i++) {
-					Object element= elements[i];
-					if (element == null || fViewer.testFindItems(element).length > 0) {
-						fViewer.refresh(element, updateLabels);
-					}
-				}
-			}
-		});
+		runnables.add(new Refresh(toRefresh, updateLabels));
 	}
 
 	protected void postAdd(final Object parent, final Object element, Collection<Runnable> runnables) {
-		runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				Widget[] items= fViewer.testFindItems(element);
-				for (int i= 0; i < items.length; i++) {
-					Widget item= items[i];
-					if (item instanceof TreeItem && !item.isDisposed()) {
-						TreeItem parentItem= ((TreeItem) item).getParentItem();
-						if (parentItem != null && !parentItem.isDisposed() && parent.equals(parentItem.getData())) {
-							return; // no add, element already added (most likely by a refresh)
-						}
-					}
-				}
-				fViewer.add(parent, element);
-			}
-		});
+		runnables.add(new Add(parent, element));
 	}
 
 	protected void postRemove(final Object element, Collection<Runnable> runnables) {
-		runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				if (fViewer.testFindItems(element).length > 0) {
-					fViewer.remove(element);
-				}
-			}
-		});
+		runnables.add(new Remove(element));
 	}
 
 	protected void postProjectStateChanged(final Object root, Collection<Runnable> runnables) {
@@ -1029,12 +1026,300 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 		});
 	}
 
+	/**
+	 * Merges the viewer updates of a batch, which can span several Java element deltas. Each
+	 * element is refreshed once, updates below a refreshed element are dropped, and consecutive
+	 * adds to the same parent and consecutive removes are passed to the viewer at once. If more
+	 * adds and removes than the merge threshold remain for a project, the project is refreshed
+	 * instead. Other runnables are kept in place.
+	 *
+	 * @param runnables the viewer updates in the order they were posted
+	 * @return the merged updates
+	 */
+	private Collection<Runnable> mergeUpdates(Collection<Runnable> runnables) {
+		Map<Object, Boolean> refreshed= new HashMap<>();
+		for (Iterator<Runnable> iter= runnables.iterator(); iter.hasNext();) {
+			Runnable runnable= iter.next();
+			if (runnable instanceof Refresh) {
+				Refresh refresh= (Refresh) runnable;
+				for (Iterator<Object> elements= refresh.fElements.iterator(); elements.hasNext();) {
+					Object element= elements.next();
+					if (refresh.fUpdateLabels || !refreshed.containsKey(element))
+						refreshed.put(element, Boolean.valueOf(refresh.fUpdateLabels));
+				}
+			}
+		}
+		// an element shown below several parents is not covered by the refresh of one of them
+		Map<Object, Boolean> ancestors= this instanceof IMultiElementTreeContentProvider ? new HashMap<Object, Boolean>() : refreshed;
+
+		Map<Object, int[]> changesPerProject= new HashMap<>();
+		for (Iterator<Runnable> iter= runnables.iterator(); iter.hasNext();) {
+			Runnable runnable= iter.next();
+			if ((runnable instanceof Add || runnable instanceof Remove) && !((Update) runnable).isCovered(ancestors)) {
+				Object project= getProject(((Update) runnable).fElement);
+				if (project != null) {
+					int[] count= changesPerProject.get(project);
+					if (count == null)
+						changesPerProject.put(project, count= new int[1]);
+					count[0]++;
+				}
+			}
+		}
+		List<Runnable> result= new ArrayList<>(runnables.size());
+		Set<Object> refreshedProjects= new HashSet<>();
+		for (Iterator<Map.Entry<Object, int[]>> iter= changesPerProject.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<Object, int[]> entry= iter.next();
+			if (entry.getValue()[0] > fMergeThreshold) {
+				refreshedProjects.add(entry.getKey());
+				postRefresh(entry.getKey(), PROJECT, entry.getKey(), result);
+			}
+		}
+
+		Set<Object> refreshedElements= new HashSet<>();
+		Set<Object> icons= new LinkedHashSet<>();
+		Batch batch= null;
+		for (Iterator<Runnable> iter= runnables.iterator(); iter.hasNext();) {
+			Runnable runnable= iter.next();
+			if (runnable instanceof Update) {
+				Update update= (Update) runnable;
+				if (update instanceof Refresh) {
+					List<Object> withLabels= new ArrayList<>();
+					List<Object> withoutLabels= new ArrayList<>();
+					for (Iterator<Object> elements= ((Refresh) update).fElements.iterator(); elements.hasNext();) {
+						Object element= elements.next();
+						if (!refreshedElements.add(element))
+							continue;
+						boolean updateLabels= refreshed.get(element).booleanValue();
+						if (element != null && isRefreshed(internalGetParent(element), updateLabels, ancestors))
+							continue;
+						(updateLabels ? withLabels : withoutLabels).add(element);
+					}
+					if (!withLabels.isEmpty())
+						result.add(new Refresh(withLabels, true));
+					if (!withoutLabels.isEmpty())
+						result.add(new Refresh(withoutLabels, false));
+				} else {
+					// superseded updates are dropped without closing the batch
+					boolean superseded= update.isCovered(ancestors) || refreshedProjects.contains(getProject(update.fElement));
+					if (!superseded && update instanceof UpdateIcon) {
+						icons.add(update.fElement);
+					} else if (!superseded) {
+						Object parent= update instanceof Add ? ((Add) update).fParent : null;
+						if (batch == null || batch.fAdd != update instanceof Add || batch.fAdd && !batch.fParent.equals(parent)) {
+							batch= new Batch(update instanceof Add, parent);
+							result.add(batch);
+						}
+						batch.fElements.add(update.fElement);
+					}
+					continue;
+				}
+			} else {
+				result.add(runnable);
+			}
+			batch= null;
+		}
+		for (Iterator<Object> iter= icons.iterator(); iter.hasNext();) {
+			result.add(new UpdateIcon(iter.next()));
+		}
+		return result;
+	}
+
+	private boolean isRefreshed(Object element, boolean updateLabels, Map<Object, Boolean> refreshed) {
+		if (refreshed.isEmpty())
+			return false;
+		while (element != null) {
+			Boolean refreshedLabels= refreshed.get(element);
+			if (refreshedLabels != null && (refreshedLabels.booleanValue() || !updateLabels))
+				return true;
+			element= internalGetParent(element);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the project that contains the given element. Projects have no project, their
+	 * updates are never replaced by a refresh.
+	 *
+	 * @param element the element
+	 * @return the Java project or project containing the element, or <code>null</code>
+	 */
+	private static Object getProject(Object element) {
+		if (element instanceof IJavaModel || element instanceof IJavaProject || element instanceof IProject)
+			return null;
+		if (element instanceof IJavaElement)
+			return ((IJavaElement) element).getJavaProject();
+		if (element instanceof PackageFragmentRootContainer)
+			return ((PackageFragmentRootContainer) element).getJavaProject();
+		if (element instanceof IResource) {
+			IProject project= ((IResource) element).getProject();
+			if (project == null)
+				return null;
+			IJavaProject javaProject= JavaCore.create(project);
+			return javaProject.exists() ? javaProject : project;
+		}
+		return null;
+	}
+
+	/**
+	 * A viewer update that can be merged with the other updates of a batch.
+	 */
+	private abstract class Update implements Runnable {
+		final Object fElement;
+
+		Update(Object element) {
+			fElement= element;
+		}
+
+		/**
+		 * Tells whether this update is superseded by one of the given refreshes.
+		 *
+		 * @param refreshed the refreshed elements, mapped to whether their labels are updated
+		 * @return <code>true</code> if the update can be dropped
+		 */
+		abstract boolean isCovered(Map<Object, Boolean> refreshed);
+	}
+
+	private final class Refresh extends Update {
+		final List<Object> fElements;
+		final boolean fUpdateLabels;
+
+		Refresh(List<Object> elements, boolean updateLabels) {
+			super(null);
+			fElements= elements;
+			fUpdateLabels= updateLabels;
+		}
+
+		@Override
+		boolean isCovered(Map<Object, Boolean> refreshed) {
+			return false;
+		}
+
+		@Override
+		public void run() {
+			Object[] elements= fElements.toArray();
+			for (int i= 0; i < elements.length; i++) {
+				Object element= elements[i];
+				if (element == null || fViewer.testFindItems(element).length > 0) {
+					fViewer.refresh(element, fUpdateLabels);
+				}
+			}
+		}
+	}
+
+	private final class Add extends Update {
+		final Object fParent;
+
+		Add(Object parent, Object element) {
+			super(element);
+			fParent= parent;
+		}
+
+		@Override
+		boolean isCovered(Map<Object, Boolean> refreshed) {
+			return isRefreshed(fParent, false, refreshed);
+		}
+
+		@Override
+		public void run() {
+			if (!isAdded(fParent, fElement))
+				fViewer.add(fParent, fElement);
+		}
+	}
+
+	private final class Remove extends Update {
+		Remove(Object element) {
+			super(element);
+		}
+
+		@Override
+		boolean isCovered(Map<Object, Boolean> refreshed) {
+			return isRefreshed(internalGetParent(fElement), false, refreshed);
+		}
+
+		@Override
+		public void run() {
+			if (fViewer.testFindItems(fElement).length > 0) {
+				fViewer.remove(fElement);
+			}
+		}
+	}
+
+	private final class UpdateIcon extends Update {
+		UpdateIcon(Object element) {
+			super(element);
+		}
+
+		@Override
+		boolean isCovered(Map<Object, Boolean> refreshed) {
+			return isRefreshed(fElement, true, refreshed);
+		}
+
+		@Override
+		public void run() {
+			// 1GF87WR: ITPUI:ALL - SWTEx + NPE closing a workbench window.
+			fViewer.update(fElement, new String[]{IBasicPropertyConstants.P_IMAGE});
+		}
+	}
+
+	/**
+	 * Merged consecutive adds to the same parent or consecutive removes.
+	 */
+	private final class Batch implements Runnable {
+		final boolean fAdd;
+		final Object fParent;
+		final Set<Object> fElements= new LinkedHashSet<>();
+
+		Batch(boolean add, Object parent) {
+			fAdd= add;
+			fParent= parent;
+		}
+
+		@Override
+		public void run() {
+			List<Object> elements= new ArrayList<>(fElements.size());
+			for (Iterator<Object> iter= fElements.iterator(); iter.hasNext();) {
+				Object element= iter.next();
+				if (fAdd ? !isAdded(fParent, element) : fViewer.testFindItems(element).length > 0)
+					elements.add(element);
+			}
+			if (elements.size() == 1) {
+				if (fAdd)
+					fViewer.add(fParent, elements.get(0));
+				else
+					fViewer.remove(elements.get(0));
+			} else if (!elements.isEmpty()) {
+				if (fAdd)
+					fViewer.add(fParent, elements.toArray());
+				else
+					fViewer.remove(elements.toArray());
+			}
+		}
+	}
+
+	private boolean isAdded(Object parent, Object element) {
+		Widget[] items= fViewer.testFindItems(element);
+		for (int i= 0; i < items.length; i++) {
+			Widget item= items[i];
+			if (item instanceof TreeItem && !item.isDisposed()) {
+				TreeItem parentItem= ((TreeItem) item).getParentItem();
+				if (parentItem != null && !parentItem.isDisposed() && parent.equals(parentItem.getData())) {
+					return true; // element already added (most likely by a refresh)
+				}
+			}
+		}
+		return false;
+	}
+
 
 	/*
 	 * @see org.eclipse.jface.util.IPropertyChangeListener#propertyChange(org.eclipse.jface.util.PropertyChangeEvent)
 	 */
 	@Override
 	public void propertyChange(PropertyChangeEvent event) {
+		if (MERGE_THRESHOLD.equals(event.getProperty())) {
+			fMergeThreshold= getMergeThreshold();
+			return;
+		}
 		if (arePackagesFoldedInHierarchicalLayout() != fFoldPackages){
 			fFoldPackages= arePackagesFoldedInHierarchicalLayout();
 			if (fViewer != null && !fViewer.getControl().isDisposed()) {
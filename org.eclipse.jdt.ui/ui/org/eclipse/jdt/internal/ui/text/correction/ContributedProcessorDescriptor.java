@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -126,7 +126,21 @@ public final class ContributedProcessorDescriptor {
 		return false;
 	}
 
-	public Object getProcessor(ICompilationUnit cunit, Class<?> expectedType) {
+	/**
+	 * Returns the id of the contribution.
+	 *
+	 * @return the id
+	 * @since 3.14
+	 */
+	public String getId() {
+		return fConfigurationElement.getAttribute(ID);
+	}
+
+	/*
+	 * Synchronized, as processors can be called from several threads in the concurrent mode of
+	 * JavaCorrectionProcessor.
+	 */
+	public synchronized Object getProcessor(ICompilationUnit cunit, Class<?> expectedType) {
 		if (matches(cunit)) {
 			if (fProcessorInstance == null) {
 				try {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,10 @@ package org.eclipse.jdt.internal.ui.text.correction;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,6 +31,8 @@ import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 
+import org.eclipse.jface.preference.IPreferenceStore;
+
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
@@ -78,6 +82,12 @@ public class CorrectionMarkerResolutionGenerator implements IMarkerResolutionGen
 
 		private static final IMarker[] NO_MARKERS= new IMarker[0];
 
+		/**
+		 * Preference key for the number of threads used to fix the markers of several compilation
+		 * units, <code>1</code> (the default) fixes them sequentially.
+		 */
+		private static final String PARALLELISM= "CorrectionMarkerResolutionGenerator.parallelism"; //$NON-NLS-1$
+
 		private ICompilationUnit fCompilationUnit;
 		private int fOffset;
 		private int fLength;
@@ -147,7 +157,7 @@ public class CorrectionMarkerResolutionGenerator implements IMarkerResolutionGen
 					return;
 				}
 
-				((FixCorrectionProposal)fProposal).resolve(problems, monitor);
+				((FixCorrectionProposal)fProposal).resolve(problems, getParallelism(), monitor);
 
 				IEditorPart part= EditorUtility.isOpenInEditor(fCompilationUnit);
 				if (part instanceof ITextEditor) {
@@ -161,22 +171,48 @@ public class CorrectionMarkerResolutionGenerator implements IMarkerResolutionGen
 			}
 		}
 
+		private static int getParallelism() {
+			IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+			if (!store.contains(PARALLELISM))
+				return 1;
+			return Math.max(1, store.getInt(PARALLELISM));
+		}
+
+		/**
+		 * Groups the given markers by compilation unit. The problem locations of the markers of a
+		 * resource are looked up together, so that the annotation model of an open editor is only
+		 * traversed once per resource.
+		 *
+		 * @param markers the markers
+		 * @return one target per compilation unit
+		 */
 		public static MultiFixTarget[] getCleanUpTargets(IMarker[] markers) {
-			Hashtable<ICompilationUnit, List<IProblemLocation>> problemLocations= new Hashtable<>();
+			Map<IResource, List<IMarker>> resourceMarkers= new LinkedHashMap<>();
 			for (int i= 0; i < markers.length; i++) {
 				IMarker marker= markers[i];
-				ICompilationUnit cu= getCompilationUnit(marker);
+				List<IMarker> l= resourceMarkers.get(marker.getResource());
+				if (l == null) {
+					l= new ArrayList<>();
+					resourceMarkers.put(marker.getResource(), l);
+				}
+				l.add(marker);
+			}
+
+			Map<ICompilationUnit, List<IProblemLocation>> problemLocations= new LinkedHashMap<>();
+			for (Iterator<List<IMarker>> iterator= resourceMarkers.values().iterator(); iterator.hasNext();) {
+				List<IMarker> resMarkers= iterator.next();
+				ICompilationUnit cu= getCompilationUnit(resMarkers.get(0));
 
 				if (cu != null) {
 					IEditorInput input= EditorUtility.getEditorInput(cu);
-					IProblemLocation location= findProblemLocation(input, marker);
-					if (location != null) {
+					List<IProblemLocation> locations= findProblemLocations(input, cu, resMarkers);
+					if (!locations.isEmpty()) {
 						List<IProblemLocation> l= problemLocations.get(cu.getPrimary());
 						if (l == null) {
-							l= new ArrayList<>();
-							problemLocations.put(cu.getPrimary(), l);
+							problemLocations.put(cu.getPrimary(), locations);
+						} else {
+							l.addAll(locations);
 						}
-						l.add(location);
 					}
 				}
 			}
@@ -447,6 +483,56 @@ public class CorrectionMarkerResolutionGenerator implements IMarkerResolutionGen
 		return null;
 	}
 
+	/**
+	 * Returns the problem locations of the given markers, which are all on the resource of the
+	 * given compilation unit.
+	 *
+	 * @param input the editor input of the compilation unit
+	 * @param cu the compilation unit
+	 * @param markers the markers
+	 * @return the problem locations in the order of the markers, markers without location are
+	 *         skipped
+	 */
+	private static List<IProblemLocation> findProblemLocations(IEditorInput input, ICompilationUnit cu, List<IMarker> markers) {
+		List<IProblemLocation> result= new ArrayList<>(markers.size());
+		IAnnotationModel model= null;
+		if (!(markers.get(0).getResource() instanceof IFolder))
+			model= JavaPlugin.getDefault().getCompilationUnitDocumentProvider().getAnnotationModel(input);
+		if (model == null) { // not open in editor
+			for (int i= 0, size= markers.size(); i < size; i++) {
+				IProblemLocation location= createFromMarker(markers.get(i), cu);
+				if (location != null)
+					result.add(location);
+			}
+			return result;
+		}
+
+		Map<IMarker, IProblemLocation> locations= new HashMap<>();
+		for (int i= 0, size= markers.size(); i < size; i++) {
+			locations.put(markers.get(i), null);
+		}
+		Iterator<Annotation> iter= model.getAnnotationIterator();
+		while (iter.hasNext()) {
+			Annotation curr= iter.next();
+			if (curr instanceof JavaMarkerAnnotation) {
+				JavaMarkerAnnotation annot= (JavaMarkerAnnotation) curr;
+				IMarker marker= annot.getMarker();
+				if (locations.containsKey(marker) && locations.get(marker) == null) {
+					Position pos= model.getPosition(annot);
+					if (pos != null) {
+						locations.put(marker, new ProblemLocation(pos.getOffset(), pos.getLength(), annot));
+					}
+				}
+			}
+		}
+		for (int i= 0, size= markers.size(); i < size; i++) {
+			IProblemLocation location= locations.get(markers.get(i));
+			if (location != null)
+				result.add(location);
+		}
+		return result;
+	}
+
 	private static IProblemLocation createFromMarker(IMarker marker, ICompilationUnit cu) {
 		try {
 			int id= marker.getAttribute(IJavaModelMarker.ID, -1);
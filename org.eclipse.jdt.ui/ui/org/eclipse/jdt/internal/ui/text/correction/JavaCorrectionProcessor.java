@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,17 +14,32 @@ package org.eclipse.jdt.internal.ui.text.correction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 
 import org.eclipse.core.resources.IMarker;
 
+import org.eclipse.jface.preference.IPreferenceStore;
+
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.contentassist.ContentAssistEvent;
 import org.eclipse.jface.text.contentassist.ICompletionListener;
@@ -33,6 +48,7 @@ import org.eclipse.jface.text.quickassist.IQuickAssistInvocationContext;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.IAnnotationModel;
 import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.jface.text.source.TextInvocationContext;
 
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IMarkerHelpRegistry;
@@ -47,6 +63,7 @@ import org.eclipse.ui.texteditor.SimpleMarkerAnnotation;
 import org.eclipse.ltk.core.refactoring.NullChange;
 
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import org.eclipse.jdt.internal.corext.util.Messages;
 
@@ -69,6 +86,40 @@ public class JavaCorrectionProcessor implements org.eclipse.jface.text.quickassi
 	private static final String QUICKFIX_PROCESSOR_CONTRIBUTION_ID= "quickFixProcessors"; //$NON-NLS-1$
 	private static final String QUICKASSIST_PROCESSOR_CONTRIBUTION_ID= "quickAssistProcessors"; //$NON-NLS-1$
 
+	/**
+	 * Preference key telling whether the contributed processors are run concurrently when
+	 * collecting proposals.
+	 */
+	private static final String CONCURRENT= "JavaCorrectionProcessor.concurrent"; //$NON-NLS-1$
+	/**
+	 * Preference key for the time in milliseconds a processor may take in concurrent mode. The
+	 * proposals of slower processors are dropped.
+	 */
+	private static final String TIME_BUDGET= "JavaCorrectionProcessor.timeBudget"; //$NON-NLS-1$
+	private static final int DEFAULT_TIME_BUDGET= 1000;
+
+	/**
+	 * The executor running the processors in concurrent mode, shared by all invocations. Created
+	 * lazily, its threads end when idle.
+	 */
+	private static ExecutorService fgExecutor;
+
+	/**
+	 * The number of calls that have exceeded the time budget of their invocation and are still
+	 * running. Processors do not react to interrupts, so these calls keep their executor threads
+	 * until they end. No calls are submitted while there are any, the processors are run
+	 * sequentially instead.
+	 */
+	private static final AtomicInteger fgAbandonedCalls= new AtomicInteger();
+
+	/** The name of the performance event used to trace processors. */
+	private static final String PERFORMANCE_EVENT= JavaPlugin.getPluginId() + "/perf/quickfix/processors"; //$NON-NLS-1$
+	/**
+	 * If <code>true</code>, execution time of processors is measured and the data forwarded to
+	 * core's {@link PerformanceStats} service.
+	 */
+	private static final boolean MEASURE_PERFORMANCE= PerformanceStats.isEnabled(PERFORMANCE_EVENT);
+
 	private static ContributedProcessorDescriptor[] fgContributedAssistProcessors= null;
 	private static ContributedProcessorDescriptor[] fgContributedCorrectionProcessors= null;
 
@@ -341,7 +392,17 @@ public class JavaCorrectionProcessor implements org.eclipse.jface.text.quickassi
 
 		@Override
 		public void run() throws Exception {
-			safeRun(fDescriptor);
+			PerformanceStats stats= null;
+			if (MEASURE_PERFORMANCE) {
+				stats= PerformanceStats.getStats(PERFORMANCE_EVENT, fDescriptor.getId());
+				stats.startRun(getClass().getSimpleName());
+			}
+			try {
+				safeRun(fDescriptor);
+			} finally {
+				if (stats != null)
+					stats.endRun();
+			}
 		}
 
 		protected abstract void safeRun(ContributedProcessorDescriptor processor) throws Exception;
@@ -465,6 +526,21 @@ public class JavaCorrectionProcessor implements org.eclipse.jface.text.quickassi
 
 	public static IStatus collectCorrections(IInvocationContext context, IProblemLocation[] locations, Collection<IJavaCompletionProposal> proposals) {
 		ContributedProcessorDescriptor[] processors= getCorrectionProcessors();
+		if (canRunConcurrently(processors)) {
+			List<ProcessorCall> calls= new ArrayList<>(processors.length);
+			for (int i= 0; i < processors.length; i++) {
+				IProblemLocation[] handled= getHandledProblems(locations, processors[i]);
+				if (handled != null) {
+					ProcessorCall call= new ProcessorCall(processors[i], context);
+					SafeCorrectionCollector collector= new SafeCorrectionCollector(call.fContext, call.fProposals);
+					collector.setProblemLocations(handled);
+					call.fCollector= collector;
+					calls.add(call);
+				}
+			}
+			return collectConcurrently(calls, proposals);
+		}
+
 		SafeCorrectionCollector collector= new SafeCorrectionCollector(context, proposals);
 		for (int i= 0; i < processors.length; i++) {
 			ContributedProcessorDescriptor curr= processors[i];
@@ -511,12 +587,185 @@ public class JavaCorrectionProcessor implements org.eclipse.jface.text.quickassi
 
 	public static IStatus collectAssists(IInvocationContext context, IProblemLocation[] locations, Collection<IJavaCompletionProposal> proposals) {
 		ContributedProcessorDescriptor[] processors= getAssistProcessors();
+		if (canRunConcurrently(processors)) {
+			List<ProcessorCall> calls= new ArrayList<>(processors.length);
+			for (int i= 0; i < processors.length; i++) {
+				ProcessorCall call= new ProcessorCall(processors[i], context);
+				call.fCollector= new SafeAssistCollector(call.fContext, locations, call.fProposals);
+				calls.add(call);
+			}
+			return collectConcurrently(calls, proposals);
+		}
+
 		SafeAssistCollector collector= new SafeAssistCollector(context, locations, proposals);
 		collector.process(processors);
 
 		return collector.getStatus();
 	}
 
+	private static boolean canRunConcurrently(ContributedProcessorDescriptor[] processors) {
+		return processors.length > 1 && JavaPlugin.getDefault().getPreferenceStore().getBoolean(CONCURRENT) && fgAbandonedCalls.get() <= 0;
+	}
+
+	private static int getTimeBudget() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		if (!store.contains(TIME_BUDGET))
+			return DEFAULT_TIME_BUDGET;
+		return store.getInt(TIME_BUDGET);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			int threads= Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor executor= new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Java Correction Processor"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			fgExecutor= executor;
+		}
+		return fgExecutor;
+	}
+
+	/**
+	 * Runs the given processor calls concurrently and adds the proposals of the calls that
+	 * complete within the time budget, in the order of the calls. The proposals of slower
+	 * processors are dropped and the processors are reported in the log.
+	 * <p>
+	 * The calls share one AST, which is created for this invocation and only read by the
+	 * processors, see {@link ProcessorCall}.
+	 * </p>
+	 *
+	 * @param calls the processor calls
+	 * @param proposals the collection to add the proposals to
+	 * @return the status of the processors
+	 */
+	private static IStatus collectConcurrently(List<ProcessorCall> calls, Collection<IJavaCompletionProposal> proposals) {
+		if (calls.isEmpty())
+			return Status.OK_STATUS;
+
+		// not from the shared AST provider, whose AST is used by the editor
+		CompilationUnit astRoot= ASTResolving.createQuickFixAST(calls.get(0).fContext.getCompilationUnit(), null);
+		for (Iterator<ProcessorCall> iter= calls.iterator(); iter.hasNext();) {
+			iter.next().fContext.setASTRoot(astRoot);
+		}
+
+		int budget= getTimeBudget();
+		MultiStatus status= null;
+		ExecutorService executor= getExecutor();
+		List<Future<IStatus>> futures= new ArrayList<>(calls.size());
+		try {
+			for (Iterator<ProcessorCall> iter= calls.iterator(); iter.hasNext();) {
+				futures.add(executor.submit(iter.next()));
+			}
+
+			long deadline= System.currentTimeMillis() + budget;
+			for (int i= 0; i < calls.size(); i++) {
+				ProcessorCall call= calls.get(i);
+				Future<IStatus> future= futures.get(i);
+				IStatus callStatus;
+				try {
+					callStatus= future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					String message= "Quick fix/assist processor '" + call.fDescriptor.getId() + "' did not complete within " + budget + " ms, its proposals are dropped."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					JavaPlugin.log(new Status(IStatus.WARNING, JavaUI.ID_PLUGIN, message));
+					continue;
+				} catch (ExecutionException e) {
+					callStatus= new Status(IStatus.ERROR, JavaUI.ID_PLUGIN, IStatus.ERROR, CorrectionMessages.JavaCorrectionProcessor_error_status, e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				proposals.addAll(call.fProposals);
+				if (!callStatus.isOK()) {
+					if (status == null) {
+						status= new MultiStatus(JavaUI.ID_PLUGIN, IStatus.OK, CorrectionMessages.JavaCorrectionProcessor_error_status, null);
+					}
+					status.merge(callStatus);
+				}
+			}
+		} finally {
+			// queued calls do not start anymore, running calls are abandoned, the shared executor is kept
+			for (int i= 0; i < futures.size(); i++) {
+				futures.get(i).cancel(false);
+				fgAbandonedCalls.incrementAndGet();
+				if (!calls.get(i).abandon())
+					fgAbandonedCalls.decrementAndGet();
+			}
+		}
+		if (status == null) {
+			return Status.OK_STATUS;
+		}
+		return status;
+	}
+
+	/**
+	 * A processor invocation of the concurrent mode. Each call collects into its own list, which
+	 * is only read once the call has completed.
+	 * <p>
+	 * Each call has its own copy of the invocation context. The contexts of an invocation share an
+	 * AST that is not used elsewhere. Processors only read the AST and create rewrites that record
+	 * their changes outside of it, and the binding resolver of the AST is synchronized. Problem
+	 * locations refer to offsets, so they apply to any AST of the compilation unit.
+	 * </p>
+	 */
+	private static class ProcessorCall implements Callable<IStatus> {
+		private static final int QUEUED= 0;
+		private static final int RUNNING= 1;
+		private static final int DONE= 2;
+		private static final int ABANDONED= 3;
+
+		private final ContributedProcessorDescriptor fDescriptor;
+		private final AssistContext fContext;
+		private final List<IJavaCompletionProposal> fProposals= new ArrayList<>();
+		private final AtomicInteger fState= new AtomicInteger(QUEUED);
+		private SafeCorrectionProcessorAccess fCollector;
+
+		public ProcessorCall(ContributedProcessorDescriptor descriptor, IInvocationContext context) {
+			fDescriptor= descriptor;
+			ICompilationUnit cu= context.getCompilationUnit();
+			int offset= context.getSelectionOffset();
+			int length= context.getSelectionLength();
+			if (context instanceof AssistContext) {
+				AssistContext assistContext= (AssistContext) context;
+				fContext= new AssistContext(cu, assistContext.getSourceViewer(), assistContext.getEditor(), offset, length);
+			} else if (context instanceof TextInvocationContext) {
+				fContext= new AssistContext(cu, ((TextInvocationContext) context).getSourceViewer(), offset, length);
+			} else {
+				fContext= new AssistContext(cu, offset, length);
+			}
+		}
+
+		@Override
+		public IStatus call() {
+			if (!fState.compareAndSet(QUEUED, RUNNING))
+				return Status.CANCEL_STATUS;
+			try {
+				fCollector.process(fDescriptor);
+				return fCollector.getStatus();
+			} finally {
+				if (!fState.compareAndSet(RUNNING, DONE))
+					fgAbandonedCalls.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Marks this call as abandoned if it is still running, or as done if it has not started.
+		 *
+		 * @return <code>true</code> if the call is still running
+		 */
+		public boolean abandon() {
+			if (fState.compareAndSet(RUNNING, ABANDONED))
+				return true;
+			fState.compareAndSet(QUEUED, DONE);
+			return false;
+		}
+	}
+
 	/*
 	 * @see IContentAssistProcessor#getErrorMessage()
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -180,6 +180,21 @@ public class FixCorrectionProposal extends LinkedCorrectionProposal implements I
 	}
 
 	public void resolve(MultiFixTarget[] targets, final IProgressMonitor monitor) throws CoreException {
+		resolve(targets, 1, monitor);
+	}
+
+	/**
+	 * Applies the clean up of this proposal to the given targets. Each compilation unit is parsed
+	 * once and all its problems are fixed in one change.
+	 *
+	 * @param targets the targets, one per compilation unit
+	 * @param parallelism the number of threads used to calculate the changes, see
+	 *            {@link CleanUpRefactoring#setParallelism(int)}
+	 * @param monitor the progress monitor or <code>null</code>
+	 * @throws CoreException if the changes could not be created
+	 * @since 3.14
+	 */
+	public void resolve(MultiFixTarget[] targets, int parallelism, final IProgressMonitor monitor) throws CoreException {
 		if (targets.length == 0)
 			return;
 
@@ -200,6 +215,8 @@ public class FixCorrectionProposal extends LinkedCorrectionProposal implements I
 		}
 
 		refactoring.addCleanUp(fCleanUp);
+		if (parallelism > refactoring.getParallelism())
+			refactoring.setParallelism(parallelism);
 
 		IRunnableContext context= new IRunnableContext() {
 			@Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,16 +10,26 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.text.java;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -62,6 +72,11 @@ import org.eclipse.jdt.internal.ui.JavaUIStatus;
 
 /**
  * An LRU cache for code assist.
+ * <p>
+ * Type names are interned, each left hand side keeps the ids of its right hand sides in a small
+ * array and hands out an immutable {@link RHSHistory ranking} that is only recomputed after the
+ * left hand side has been modified.
+ * </p>
  *
  * @since 3.2
  */
@@ -91,14 +106,13 @@ public final class ContentAssistHistory {
 				rootElement.setAttribute(ATTRIBUTE_MAX_RHS, Integer.toString(history.fMaxRHS));
 				document.appendChild(rootElement);
 
-				for (Iterator<String> leftHandSides= history.fLHSCache.keySet().iterator(); leftHandSides.hasNext();) {
-					String lhs= leftHandSides.next();
+				for (Iterator<Entry<String, RHSHistory>> leftHandSides= history.getEntireHistory().entrySet().iterator(); leftHandSides.hasNext();) {
+					Entry<String, RHSHistory> lhs= leftHandSides.next();
 					Element lhsElement= document.createElement(NODE_LHS);
-					lhsElement.setAttribute(ATTRIBUTE_NAME, lhs);
+					lhsElement.setAttribute(ATTRIBUTE_NAME, lhs.getKey());
 					rootElement.appendChild(lhsElement);
 
-					MRUSet<String> rightHandSides= history.fLHSCache.get(lhs);
-					for (Iterator<String> rhsIterator= rightHandSides.iterator(); rhsIterator.hasNext();) {
+					for (Iterator<String> rhsIterator= lhs.getValue().getTypes().iterator(); rhsIterator.hasNext();) {
 						String rhs= rhsIterator.next();
 						Element rhsElement= document.createElement(NODE_RHS);
 						rhsElement.setAttribute(ATTRIBUTE_NAME, rhs);
@@ -151,7 +165,6 @@ public final class ContentAssistHistory {
 					if (lhsElement.getNodeName().equalsIgnoreCase(NODE_LHS)) {
 						String lhs= lhsElement.getAttribute(ATTRIBUTE_NAME);
 						if (lhs != null) {
-							Set<String> cache= history.getCache(lhs);
 							NodeList children= lhsElement.getChildNodes();
 							int nRHS= children.getLength();
 							for (int j= 0; j < nRHS; j++) {
@@ -161,7 +174,7 @@ public final class ContentAssistHistory {
 									if (rhsElement.getNodeName().equalsIgnoreCase(NODE_RHS)) {
 										String rhs= rhsElement.getAttribute(ATTRIBUTE_NAME);
 										if (rhs != null) {
-											cache.add(rhs);
+											history.add(lhs, rhs);
 										}
 									}
 								}
@@ -185,7 +198,7 @@ public final class ContentAssistHistory {
 			}
 		}
 
-		private JavaUIException createException(Exception e, String message) {
+		static JavaUIException createException(Exception e, String message) {
 			return new JavaUIException(JavaUIStatus.createError(IStatus.ERROR, message, e));
 		}
 	}
@@ -231,54 +244,78 @@ public final class ContentAssistHistory {
 	}
 
 	/**
-	 * Most recently used variant with capped size that orders the elements by addition.
-	 * This is implemented by always removing an element before it gets added back.
+	 * The right hand sides of a left hand side, as ids of the interned type names ordered by
+	 * least recent selection. The ranking handed out to content assist is computed once per
+	 * modification.
 	 *
-	 * @since 3.2
+	 * @since 3.14
 	 */
-	private static final class MRUSet<E> extends LinkedHashSet<E> {
-		private static final long serialVersionUID= 1L;
-		private final int fMaxSize;
+	private static final class RHSEntry {
+		private final int[] fIds;
+		private int fSize;
+		private RHSHistory fHistory;
+
+		RHSEntry(int maxSize) {
+			fIds= new int[maxSize];
+		}
 
 		/**
-		 * Creates a new <code>MRUSet</code> with the given size.
+		 * Adds a right hand side as the most recent one. If the entry is full, the least recent
+		 * right hand side is removed.
 		 *
-		 * @param maxSize the maximum size of the cache, must be &gt; 0
+		 * @param id the id of the right hand side
 		 */
-		public MRUSet(int maxSize) {
-			Assert.isLegal(maxSize > 0);
-			fMaxSize= maxSize;
+		void add(int id) {
+			int index= indexOf(id);
+			if (index == -1) {
+				if (fSize == fIds.length) {
+					index= 0;
+				} else {
+					fIds[fSize++]= id;
+					fHistory= null;
+					return;
+				}
+			}
+			System.arraycopy(fIds, index + 1, fIds, index, fSize - index - 1);
+			fIds[fSize - 1]= id;
+			fHistory= null;
 		}
 
-		/*
-		 * @see java.util.HashSet#add(java.lang.Object)
-		 */
-		@Override
-		public boolean add(E o) {
-			if (remove(o)) {
-				super.add(o);
-				return false;
+		private int indexOf(int id) {
+			for (int i= 0; i < fSize; i++) {
+				if (fIds[i] == id)
+					return i;
 			}
+			return -1;
+		}
 
-			if (size() >= fMaxSize)
-				remove(this.iterator().next());
-
-			super.add(o);
-			return true;
+		RHSHistory getHistory(List<String> names) {
+			if (fHistory == null) {
+				String[] types= new String[fSize];
+				for (int i= 0; i < fSize; i++)
+					types[i]= names.get(fIds[i]);
+				fHistory= new RHSHistory(types);
+			}
+			return fHistory;
 		}
 	}
 
 	/**
 	 * A ranking of the most recently selected types.
+	 * <p>
+	 * The ranking is immutable. The number of types is bounded by the maximum number of tracked
+	 * right hand sides, so looking up a rank does not depend on the size of the history.
+	 * </p>
 	 *
 	 * @since 3.2
 	 */
 	public static final class RHSHistory {
-		private final LinkedHashMap<String, Integer> fHistory;
-		private List<String> fList;
+		private final String[] fTypes;
+		private final List<String> fList;
 
-		RHSHistory(LinkedHashMap<String, Integer> history) {
-			fHistory= history;
+		RHSHistory(String[] types) {
+			fTypes= types;
+			fList= Collections.unmodifiableList(Arrays.asList(types));
 		}
 
 		/**
@@ -289,10 +326,11 @@ public final class ContentAssistHistory {
 		 * @return the rank of <code>type</code>
 		 */
 		public float getRank(String type) {
-			if (fHistory == null)
-				return 0.0F;
-			Integer integer= fHistory.get(type);
-			return integer == null ? 0.0F : integer.floatValue() / fHistory.size();
+			for (int i= fTypes.length - 1; i >= 0; i--) {
+				if (fTypes[i].equals(type))
+					return (float) (i + 1) / fTypes.length;
+			}
+			return 0.0F;
 		}
 
 		/**
@@ -301,7 +339,7 @@ public final class ContentAssistHistory {
 		 * @return the size of the history
 		 */
 		public int size() {
-			return fHistory == null ? 0 : fHistory.size();
+			return fTypes.length;
 		}
 
 		/**
@@ -311,19 +349,17 @@ public final class ContentAssistHistory {
 		 * @return the list of remembered types as fully qualified type names
 		 */
 		public List<String> getTypes() {
-			if (fHistory == null)
-				return Collections.emptyList();
-			if (fList == null) {
-				fList= Collections.unmodifiableList(new ArrayList<>(fHistory.keySet()));
-			}
 			return fList;
 		}
 	}
 
-	private static final RHSHistory EMPTY_HISTORY= new RHSHistory(null);
+	private static final RHSHistory EMPTY_HISTORY= new RHSHistory(new String[0]);
 	private static final int DEFAULT_TRACKED_LHS= 100;
 	private static final int DEFAULT_TRACKED_RHS= 10;
 
+	/** Magic number of the binary file format */
+	private static final int FILE_MAGIC= 0x43414831; // "CAH1"
+
 	private static final Set<String> UNCACHEABLE;
 	static {
 		Set<String> uncacheable= new HashSet<>();
@@ -334,10 +370,15 @@ public final class ContentAssistHistory {
 		UNCACHEABLE= Collections.unmodifiableSet(uncacheable);
 	}
 
-	private final LinkedHashMap<String, MRUSet<String>> fLHSCache;
+	private final LinkedHashMap<String, RHSEntry> fLHSCache;
 	private final int fMaxLHS;
 	private final int fMaxRHS;
 
+	/** The interned type names, indexed by id */
+	private final List<String> fNames= new ArrayList<>();
+	/** The ids of the interned type names */
+	private final Map<String, Integer> fIds= new HashMap<>();
+
 	/**
 	 * Creates a new history.
 	 *
@@ -379,9 +420,12 @@ public final class ContentAssistHistory {
 				// TODO remember for every member of the LHS hierarchy or not? Yes for now.
 				IType[] allLHSides= hierarchy.getAllSupertypes(lhs);
 				String rhsQualifiedName= rhs.getFullyQualifiedName();
-				for (int i= 0; i < allLHSides.length; i++)
-					rememberInternal(allLHSides[i], rhsQualifiedName);
-				rememberInternal(lhs, rhsQualifiedName);
+				synchronized (this) {
+					for (int i= 0; i < allLHSides.length; i++)
+						rememberInternal(allLHSides[i], rhsQualifiedName);
+					rememberInternal(lhs, rhsQualifiedName);
+					compactNames();
+				}
 			}
 		} catch (JavaModelException x) {
 			JavaPlugin.log(x);
@@ -396,18 +440,10 @@ public final class ContentAssistHistory {
 	 *        requested, or <code>null</code>
 	 * @return the right hand side history for the given type
 	 */
-	public RHSHistory getHistory(String lhs) {
-		MRUSet<String> rhsCache= fLHSCache.get(lhs);
-		if (rhsCache != null) {
-			int count= rhsCache.size();
-			LinkedHashMap<String, Integer> history= new LinkedHashMap<>((int) (count / 0.75));
-			int rank= 1;
-			for (Iterator<String> it= rhsCache.iterator(); it.hasNext(); rank++) {
-				String type= it.next();
-				history.put(type, Integer.valueOf(rank));
-			}
-			return new RHSHistory(history);
-		}
+	public synchronized RHSHistory getHistory(String lhs) {
+		RHSEntry entry= fLHSCache.get(lhs);
+		if (entry != null)
+			return entry.getHistory(fNames);
 		return EMPTY_HISTORY;
 	}
 
@@ -417,12 +453,11 @@ public final class ContentAssistHistory {
 	 *
 	 * @return the set of remembered right hand sides ordered by least recent selection
 	 */
-	public Map<String, RHSHistory> getEntireHistory() {
+	public synchronized Map<String, RHSHistory> getEntireHistory() {
 		HashMap<String, RHSHistory> map= new HashMap<>((int) (fLHSCache.size() / 0.75));
-		for ( Iterator<Entry<String, MRUSet<String>>> it= fLHSCache.entrySet().iterator(); it.hasNext();) {
-			Entry<String, MRUSet<String>> entry= it.next();
-			String lhs= entry.getKey();
-			map.put(lhs, getHistory(lhs));
+		for (Iterator<Entry<String, RHSEntry>> it= fLHSCache.entrySet().iterator(); it.hasNext();) {
+			Entry<String, RHSEntry> entry= it.next();
+			map.put(entry.getKey(), entry.getValue().getHistory(fNames));
 		}
 		return Collections.unmodifiableMap(map);
 	}
@@ -430,7 +465,7 @@ public final class ContentAssistHistory {
 	private void rememberInternal(IType lhs, String rhsQualifiedName) throws JavaModelException {
 		String lhsQualifiedName= lhs.getFullyQualifiedName();
 		if (isCacheableLHS(lhs, lhsQualifiedName))
-			getCache(lhsQualifiedName).add(rhsQualifiedName);
+			add(lhsQualifiedName, rhsQualifiedName);
 	}
 
 	private boolean isCacheableLHS(IType type, String qualifiedName) throws JavaModelException {
@@ -441,20 +476,143 @@ public final class ContentAssistHistory {
 		return !type.isInterface() && !Flags.isAbstract(type.getFlags());
 	}
 
-	private Set<String> getCache(String lhs) {
-		MRUSet<String> rhsCache= fLHSCache.get(lhs);
-		if (rhsCache == null) {
-			rhsCache= new MRUSet<>(fMaxRHS);
-			fLHSCache.put(lhs, rhsCache);
+	private void add(String lhs, String rhs) {
+		int id= intern(rhs);
+		String key= fNames.get(intern(lhs));
+		RHSEntry entry= fLHSCache.get(key);
+		if (entry == null) {
+			entry= new RHSEntry(fMaxRHS);
+			fLHSCache.put(key, entry);
 		}
+		entry.add(id);
+	}
 
-		return rhsCache;
+	private int intern(String name) {
+		Integer id= fIds.get(name);
+		if (id == null) {
+			id= Integer.valueOf(fNames.size());
+			fNames.add(name);
+			fIds.put(name, id);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Drops the interned names that are no longer referenced once evicted left and right hand
+	 * sides make up most of the interned names.
+	 */
+	private void compactNames() {
+		if (fNames.size() <= 2 * fMaxLHS * (fMaxRHS + 1))
+			return;
+
+		List<String> names= new ArrayList<>(fNames);
+		fNames.clear();
+		fIds.clear();
+		for (Iterator<RHSEntry> it= fLHSCache.values().iterator(); it.hasNext();) {
+			RHSEntry entry= it.next();
+			for (int i= 0; i < entry.fSize; i++)
+				entry.fIds[i]= intern(names.get(entry.fIds[i]));
+		}
+		for (Iterator<String> it= fLHSCache.keySet().iterator(); it.hasNext();)
+			intern(it.next());
 	}
 
 	private IProgressMonitor getProgressMonitor() {
 		return new NullProgressMonitor();
 	}
 
+	/**
+	 * Stores the history into the given file. The type names are written once, the left and right
+	 * hand sides refer to them by index. The history is written to a temporary file which then
+	 * replaces the given file, so that the file is never left truncated.
+	 *
+	 * @param history the history to store
+	 * @param file the file to store the history into
+	 * @throws CoreException if writing fails
+	 * @see #load(File) on how to restore a history stored by this method
+	 * @since 3.14
+	 */
+	public static void store(ContentAssistHistory history, File file) throws CoreException {
+		File temp= null;
+		try {
+			temp= File.createTempFile(file.getName(), ".tmp", file.getParentFile()); //$NON-NLS-1$
+			write(history, temp);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw ReaderWriter.createException(e, JavaTextMessages.ContentAssistHistory_serialize_error);
+		} finally {
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+	private static void write(ContentAssistHistory history, File file) throws IOException {
+		synchronized (history) {
+			try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+				output.writeInt(FILE_MAGIC);
+				output.writeInt(history.fMaxLHS);
+				output.writeInt(history.fMaxRHS);
+				output.writeInt(history.fNames.size());
+				for (Iterator<String> it= history.fNames.iterator(); it.hasNext();)
+					output.writeUTF(it.next());
+				output.writeInt(history.fLHSCache.size());
+				for (Iterator<Entry<String, RHSEntry>> it= history.fLHSCache.entrySet().iterator(); it.hasNext();) {
+					Entry<String, RHSEntry> entry= it.next();
+					RHSEntry rhs= entry.getValue();
+					output.writeInt(history.fIds.get(entry.getKey()).intValue());
+					output.writeInt(rhs.fSize);
+					for (int i= 0; i < rhs.fSize; i++)
+						output.writeInt(rhs.fIds[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads a history from a file written by {@link #store(ContentAssistHistory, File)}. A file
+	 * which cannot be read or is corrupt is logged and treated like a missing file, so that
+	 * clients can fall back to another source.
+	 *
+	 * @param file the file to load the history from
+	 * @return the loaded history, or <code>null</code> if the file does not exist or cannot be
+	 *         read
+	 * @since 3.14
+	 */
+	public static ContentAssistHistory load(File file) {
+		if (!file.isFile())
+			return null;
+		try (DataInputStream input= new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != FILE_MAGIC)
+				throw new IOException("Unknown content assist history format"); //$NON-NLS-1$
+			int maxLHS= input.readInt();
+			int maxRHS= input.readInt();
+			if (maxLHS <= 0 || maxRHS <= 0)
+				throw new IOException("Invalid content assist history size"); //$NON-NLS-1$
+
+			ContentAssistHistory history= new ContentAssistHistory(maxLHS, maxRHS);
+			int nameCount= input.readInt();
+			// each name takes at least the two bytes of its length
+			if (nameCount < 0 || nameCount > file.length() / 2)
+				throw new IOException("Invalid content assist history name count"); //$NON-NLS-1$
+			String[] names= new String[nameCount];
+			for (int i= 0; i < names.length; i++)
+				names[i]= input.readUTF();
+			for (int i= 0, lhsCount= input.readInt(); i < lhsCount; i++) {
+				String lhs= names[input.readInt()];
+				for (int j= 0, rhsCount= input.readInt(); j < rhsCount; j++)
+					history.add(lhs, names[input.readInt()]);
+			}
+			return history;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			JavaPlugin.log(ReaderWriter.createException(e, JavaTextMessages.ContentAssistHistory_deserialize_error));
+			return null;
+		}
+	}
+
 	/**
 	 * Stores the history as XML document into the given preferences.
 	 *
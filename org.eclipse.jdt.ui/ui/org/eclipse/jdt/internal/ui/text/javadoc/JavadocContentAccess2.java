@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2017 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -521,7 +521,20 @@ public class JavadocContentAccess2 {
 	 * 			does not have a Javadoc comment or if no source is available
 	 * @throws CoreException is thrown when the element's Javadoc cannot be accessed
 	 */
-	public static String getHTMLContent(IJavaElement element, boolean useAttachedJavadoc) throws CoreException {
+	public static String getHTMLContent(final IJavaElement element, final boolean useAttachedJavadoc) throws CoreException {
+		String key= JavadocContentCache.getKey(element, useAttachedJavadoc);
+		if (key == null)
+			return computeHTMLContent(element, useAttachedJavadoc);
+
+		return JavadocContentCache.getInstance().get(key, new JavadocContentCache.IContentComputer() {
+			@Override
+			public String compute() throws CoreException {
+				return computeHTMLContent(element, useAttachedJavadoc);
+			}
+		});
+	}
+
+	private static String computeHTMLContent(IJavaElement element, boolean useAttachedJavadoc) throws CoreException {
 		if (element instanceof IPackageFragment) {
 			return getHTMLContent((IPackageFragment) element);
 		}
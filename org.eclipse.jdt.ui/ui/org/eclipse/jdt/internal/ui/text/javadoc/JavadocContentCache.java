@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.javadoc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+import org.eclipse.jdt.internal.corext.util.SuperTypeHierarchyCache;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Caches the HTML rendering of the Javadoc of elements in library archives. The entries are keyed
+ * by the handle of the element and a stamp of its classpath entry, which covers the archive, the
+ * source attachment and the Javadoc location. The key of a method also covers the classpath
+ * entries of its super types, which may provide inherited Javadoc. The package fragment roots of
+ * the super types are remembered per declaring type, so the type hierarchy is only computed again
+ * if the resolved classpath of the project or the archive of the type has changed. Stale entries
+ * are not removed but age out of the least recently used eviction.
+ * <p>
+ * Concurrent requests for the same element share one computation, so a slow fetch of remote
+ * Javadoc is done once. The cache can be stored in the plug-in state location on shutdown.
+ * Elements without Javadoc are only cached for the session, as the Javadoc may not have been
+ * available temporarily, e.g. while a remote Javadoc location could not be reached.
+ * </p>
+ *
+ * @since 3.14
+ */
+public class JavadocContentCache {
+
+	/**
+	 * Computes the HTML content of an element on a cache miss.
+	 */
+	public interface IContentComputer {
+		/**
+		 * Computes the content.
+		 *
+		 * @return the HTML content, or <code>null</code> if the element has no Javadoc
+		 * @throws CoreException if the Javadoc cannot be accessed
+		 */
+		String compute() throws CoreException;
+	}
+
+	/** Preference key telling whether the cache is stored on shutdown */
+	private static final String PERSIST= "JavadocContentCache.persist"; //$NON-NLS-1$
+	private static final String FILE_NAME= "javadocContentCache.bin"; //$NON-NLS-1$
+	/** Magic number of the binary file format */
+	private static final int FILE_MAGIC= 0x4A444332; // "JDC2"
+
+	private static final int MAX_ENTRIES= 1000;
+	private static final int MAX_CHARS= 4 * 1024 * 1024;
+	private static final int MAX_SUPER_ROOTS= 100;
+
+	/** The cached value of elements without Javadoc */
+	private static final String NO_CONTENT= new String();
+
+	private static JavadocContentCache fgInstance;
+
+	/**
+	 * The package fragment roots of the super types of a type, which are valid as long as the
+	 * resolved classpath and the archive of the type are unchanged.
+	 */
+	private static class SuperRoots {
+		final IClasspathEntry[] fClasspath;
+		final long fStamp;
+		final IPackageFragmentRoot[] fRoots;
+
+		SuperRoots(IClasspathEntry[] classpath, long stamp, IPackageFragmentRoot[] roots) {
+			fClasspath= classpath;
+			fStamp= stamp;
+			fRoots= roots;
+		}
+	}
+
+	/** The super roots of recently requested types by type handle, guarded by itself */
+	private static final Map<String, SuperRoots> fgSuperRoots= new LinkedHashMap<String, SuperRoots>(16, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, SuperRoots> eldest) {
+			return size() > MAX_SUPER_ROOTS;
+		}
+	};
+
+	private final LinkedHashMap<String, String> fEntries= new LinkedHashMap<>(64, 0.75f, true);
+	private final Map<String, FutureTask<String>> fPending= new HashMap<>();
+	private int fChars;
+
+	private JavadocContentCache() {
+	}
+
+	/**
+	 * Returns the shared cache. The stored entries are loaded on first access.
+	 *
+	 * @return the cache
+	 */
+	public static synchronized JavadocContentCache getInstance() {
+		if (fgInstance == null) {
+			fgInstance= new JavadocContentCache();
+			if (isPersistent())
+				fgInstance.load(getFile());
+		}
+		return fgInstance;
+	}
+
+	/**
+	 * Stores the shared cache if enabled and releases it.
+	 */
+	public static synchronized void shutdown() {
+		if (fgInstance != null) {
+			if (isPersistent())
+				fgInstance.store(getFile());
+			fgInstance= null;
+		}
+	}
+
+	private static boolean isPersistent() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		return store.contains(PERSIST) && store.getBoolean(PERSIST);
+	}
+
+	private static File getFile() {
+		return JavaPlugin.getDefault().getStateLocation().append(FILE_NAME).toFile();
+	}
+
+	/**
+	 * Returns the cache key of the given element.
+	 *
+	 * @param element the element
+	 * @param useAttachedJavadoc whether attached Javadoc is used if there's no source
+	 * @return the key, or <code>null</code> if the content of the element is not cached
+	 */
+	public static String getKey(IJavaElement element, boolean useAttachedJavadoc) {
+		IPackageFragmentRoot root= (IPackageFragmentRoot) element.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+		if (root == null)
+			return null;
+		try {
+			StringBuffer key= new StringBuffer(element.getHandleIdentifier());
+			key.append('|').append(useAttachedJavadoc);
+			if (!appendStamp(key, root))
+				return null;
+			if (element instanceof IMethod) {
+				// {@inheritDoc} and missing Javadoc are resolved from the overridden methods
+				IType type= ((IMethod) element).getDeclaringType();
+				IPackageFragmentRoot[] superRoots= getSuperRoots(type, root);
+				if (superRoots == null)
+					return null;
+				try {
+					for (int i= 0; i < superRoots.length; i++) {
+						key.append('|').append(superRoots[i].getPath());
+						if (!appendStamp(key, superRoots[i]))
+							return null;
+					}
+				} catch (JavaModelException e) {
+					// a root is no longer on the classpath
+					synchronized (fgSuperRoots) {
+						fgSuperRoots.remove(type.getHandleIdentifier());
+					}
+					return null;
+				}
+			}
+			return key.toString();
+		} catch (JavaModelException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the package fragment roots of the super types of the given type, other than the
+	 * root of the type. The type hierarchy is only computed if the roots are not known yet for
+	 * the current classpath.
+	 *
+	 * @param type the type
+	 * @param root the package fragment root of the type
+	 * @return the roots, or <code>null</code> if a super type is not in a package fragment root
+	 * @throws JavaModelException if the classpath or the type hierarchy cannot be accessed
+	 */
+	private static IPackageFragmentRoot[] getSuperRoots(IType type, IPackageFragmentRoot root) throws JavaModelException {
+		String typeKey= type.getHandleIdentifier();
+		IClasspathEntry[] classpath= type.getJavaProject().getResolvedClasspath(true);
+		long stamp= getModificationStamp(root.getPath());
+		synchronized (fgSuperRoots) {
+			SuperRoots superRoots= fgSuperRoots.get(typeKey);
+			if (superRoots != null && superRoots.fStamp == stamp && Arrays.equals(superRoots.fClasspath, classpath))
+				return superRoots.fRoots;
+		}
+
+		IType[] superTypes= SuperTypeHierarchyCache.getTypeHierarchy(type).getAllSupertypes(type);
+		Set<IPackageFragmentRoot> roots= new LinkedHashSet<>();
+		for (int i= 0; i < superTypes.length; i++) {
+			IPackageFragmentRoot superRoot= (IPackageFragmentRoot) superTypes[i].getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+			if (superRoot == null)
+				return null;
+			roots.add(superRoot);
+		}
+		roots.remove(root);
+		IPackageFragmentRoot[] result= roots.toArray(new IPackageFragmentRoot[roots.size()]);
+		synchronized (fgSuperRoots) {
+			fgSuperRoots.put(typeKey, new SuperRoots(classpath, stamp, result));
+		}
+		return result;
+	}
+
+	/**
+	 * Appends the stamp of the classpath entry of the given root to the key.
+	 *
+	 * @param key the key
+	 * @param root the package fragment root
+	 * @return <code>false</code> if the content of elements in the root is not cached
+	 * @throws JavaModelException if the classpath entry cannot be accessed
+	 */
+	private static boolean appendStamp(StringBuffer key, IPackageFragmentRoot root) throws JavaModelException {
+		if (!root.isArchive() || root.getKind() != IPackageFragmentRoot.K_BINARY)
+			return false;
+		IClasspathEntry entry= root.getResolvedClasspathEntry();
+		key.append('|').append(getModificationStamp(root.getPath()));
+		IPath sourcePath= root.getSourceAttachmentPath();
+		if (sourcePath != null) {
+			long stamp= getModificationStamp(sourcePath);
+			if (stamp == -1)
+				return false; // a source folder can change without changing its stamp
+			key.append('|').append(sourcePath).append('|').append(stamp);
+		}
+		IClasspathAttribute[] attributes= entry.getExtraAttributes();
+		for (int i= 0; i < attributes.length; i++)
+			key.append('|').append(attributes[i].getName()).append('=').append(attributes[i].getValue());
+		return true;
+	}
+
+	/**
+	 * Returns the modification stamp of the given archive.
+	 *
+	 * @param path the workspace or file system path of the archive
+	 * @return the modification stamp, or <code>-1</code> if the path is not a file
+	 */
+	private static long getModificationStamp(IPath path) {
+		IResource resource= ResourcesPlugin.getWorkspace().getRoot().findMember(path);
+		File file= resource != null && resource.getLocation() != null ? resource.getLocation().toFile() : path.toFile();
+		return file.isFile() ? file.lastModified() : -1;
+	}
+
+	/**
+	 * Returns the cached content for the given key and computes it on a cache miss. Concurrent
+	 * requests for the same key wait for the first computation.
+	 *
+	 * @param key the key from {@link #getKey(IJavaElement, boolean)}
+	 * @param computer computes the content on a cache miss
+	 * @return the HTML content, or <code>null</code> if the element has no Javadoc
+	 * @throws CoreException if the Javadoc cannot be accessed
+	 */
+	public String get(String key, final IContentComputer computer) throws CoreException {
+		FutureTask<String> task;
+		boolean owner= false;
+		synchronized (this) {
+			String content= fEntries.get(key);
+			if (content != null)
+				return content == NO_CONTENT ? null : content;
+			task= fPending.get(key);
+			if (task == null) {
+				task= new FutureTask<>(new Callable<String>() {
+					@Override
+					public String call() throws CoreException {
+						return computer.compute();
+					}
+				});
+				fPending.put(key, task);
+				owner= true;
+			}
+		}
+
+		if (owner)
+			task.run();
+		try {
+			String content= task.get();
+			if (owner)
+				put(key, content == null ? NO_CONTENT : content);
+			return content;
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return computer.compute();
+		} finally {
+			if (owner) {
+				synchronized (this) {
+					fPending.remove(key);
+				}
+			}
+		}
+	}
+
+	private synchronized void put(String key, String content) {
+		String previous= fEntries.put(key, content);
+		if (previous != null)
+			fChars-= previous.length();
+		fChars+= content.length();
+		for (Iterator<String> iter= fEntries.values().iterator(); iter.hasNext() && (fEntries.size() > MAX_ENTRIES || fChars > MAX_CHARS);) {
+			fChars-= iter.next().length();
+			iter.remove();
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+		fChars= 0;
+	}
+
+	/**
+	 * Writes the entries to a temporary file which then replaces the given file, so that the file
+	 * is never left truncated.
+	 *
+	 * @param file the file
+	 */
+	private synchronized void store(File file) {
+		File temp= null;
+		try {
+			temp= File.createTempFile(FILE_NAME, ".tmp", file.getParentFile()); //$NON-NLS-1$
+			write(temp);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+		} finally {
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+	private void write(File file) throws IOException {
+		try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(FILE_MAGIC);
+			output.writeUTF(Platform.getNL());
+			int count= 0;
+			for (Iterator<String> iter= fEntries.values().iterator(); iter.hasNext();) {
+				if (iter.next() != NO_CONTENT)
+					count++;
+			}
+			output.writeInt(count);
+			for (Iterator<Entry<String, String>> iter= fEntries.entrySet().iterator(); iter.hasNext();) {
+				Entry<String, String> entry= iter.next();
+				String content= entry.getValue();
+				if (content == NO_CONTENT)
+					continue;
+				output.writeUTF(entry.getKey());
+				// writeUTF is limited to 64K bytes
+				output.writeInt(content.length());
+				output.writeChars(content);
+			}
+		}
+	}
+
+	private synchronized void load(File file) {
+		if (!file.isFile())
+			return;
+		try (DataInputStream input= new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != FILE_MAGIC || !Platform.getNL().equals(input.readUTF()))
+				return; // unknown format or rendered for another language
+			for (int i= 0, count= input.readInt(); i < count; i++) {
+				String key= input.readUTF();
+				int length= input.readInt();
+				if (length < 0 || length > MAX_CHARS)
+					throw new IOException("Invalid content length " + length + " in " + file); //$NON-NLS-1$ //$NON-NLS-2$
+				char[] chars= new char[length];
+				for (int j= 0; j < chars.length; j++)
+					chars[j]= input.readChar();
+				put(key, new String(chars));
+			}
+		} catch (IOException e) {
+			clear();
+			JavaPlugin.log(e);
+		}
+	}
+}
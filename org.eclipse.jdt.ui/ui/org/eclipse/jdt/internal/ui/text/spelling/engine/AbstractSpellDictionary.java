@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.jdt.internal.ui.text.spelling.engine;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,16 +19,19 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.MalformedInputException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IStatus;
@@ -122,9 +126,21 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	/** The phonetic distance algorithm */
 	private IPhoneticDistanceAlgorithm fDistanceAlgorithm= new DefaultPhoneticDistanceAlgorithm();
 
-	/** The mapping from phonetic hashes to word lists */
+	/** The mapping from phonetic hashes to word lists of words hashed since the last compaction */
 	private final Map<ByteArrayWrapper, Object> fHashBuckets= new HashMap<>(getInitialSize(), LOAD_FACTOR);
 
+	/**
+	 * The compacted mapping from phonetic hashes to word lists or <code>null</code> if none
+	 * @since 3.14
+	 */
+	private CompactHashBuckets fCompactBuckets;
+
+	/**
+	 * Name of the folder in the plug-in state location that holds the cached dictionary images
+	 * @since 3.14
+	 */
+	private static final String IMAGE_FOLDER= "spelling"; //$NON-NLS-1$
+
 	/** The phonetic hash provider */
 	private IPhoneticHashProvider fHashProvider= new DefaultPhoneticHashProvider();
 
@@ -157,17 +173,43 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 *
 	 * @param hash
 	 *                   The hash to retrieve the candidates of
-	 * @return Array of candidates for the phonetic hash
+	 * @return List of UTF-8 encoded candidates for the phonetic hash, or <code>null</code> if none
 	 */
-	protected final Object getCandidates(final String hash) {
-		ByteArrayWrapper hashBytes;
+	protected final List<byte[]> getCandidates(final String hash) {
+		byte[] hashBytes;
 		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
+			hashBytes= hash.getBytes(UTF_8);
 		} catch (UnsupportedEncodingException e) {
 			JavaPlugin.log(e);
 			return null;
 		}
-		return fHashBuckets.get(hashBytes);
+
+		List<byte[]> result= null;
+		CompactHashBuckets compactBuckets= fCompactBuckets;
+		if (compactBuckets != null) {
+			result= new ArrayList<>(BUCKET_CAPACITY);
+			if (!compactBuckets.getWords(hashBytes, result))
+				result= null;
+		}
+
+		Object bucket= fHashBuckets.get(new ByteArrayWrapper(hashBytes));
+		if (bucket == null)
+			return result;
+
+		List<byte[]> words;
+		if (bucket instanceof byte[]) {
+			words= Collections.singletonList((byte[])bucket);
+		} else {
+			@SuppressWarnings("unchecked")
+			List<byte[]> bucketList= (List<byte[]>)bucket;
+			words= bucketList;
+		}
+
+		if (result == null)
+			return words;
+
+		result.addAll(words);
+		return result;
 	}
 
 	/**
@@ -195,30 +237,10 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 			hash= hashs.get(index);
 
-			final Object candidates= getCandidates(hash);
-			if (candidates == null)
+			final List<byte[]> candidateList= getCandidates(hash);
+			if (candidateList == null)
 				continue;
-			else if (candidates instanceof byte[]) {
-				String candidate;
-				try {
-					candidate= new String((byte[])candidates, UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
-				distance= fDistanceAlgorithm.getDistance(word, candidate);
-				if (distance < DISTANCE_THRESHOLD) {
-					buffer.setLength(0);
-					buffer.append(candidate);
-					if (sentence)
-						buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-					result.add(new RankedWordProposal(buffer.toString(), -distance));
-				}
-				continue;
-			}
 
-			@SuppressWarnings("unchecked")
-			final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
 			int candidateSize= Math.min(500, candidateList.size()); // see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
 			for (int offset= 0; offset < candidateSize; offset++) {
 
@@ -266,27 +288,10 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 		StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return;
-			}
-			distance= fDistanceAlgorithm.getDistance(word, candidate);
-			buffer.append(candidate);
-			if (sentence)
-				buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-			result.add(new RankedWordProposal(buffer.toString(), -distance));
+		final List<byte[]> candidateList= getCandidates(fHashProvider.getHash(word));
+		if (candidateList == null)
 			return;
-		}
 
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
 		final ArrayList<RankedWordProposal> matches= new ArrayList<>(candidateList.size());
 
 		for (int index= 0; index < candidateList.size(); index++) {
@@ -325,7 +330,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @since 3.3
 	 */
 	protected boolean isEmpty() {
-		return fHashBuckets.size() == 0;
+		return fHashBuckets.size() == 0 && (fCompactBuckets == null || fCompactBuckets.size() == 0);
 	}
 
 	/**
@@ -518,23 +523,10 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 			// Do nothing
 		}
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return false;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return false;
-			}
-			if (candidate.equals(word) || candidate.equals(word.toLowerCase()))
-				return true;
+		final List<byte[]> candidateList= getCandidates(fHashProvider.getHash(word));
+		if (candidateList == null)
 			return false;
-		}
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
+
 		byte[] wordBytes;
 		byte[] lowercaseWordBytes;
 		try {
@@ -587,7 +579,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 	@Override
 	public synchronized final boolean isLoaded() {
-		return fLoaded || fHashBuckets.size() > 0;
+		return fLoaded || !isEmpty();
 	}
 
 	/**
@@ -602,6 +594,11 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		 if (!fMustLoad)
 			 return fLoaded;
 
+		if (url != null && loadImage(url)) {
+			fMustLoad= false;
+			return true;
+		}
+
 		if (url != null) {
 			InputStream stream= null;
 			int line= 0;
@@ -672,16 +669,120 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 	/**
 	 * Compacts the dictionary.
+	 * <p>
+	 * Moves all hashed words into a {@link CompactHashBuckets} store and writes its binary image if
+	 * this dictionary {@link #isImageCacheable() supports} that. Words hashed afterwards, or after
+	 * the dictionary has been loaded from its image, are kept in the hash map.
+	 * </p>
 	 *
 	 * @since 3.3.
 	 */
-	private void compact() {
-		Iterator<Object> iter= fHashBuckets.values().iterator();
-		while (iter.hasNext()) {
-			Object element= iter.next();
-			if (element instanceof ArrayList)
-				((ArrayList<?>)element).trimToSize();
+	private synchronized void compact() {
+		if (fHashBuckets.isEmpty() || fCompactBuckets != null)
+			return;
+
+		List<Entry<ByteArrayWrapper, Object>> entries= new ArrayList<>(fHashBuckets.entrySet());
+		Collections.sort(entries, (e1, e2) -> CompactHashBuckets.compare(e1.getKey().byteArray, e2.getKey().byteArray));
+
+		byte[][] hashes= new byte[entries.size()][];
+		List<List<byte[]>> words= new ArrayList<>(entries.size());
+		for (int i= 0; i < hashes.length; i++) {
+			Entry<ByteArrayWrapper, Object> entry= entries.get(i);
+			hashes[i]= entry.getKey().byteArray;
+			Object bucket= entry.getValue();
+			if (bucket instanceof byte[]) {
+				words.add(Collections.singletonList((byte[])bucket));
+			} else {
+				@SuppressWarnings("unchecked")
+				List<byte[]> bucketList= (List<byte[]>)bucket;
+				words.add(bucketList);
+			}
 		}
+
+		fCompactBuckets= CompactHashBuckets.create(hashes, words);
+		fHashBuckets.clear();
+
+		if (isImageCacheable())
+			writeImage();
+	}
+
+	/**
+	 * Tells whether the compacted word list of this dictionary may be cached as a binary image in
+	 * the plug-in state location. The image is reused as long as the modification stamp of the
+	 * dictionary URL does not change.
+	 * <p>
+	 * Subclasses whose word list only changes through the URL may override.
+	 * </p>
+	 *
+	 * @return <code>true</code> if a binary image may be written and read
+	 * @since 3.14
+	 */
+	protected boolean isImageCacheable() {
+		return false;
+	}
+
+	/**
+	 * Loads the dictionary from its cached binary image.
+	 *
+	 * @param url the URL of the word list
+	 * @return <code>true</code> iff a valid image has been found
+	 * @since 3.14
+	 */
+	private boolean loadImage(URL url) {
+		if (!isImageCacheable())
+			return false;
+
+		File file= getImageFile(url);
+		if (file == null)
+			return false;
+
+		try {
+			CompactHashBuckets compactBuckets= CompactHashBuckets.map(file, getImageKey(url), getStamp(url));
+			if (compactBuckets == null)
+				return false;
+
+			fCompactBuckets= compactBuckets;
+			return true;
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the binary image of the compacted dictionary.
+	 *
+	 * @since 3.14
+	 */
+	private void writeImage() {
+		try {
+			URL url= getURL();
+			File file= url != null ? getImageFile(url) : null;
+			if (file != null)
+				fCompactBuckets.write(file, getImageKey(url), getStamp(url));
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+		}
+	}
+
+	private File getImageFile(URL url) {
+		JavaPlugin plugin= JavaPlugin.getDefault();
+		if (plugin == null)
+			return null;
+
+		String name= Integer.toHexString(getImageKey(url).hashCode()) + ".dictionary"; //$NON-NLS-1$
+		return plugin.getStateLocation().append(IMAGE_FOLDER).append(name).toFile();
+	}
+
+	private String getImageKey(URL url) {
+		return url.toExternalForm() + '|' + getEncoding() + '|' + fHashProvider.getClass().getName();
+	}
+
+	private static long getStamp(URL url) throws IOException {
+		URLConnection connection= url.openConnection();
+		long stamp= connection.getLastModified() * 31 + connection.getContentLengthLong();
+		connection.getInputStream().close();
+		return stamp;
 	}
 
 	/**
@@ -709,6 +810,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		fLoaded= false;
 		fMustLoad= true;
 		fHashBuckets.clear();
+		fCompactBuckets= null;
 	}
 
 	@Override
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.spelling.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Read-only mapping from phonetic hashes to word lists, stored in a single byte buffer.
+ * <p>
+ * The hashes are sorted by their unsigned UTF-8 bytes and looked up with a binary search. The words
+ * of a bucket keep the order in which they have been hashed into the dictionary. The buffer is
+ * either a heap buffer built from a dictionary word list or a memory-mapped binary image of a
+ * previous build.
+ * </p>
+ * <p>
+ * Buffer layout, all integers are big endian:
+ * </p>
+ * <pre>
+ * int bucketCount
+ * int wordCount
+ * int[bucketCount + 1] offsets of the hashes, relative to the start of the hash bytes
+ * int[bucketCount + 1] index of the first word of each bucket
+ * int[wordCount + 1]   offsets of the words, relative to the start of the word bytes
+ * byte[]               hash bytes
+ * byte[]               word bytes
+ * </pre>
+ *
+ * @since 3.14
+ */
+final class CompactHashBuckets {
+
+	/** Image file magic number */
+	private static final int MAGIC= 0x4A445349;
+
+	/** Image file format version */
+	private static final int VERSION= 1;
+
+	/**
+	 * Builds the buckets from the given hashes and words.
+	 *
+	 * @param hashes the UTF-8 encoded hashes, sorted by {@link #compare(byte[], byte[])}
+	 * @param words the UTF-8 encoded words of each hash
+	 * @return the compact buckets
+	 */
+	public static CompactHashBuckets create(byte[][] hashes, List<List<byte[]>> words) {
+		int bucketCount= hashes.length;
+		int wordCount= 0;
+		int hashBytes= 0;
+		int wordBytes= 0;
+		for (int i= 0; i < bucketCount; i++) {
+			hashBytes+= hashes[i].length;
+			List<byte[]> bucket= words.get(i);
+			wordCount+= bucket.size();
+			for (int j= 0, n= bucket.size(); j < n; j++)
+				wordBytes+= bucket.get(j).length;
+		}
+
+		int size= 4 * (2 + 2 * (bucketCount + 1) + wordCount + 1) + hashBytes + wordBytes;
+		ByteBuffer buffer= ByteBuffer.allocate(size);
+		buffer.putInt(bucketCount);
+		buffer.putInt(wordCount);
+
+		int offset= 0;
+		for (int i= 0; i < bucketCount; i++) {
+			buffer.putInt(offset);
+			offset+= hashes[i].length;
+		}
+		buffer.putInt(offset);
+
+		int index= 0;
+		for (int i= 0; i < bucketCount; i++) {
+			buffer.putInt(index);
+			index+= words.get(i).size();
+		}
+		buffer.putInt(index);
+
+		offset= 0;
+		for (int i= 0; i < bucketCount; i++) {
+			List<byte[]> bucket= words.get(i);
+			for (int j= 0, n= bucket.size(); j < n; j++) {
+				buffer.putInt(offset);
+				offset+= bucket.get(j).length;
+			}
+		}
+		buffer.putInt(offset);
+
+		for (int i= 0; i < bucketCount; i++)
+			buffer.put(hashes[i]);
+		for (int i= 0; i < bucketCount; i++) {
+			List<byte[]> bucket= words.get(i);
+			for (int j= 0, n= bucket.size(); j < n; j++)
+				buffer.put(bucket.get(j));
+		}
+
+		buffer.flip();
+		return new CompactHashBuckets(buffer);
+	}
+
+	/**
+	 * Maps a binary image written by {@link #write(File, String, long)}.
+	 *
+	 * @param file the image file
+	 * @param key the key of the dictionary
+	 * @param stamp the modification stamp of the dictionary word list
+	 * @return the buckets, or <code>null</code> if the image does not exist, does not match the
+	 *         key and stamp, or is truncated or corrupt
+	 * @throws IOException if the image could not be read
+	 */
+	public static CompactHashBuckets map(File file, String key, long stamp) throws IOException {
+		if (!file.isFile())
+			return null;
+
+		try (RandomAccessFile input= new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+			FileChannel channel= input.getChannel();
+			ByteBuffer buffer= channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != stamp)
+				return null;
+
+			byte[] keyBytes= key.getBytes(StandardCharsets.UTF_8);
+			int keyLength= buffer.getInt();
+			if (keyLength != keyBytes.length || buffer.remaining() < keyLength)
+				return null;
+			for (int i= 0; i < keyLength; i++) {
+				if (buffer.get() != keyBytes[i])
+					return null;
+			}
+
+			ByteBuffer image= buffer.slice();
+			if (!isValid(image))
+				return null;
+			return new CompactHashBuckets(image);
+		}
+	}
+
+	/**
+	 * Checks that the sections of the given image fit into the buffer and that their offsets are
+	 * ascending, so that no lookup reads beyond the buffer.
+	 *
+	 * @param buffer the image without header
+	 * @return <code>true</code> iff the image is consistent
+	 */
+	private static boolean isValid(ByteBuffer buffer) {
+		int limit= buffer.limit();
+		if (limit < 8)
+			return false;
+		int bucketCount= buffer.getInt(0);
+		int wordCount= buffer.getInt(4);
+		if (bucketCount < 0 || wordCount < 0)
+			return false;
+		long hashBytesStart= 4L * (2 + 2 * ((long) bucketCount + 1) + (long) wordCount + 1);
+		if (hashBytesStart > limit)
+			return false;
+
+		int hashOffsetsStart= 8;
+		int bucketStartsStart= hashOffsetsStart + 4 * (bucketCount + 1);
+		int wordOffsetsStart= bucketStartsStart + 4 * (bucketCount + 1);
+		if (!isAscending(buffer, hashOffsetsStart, bucketCount + 1)
+				|| !isAscending(buffer, bucketStartsStart, bucketCount + 1)
+				|| !isAscending(buffer, wordOffsetsStart, wordCount + 1)
+				|| buffer.getInt(bucketStartsStart + 4 * bucketCount) != wordCount)
+			return false;
+		long hashBytes= buffer.getInt(hashOffsetsStart + 4 * bucketCount);
+		long wordBytes= buffer.getInt(wordOffsetsStart + 4 * wordCount);
+		return hashBytesStart + hashBytes + wordBytes == limit;
+	}
+
+	private static boolean isAscending(ByteBuffer buffer, int start, int count) {
+		int previous= 0;
+		if (buffer.getInt(start) != previous)
+			return false;
+		for (int i= 1; i < count; i++) {
+			int value= buffer.getInt(start + 4 * i);
+			if (value < previous)
+				return false;
+			previous= value;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two byte arrays lexicographically, treating the bytes as unsigned.
+	 *
+	 * @param a the first array
+	 * @param b the second array
+	 * @return a negative integer, zero, or a positive integer as the first array is less than,
+	 *         equal to, or greater than the second
+	 */
+	public static int compare(byte[] a, byte[] b) {
+		for (int i= 0, n= Math.min(a.length, b.length); i < n; i++) {
+			int result= (a[i] & 0xff) - (b[i] & 0xff);
+			if (result != 0)
+				return result;
+		}
+		return a.length - b.length;
+	}
+
+	private final ByteBuffer fBuffer;
+	private final int fBucketCount;
+	private final int fHashOffsetsStart;
+	private final int fBucketStartsStart;
+	private final int fWordOffsetsStart;
+	private final int fHashBytesStart;
+	private final int fWordBytesStart;
+
+	private CompactHashBuckets(ByteBuffer buffer) {
+		fBuffer= buffer;
+		fBucketCount= buffer.getInt(0);
+		int wordCount= buffer.getInt(4);
+		fHashOffsetsStart= 8;
+		fBucketStartsStart= fHashOffsetsStart + 4 * (fBucketCount + 1);
+		fWordOffsetsStart= fBucketStartsStart + 4 * (fBucketCount + 1);
+		fHashBytesStart= fWordOffsetsStart + 4 * (wordCount + 1);
+		fWordBytesStart= fHashBytesStart + buffer.getInt(fHashOffsetsStart + 4 * fBucketCount);
+	}
+
+	/**
+	 * @return the number of buckets
+	 */
+	public int size() {
+		return fBucketCount;
+	}
+
+	/**
+	 * Adds the words hashed to the given hash to the list.
+	 *
+	 * @param hash the UTF-8 encoded hash
+	 * @param result the list to add the UTF-8 encoded words to
+	 * @return <code>true</code> iff the hash has been found
+	 */
+	public boolean getWords(byte[] hash, List<byte[]> result) {
+		int bucket= findBucket(hash);
+		if (bucket < 0)
+			return false;
+
+		int first= fBuffer.getInt(fBucketStartsStart + 4 * bucket);
+		int last= fBuffer.getInt(fBucketStartsStart + 4 * (bucket + 1));
+		for (int i= first; i < last; i++)
+			result.add(getBytes(fWordBytesStart, fWordOffsetsStart, i));
+		return true;
+	}
+
+	private int findBucket(byte[] hash) {
+		int low= 0;
+		int high= fBucketCount - 1;
+		while (low <= high) {
+			int middle= (low + high) >>> 1;
+			int result= compareHash(middle, hash);
+			if (result < 0)
+				low= middle + 1;
+			else if (result > 0)
+				high= middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	private int compareHash(int bucket, byte[] hash) {
+		int start= fHashBytesStart + fBuffer.getInt(fHashOffsetsStart + 4 * bucket);
+		int length= fHashBytesStart + fBuffer.getInt(fHashOffsetsStart + 4 * (bucket + 1)) - start;
+		for (int i= 0, n= Math.min(length, hash.length); i < n; i++) {
+			int result= (fBuffer.get(start + i) & 0xff) - (hash[i] & 0xff);
+			if (result != 0)
+				return result;
+		}
+		return length - hash.length;
+	}
+
+	private byte[] getBytes(int bytesStart, int offsetsStart, int index) {
+		int start= fBuffer.getInt(offsetsStart + 4 * index);
+		int end= fBuffer.getInt(offsetsStart + 4 * (index + 1));
+		byte[] result= new byte[end - start];
+		for (int i= 0; i < result.length; i++)
+			result[i]= fBuffer.get(bytesStart + start + i);
+		return result;
+	}
+
+	/**
+	 * Writes the buckets as binary image which can be mapped with
+	 * {@link #map(File, String, long)}. The image is written to a temporary file first, which
+	 * then replaces the given file, so that an interrupted write does not leave a truncated image.
+	 *
+	 * @param file the image file
+	 * @param key the key of the dictionary
+	 * @param stamp the modification stamp of the dictionary word list
+	 * @throws IOException if the image could not be written
+	 */
+	public void write(File file, String key, long stamp) throws IOException {
+		byte[] keyBytes= key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header= ByteBuffer.allocate(20 + keyBytes.length);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putLong(stamp);
+		header.putInt(keyBytes.length);
+		header.put(keyBytes);
+
+		File parent= file.getParentFile();
+		if (parent != null && !parent.isDirectory())
+			parent.mkdirs();
+
+		File temp= File.createTempFile(file.getName(), ".tmp", parent); //$NON-NLS-1$
+		try {
+			try (OutputStream output= new FileOutputStream(temp)) {
+				output.write(header.array());
+				ByteBuffer buffer= fBuffer.duplicate();
+				buffer.rewind();
+				byte[] chunk= new byte[8192];
+				while (buffer.hasRemaining()) {
+					int length= Math.min(chunk.length, buffer.remaining());
+					buffer.get(chunk, 0, length);
+					output.write(chunk, 0, length);
+				}
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,16 +11,22 @@
 package org.eclipse.jdt.internal.ui.viewsupport;
 
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IMarkerDelta;
@@ -31,6 +37,8 @@ import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 
+import org.eclipse.jface.preference.IPreferenceStore;
+
 import org.eclipse.jface.text.source.AnnotationModelEvent;
 import org.eclipse.jface.text.source.IAnnotationModel;
 import org.eclipse.jface.text.source.IAnnotationModelListener;
@@ -39,6 +47,10 @@ import org.eclipse.jface.text.source.IAnnotationModelListenerExtension;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.progress.UIJob;
 
+import org.eclipse.jdt.core.IJavaModelMarker;
+
+import org.eclipse.jdt.launching.JavaRuntime;
+
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.JavaUIMessages;
 import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitAnnotationModelEvent;
@@ -47,6 +59,12 @@ import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitAnnotationModelEven
  * Listens to resource deltas and filters for marker changes of type IMarker.PROBLEM
  * Viewers showing error ticks should register as listener to
  * this type.
+ * <p>
+ * Marker changes are coalesced: the changed resources are collected for a short window, then
+ * only the resources whose problem state (see {@link #computeProblemState(IResource)}) differs
+ * from the state last sent are sent to the listeners in one batch. A window of <code>0</code>
+ * sends every change.
+ * </p>
  */
 public class ProblemMarkerManager implements IResourceChangeListener, IAnnotationModelListener , IAnnotationModelListenerExtension {
 
@@ -56,9 +74,13 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 	private static class ProjectErrorVisitor implements IResourceDeltaVisitor {
 
 		private HashSet<IResource> fChangedElements;
+		private HashSet<IResource> fAddedOrRemovedElements;
+		private HashSet<IResource> fElementsWithMarkerChanges;
 
-		public ProjectErrorVisitor(HashSet<IResource> changedElements) {
+		public ProjectErrorVisitor(HashSet<IResource> changedElements, HashSet<IResource> addedOrRemovedElements, HashSet<IResource> elementsWithMarkerChanges) {
 			fChangedElements= changedElements;
+			fAddedOrRemovedElements= addedOrRemovedElements;
+			fElementsWithMarkerChanges= elementsWithMarkerChanges;
 		}
 
 		@Override
@@ -77,6 +99,10 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 
 		private void checkInvalidate(IResourceDelta delta, IResource resource) {
 			int kind= delta.getKind();
+			if (kind == IResourceDelta.REMOVED || kind == IResourceDelta.ADDED)
+				fAddedOrRemovedElements.add(resource);
+			else if (hasProblemMarkerDelta(delta))
+				fElementsWithMarkerChanges.add(resource);
 			if (kind == IResourceDelta.REMOVED || kind == IResourceDelta.ADDED || (kind == IResourceDelta.CHANGED && isErrorDelta(delta))) {
 				// invalidate the resource and all parents
 				while (resource.getType() != IResource.ROOT && fChangedElements.add(resource)) {
@@ -85,6 +111,17 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 			}
 		}
 
+		private boolean hasProblemMarkerDelta(IResourceDelta delta) {
+			if ((delta.getFlags() & IResourceDelta.MARKERS) != 0) {
+				IMarkerDelta[] markerDeltas= delta.getMarkerDeltas();
+				for (int i= 0; i < markerDeltas.length; i++) {
+					if (markerDeltas[i].isSubtypeOf(IMarker.PROBLEM))
+						return true;
+				}
+			}
+			return false;
+		}
+
 		private boolean isErrorDelta(IResourceDelta delta) {
 			if ((delta.getFlags() & IResourceDelta.MARKERS) != 0) {
 				IMarkerDelta[] markerDeltas= delta.getMarkerDeltas();
@@ -104,17 +141,68 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 		}
 	}
 
+	/**
+	 * Preference key for the window in milliseconds during which marker changes are collected
+	 * before they are sent to the listeners.
+	 */
+	public static final String PREF_COALESCING_WINDOW= "ProblemMarkerManager.coalescingWindow"; //$NON-NLS-1$
+
+	/** The problem state of a resource without problems, see {@link #computeProblemState(IResource)} */
+	private static final long NO_PROBLEMS= -1;
+
 	private ListenerList<IProblemChangedListener> fListeners;
 
 	private Set<IResource> fResourcesWithMarkerChanges;
 	private Set<IResource> fResourcesWithAnnotationChanges;
 
+	/** Resources with marker changes that are not yet compared with {@link #fProblemStates} */
+	private Set<IResource> fPendingMarkerChanges;
+	/** Resources added or removed since the last comparison */
+	private Set<IResource> fPendingAddedOrRemoved;
+	/**
+	 * The problem state last sent to the listeners, see {@link #computeProblemState(IResource)}.
+	 * Only resources with problems are tracked.
+	 */
+	private final Map<IResource, Long> fProblemStates;
+	private boolean fCoalescingScheduled;
+
+	private long fDispatchedEvents;
+	private long fRefreshedResources;
+	private long fSuppressedResources;
+
+	private final ProblemSeverityCache fSeverityCache;
+
 	private UIJob fNotifierJob;
+	private Job fCoalescingJob;
 
 	public ProblemMarkerManager() {
 		fListeners= new ListenerList<>();
 		fResourcesWithMarkerChanges= new HashSet<>();
 		fResourcesWithAnnotationChanges= new HashSet<>();
+		fPendingMarkerChanges= new HashSet<>();
+		fPendingAddedOrRemoved= new HashSet<>();
+		fProblemStates= new HashMap<>();
+		fSeverityCache= new ProblemSeverityCache();
+	}
+
+	/**
+	 * Initializes the default values of the preferences of the problem marker manager.
+	 *
+	 * @param store the preference store
+	 * @since 3.14
+	 */
+	public static void initDefaults(IPreferenceStore store) {
+		store.setDefault(PREF_COALESCING_WINDOW, 100);
+	}
+
+	/**
+	 * Returns the cache of problem severities that is kept up to date by this manager.
+	 *
+	 * @return the severity cache
+	 * @since 3.14
+	 */
+	public ProblemSeverityCache getSeverityCache() {
+		return fSeverityCache;
 	}
 
 	/*
@@ -122,17 +210,48 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 	 */
 	@Override
 	public void resourceChanged(IResourceChangeEvent event) {
+		if (event.getType() == IResourceChangeEvent.PRE_CLOSE || event.getType() == IResourceChangeEvent.PRE_DELETE) {
+			IResource project= event.getResource();
+			if (project != null)
+				removeProblemStates(project);
+			return;
+		}
+
 		HashSet<IResource> changedElements= new HashSet<>();
+		HashSet<IResource> addedOrRemovedElements= new HashSet<>();
+		HashSet<IResource> elementsWithMarkerChanges= new HashSet<>();
 
 		try {
 			IResourceDelta delta= event.getDelta();
 			if (delta != null)
-				delta.accept(new ProjectErrorVisitor(changedElements));
+				delta.accept(new ProjectErrorVisitor(changedElements, addedOrRemovedElements, elementsWithMarkerChanges));
 		} catch (CoreException e) {
 			JavaPlugin.log(e.getStatus());
 		}
 
-		if (!changedElements.isEmpty()) {
+		// invalidate before the listeners are notified, also for changes that are not sent
+		fSeverityCache.invalidate(changedElements);
+		fSeverityCache.invalidate(elementsWithMarkerChanges);
+		for (Iterator<IResource> iter= addedOrRemovedElements.iterator(); iter.hasNext();)
+			removeProblemStates(iter.next());
+
+		if (changedElements.isEmpty())
+			return;
+
+		int window= getCoalescingWindow();
+		if (window > 0) {
+			boolean schedule= false;
+			synchronized (this) {
+				fPendingMarkerChanges.addAll(changedElements);
+				fPendingAddedOrRemoved.addAll(addedOrRemovedElements);
+				if (!fCoalescingScheduled) {
+					fCoalescingScheduled= true;
+					schedule= true;
+				}
+			}
+			if (schedule)
+				scheduleCoalescing(window);
+		} else {
 			boolean hasChanges= false;
 			synchronized (this) {
 				if (fResourcesWithMarkerChanges.isEmpty()) {
@@ -148,6 +267,176 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 		}
 	}
 
+	private int getCoalescingWindow() {
+		return JavaPlugin.getDefault().getPreferenceStore().getInt(PREF_COALESCING_WINDOW);
+	}
+
+	private synchronized void scheduleCoalescing(int window) {
+		if (fCoalescingJob == null) {
+			fCoalescingJob= new Job(JavaUIMessages.ProblemMarkerManager_problem_marker_coalescing_job_description) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					coalescePendingChanges();
+					return Status.OK_STATUS;
+				}
+			};
+			fCoalescingJob.setSystem(true);
+			fCoalescingJob.setPriority(Job.DECORATE);
+		}
+		fCoalescingJob.schedule(window);
+	}
+
+	/**
+	 * Compares the resources with marker changes collected during the window with the problem
+	 * state last sent, and fires the resources whose state changed.
+	 */
+	private void coalescePendingChanges() {
+		Set<IResource> changed;
+		Set<IResource> addedOrRemoved;
+		synchronized (this) {
+			changed= fPendingMarkerChanges;
+			addedOrRemoved= fPendingAddedOrRemoved;
+			fPendingMarkerChanges= new HashSet<>();
+			fPendingAddedOrRemoved= new HashSet<>();
+			fCoalescingScheduled= false;
+		}
+
+		Set<IResource> result= new HashSet<>();
+		for (Iterator<IResource> iter= changed.iterator(); iter.hasNext();) {
+			IResource resource= iter.next();
+			if (addedOrRemoved.contains(resource) || !resource.isAccessible()) {
+				removeProblemStates(resource);
+				result.add(resource);
+				continue;
+			}
+			long state= computeProblemState(resource);
+			Long previous;
+			synchronized (fProblemStates) {
+				if (state == NO_PROBLEMS)
+					previous= fProblemStates.remove(resource);
+				else
+					previous= fProblemStates.put(resource, Long.valueOf(state));
+			}
+			// a resource without problems that is not tracked may still show stale problems
+			if (previous == null || previous.longValue() != state)
+				result.add(resource);
+		}
+
+		boolean hasChanges;
+		synchronized (this) {
+			fSuppressedResources+= changed.size() - result.size();
+			if (result.isEmpty())
+				return;
+			hasChanges= fResourcesWithMarkerChanges.addAll(result);
+		}
+		if (hasChanges)
+			fireChanges();
+	}
+
+	private void removeProblemStates(IResource resource) {
+		IPath path= resource.getFullPath();
+		synchronized (fProblemStates) {
+			fProblemStates.remove(resource);
+			if (resource.getType() == IResource.FILE)
+				return;
+			for (Iterator<IResource> iter= fProblemStates.keySet().iterator(); iter.hasNext();) {
+				if (path.isPrefixOf(iter.next().getFullPath()))
+					iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Computes a value that changes whenever the problem decoration of the resource or of its
+	 * Java elements may change. For files, this is a hash of the severity and start position of
+	 * each problem marker, as members are decorated with the markers inside of their range. For
+	 * containers, the maximal severities of the direct and of all members are used.
+	 *
+	 * @param resource the resource
+	 * @return the problem state of the resource, {@link #NO_PROBLEMS} if neither the resource nor
+	 *         its members have problems
+	 */
+	private static long computeProblemState(IResource resource) {
+		try {
+			if (resource.getType() == IResource.FILE) {
+				IMarker[] markers= resource.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_ZERO);
+				if (markers.length == 0)
+					return NO_PROBLEMS;
+				long state= markers.length;
+				for (int i= 0; i < markers.length; i++) {
+					long severity= markers[i].getAttribute(IMarker.SEVERITY, -1);
+					long start= markers[i].getAttribute(IMarker.CHAR_START, -1);
+					// order independent combination of the markers
+					state+= mix((severity << 32) ^ start);
+				}
+				return state;
+			}
+			long state= resource.findMaxProblemSeverity(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
+			if (state == -1)
+				return NO_PROBLEMS;
+			state= state << 8 | (resource.findMaxProblemSeverity(IMarker.PROBLEM, true, IResource.DEPTH_ONE) & 0xFF);
+			if (resource.getType() == IResource.PROJECT) {
+				state= state << 8 | (resource.findMaxProblemSeverity(IJavaModelMarker.BUILDPATH_PROBLEM_MARKER, true, IResource.DEPTH_ZERO) & 0xFF);
+				state= state << 8 | (resource.findMaxProblemSeverity(JavaRuntime.JRE_CONTAINER_MARKER, true, IResource.DEPTH_ZERO) & 0xFF);
+			}
+			return state;
+		} catch (CoreException e) {
+			// the resource has been removed concurrently, always report it
+			return System.nanoTime();
+		}
+	}
+
+	private static long mix(long value) {
+		value^= value >>> 33;
+		value*= 0xff51afd7ed558ccdL;
+		value^= value >>> 33;
+		value*= 0xc4ceb9fe1a85ec53L;
+		value^= value >>> 33;
+		return value;
+	}
+
+	/**
+	 * Returns the number of resources whose problem state is tracked to suppress unchanged
+	 * resources. Resources without problems are not tracked.
+	 *
+	 * @return the number of tracked resources
+	 * @since 3.14
+	 */
+	public int getTrackedResourceCount() {
+		synchronized (fProblemStates) {
+			return fProblemStates.size();
+		}
+	}
+
+	/**
+	 * Returns the number of batches of changed resources sent to the listeners so far.
+	 *
+	 * @return the number of dispatched events
+	 */
+	public synchronized long getDispatchedEventCount() {
+		return fDispatchedEvents;
+	}
+
+	/**
+	 * Returns the number of resources sent to the listeners so far. Each of them causes the
+	 * labels of the resource and its Java elements to be refreshed.
+	 *
+	 * @return the number of refreshed resources
+	 */
+	public synchronized long getRefreshedResourceCount() {
+		return fRefreshedResources;
+	}
+
+	/**
+	 * Returns the number of resources with marker changes that were not sent to the listeners
+	 * because their problem state did not change.
+	 *
+	 * @return the number of suppressed resources
+	 */
+	public synchronized long getSuppressedResourceCount() {
+		return fSuppressedResources;
+	}
+
 	@Override
 	public void modelChanged(IAnnotationModel model) {
 		// no action
@@ -159,8 +448,10 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 			CompilationUnitAnnotationModelEvent cuEvent= (CompilationUnitAnnotationModelEvent) event;
 			if (cuEvent.includesProblemMarkerAnnotationChanges()) {
 				boolean hasChanges= false;
+				IResource changedResource= cuEvent.getUnderlyingResource();
+				if (changedResource != null)
+					fSeverityCache.invalidate(Collections.singleton(changedResource));
 				synchronized (this) {
-					IResource changedResource= cuEvent.getUnderlyingResource();
 					hasChanges= fResourcesWithAnnotationChanges.add(changedResource);
 				}
 				if (hasChanges) {
@@ -179,6 +470,7 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 		if (fListeners.isEmpty()) {
 			JavaPlugin.getWorkspace().addResourceChangeListener(this);
 			JavaPlugin.getDefault().getCompilationUnitDocumentProvider().addGlobalAnnotationModelListener(this);
+			fSeverityCache.setEnabled(true);
 		}
 		fListeners.add(listener);
 	}
@@ -192,6 +484,7 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 		if (fListeners.isEmpty()) {
 			JavaPlugin.getWorkspace().removeResourceChangeListener(this);
 			JavaPlugin.getDefault().getCompilationUnitDocumentProvider().removeGlobalAnnotationModelListener(this);
+			fSeverityCache.setEnabled(false);
 		}
 	}
 
@@ -231,6 +524,14 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 				annotationResources= fResourcesWithAnnotationChanges.toArray(new IResource[fResourcesWithAnnotationChanges.size()]);
 				fResourcesWithAnnotationChanges.clear();
 			}
+			if (markerResources != null) {
+				fDispatchedEvents++;
+				fRefreshedResources+= markerResources.length;
+			}
+			if (annotationResources != null) {
+				fDispatchedEvents++;
+				fRefreshedResources+= annotationResources.length;
+			}
 		}
 		for (IProblemChangedListener curr : fListeners) {
 			if (markerResources != null) {
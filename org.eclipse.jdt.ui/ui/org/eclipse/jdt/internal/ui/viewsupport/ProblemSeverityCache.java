@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.viewsupport;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.CoreException;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.jdt.core.IJavaModelMarker;
+
+import org.eclipse.jdt.launching.JavaRuntime;
+
+/**
+ * Caches the problem severities of resources for the problem decorators. The cache is owned by
+ * the {@link ProblemMarkerManager}, which invalidates the entries of all resources with problem
+ * marker or problem annotation changes. It is only used while the manager listens to resource
+ * changes; otherwise all requests are forwarded to the workspace.
+ *
+ * @since 3.14
+ */
+public class ProblemSeverityCache {
+
+	private static final int UNKNOWN= -2;
+
+	private static final int SLOT_PROBLEM_DEPTH_ZERO= 0;
+	private static final int SLOT_PROBLEM_DEPTH_ONE= 1;
+	private static final int SLOT_PROBLEM_DEPTH_INFINITE= 2;
+	private static final int SLOT_BUILDPATH_PROBLEM= 3;
+	private static final int SLOT_JRE_CONTAINER= 4;
+	private static final int SLOT_COUNT= 5;
+
+	private static final int[] NO_POSITIONS= new int[0];
+
+	/**
+	 * The cached values of a resource. Values computed while the entry is invalidated are
+	 * written to the removed entry and thus dropped.
+	 */
+	private static final class Entry {
+		final int[] fSeverities;
+		volatile int[] fPositions;
+
+		Entry() {
+			fSeverities= new int[SLOT_COUNT];
+			Arrays.fill(fSeverities, UNKNOWN);
+		}
+	}
+
+	private final Map<IResource, Entry> fEntries= new ConcurrentHashMap<>();
+	private volatile boolean fEnabled;
+
+	ProblemSeverityCache() {
+	}
+
+	/**
+	 * Returns the maximal severity of the markers of the given type on the resource, like
+	 * {@link IResource#findMaxProblemSeverity(String, boolean, int)} with subtypes included.
+	 *
+	 * @param resource the resource
+	 * @param type the marker type
+	 * @param depth the depth
+	 * @return the maximal severity, or <code>-1</code> if there are no such markers
+	 * @throws CoreException if the resource does not exist or is not open
+	 */
+	public int findMaxProblemSeverity(IResource resource, String type, int depth) throws CoreException {
+		int slot= getSlot(type, depth);
+		if (!fEnabled || slot == -1)
+			return resource.findMaxProblemSeverity(type, true, depth);
+
+		Entry entry= getEntry(resource);
+		int severity= entry.fSeverities[slot];
+		if (severity == UNKNOWN) {
+			severity= resource.findMaxProblemSeverity(type, true, depth);
+			entry.fSeverities[slot]= severity;
+		}
+		return severity;
+	}
+
+	/**
+	 * Returns the start positions and severities of the text problem markers on the given
+	 * resource with severity info, warning or error.
+	 *
+	 * @param resource the resource
+	 * @return pairs of start position and severity
+	 * @throws CoreException if the resource does not exist or is not open
+	 */
+	public int[] findProblemMarkerPositions(IResource resource) throws CoreException {
+		Entry entry= fEnabled ? getEntry(resource) : null;
+		if (entry != null) {
+			int[] positions= entry.fPositions;
+			if (positions != null)
+				return positions;
+		}
+
+		int[] positions= computeProblemMarkerPositions(resource);
+		if (entry != null)
+			entry.fPositions= positions;
+		return positions;
+	}
+
+	private static int[] computeProblemMarkerPositions(IResource resource) throws CoreException {
+		IMarker[] markers= resource.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_ZERO);
+		if (markers.length == 0)
+			return NO_POSITIONS;
+		int[] positions= new int[markers.length * 2];
+		int count= 0;
+		for (int i= 0; i < markers.length; i++) {
+			IMarker marker= markers[i];
+			if (!marker.isSubtypeOf(IMarker.TEXT))
+				continue;
+			int severity= marker.getAttribute(IMarker.SEVERITY, -1);
+			if (severity == IMarker.SEVERITY_INFO || severity == IMarker.SEVERITY_WARNING || severity == IMarker.SEVERITY_ERROR) {
+				positions[count++]= marker.getAttribute(IMarker.CHAR_START, -1);
+				positions[count++]= severity;
+			}
+		}
+		return count == positions.length ? positions : Arrays.copyOf(positions, count);
+	}
+
+	private Entry getEntry(IResource resource) {
+		Entry entry= fEntries.get(resource);
+		if (entry == null) {
+			Entry newEntry= new Entry();
+			entry= fEntries.putIfAbsent(resource, newEntry);
+			if (entry == null)
+				entry= newEntry;
+		}
+		return entry;
+	}
+
+	private static int getSlot(String type, int depth) {
+		if (IMarker.PROBLEM.equals(type)) {
+			switch (depth) {
+				case IResource.DEPTH_ZERO:
+					return SLOT_PROBLEM_DEPTH_ZERO;
+				case IResource.DEPTH_ONE:
+					return SLOT_PROBLEM_DEPTH_ONE;
+				case IResource.DEPTH_INFINITE:
+					return SLOT_PROBLEM_DEPTH_INFINITE;
+				default:
+					return -1;
+			}
+		}
+		if (depth != IResource.DEPTH_ZERO)
+			return -1;
+		if (IJavaModelMarker.BUILDPATH_PROBLEM_MARKER.equals(type))
+			return SLOT_BUILDPATH_PROBLEM;
+		if (JavaRuntime.JRE_CONTAINER_MARKER.equals(type))
+			return SLOT_JRE_CONTAINER;
+		return -1;
+	}
+
+	/**
+	 * Removes the cached values of the given resources.
+	 *
+	 * @param resources the changed resources
+	 */
+	void invalidate(Iterable<IResource> resources) {
+		for (IResource resource : resources)
+			fEntries.remove(resource);
+	}
+
+	/**
+	 * Enables or disables the cache. The cache is cleared in both cases.
+	 *
+	 * @param enabled <code>true</code> while the cached values are kept up to date
+	 */
+	void setEnabled(boolean enabled) {
+		fEnabled= enabled;
+		fEntries.clear();
+	}
+}
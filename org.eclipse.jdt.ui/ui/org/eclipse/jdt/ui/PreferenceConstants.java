@@ -52,6 +52,7 @@ import org.eclipse.jdt.internal.ui.preferences.formatter.FormatterProfileManager
 import org.eclipse.jdt.internal.ui.text.java.CompletionProposalComputerRegistry;
 import org.eclipse.jdt.internal.ui.text.java.ProposalSorterRegistry;
 import org.eclipse.jdt.internal.ui.text.spelling.SpellCheckEngine;
+import org.eclipse.jdt.internal.ui.viewsupport.ProblemMarkerManager;
 
 
 /**
@@ -3714,6 +3715,10 @@ public class PreferenceConstants {
 	 * <p>
 	 * Value is an XML encoded version of the history.
 	 * </p>
+	 * <p>
+	 * <strong>Note:</strong> Since 3.14 the history is stored in a file in the state location of
+	 * the plug-in. The preference is only read to migrate the history of previous versions.
+	 * </p>
 	 *
 	 * @see org.eclipse.jdt.internal.ui.text.java.ContentAssistHistory#load(org.eclipse.core.runtime.Preferences, String)
 	 * @since 3.2
@@ -4060,6 +4065,9 @@ public class PreferenceConstants {
 		// do more complicated stuff
 		NewJavaProjectPreferencePage.initDefaults(store);
 
+		// problem decorations
+		ProblemMarkerManager.initDefaults(store);
+
 		// reset preferences that are not settable by editor any longer
 		// see AbstractDecoratedTextEditorPreferenceConstants
 		store.setToDefault(EDITOR_SMART_HOME_END); // global
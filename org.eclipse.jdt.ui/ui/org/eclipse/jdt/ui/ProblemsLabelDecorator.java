@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -61,6 +61,7 @@ import org.eclipse.jdt.internal.ui.JavaPluginImages;
 import org.eclipse.jdt.internal.ui.viewsupport.IProblemChangedListener;
 import org.eclipse.jdt.internal.ui.viewsupport.ImageDescriptorRegistry;
 import org.eclipse.jdt.internal.ui.viewsupport.ImageImageDescriptor;
+import org.eclipse.jdt.internal.ui.viewsupport.ProblemSeverityCache;
 
 /**
  * LabelDecorator that decorates an element's image with error and warning overlays that
@@ -281,19 +282,28 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 		if (res == null || !res.isAccessible()) {
 			return 0;
 		}
+		ProblemSeverityCache cache= getSeverityCache();
 		int severity= -1;
 		if (sourceElement == null) {
 			if (res instanceof IProject) {
-				severity= res.findMaxProblemSeverity(IJavaModelMarker.BUILDPATH_PROBLEM_MARKER, true, IResource.DEPTH_ZERO);
+				severity= cache.findMaxProblemSeverity(res, IJavaModelMarker.BUILDPATH_PROBLEM_MARKER, IResource.DEPTH_ZERO);
 				if (severity == IMarker.SEVERITY_ERROR) {
 					return ERRORTICK_BUILDPATH_ERROR;
 				}
-				severity= res.findMaxProblemSeverity(JavaRuntime.JRE_CONTAINER_MARKER, true, IResource.DEPTH_ZERO);
+				severity= cache.findMaxProblemSeverity(res, JavaRuntime.JRE_CONTAINER_MARKER, IResource.DEPTH_ZERO);
 				if (severity == IMarker.SEVERITY_ERROR) {
 					return ERRORTICK_BUILDPATH_ERROR;
 				}
 			}
-			severity= res.findMaxProblemSeverity(IMarker.PROBLEM, true, depth);
+			severity= cache.findMaxProblemSeverity(res, IMarker.PROBLEM, depth);
+		} else if (res.getType() == IResource.FILE) {
+			// pairs of start position and severity
+			int[] positions= cache.findProblemMarkerPositions(res);
+			for (int i= 0; i < positions.length && (severity != IMarker.SEVERITY_ERROR); i+= 2) {
+				if (isInside(positions[i], sourceElement)) {
+					severity= Math.max(severity, positions[i + 1]);
+				}
+			}
 		} else {
 			IMarker[] markers= res.findMarkers(IMarker.PROBLEM, true, depth);
 			if (markers != null && markers.length > 0) {
@@ -360,6 +370,8 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 	
 	private int findMaxProblemSeverity (IResource res, String type, boolean includeSubtypes, int depth) throws CoreException {
 		try {
+			if (includeSubtypes)
+				return getSeverityCache().findMaxProblemSeverity(res, type, depth);
 			return res.findMaxProblemSeverity(type, includeSubtypes, depth);
 		} catch (CoreException e) {
 			if (e.getStatus().getCode() == IResourceStatus.RESOURCE_NOT_FOUND) {
@@ -370,6 +382,10 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 		}
 	}
 
+	private static ProblemSeverityCache getSeverityCache() {
+		return JavaPlugin.getDefault().getProblemMarkerManager().getSeverityCache();
+	}
+
 	private boolean isMarkerInRange(IMarker marker, ISourceReference sourceElement) throws CoreException {
 		if (marker.isSubtypeOf(IMarker.TEXT)) {
 			int pos= marker.getAttribute(IMarker.CHAR_START, -1);
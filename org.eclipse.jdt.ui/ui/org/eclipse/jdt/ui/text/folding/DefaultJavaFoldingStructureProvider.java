@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2011 IBM Corporation and others.
+ * Copyright (c) 2006, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,7 +28,9 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
@@ -362,7 +364,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 				fUpdatingCount++;
 				try {
-					update(createContext(false));
+					update(createContext(false), delta);
 				} finally {
 					fUpdatingCount--;
 				}
@@ -699,11 +701,90 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		}
 	}
 
+	/**
+	 * Tracks the region of the document that changed since the last update. Changes that do not
+	 * affect the Java model elements, e.g. in a method body, are reported by deltas without
+	 * affected children, the region tells which member they touched.
+	 */
+	private static final class DirtyRegionListener implements IDocumentListener {
+		private IDocument fDocument;
+		/** The changed region in the current document, replaced on every change */
+		private IRegion fRegion;
+
+		/**
+		 * Starts tracking the changes of the given document.
+		 *
+		 * @param document the document, may be <code>null</code>
+		 */
+		public synchronized void connect(IDocument document) {
+			disconnect();
+			fDocument= document;
+			if (fDocument != null)
+				fDocument.addDocumentListener(this);
+		}
+
+		/**
+		 * Stops tracking changes.
+		 */
+		public synchronized void disconnect() {
+			if (fDocument != null) {
+				fDocument.removeDocumentListener(this);
+				fDocument= null;
+			}
+			fRegion= null;
+		}
+
+		/**
+		 * Returns the region that changed since the last update.
+		 *
+		 * @return the changed region, or <code>null</code> if there are no known changes
+		 */
+		public synchronized IRegion getRegion() {
+			return fRegion;
+		}
+
+		/**
+		 * Forgets the changed region after an update, unless the document changed again since
+		 * the region has been retrieved.
+		 *
+		 * @param region the region returned by {@link #getRegion()} before the update
+		 */
+		public synchronized void reset(IRegion region) {
+			if (fRegion == region)
+				fRegion= null;
+		}
+
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+		}
+
+		@Override
+		public synchronized void documentChanged(DocumentEvent event) {
+			int offset= event.getOffset();
+			int end= offset + (event.getText() == null ? 0 : event.getText().length());
+			if (fRegion != null) {
+				int delta= end - offset - event.getLength();
+				int regionOffset= fRegion.getOffset();
+				int regionEnd= regionOffset + fRegion.getLength();
+				if (regionOffset >= offset + event.getLength())
+					regionOffset+= delta;
+				if (regionEnd >= offset + event.getLength())
+					regionEnd+= delta;
+				else if (regionEnd > offset)
+					regionEnd= end;
+				offset= Math.min(offset, regionOffset);
+				end= Math.max(end, regionEnd);
+			}
+			fRegion= new Region(offset, end - offset);
+		}
+	}
+
 	/* context and listeners */
 	private JavaEditor fEditor;
 	private ProjectionListener fProjectionListener;
 	private IJavaElement fInput;
 	private IElementChangedListener fElementListener;
+	private final DirtyRegionListener fDirtyRegionListener= new DirtyRegionListener();
 
 	/* preferences */
 	private boolean fCollapseJavadoc= false;
@@ -726,6 +807,12 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 	private volatile int fUpdatingCount= 0;
 
+	/**
+	 * Preference key that tells whether fine grained reconcile deltas only update the folding
+	 * structure of the changed members.
+	 */
+	private static final String INCREMENTAL_UPDATE= "DefaultJavaFoldingStructureProvider.incrementalUpdate"; //$NON-NLS-1$
+
 	/**
 	 * Creates a new folding provider. It must be
 	 * {@link #install(ITextEditor, ProjectionViewer) installed} on an editor/viewer pair before it
@@ -830,6 +917,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 			JavaCore.removeElementChangedListener(fElementListener);
 			fElementListener= null;
 		}
+		fDirtyRegionListener.disconnect();
 	}
 
 	/*
@@ -837,6 +925,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 	 */
 	@Override
 	public final void initialize() {
+		fDirtyRegionListener.connect(getDocument());
 		fUpdatingCount++;
 		try {
 			update(createInitialContext());
@@ -887,16 +976,50 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 	}
 
 	private void update(FoldingStructureComputationContext ctx) {
+		update(ctx, null);
+	}
+
+	/**
+	 * Updates the folding structure for the given delta of the input. A fine grained delta that
+	 * only affects members and imports updates the annotations of the affected elements, any
+	 * other delta updates the whole structure. The positions of the other annotations are
+	 * already kept up to date by the document.
+	 *
+	 * @param ctx the context, may be <code>null</code>
+	 * @param delta the delta of the input element, or <code>null</code> to update the whole
+	 *            structure
+	 */
+	private void update(FoldingStructureComputationContext ctx, IJavaElementDelta delta) {
 		if (ctx == null)
 			return;
 
+		IRegion dirtyRegion= fDirtyRegionListener.getRegion();
+		Set<IJavaElement> changed= null;
+		Set<IJavaElement> removed= null;
+		if (delta != null && isIncrementalUpdate()) {
+			changed= new HashSet<>();
+			removed= new HashSet<>();
+			if (!collectChangedElements(delta, dirtyRegion, changed, removed) || !initializeFirstType(ctx)) {
+				changed= null;
+				removed= null;
+			}
+		}
+
 		Map<JavaProjectionAnnotation, Position> additions= new HashMap<>();
 		List<JavaProjectionAnnotation> deletions= new ArrayList<>();
 		List<JavaProjectionAnnotation> updates= new ArrayList<>();
 
-		computeFoldingStructure(ctx);
+		Set<IJavaElement> scope= null;
+		if (changed == null) {
+			computeFoldingStructure(ctx);
+		} else {
+			removeNested(changed);
+			computeFoldingStructure(changed.toArray(new IJavaElement[changed.size()]), ctx);
+			scope= changed;
+			scope.addAll(removed);
+		}
 		Map<JavaProjectionAnnotation, Position> newStructure= ctx.fMap;
-		Map<IJavaElement, List<Tuple>> oldStructure= computeCurrentStructure(ctx);
+		Map<IJavaElement, List<Tuple>> oldStructure= computeCurrentStructure(ctx, scope);
 
 		Iterator<JavaProjectionAnnotation> e= newStructure.keySet().iterator();
 		while (e.hasNext()) {
@@ -965,10 +1088,189 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		ctx.getModel().modifyAnnotations(deletedArray, additions, changedArray);
 
 		ctx.fScanner.setSource(null);
+		fDirtyRegionListener.reset(dirtyRegion);
     }
 
+	private static boolean isIncrementalUpdate() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		if (!store.contains(INCREMENTAL_UPDATE))
+			return true;
+		return store.getBoolean(INCREMENTAL_UPDATE);
+	}
+
+	/**
+	 * Collects the elements whose folding structure has to be recomputed for a fine grained
+	 * delta of the input.
+	 *
+	 * @param delta the delta of the input element
+	 * @param dirtyRegion the region of the document that changed since the last update, or
+	 *            <code>null</code> if not known
+	 * @param changed the set to which added and changed elements are added
+	 * @param removed the set to which removed elements are added
+	 * @return <code>false</code> if the whole structure has to be updated
+	 */
+	private boolean collectChangedElements(IJavaElementDelta delta, IRegion dirtyRegion, Set<IJavaElement> changed, Set<IJavaElement> removed) {
+		if ((delta.getFlags() & IJavaElementDelta.F_FINE_GRAINED) == 0)
+			return false;
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		if (children.length == 0)
+			return collectChangedMember(dirtyRegion, changed);
+		for (int i= 0; i < children.length; i++) {
+			if (!collectChangedElement(children[i], changed, removed))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean collectChangedElement(IJavaElementDelta delta, Set<IJavaElement> changed, Set<IJavaElement> removed) {
+		IJavaElement element= delta.getElement();
+		int flags= delta.getFlags();
+		if ((flags & IJavaElementDelta.F_REORDER) != 0)
+			return false;
+
+		switch (element.getElementType()) {
+			case IJavaElement.IMPORT_DECLARATION:
+				changed.add(element.getParent());
+				return true;
+			case IJavaElement.IMPORT_CONTAINER:
+				if (delta.getKind() == IJavaElementDelta.REMOVED)
+					removed.add(element);
+				else
+					changed.add(element);
+				return true;
+			case IJavaElement.TYPE:
+				if (((IType) element).getDeclaringType() == null) {
+					// the first type owns the header comment
+					if (delta.getKind() != IJavaElementDelta.CHANGED || (flags & ~(IJavaElementDelta.F_CHILDREN | IJavaElementDelta.F_FINE_GRAINED | IJavaElementDelta.F_AST_AFFECTED)) != 0)
+						return false;
+				}
+				//$FALL-THROUGH$
+			case IJavaElement.METHOD:
+			case IJavaElement.FIELD:
+			case IJavaElement.INITIALIZER:
+				if (delta.getKind() == IJavaElementDelta.REMOVED) {
+					removed.add(element);
+				} else if (delta.getKind() == IJavaElementDelta.ADDED || (flags & ~(IJavaElementDelta.F_CHILDREN | IJavaElementDelta.F_FINE_GRAINED | IJavaElementDelta.F_AST_AFFECTED)) != 0) {
+					changed.add(element);
+				} else {
+					IJavaElementDelta[] children= delta.getAffectedChildren();
+					for (int i= 0; i < children.length; i++) {
+						if (!collectChangedElement(children[i], changed, removed))
+							return false;
+					}
+				}
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Collects the member that encloses a change which does not affect the Java model elements,
+	 * e.g. in a method body or in a comment.
+	 *
+	 * @param dirtyRegion the region of the document that changed since the last update, or
+	 *            <code>null</code> if not known
+	 * @param changed the set to which the enclosing member is added
+	 * @return <code>false</code> if the whole structure has to be updated, e.g. for a change
+	 *         in the header comment or between the members of a top-level type
+	 */
+	private boolean collectChangedMember(IRegion dirtyRegion, Set<IJavaElement> changed) {
+		if (dirtyRegion == null || !(fInput instanceof ICompilationUnit))
+			return false;
+		ICompilationUnit unit= (ICompilationUnit) fInput;
+		try {
+			IJavaElement start= unit.getElementAt(dirtyRegion.getOffset());
+			IJavaElement end= unit.getElementAt(dirtyRegion.getOffset() + Math.max(dirtyRegion.getLength() - 1, 0));
+			if (start == null || end == null)
+				return false;
+			IJavaElement member= getEnclosingMember(start);
+			while (member != null && !isInScope(end, Collections.singleton(member)))
+				member= getEnclosingMember(member.getParent());
+			if (member == null || member.getElementType() == IJavaElement.TYPE && ((IType) member).getDeclaringType() == null)
+				return false;
+			changed.add(member);
+			return true;
+		} catch (JavaModelException e) {
+			return false;
+		}
+	}
+
+	private static IJavaElement getEnclosingMember(IJavaElement element) {
+		while (element != null) {
+			switch (element.getElementType()) {
+				case IJavaElement.TYPE:
+				case IJavaElement.METHOD:
+				case IJavaElement.FIELD:
+				case IJavaElement.INITIALIZER:
+					return element;
+				default:
+					element= element.getParent();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the first type of an incremental update, which only computes the structure of
+	 * members that are not the first type.
+	 *
+	 * @param ctx the context
+	 * @return <code>false</code> if the first type is not known
+	 */
+	private boolean initializeFirstType(FoldingStructureComputationContext ctx) {
+		if (!(fInput instanceof ICompilationUnit))
+			return false;
+		try {
+			IType[] types= ((ICompilationUnit) fInput).getTypes();
+			if (types.length == 0)
+				return false;
+			ctx.setFirstType(types[0]);
+			return true;
+		} catch (JavaModelException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Removes the elements that are contained in another element of the set, their structure is
+	 * computed with the structure of the containing element.
+	 *
+	 * @param elements the elements
+	 */
+	private static void removeNested(Set<IJavaElement> elements) {
+		for (Iterator<IJavaElement> iter= elements.iterator(); iter.hasNext();) {
+			IJavaElement parent= iter.next().getParent();
+			if (isInScope(parent, elements))
+				iter.remove();
+		}
+	}
+
+	/**
+	 * Tells whether the given element or one of its ancestors is contained in the scope.
+	 *
+	 * @param element the element, may be <code>null</code>
+	 * @param scope the scope
+	 * @return <code>true</code> if the element is in the scope
+	 */
+	private static boolean isInScope(IJavaElement element, Set<IJavaElement> scope) {
+		while (element != null) {
+			if (scope.contains(element))
+				return true;
+			element= element.getParent();
+		}
+		return false;
+	}
+
 	private void computeFoldingStructure(FoldingStructureComputationContext ctx) {
 		IParent parent= (IParent) fInput;
+		try {
+			computeFoldingStructure(parent.getChildren(), ctx);
+		} catch (JavaModelException x) {
+		}
+	}
+
+	private void computeFoldingStructure(IJavaElement[] elements, FoldingStructureComputationContext ctx) {
 		try {
 			if (!(fInput instanceof ISourceReference))
 				return;
@@ -977,12 +1279,12 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 				return;
 
 			ctx.getScanner().setSource(source.toCharArray());
-			computeFoldingStructure(parent.getChildren(), ctx);
+			computeFoldingStructureRecursively(elements, ctx);
 		} catch (JavaModelException x) {
 		}
 	}
 
-	private void computeFoldingStructure(IJavaElement[] elements, FoldingStructureComputationContext ctx) throws JavaModelException {
+	private void computeFoldingStructureRecursively(IJavaElement[] elements, FoldingStructureComputationContext ctx) throws JavaModelException {
 		for (int i= 0; i < elements.length; i++) {
 			IJavaElement element= elements[i];
 
@@ -990,7 +1292,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 			if (element instanceof IParent) {
 				IParent parent= (IParent) element;
-				computeFoldingStructure(parent.getChildren(), ctx);
+				computeFoldingStructureRecursively(parent.getChildren(), ctx);
 			}
 		}
 	}
@@ -1389,7 +1691,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		return null;
 	}
 
-	private Map<IJavaElement, List<Tuple>> computeCurrentStructure(FoldingStructureComputationContext ctx) {
+	private Map<IJavaElement, List<Tuple>> computeCurrentStructure(FoldingStructureComputationContext ctx, Set<IJavaElement> scope) {
 		Map<IJavaElement, List<Tuple>> map= new HashMap<>();
 		ProjectionAnnotationModel model= ctx.getModel();
 		Iterator<Annotation> e= model.getAnnotationIterator();
@@ -1397,6 +1699,8 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 			Object annotation= e.next();
 			if (annotation instanceof JavaProjectionAnnotation) {
 				JavaProjectionAnnotation java= (JavaProjectionAnnotation) annotation;
+				if (scope != null && !isInScope(java.getElement(), scope))
+					continue;
 				Position position= model.getPosition(java);
 				Assert.isNotNull(position);
 				List<Tuple> list= map.get(java.getElement());
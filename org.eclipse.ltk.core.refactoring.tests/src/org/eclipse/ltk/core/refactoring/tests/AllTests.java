@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -24,6 +24,7 @@ public class AllTests {
 		TestSuite suite= new TestSuite(AllTests.class.getName());
 		
 		suite.addTestSuite(RefactoringContextTest.class);
+		suite.addTestSuite(PerformChangeOperationTests.class);
 		
 		suite.addTest(ParticipantTests.suite());
 		suite.addTest(RefactoringHistoryTests.suite());
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.PerformChangeOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
+import org.eclipse.ltk.core.refactoring.tests.util.SimpleTestProject;
+
+public class PerformChangeOperationTests extends TestCase {
+
+	private SimpleTestProject fProject;
+
+	public PerformChangeOperationTests() {
+		super("Perform Change Operation Tests");
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fProject= new SimpleTestProject();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fProject.delete();
+		super.tearDown();
+	}
+
+	private IFile[] createFiles(int count) throws Exception {
+		IFolder folder= fProject.createFolder("test");
+		IFile[] result= new IFile[count];
+		for (int i= 0; i < count; i++)
+			result[i]= fProject.createFile(folder, "test" + i + ".txt", "section one");
+		return result;
+	}
+
+	private Change createChange(IFile[] files) {
+		CompositeChange result= new CompositeChange("change");
+		CompositeChange nested= new CompositeChange("nested");
+		for (int i= 0; i < files.length; i++) {
+			TextFileChange change= new TextFileChange("", files[i]);
+			MultiTextEdit root= new MultiTextEdit();
+			root.addChild(new ReplaceEdit(8, 3, "two"));
+			change.setEdit(root);
+			if (i % 2 == 0)
+				result.add(change);
+			else
+				nested.add(change);
+		}
+		result.add(nested);
+		result.initializeValidationData(new NullProgressMonitor());
+		return result;
+	}
+
+	public void testBatched() throws Exception {
+		IFile[] files= createFiles(100);
+		PerformChangeOperation op= new PerformChangeOperation(createChange(files));
+		op.setBatched(true);
+		ResourcesPlugin.getWorkspace().run(op, null);
+		assertTrue(op.changeExecuted());
+		for (int i= 0; i < files.length; i++)
+			assertEquals("section two", fProject.getContent(files[i]));
+
+		PerformChangeOperation undo= new PerformChangeOperation(op.getUndoChange());
+		undo.setBatched(true);
+		ResourcesPlugin.getWorkspace().run(undo, null);
+		assertTrue(undo.changeExecuted());
+		for (int i= 0; i < files.length; i++)
+			assertEquals("section one", fProject.getContent(files[i]));
+	}
+
+	public void testBatchedModifiedFile() throws Exception {
+		IFile[] files= createFiles(10);
+		Change change= createChange(files);
+		files[7].setContents(new ByteArrayInputStream("section three".getBytes()), true, false, null);
+
+		PerformChangeOperation op= new PerformChangeOperation(change);
+		op.setBatched(true);
+		ResourcesPlugin.getWorkspace().run(op, null);
+		assertFalse(op.changeExecuted());
+		assertTrue(op.getValidationStatus().hasFatalError());
+		for (int i= 0; i < files.length; i++) {
+			if (i != 7)
+				assertEquals("section one", fProject.getContent(files[i]));
+		}
+		change.dispose();
+	}
+
+	public void testBatchedExtendedValidation() throws Exception {
+		IFile[] files= createFiles(2);
+		final int[] validated= new int[1];
+		TextFileChange extended= new TextFileChange("", files[1]) {
+			@Override
+			public RefactoringStatus isValid(IProgressMonitor monitor) throws CoreException {
+				RefactoringStatus result= super.isValid(monitor);
+				validated[0]++;
+				result.addFatalError("extended validation");
+				return result;
+			}
+		};
+		MultiTextEdit root= new MultiTextEdit();
+		root.addChild(new ReplaceEdit(8, 3, "two"));
+		extended.setEdit(root);
+		TextFileChange plain= new TextFileChange("", files[0]);
+		root= new MultiTextEdit();
+		root.addChild(new ReplaceEdit(8, 3, "two"));
+		plain.setEdit(root);
+		CompositeChange change= new CompositeChange("change", new Change[] { plain, extended });
+		change.initializeValidationData(new NullProgressMonitor());
+
+		PerformChangeOperation op= new PerformChangeOperation(change);
+		op.setBatched(true);
+		ResourcesPlugin.getWorkspace().run(op, null);
+		// the subclass is validated although its text file change is checked concurrently
+		assertEquals(1, validated[0]);
+		assertFalse(op.changeExecuted());
+		assertTrue(op.getValidationStatus().hasFatalError());
+		assertEquals("section one", fProject.getContent(files[0]));
+		change.dispose();
+	}
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests.history;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.PerformRefactoringOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringCore;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringPreferenceConstants;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryService;
+
+import junit.framework.TestCase;
+
+public class RefactoringHistoryLogTests extends TestCase {
+
+	private static final String NAME_LOG_FILE= "refactorings.log";
+
+	/** About 40 days, so that the refactorings span several month folders */
+	private static final long STAMP_FACTOR= 40L * 24 * 60 * 60 * 1000;
+
+	private static final int NUMBER= 12;
+
+	private File getHistoryFolder() {
+		File folder= new File(RefactoringCorePlugin.getDefault().getStateLocation().toFile(), RefactoringHistoryService.NAME_HISTORY_FOLDER);
+		return new File(folder, RefactoringHistoryService.NAME_WORKSPACE_PROJECT);
+	}
+
+	private File getLogFile() {
+		return new File(getHistoryFolder(), NAME_LOG_FILE);
+	}
+
+	private void setIndexed(boolean indexed) throws Exception {
+		IEclipsePreferences preferences= InstanceScope.INSTANCE.getNode(RefactoringCore.ID_PLUGIN);
+		if (indexed)
+			preferences.putBoolean(RefactoringPreferenceConstants.PREFERENCE_INDEXED_REFACTORING_HISTORY, true);
+		else
+			preferences.remove(RefactoringPreferenceConstants.PREFERENCE_INDEXED_REFACTORING_HISTORY);
+		preferences.flush();
+	}
+
+	private void executeRefactoring(int index) throws CoreException {
+		RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		try {
+			service.setOverrideTimeStamp((index + 1) * STAMP_FACTOR);
+			MockRefactoring refactoring= new MockRefactoring(null, "A mock description number " + index, "A mock comment number " + index, Collections.<String, String> emptyMap(), RefactoringDescriptor.NONE);
+			PerformRefactoringOperation operation= new PerformRefactoringOperation(refactoring, CheckConditionsOperation.ALL_CONDITIONS);
+			ResourcesPlugin.getWorkspace().run(operation, null);
+		} finally {
+			service.setOverrideTimeStamp(-1);
+		}
+	}
+
+	private void assertHistory(int number) throws Exception {
+		RefactoringDescriptorProxy[] proxies= RefactoringHistoryService.getInstance().getWorkspaceHistory(null).getDescriptors();
+		assertEquals(number, proxies.length);
+		for (int index= 0; index < proxies.length; index++) {
+			RefactoringDescriptorProxy proxy= proxies[index];
+			int refactoring= (int) (proxy.getTimeStamp() / STAMP_FACTOR) - 1;
+			assertEquals((refactoring + 1) * STAMP_FACTOR, proxy.getTimeStamp());
+			assertEquals("A mock description number " + refactoring, proxy.getDescription());
+			RefactoringDescriptor descriptor= proxy.requestDescriptor(null);
+			assertNotNull(descriptor);
+			assertEquals(proxy.getTimeStamp(), descriptor.getTimeStamp());
+			assertEquals("A mock comment number " + refactoring, descriptor.getComment());
+		}
+	}
+
+	private void assertIndexTree(boolean exists) {
+		assertEquals(exists, containsHistoryFile(getHistoryFolder()));
+	}
+
+	private static boolean containsHistoryFile(File folder) {
+		File[] children= folder.listFiles();
+		for (int index= 0; children != null && index < children.length; index++) {
+			if (children[index].isDirectory() ? containsHistoryFile(children[index]) : children[index].getName().equals(RefactoringHistoryService.NAME_HISTORY_FILE))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		setIndexed(false);
+		RefactoringHistoryService.getInstance().connect();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		service.deleteRefactoringDescriptors(service.getWorkspaceHistory(null).getDescriptors(), null);
+		setIndexed(false);
+		assertTrue("Refactoring history must be empty", service.getWorkspaceHistory(null).isEmpty());
+		service.disconnect();
+		super.tearDown();
+	}
+
+	public void testMigration() throws Exception {
+		for (int index= 0; index < NUMBER; index++)
+			executeRefactoring(index);
+		assertFalse(getLogFile().exists());
+		assertIndexTree(true);
+
+		// files in the history folder that are not part of the index tree survive the migration
+		File unrelated= new File(getHistoryFolder(), "unrelated");
+		assertTrue(unrelated.mkdirs());
+		File file= new File(unrelated, "file.txt");
+		assertTrue(file.createNewFile());
+		try {
+			setIndexed(true);
+			assertHistory(NUMBER);
+			assertTrue(getLogFile().exists());
+			assertIndexTree(false);
+			assertTrue(file.exists());
+
+			executeRefactoring(NUMBER);
+			assertHistory(NUMBER + 1);
+
+			setIndexed(false);
+			assertHistory(NUMBER + 1);
+			assertFalse(getLogFile().exists());
+			assertIndexTree(true);
+			assertTrue(file.exists());
+		} finally {
+			file.delete();
+			unrelated.delete();
+		}
+	}
+
+	public void testExportWhenDisabled() throws Exception {
+		setIndexed(true);
+		for (int index= 0; index < NUMBER; index++)
+			executeRefactoring(index);
+		assertTrue(getLogFile().exists());
+		assertIndexTree(false);
+
+		setIndexed(false);
+		assertHistory(NUMBER);
+		assertFalse(getLogFile().exists());
+		assertIndexTree(true);
+
+		executeRefactoring(NUMBER);
+		assertHistory(NUMBER + 1);
+		assertFalse(getLogFile().exists());
+	}
+
+	public void testTruncatedTail() throws Exception {
+		setIndexed(true);
+		for (int index= 0; index < NUMBER; index++)
+			executeRefactoring(index);
+		assertHistory(NUMBER);
+
+		// the header of an add record whose payload has not been written
+		try (OutputStream output= new FileOutputStream(getLogFile(), true)) {
+			output.write(new byte[] { 1, 0, 0, 0, 0, 0, 0, 0, 42, 0, 0, 1, 0, 0, 0 });
+		}
+		assertHistory(NUMBER);
+		assertHistory(NUMBER);
+
+		executeRefactoring(NUMBER);
+		assertHistory(NUMBER + 1);
+		RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		service.deleteRefactoringDescriptors(service.getWorkspaceHistory(null).getDescriptors(), null);
+		assertTrue(service.getWorkspaceHistory(null).isEmpty());
+	}
+
+	public void testCompaction() throws Exception {
+		setIndexed(true);
+		int number= 250;
+		for (int index= 0; index < number; index++)
+			executeRefactoring(index);
+		assertHistory(number);
+		long length= getLogFile().length();
+
+		// removing most refactorings rewrites the log with the live ones
+		RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		RefactoringDescriptorProxy[] proxies= service.getWorkspaceHistory(null).getDescriptors();
+		RefactoringDescriptorProxy[] removed= new RefactoringDescriptorProxy[number - NUMBER];
+		System.arraycopy(proxies, 0, removed, 0, removed.length);
+		service.deleteRefactoringDescriptors(removed, null);
+		assertTrue(getLogFile().length() < length / 4);
+		assertHistory(NUMBER);
+
+		String[] names= getHistoryFolder().list();
+		for (int index= 0; index < names.length; index++)
+			assertFalse(names[index], names[index].endsWith(".tmp"));
+		assertTrue(new File(getHistoryFolder(), NAME_LOG_FILE + ".index").isFile());
+
+		executeRefactoring(number);
+		assertHistory(NUMBER + 1);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2013 IBM Corporation and others.
+ * Copyright (c) 2006, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ public class RefactoringHistoryTests {
 		TestSuite suite= new TestSuite(RefactoringHistoryTests.class.getName());
 		suite.addTestSuite(RefactoringHistorySerializationTests.class);
 		suite.addTestSuite(RefactoringHistoryServiceTests.class);
+		suite.addTestSuite(RefactoringHistoryLogTests.class);
 		return suite;
 	}
 }
\ No newline at end of file
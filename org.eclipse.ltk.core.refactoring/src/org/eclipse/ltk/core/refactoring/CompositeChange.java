@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,8 +13,14 @@ package org.eclipse.ltk.core.refactoring;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -24,6 +30,10 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.ltk.internal.core.refactoring.BatchedChangeExecution;
+import org.eclipse.ltk.internal.core.refactoring.Changes;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 
@@ -232,6 +242,9 @@ public class CompositeChange extends Change {
 	 */
 	@Override
 	public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException {
+		BatchedChangeExecution batch= BatchedChangeExecution.getCurrent();
+		if (batch != null)
+			return isValid(batch, pm);
 		RefactoringStatus result= new RefactoringStatus();
 		pm.beginTask("", fChanges.size()); //$NON-NLS-1$
 		for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext() && !result.hasFatalError();) {
@@ -247,6 +260,65 @@ public class CompositeChange extends Change {
 		return result;
 	}
 
+	/**
+	 * Validates the children in a batched execution. The validation state of the enabled text
+	 * file changes is checked concurrently, and the files that need saving are validated for
+	 * modification at once. Every child still receives the <code>isValid</code> call, see
+	 * {@link TextFileChange#setBatchedValidation(Future, List)}.
+	 *
+	 * @param batch the batched execution
+	 * @param pm a progress monitor
+	 * @return the merged status of the children
+	 * @throws CoreException if the validation of a child failed
+	 */
+	private RefactoringStatus isValid(BatchedChangeExecution batch, IProgressMonitor pm) throws CoreException {
+		Map<Change, Future<RefactoringStatus>> checks= new HashMap<>();
+		for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext();) {
+			Change change= iter.next();
+			if (change.isEnabled() && change instanceof TextFileChange) {
+				final TextFileChange textFileChange= (TextFileChange) change;
+				checks.put(change, batch.submit(new Callable<RefactoringStatus>() {
+					@Override
+					public RefactoringStatus call() throws CoreException {
+						return textFileChange.checkValidationState();
+					}
+				}));
+			}
+		}
+		RefactoringStatus result= new RefactoringStatus();
+		List<IFile> filesToModify= new ArrayList<>();
+		pm.beginTask("", fChanges.size() + 1); //$NON-NLS-1$
+		try {
+			for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext() && !result.hasFatalError();) {
+				Change change= iter.next();
+				Future<RefactoringStatus> check= checks.get(change);
+				if (check != null) {
+					TextFileChange textFileChange= (TextFileChange) change;
+					textFileChange.setBatchedValidation(check, filesToModify);
+					try {
+						result.merge(change.isValid(new SubProgressMonitor(pm, 1)));
+					} finally {
+						textFileChange.setBatchedValidation(null, null);
+					}
+				} else if (change.isEnabled()) {
+					result.merge(change.isValid(new SubProgressMonitor(pm, 1)));
+				} else {
+					pm.worked(1);
+				}
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+			}
+			if (!result.hasFatalError() && !filesToModify.isEmpty())
+				result.merge(Changes.validateModifiesFiles(filesToModify.toArray(new IFile[filesToModify.size()])));
+			pm.worked(1);
+		} finally {
+			for (Iterator<Future<RefactoringStatus>> iter= checks.values().iterator(); iter.hasNext();)
+				iter.next().cancel(false);
+			pm.done();
+		}
+		return result;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -268,12 +340,20 @@ public class CompositeChange extends Change {
 		pm.setTaskName(RefactoringCoreMessages.CompositeChange_performingChangesTask_name);
 		Change change= null;
 		boolean canceled= false;
+		BatchedChangeExecution batch= BatchedChangeExecution.getCurrent();
+		BatchedChangeExecution.Prefetch prefetch= null;
 		try {
 			for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext();) {
 				change= iter.next();
 				if (canceled && !internalProcessOnCancel(change))
 					continue;
 
+				if (batch != null && change instanceof TextFileChange && (prefetch == null || !prefetch.contains(((TextFileChange) change).getFile()))) {
+					if (prefetch != null)
+						prefetch.dispose();
+					prefetch= batch.prefetch(getPrefetchedFiles());
+				}
+
 				if (change.isEnabled()) {
 					Change undoChange= null;
 					try {
@@ -297,6 +377,8 @@ public class CompositeChange extends Change {
 				// ensures that the memory consumption doesn't go up when
 				// producing the undo change tree.
 				iter.remove();
+				if (prefetch != null && change instanceof TextFileChange)
+					prefetch.performed(((TextFileChange) change).getFile());
 				// Make sure we dispose the change since it will now longer be
 				// in the list of children when call CompositeChange#dispose()
 				final Change changeToDispose= change;
@@ -327,7 +409,33 @@ public class CompositeChange extends Change {
 			handleUndos(change, undos);
 			internalHandleException(change, e);
 			throw e;
+		} finally {
+			if (prefetch != null)
+				prefetch.dispose();
+		}
+	}
+
+	/**
+	 * Returns the files to read ahead in a batched execution, starting at the first remaining
+	 * child. These are the files of the consecutive enabled text file changes, up to the first
+	 * other enabled change. Files that do not exist yet or occur twice end the sequence, as they
+	 * may be modified by an earlier change before their own change is performed.
+	 *
+	 * @return the files to read ahead
+	 */
+	private IFile[] getPrefetchedFiles() {
+		Set<IFile> result= new LinkedHashSet<>();
+		for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext();) {
+			Change change= iter.next();
+			if (!change.isEnabled())
+				continue;
+			if (!(change instanceof TextFileChange))
+				break;
+			IFile file= ((TextFileChange) change).getFile();
+			if (!file.exists() || !result.add(file))
+				break;
 		}
+		return result.toArray(new IFile[result.size()]);
 	}
 
 	private void handleUndos(Change failedChange, List<Change> undos) {
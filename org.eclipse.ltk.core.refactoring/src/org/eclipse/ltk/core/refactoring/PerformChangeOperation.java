@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
@@ -22,6 +23,7 @@ import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 
+import org.eclipse.ltk.internal.core.refactoring.BatchedChangeExecution;
 import org.eclipse.ltk.internal.core.refactoring.NotCancelableProgressMonitor;
 
 /**
@@ -60,6 +62,10 @@ import org.eclipse.ltk.internal.core.refactoring.NotCancelableProgressMonitor;
  */
 public class PerformChangeOperation implements IWorkspaceRunnable {
 
+	private static final String PERF_VALIDATE= "org.eclipse.ltk.core.refactoring/perf/performChange/validate"; //$NON-NLS-1$
+	private static final String PERF_PERFORM= "org.eclipse.ltk.core.refactoring/perf/performChange/perform"; //$NON-NLS-1$
+	private static final String PERF_INITIALIZE_UNDO= "org.eclipse.ltk.core.refactoring/perf/performChange/initializeUndo"; //$NON-NLS-1$
+
 	private Change fChange;
 	private CreateChangeOperation fCreateChangeOperation;
 	private RefactoringStatus fValidationStatus;
@@ -71,6 +77,7 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 	private boolean fChangeExecuted;
 	private boolean fChangeExecutionFailed;
 	private ISchedulingRule fSchedulingRule;
+	private boolean fBatched;
 
 	/**
 	 * Creates a new perform change operation instance for the given change.
@@ -195,6 +202,26 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 		fSchedulingRule= rule;
 	}
 
+	/**
+	 * Sets whether the change is executed in batched mode. In batched mode, composite changes
+	 * validate their text file changes concurrently and validate the files to be modified at
+	 * once. While the children of a composite change are performed, the files of upcoming text
+	 * file changes are read ahead by background threads. The changes themselves are still
+	 * performed one after the other by the thread running this operation, which owns the
+	 * scheduling rule.
+	 * <p>
+	 * The time spent validating the change, performing it and initializing its undo change is
+	 * reported to the <code>org.eclipse.ltk.core.refactoring/perf/performChange</code> performance
+	 * events in both modes.
+	 * </p>
+	 *
+	 * @param batched <code>true</code> to execute the change in batched mode
+	 * @since 3.9
+	 */
+	public void setBatched(boolean batched) {
+		fBatched= batched;
+	}
+
 	@Override
 	public void run(IProgressMonitor pm) throws CoreException {
 		if (pm == null)
@@ -241,9 +268,13 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 			@Override
 			public void run(IProgressMonitor monitor) throws CoreException {
 				boolean undoInitialized= false;
+				BatchedChangeExecution batch= fBatched ? BatchedChangeExecution.begin() : null;
 				try {
 					monitor.beginTask("", 10); //$NON-NLS-1$
+					PerformanceStats stats= PerformanceStats.getStats(PERF_VALIDATE, fChange.getName());
+					stats.startRun();
 					fValidationStatus= fChange.isValid(new SubProgressMonitor(monitor, 1));
+					stats.endRun();
 					if (fValidationStatus.hasFatalError())
 						return;
 					boolean aboutToPerformChangeCalled= false;
@@ -254,7 +285,10 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 							aboutToPerformChangeCalled= true;
 						}
 						fChangeExecutionFailed= true;
+						stats= PerformanceStats.getStats(PERF_PERFORM, fChange.getName());
+						stats.startRun();
 						fUndoChange= fChange.perform(new SubProgressMonitor(monitor, 9));
+						stats.endRun();
 						fChangeExecutionFailed= false;
 						fChangeExecuted= true;
 					} finally {
@@ -266,8 +300,11 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 					}
 					fChange.dispose();
 					if (fUndoChange != null) {
+						stats= PerformanceStats.getStats(PERF_INITIALIZE_UNDO, fChange.getName());
+						stats.startRun();
 						fUndoChange.initializeValidationData(new NotCancelableProgressMonitor(
 							new SubProgressMonitor(monitor, 1)));
+						stats.endRun();
 						undoInitialized= true;
 					}
 					if (fUndoManager != null) {
@@ -298,6 +335,8 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 					fUndoChange= null;
 					throw e;
 				} finally {
+					if (batch != null)
+						batch.end();
 					monitor.done();
 				}
 			}
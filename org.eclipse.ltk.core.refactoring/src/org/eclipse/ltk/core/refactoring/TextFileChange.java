@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,9 @@
 package org.eclipse.ltk.core.refactoring;
 
 
+import java.util.List;
+import java.util.concurrent.Future;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -32,6 +35,7 @@ import org.eclipse.text.edits.UndoEdit;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 
+import org.eclipse.ltk.internal.core.refactoring.BatchedChangeExecution;
 import org.eclipse.ltk.internal.core.refactoring.BufferValidationState;
 import org.eclipse.ltk.internal.core.refactoring.Changes;
 import org.eclipse.ltk.internal.core.refactoring.ContentStamps;
@@ -82,6 +86,10 @@ public class TextFileChange extends TextChange {
 	private BufferValidationState fValidationState;
 	private ContentStamp fContentStamp;
 
+	// set by a composite change while it validates this change in a batched execution
+	private Future<RefactoringStatus> fBatchedCheck;
+	private List<IFile> fBatchedFilesToModify;
+
 	/**
 	 * Creates a new <code>TextFileChange</code> for the given file.
 	 *
@@ -177,23 +185,59 @@ public class TextFileChange extends TextChange {
 			monitor= new NullProgressMonitor();
 		try {
 			monitor.beginTask("", 1); //$NON-NLS-1$
-			if (fValidationState == null)
-				throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), "TextFileChange has not been initialialized")); //$NON-NLS-1$
-
-			boolean needsSaving= needsSaving();
-			RefactoringStatus result= fValidationState.isValid(needsSaving);
-			if (needsSaving) {
-				result.merge(Changes.validateModifiesFiles(new IFile[] { fFile}));
-			} else {
-				// we are reading the file. So it should be at least in sync
-				result.merge(Changes.checkInSync(new IFile[] { fFile}));
+			if (fBatchedCheck != null) {
+				RefactoringStatus result= BatchedChangeExecution.getResult(fBatchedCheck);
+				if (needsSaving())
+					fBatchedFilesToModify.add(fFile);
+				return result;
 			}
+			RefactoringStatus result= checkValidationState();
+			if (needsSaving())
+				result.merge(Changes.validateModifiesFiles(new IFile[] { fFile}));
 			return result;
 		} finally {
 			monitor.done();
 		}
 	}
 
+	/**
+	 * Validates this change like {@link #isValid(IProgressMonitor)}, except that a file that
+	 * needs saving is not validated for modification. Used by {@link CompositeChange} to validate
+	 * the changes of a batched execution concurrently, see
+	 * {@link #setBatchedValidation(Future, List)}.
+	 *
+	 * @return the validation status
+	 * @throws CoreException if the validation data has not been initialized
+	 */
+	RefactoringStatus checkValidationState() throws CoreException {
+		if (fValidationState == null)
+			throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), "TextFileChange has not been initialialized")); //$NON-NLS-1$
+
+		boolean needsSaving= needsSaving();
+		RefactoringStatus result= fValidationState.isValid(needsSaving);
+		if (!needsSaving) {
+			// we are reading the file. So it should be at least in sync
+			result.merge(Changes.checkInSync(new IFile[] { fFile}));
+		}
+		return result;
+	}
+
+	/**
+	 * Makes {@link #isValid(IProgressMonitor)} use the result of the given concurrent call of
+	 * {@link #checkValidationState()} and add the file to the given list instead of validating
+	 * it for modification. Subclasses that extend <code>isValid</code> and call the inherited
+	 * method therefore keep their own validation. Used by {@link CompositeChange} while it calls
+	 * <code>isValid</code> in a batched execution.
+	 *
+	 * @param check the running validation check, or <code>null</code> to reset the batched
+	 *            validation
+	 * @param filesToModify the list to add the file to if it needs saving, or <code>null</code>
+	 */
+	void setBatchedValidation(Future<RefactoringStatus> check, List<IFile> filesToModify) {
+		fBatchedCheck= check;
+		fBatchedFilesToModify= filesToModify;
+	}
+
 	@Override
 	public void dispose() {
 		if (fValidationState != null) {
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.ltk.core.refactoring.IRefactoringCoreStatusCodes;
+
+/**
+ * The state of a change executed in batched mode by
+ * {@link org.eclipse.ltk.core.refactoring.PerformChangeOperation}. The execution is bound to the
+ * thread performing the change, so that composite changes can find it through
+ * {@link #getCurrent()}.
+ * <p>
+ * Composite changes use the threads of the execution to validate their text file changes
+ * concurrently and to connect the file buffers of upcoming text file changes while the changes
+ * are performed. The changes themselves are performed by the thread owning the scheduling rule.
+ * </p>
+ *
+ * @since 3.9
+ */
+public final class BatchedChangeExecution {
+
+	/**
+	 * Reads the files of consecutive text file changes ahead of their execution. A connected file
+	 * buffer is disconnected once its change has been performed, so at most a window of files is
+	 * kept in memory.
+	 */
+	public final class Prefetch {
+
+		private static final int PENDING= 0;
+		private static final int CONNECTED= 1;
+		private static final int RELEASED= 2;
+
+		private final IFile[] fFiles;
+		private final int[] fStates;
+		private final Map<IFile, Integer> fIndices;
+		private int fNext;
+
+		private Prefetch(IFile[] files) {
+			fFiles= files;
+			fStates= new int[files.length];
+			fIndices= new HashMap<>(files.length * 2);
+			for (int i= 0; i < files.length; i++)
+				fIndices.put(files[i], Integer.valueOf(i));
+			synchronized (this) {
+				while (fNext < Math.min(files.length, PREFETCH_WINDOW))
+					submitNext();
+			}
+		}
+
+		/**
+		 * Returns whether the given file is read ahead.
+		 *
+		 * @param file the file
+		 * @return <code>true</code> if the file is part of this prefetch
+		 */
+		public boolean contains(IFile file) {
+			return fIndices.containsKey(file);
+		}
+
+		/**
+		 * Releases the buffer of a file whose change has been performed and reads the next file.
+		 *
+		 * @param file the file of the performed change
+		 */
+		public void performed(IFile file) {
+			Integer index= fIndices.get(file);
+			if (index == null)
+				return;
+			boolean disconnect;
+			synchronized (this) {
+				disconnect= release(index.intValue());
+				if (fNext < fFiles.length)
+					submitNext();
+			}
+			if (disconnect)
+				disconnect(fFiles[index.intValue()]);
+		}
+
+		/**
+		 * Releases the buffers of all files. Files that are still being connected are disconnected
+		 * by the connecting thread.
+		 */
+		public void dispose() {
+			for (int i= 0; i < fFiles.length; i++) {
+				boolean disconnect;
+				synchronized (this) {
+					disconnect= release(i);
+				}
+				if (disconnect)
+					disconnect(fFiles[i]);
+			}
+		}
+
+		private boolean release(int index) {
+			boolean connected= fStates[index] == CONNECTED;
+			fStates[index]= RELEASED;
+			return connected;
+		}
+
+		private void submitNext() {
+			final int index= fNext++;
+			fExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					connect(index);
+				}
+			});
+		}
+
+		private void connect(int index) {
+			synchronized (this) {
+				if (fStates[index] != PENDING)
+					return;
+			}
+			IPath path= fFiles[index].getFullPath();
+			try {
+				FileBuffers.getTextFileBufferManager().connect(path, LocationKind.IFILE, null);
+			} catch (CoreException e) {
+				// the change reports the problem when it connects the buffer itself
+				return;
+			}
+			boolean disconnect;
+			synchronized (this) {
+				disconnect= fStates[index] == RELEASED;
+				if (!disconnect)
+					fStates[index]= CONNECTED;
+			}
+			if (disconnect)
+				disconnect(fFiles[index]);
+		}
+
+		private void disconnect(IFile file) {
+			try {
+				FileBuffers.getTextFileBufferManager().disconnect(file.getFullPath(), LocationKind.IFILE, null);
+			} catch (CoreException e) {
+				RefactoringCorePlugin.log(e);
+			}
+		}
+	}
+
+	/** Number of files read ahead of the text file change being performed */
+	private static final int PREFETCH_WINDOW= 64;
+
+	private static final ThreadLocal<BatchedChangeExecution> fgCurrent= new ThreadLocal<>();
+
+	private final ExecutorService fExecutor;
+	private final BatchedChangeExecution fPrevious;
+
+	private BatchedChangeExecution(BatchedChangeExecution previous) {
+		fExecutor= Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		fPrevious= previous;
+	}
+
+	/**
+	 * Starts a batched execution in the current thread.
+	 *
+	 * @return the execution, to be ended with {@link #end()} by the same thread
+	 */
+	public static BatchedChangeExecution begin() {
+		BatchedChangeExecution result= new BatchedChangeExecution(fgCurrent.get());
+		fgCurrent.set(result);
+		return result;
+	}
+
+	/**
+	 * Returns the batched execution of the current thread.
+	 *
+	 * @return the execution, or <code>null</code> if the current thread does not execute a change
+	 *         in batched mode
+	 */
+	public static BatchedChangeExecution getCurrent() {
+		return fgCurrent.get();
+	}
+
+	/**
+	 * Ends this execution and stops its threads.
+	 */
+	public void end() {
+		if (fPrevious != null)
+			fgCurrent.set(fPrevious);
+		else
+			fgCurrent.remove();
+		fExecutor.shutdown();
+	}
+
+	/**
+	 * Runs the given task on a thread of this execution.
+	 *
+	 * @param task the task
+	 * @return the future result of the task, see {@link #getResult(Future)}
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return fExecutor.submit(task);
+	}
+
+	/**
+	 * Reads the given files ahead of the execution of their changes.
+	 *
+	 * @param files the distinct files of consecutive text file changes, in the order the changes
+	 *            are performed
+	 * @return the prefetch, to be disposed by the caller
+	 */
+	public Prefetch prefetch(IFile[] files) {
+		return new Prefetch(files);
+	}
+
+	/**
+	 * Waits for the result of a task submitted to this execution.
+	 *
+	 * @param future the future result
+	 * @return the result
+	 * @throws CoreException if the task failed
+	 */
+	public static <T> T getResult(Future<T> future) throws CoreException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), IRefactoringCoreStatusCodes.INTERNAL_ERROR, cause.getMessage(), cause));
+		}
+	}
+}
@@ -20,6 +20,15 @@ public final class RefactoringPreferenceConstants {
 	/** The shared refactoring history preference */
 	public static final String PREFERENCE_SHARED_REFACTORING_HISTORY= "org.eclipse.ltk.core.refactoring.enable.project.refactoring.history"; //$NON-NLS-1$
 
+	/**
+	 * The indexed refactoring history preference. If set, the refactoring
+	 * histories in the workspace metadata are stored in an append-only log
+	 * with a time stamp index.
+	 *
+	 * @since 3.9
+	 */
+	public static final String PREFERENCE_INDEXED_REFACTORING_HISTORY= "org.eclipse.ltk.core.refactoring.enable.indexed.refactoring.history"; //$NON-NLS-1$
+
 	private RefactoringPreferenceConstants() {
 		// Not for instantiation
 	}
@@ -0,0 +1,647 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+
+/**
+ * Refactoring history of one project, or of the workspace, stored in a single
+ * append-only binary log.
+ * <p>
+ * The log holds one record per added or removed refactoring and per comment
+ * change. The refactorings are kept as serialized refactoring sessions with a
+ * single refactoring. An in-memory index maps time stamps to the record of the
+ * live refactoring, so that time range queries and descriptor lookups take
+ * logarithmic time. The index is persisted next to the log and only the records
+ * appended after it has been written are scanned when the log is opened.
+ * </p>
+ * <p>
+ * Log layout, all integers are big endian:
+ * </p>
+ * <pre>
+ * int magic, int version
+ * record*: byte kind, long stamp, int length, byte[length] payload
+ *   ADD:     int length, UTF-8 description, int length, UTF-8 session
+ *   REMOVE:  empty payload
+ *   COMMENT: UTF-8 comment
+ * </pre>
+ *
+ * @since 3.9
+ */
+final class RefactoringHistoryLog {
+
+	/** The index entry of a live refactoring */
+	private static final class Entry {
+
+		/** The offset of the add record */
+		final long fOffset;
+
+		/** The description */
+		final String fDescription;
+
+		/** The comment set after the refactoring has been added, or <code>null</code> */
+		String fComment;
+
+		Entry(final long offset, final String description) {
+			fOffset= offset;
+			fDescription= description;
+		}
+	}
+
+	/** The name of the log file */
+	static final String NAME_LOG_FILE= "refactorings.log"; //$NON-NLS-1$
+
+	/** The name of the index file */
+	static final String NAME_LOG_INDEX_FILE= "refactorings.log.index"; //$NON-NLS-1$
+
+	/** The log file magic number */
+	private static final int MAGIC_LOG= 0x52484C47;
+
+	/** The index file magic number */
+	private static final int MAGIC_INDEX= 0x52484C49;
+
+	/** The format version */
+	private static final int VERSION= 1;
+
+	/** The size of the file header */
+	private static final int HEADER_SIZE= 8;
+
+	/** The size of a record header */
+	private static final int RECORD_HEADER_SIZE= 13;
+
+	private static final byte KIND_ADD= 1;
+
+	private static final byte KIND_REMOVE= 2;
+
+	private static final byte KIND_COMMENT= 3;
+
+	/** Number of records scanned behind the index that cause the index to be rewritten */
+	private static final int INDEX_UPDATE_THRESHOLD= 32;
+
+	/** Minimal log size to consider compaction */
+	private static final long COMPACTION_THRESHOLD= 64 * 1024;
+
+	/** Number of recently used logs whose index is kept in memory */
+	private static final int CACHED_LOGS= 8;
+
+	/**
+	 * The logs in use, keyed by their folder. There is at most one log per
+	 * folder, since clients synchronize on the log.
+	 */
+	private static final Map<File, WeakReference<RefactoringHistoryLog>> fgLogs= new HashMap<>();
+
+	/** The recently used logs, least recently used first */
+	private static final Map<File, RefactoringHistoryLog> fgRecentLogs= new LinkedHashMap<File, RefactoringHistoryLog>(CACHED_LOGS, 0.75f, true) {
+
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<File, RefactoringHistoryLog> eldest) {
+			return size() > CACHED_LOGS;
+		}
+	};
+
+	/**
+	 * Returns the shared log of the specified history folder.
+	 *
+	 * @param folder
+	 *            the history folder
+	 * @return the log
+	 */
+	static RefactoringHistoryLog getLog(final File folder) {
+		synchronized (fgLogs) {
+			final WeakReference<RefactoringHistoryLog> reference= fgLogs.get(folder);
+			RefactoringHistoryLog log= reference != null ? reference.get() : null;
+			if (log == null) {
+				for (final Iterator<WeakReference<RefactoringHistoryLog>> iterator= fgLogs.values().iterator(); iterator.hasNext();) {
+					if (iterator.next().get() == null)
+						iterator.remove();
+				}
+				log= new RefactoringHistoryLog(folder);
+				fgLogs.put(folder, new WeakReference<>(log));
+			}
+			fgRecentLogs.put(folder, log);
+			return log;
+		}
+	}
+
+	/** The log file */
+	private final File fLogFile;
+
+	/** The index file */
+	private final File fIndexFile;
+
+	/** The live refactorings by time stamp, or <code>null</code> if not loaded */
+	private TreeMap<Long, Entry> fEntries;
+
+	/** The end of the last complete record, or <code>-1</code> if not loaded */
+	private long fLength= -1;
+
+	/**
+	 * The length of the log file when it has been read or written last. It
+	 * exceeds {@link #fLength} by the size of a partially written tail record.
+	 */
+	private long fFileLength= -1;
+
+	/** The number of bytes of live add and comment records */
+	private long fLiveBytes;
+
+	/**
+	 * Creates a new refactoring history log.
+	 *
+	 * @param folder
+	 *            the history folder
+	 */
+	private RefactoringHistoryLog(final File folder) {
+		fLogFile= new File(folder, NAME_LOG_FILE);
+		fIndexFile= new File(folder, NAME_LOG_INDEX_FILE);
+	}
+
+	/**
+	 * Does the log file exist?
+	 *
+	 * @return <code>true</code> if the log file exists
+	 */
+	synchronized boolean exists() {
+		return fLogFile.isFile();
+	}
+
+	/**
+	 * Returns the refactoring descriptor proxies in the specified time range.
+	 *
+	 * @param project
+	 *            the project name, or <code>null</code> for the workspace
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @return the proxies in ascending time stamp order
+	 * @throws IOException
+	 *             if the log could not be read
+	 */
+	synchronized RefactoringDescriptorProxy[] getProxies(final String project, final long start, final long end) throws IOException {
+		ensureLoaded();
+		if (start > end)
+			return new RefactoringDescriptorProxy[0];
+		final NavigableMap<Long, Entry> range= fEntries.subMap(Long.valueOf(start), true, Long.valueOf(end), true);
+		final RefactoringDescriptorProxy[] proxies= new RefactoringDescriptorProxy[range.size()];
+		int index= 0;
+		for (final Iterator<Map.Entry<Long, Entry>> iterator= range.entrySet().iterator(); iterator.hasNext();) {
+			final Map.Entry<Long, Entry> entry= iterator.next();
+			proxies[index++]= new DefaultRefactoringDescriptorProxy(entry.getValue().fDescription, project, entry.getKey().longValue());
+		}
+		return proxies;
+	}
+
+	/**
+	 * Reads the serialized refactoring session of the refactoring with the
+	 * specified time stamp.
+	 *
+	 * @param stamp
+	 *            the time stamp
+	 * @return the UTF-8 encoded session, or <code>null</code> if there is no
+	 *         such refactoring
+	 * @throws IOException
+	 *             if the log could not be read
+	 */
+	synchronized byte[] readSession(final long stamp) throws IOException {
+		ensureLoaded();
+		final Entry entry= fEntries.get(Long.valueOf(stamp));
+		if (entry == null)
+			return null;
+		try (RandomAccessFile file= new RandomAccessFile(fLogFile, "r")) { //$NON-NLS-1$
+			file.seek(entry.fOffset + RECORD_HEADER_SIZE);
+			file.skipBytes(file.readInt());
+			final byte[] session= new byte[file.readInt()];
+			file.readFully(session);
+			return session;
+		}
+	}
+
+	/**
+	 * Returns the comment which has been set after the refactoring with the
+	 * specified time stamp has been added.
+	 *
+	 * @param stamp
+	 *            the time stamp
+	 * @return the comment, or <code>null</code> if the comment of the session
+	 *         applies
+	 * @throws IOException
+	 *             if the log could not be read
+	 */
+	synchronized String getComment(final long stamp) throws IOException {
+		ensureLoaded();
+		final Entry entry= fEntries.get(Long.valueOf(stamp));
+		return entry != null ? entry.fComment : null;
+	}
+
+	/**
+	 * Adds a refactoring to the log. An existing refactoring with the same time
+	 * stamp is replaced.
+	 *
+	 * @param stamp
+	 *            the time stamp
+	 * @param description
+	 *            the description
+	 * @param session
+	 *            the UTF-8 encoded session containing the refactoring
+	 * @throws IOException
+	 *             if the log could not be written
+	 */
+	synchronized void add(final long stamp, final String description, final byte[] session) throws IOException {
+		ensureLoaded();
+		final byte[] bytes= description.getBytes(StandardCharsets.UTF_8);
+		final long offset= append(KIND_ADD, stamp, bytes, session);
+		final Entry previous= fEntries.put(Long.valueOf(stamp), new Entry(offset, description));
+		if (previous != null) {
+			try (RandomAccessFile file= new RandomAccessFile(fLogFile, "r")) { //$NON-NLS-1$
+				fLiveBytes-= liveBytes(file, previous);
+			}
+		}
+		fLiveBytes+= fLength - offset;
+	}
+
+	/**
+	 * Removes refactorings from the log.
+	 *
+	 * @param stamps
+	 *            the time stamps of the refactorings
+	 * @throws IOException
+	 *             if the log could not be written
+	 */
+	synchronized void remove(final long[] stamps) throws IOException {
+		ensureLoaded();
+		if (fEntries.isEmpty())
+			return;
+		try (RandomAccessFile file= new RandomAccessFile(fLogFile, "r")) { //$NON-NLS-1$
+			for (int index= 0; index < stamps.length; index++) {
+				final Entry entry= fEntries.remove(Long.valueOf(stamps[index]));
+				if (entry != null) {
+					fLiveBytes-= liveBytes(file, entry);
+					append(KIND_REMOVE, stamps[index], null, null);
+				}
+			}
+		}
+		compactIfWasteful();
+	}
+
+	/**
+	 * Sets the comment of a refactoring.
+	 *
+	 * @param stamp
+	 *            the time stamp of the refactoring
+	 * @param comment
+	 *            the comment
+	 * @throws IOException
+	 *             if the log could not be written
+	 */
+	synchronized void setComment(final long stamp, final String comment) throws IOException {
+		ensureLoaded();
+		final Entry entry= fEntries.get(Long.valueOf(stamp));
+		if (entry != null) {
+			final byte[] bytes= comment.getBytes(StandardCharsets.UTF_8);
+			if (entry.fComment != null)
+				fLiveBytes-= RECORD_HEADER_SIZE + entry.fComment.getBytes(StandardCharsets.UTF_8).length;
+			entry.fComment= comment;
+			append(KIND_COMMENT, stamp, bytes, null);
+			fLiveBytes+= RECORD_HEADER_SIZE + bytes.length;
+			compactIfWasteful();
+		}
+	}
+
+	/**
+	 * Rewrites the log with the live refactorings only and writes a new index.
+	 *
+	 * @throws IOException
+	 *             if the log could not be compacted
+	 */
+	synchronized void compact() throws IOException {
+		ensureLoaded();
+		final File temp= new File(fLogFile.getParentFile(), NAME_LOG_FILE + ".tmp"); //$NON-NLS-1$
+		final TreeMap<Long, Entry> entries= new TreeMap<>();
+		try (RandomAccessFile input= new RandomAccessFile(fLogFile, "r"); //$NON-NLS-1$
+				DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			output.writeInt(MAGIC_LOG);
+			output.writeInt(VERSION);
+			for (final Iterator<Map.Entry<Long, Entry>> iterator= fEntries.entrySet().iterator(); iterator.hasNext();) {
+				final Map.Entry<Long, Entry> mapEntry= iterator.next();
+				final Entry entry= mapEntry.getValue();
+				input.seek(entry.fOffset + 9);
+				final byte[] payload= new byte[input.readInt()];
+				input.readFully(payload);
+				final long offset= output.size();
+				output.writeByte(KIND_ADD);
+				output.writeLong(mapEntry.getKey().longValue());
+				output.writeInt(payload.length);
+				output.write(payload);
+				final Entry compacted= new Entry(offset, entry.fDescription);
+				if (entry.fComment != null) {
+					final byte[] comment= entry.fComment.getBytes(StandardCharsets.UTF_8);
+					output.writeByte(KIND_COMMENT);
+					output.writeLong(mapEntry.getKey().longValue());
+					output.writeInt(comment.length);
+					output.write(comment);
+					compacted.fComment= entry.fComment;
+				}
+				entries.put(mapEntry.getKey(), compacted);
+			}
+		}
+		try {
+			replace(temp, fLogFile);
+		} catch (IOException exception) {
+			temp.delete();
+			throw exception;
+		}
+		fIndexFile.delete();
+		fEntries= entries;
+		fLength= fLogFile.length();
+		fFileLength= fLength;
+		fLiveBytes= fLength - HEADER_SIZE;
+		writeIndex();
+	}
+
+	/**
+	 * Deletes the log and its index.
+	 */
+	synchronized void delete() {
+		fIndexFile.delete();
+		fLogFile.delete();
+		fEntries= null;
+		fLength= -1;
+		fFileLength= -1;
+	}
+
+	private void compactIfWasteful() throws IOException {
+		if (fLength > COMPACTION_THRESHOLD && fLength - HEADER_SIZE > 2 * fLiveBytes)
+			compact();
+	}
+
+	/**
+	 * Replaces the target file by the source file. Readers see either the old
+	 * or the new file, also if the replacement is interrupted.
+	 *
+	 * @param source
+	 *            the new file
+	 * @param target
+	 *            the file to replace
+	 * @throws IOException
+	 *             if the file could not be replaced
+	 */
+	private static void replace(final File source, final File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException exception) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static long liveBytes(final RandomAccessFile file, final Entry entry) throws IOException {
+		file.seek(entry.fOffset + 9);
+		long bytes= RECORD_HEADER_SIZE + file.readInt();
+		if (entry.fComment != null)
+			bytes+= RECORD_HEADER_SIZE + entry.fComment.getBytes(StandardCharsets.UTF_8).length;
+		return bytes;
+	}
+
+	private long append(final byte kind, final long stamp, final byte[] first, final byte[] second) throws IOException {
+		final File folder= fLogFile.getParentFile();
+		if (!folder.isDirectory())
+			folder.mkdirs();
+		try (RandomAccessFile file= new RandomAccessFile(fLogFile, "rw")) { //$NON-NLS-1$
+			if (fLength < HEADER_SIZE) {
+				file.setLength(0);
+				file.writeInt(MAGIC_LOG);
+				file.writeInt(VERSION);
+				fLength= HEADER_SIZE;
+			} else {
+				// drops a partially written record
+				file.setLength(fLength);
+			}
+			final long offset= fLength;
+			int length= 0;
+			if (kind == KIND_ADD)
+				length= 8 + first.length + second.length;
+			else if (first != null)
+				length= first.length;
+			final DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.getFD()), 8192));
+			file.seek(offset);
+			output.writeByte(kind);
+			output.writeLong(stamp);
+			output.writeInt(length);
+			if (kind == KIND_ADD) {
+				output.writeInt(first.length);
+				output.write(first);
+				output.writeInt(second.length);
+				output.write(second);
+			} else if (first != null)
+				output.write(first);
+			output.flush();
+			fLength= offset + RECORD_HEADER_SIZE + length;
+			fFileLength= fLength;
+			return offset;
+		}
+	}
+
+	/**
+	 * Reads the log again, so that the index reflects the log file.
+	 *
+	 * @throws IOException
+	 *             if the log could not be read
+	 */
+	synchronized void reload() throws IOException {
+		fEntries= null;
+		ensureLoaded();
+	}
+
+	private void ensureLoaded() throws IOException {
+		// a partially written tail record is ignored until the next record overwrites it
+		if (fEntries != null && fLogFile.length() == Math.max(fFileLength, 0))
+			return;
+		fEntries= new TreeMap<>();
+		fLength= -1;
+		fFileLength= -1;
+		fLiveBytes= 0;
+		if (!fLogFile.isFile())
+			return;
+		fFileLength= fLogFile.length();
+		final long start= readIndex();
+		final int scanned= scan(start);
+		if (scanned > INDEX_UPDATE_THRESHOLD)
+			writeIndex();
+	}
+
+	private long readIndex() {
+		if (!fIndexFile.isFile())
+			return HEADER_SIZE;
+		try (DataInputStream input= new DataInputStream(new BufferedInputStream(new FileInputStream(fIndexFile)))) {
+			if (input.readInt() != MAGIC_INDEX || input.readInt() != VERSION)
+				return HEADER_SIZE;
+			final long covered= input.readLong();
+			final long live= input.readLong();
+			final int count= input.readInt();
+			if (covered > fLogFile.length())
+				return HEADER_SIZE;
+			for (int index= 0; index < count; index++) {
+				final long stamp= input.readLong();
+				final Entry entry= new Entry(input.readLong(), readString(input));
+				entry.fComment= input.readBoolean() ? readString(input) : null;
+				fEntries.put(Long.valueOf(stamp), entry);
+			}
+			fLiveBytes= live;
+			return covered;
+		} catch (IOException exception) {
+			fEntries.clear();
+			fLiveBytes= 0;
+			return HEADER_SIZE;
+		}
+	}
+
+	private void writeIndex() throws IOException {
+		final File temp= new File(fIndexFile.getParentFile(), NAME_LOG_INDEX_FILE + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			output.writeInt(MAGIC_INDEX);
+			output.writeInt(VERSION);
+			output.writeLong(fLength);
+			output.writeLong(fLiveBytes);
+			output.writeInt(fEntries.size());
+			for (final Iterator<Map.Entry<Long, Entry>> iterator= fEntries.entrySet().iterator(); iterator.hasNext();) {
+				final Map.Entry<Long, Entry> mapEntry= iterator.next();
+				final Entry entry= mapEntry.getValue();
+				output.writeLong(mapEntry.getKey().longValue());
+				output.writeLong(entry.fOffset);
+				writeString(output, entry.fDescription);
+				output.writeBoolean(entry.fComment != null);
+				if (entry.fComment != null)
+					writeString(output, entry.fComment);
+			}
+		}
+		try {
+			replace(temp, fIndexFile);
+		} catch (IOException exception) {
+			temp.delete();
+			throw exception;
+		}
+	}
+
+	/**
+	 * Scans the records of the log file starting at the specified offset.
+	 *
+	 * @param start
+	 *            the offset of the first record to scan
+	 * @return the number of scanned records
+	 * @throws IOException
+	 *             if the log file could not be read
+	 */
+	private int scan(long start) throws IOException {
+		int scanned= 0;
+		try (DataInputStream input= new DataInputStream(new BufferedInputStream(new FileInputStream(fLogFile), 16 * 1024));
+				RandomAccessFile file= new RandomAccessFile(fLogFile, "r")) { //$NON-NLS-1$
+			if (input.readInt() != MAGIC_LOG || input.readInt() != VERSION)
+				throw new IOException("Unsupported refactoring history log format: " + fLogFile); //$NON-NLS-1$
+			if (start < HEADER_SIZE) {
+				start= HEADER_SIZE;
+			} else if (start > HEADER_SIZE) {
+				skipFully(input, start - HEADER_SIZE);
+			}
+			long offset= start;
+			while (true) {
+				final byte kind;
+				final long stamp;
+				final int length;
+				try {
+					kind= input.readByte();
+					stamp= input.readLong();
+					length= input.readInt();
+				} catch (EOFException exception) {
+					break;
+				}
+				if (offset + RECORD_HEADER_SIZE + length > fLogFile.length())
+					break; // partially written record
+				final Long key= Long.valueOf(stamp);
+				if (kind == KIND_ADD) {
+					final byte[] description= new byte[input.readInt()];
+					input.readFully(description);
+					skipFully(input, length - 4 - description.length);
+					final Entry previous= fEntries.put(key, new Entry(offset, new String(description, StandardCharsets.UTF_8)));
+					if (previous != null)
+						fLiveBytes-= liveBytes(file, previous);
+					fLiveBytes+= RECORD_HEADER_SIZE + length;
+				} else if (kind == KIND_REMOVE) {
+					skipFully(input, length);
+					final Entry previous= fEntries.remove(key);
+					if (previous != null)
+						fLiveBytes-= liveBytes(file, previous);
+				} else if (kind == KIND_COMMENT) {
+					final byte[] comment= new byte[length];
+					input.readFully(comment);
+					final Entry entry= fEntries.get(key);
+					if (entry != null) {
+						if (entry.fComment != null)
+							fLiveBytes-= RECORD_HEADER_SIZE + entry.fComment.getBytes(StandardCharsets.UTF_8).length;
+						entry.fComment= new String(comment, StandardCharsets.UTF_8);
+						fLiveBytes+= RECORD_HEADER_SIZE + length;
+					}
+				} else {
+					break; // corrupt record
+				}
+				offset+= RECORD_HEADER_SIZE + length;
+				scanned++;
+			}
+			fLength= offset;
+		}
+		return scanned;
+	}
+
+	private static void skipFully(final DataInputStream input, long count) throws IOException {
+		while (count > 0) {
+			final long skipped= input.skip(count);
+			if (skipped <= 0) {
+				input.readByte();
+				count--;
+			} else
+				count-= skipped;
+		}
+	}
+
+	private static String readString(final DataInputStream input) throws IOException {
+		final byte[] bytes= new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(final DataOutputStream output, final String string) throws IOException {
+		final byte[] bytes= string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,9 @@ package org.eclipse.ltk.internal.core.refactoring.history;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,6 +32,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -64,6 +68,7 @@ import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
@@ -79,6 +84,7 @@ import org.eclipse.ltk.internal.core.refactoring.IRefactoringSerializationConsta
 import org.eclipse.ltk.internal.core.refactoring.Messages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringPreferenceConstants;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionReader;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionTransformer;
 
@@ -144,6 +150,212 @@ public final class RefactoringHistoryManager {
 		return new CoreException(new Status(IStatus.ERROR, RefactoringCore.ID_PLUGIN, IRefactoringCoreStatusCodes.REFACTORING_HISTORY_IO_ERROR, exception.getLocalizedMessage(), exception));
 	}
 
+	/**
+	 * Writes the refactorings of the binary history log in the specified
+	 * history store back into the history index tree and deletes the log.
+	 * <p>
+	 * This is necessary before the history store is shared with other
+	 * workspaces, which only understand the history index tree.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history file store
+	 * @param project
+	 *            the non-empty name of the project, or <code>null</code> for
+	 *            the workspace
+	 * @throws CoreException
+	 *             if an error occurs while exporting the log
+	 */
+	static void exportHistoryLog(final IFileStore store, final String project) throws CoreException {
+		final File folder= store.toLocalFile(EFS.NONE, null);
+		if (folder == null)
+			return;
+		final RefactoringHistoryLog log= RefactoringHistoryLog.getLog(folder);
+		synchronized (log) {
+			if (!log.exists())
+				return;
+			try {
+				final RefactoringHistoryManager manager= new RefactoringHistoryManager(store, project);
+				final RefactoringDescriptorProxy[] proxies= log.getProxies(project, 0, Long.MAX_VALUE);
+				for (int index= 0; index < proxies.length; index++) {
+					final RefactoringDescriptor descriptor= readLogDescriptor(log, project, proxies[index].getTimeStamp());
+					if (descriptor != null)
+						manager.addToIndexTree(descriptor, false, new NullProgressMonitor());
+				}
+			} catch (IOException exception) {
+				throw createCoreException(exception);
+			}
+			log.delete();
+		}
+	}
+
+	/**
+	 * Returns the binary history log of the specified history store.
+	 * <p>
+	 * The log is only used for history stores in the workspace metadata, and
+	 * only if the preference {@link RefactoringPreferenceConstants#PREFERENCE_INDEXED_REFACTORING_HISTORY}
+	 * is set. Shared project histories remain in the history index tree. The
+	 * history index tree is migrated into the log when the log is used for the
+	 * first time, and written back once the preference has been reset.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history file store
+	 * @param project
+	 *            the non-empty name of the project, or <code>null</code> for
+	 *            the workspace
+	 * @return the log, or <code>null</code> to use the history index tree
+	 * @throws CoreException
+	 *             if an error occurs while migrating the history
+	 */
+	private static RefactoringHistoryLog getHistoryLog(final IFileStore store, final String project) throws CoreException {
+		final IFileStore root= EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER);
+		if (!root.isParentOf(store))
+			return null;
+		final File folder= store.toLocalFile(EFS.NONE, null);
+		if (folder == null)
+			return null;
+		final RefactoringHistoryLog log= RefactoringHistoryLog.getLog(folder);
+		final boolean enabled= Platform.getPreferencesService().getBoolean(RefactoringCorePlugin.getPluginId(), RefactoringPreferenceConstants.PREFERENCE_INDEXED_REFACTORING_HISTORY, false, null);
+		synchronized (log) {
+			if (!enabled) {
+				if (log.exists())
+					exportHistoryLog(store, project);
+				return null;
+			}
+			if (!log.exists() && store.fetchInfo().exists()) {
+				final Set<IFileStore> folders= new LinkedHashSet<>();
+				final Set<Long> stamps= new HashSet<>();
+				try {
+					importIndexTree(store, log, folders, stamps);
+					if (log.exists() && !verifyImport(log, project, stamps)) {
+						log.delete();
+						RefactoringCorePlugin.logErrorMessage("Could not migrate the refactoring history in " + store + ", the history index tree is kept"); //$NON-NLS-1$ //$NON-NLS-2$
+						return null;
+					}
+				} catch (IOException exception) {
+					log.delete();
+					throw createCoreException(exception);
+				} catch (CoreException exception) {
+					log.delete();
+					throw exception;
+				}
+				if (log.exists())
+					deleteIndexFolders(store, folders);
+			}
+			return log;
+		}
+	}
+
+	/**
+	 * Adds the refactorings of the history index tree spanned by the specified
+	 * file store to the binary history log.
+	 *
+	 * @param store
+	 *            the file store spanning the history index tree
+	 * @param log
+	 *            the log to add the refactorings to
+	 * @param folders
+	 *            the set to add the folders of the imported history files to
+	 * @param stamps
+	 *            the set to add the time stamps of the imported refactorings
+	 *            to
+	 * @throws CoreException
+	 *             if an error occurs while reading the index tree or writing
+	 *             the log
+	 */
+	private static void importIndexTree(final IFileStore store, final RefactoringHistoryLog log, final Set<IFileStore> folders, final Set<Long> stamps) throws CoreException {
+		final IFileInfo info= store.fetchInfo();
+		if (info.isDirectory()) {
+			final IFileStore[] stores= store.childStores(EFS.NONE, null);
+			for (int index= 0; index < stores.length; index++)
+				importIndexTree(stores[index], log, folders, stamps);
+		} else if (info.exists() && store.getName().equalsIgnoreCase(RefactoringHistoryService.NAME_HISTORY_FILE)) {
+			folders.add(store.getParent());
+			try (InputStream input= new BufferedInputStream(store.openInputStream(EFS.NONE, null))) {
+				final DocumentBuilder parser= DocumentBuilderFactory.newInstance().newDocumentBuilder();
+				parser.setErrorHandler(new DefaultHandler());
+				final Document document= parser.parse(new InputSource(input));
+				final Element root= document.getDocumentElement();
+				final NodeList list= document.getElementsByTagName(IRefactoringSerializationConstants.ELEMENT_REFACTORING);
+				for (int offset= 0; offset < list.getLength(); offset++) {
+					final Element element= (Element) list.item(offset);
+					final long stamp;
+					try {
+						stamp= Long.parseLong(element.getAttribute(IRefactoringSerializationConstants.ATTRIBUTE_STAMP));
+					} catch (NumberFormatException exception) {
+						continue;
+					}
+					final Document session= parser.newDocument();
+					final Node node= session.appendChild(session.importNode(root, false));
+					node.appendChild(session.importNode(element, true));
+					final ByteArrayOutputStream output= new ByteArrayOutputStream(1024);
+					writeNode(output, session);
+					log.add(stamp, element.getAttribute(IRefactoringSerializationConstants.ATTRIBUTE_DESCRIPTION), output.toByteArray());
+					stamps.add(Long.valueOf(stamp));
+				}
+			} catch (ParserConfigurationException exception) {
+				throw createCoreException(exception);
+			} catch (IOException exception) {
+				throw createCoreException(exception);
+			} catch (SAXException exception) {
+				throw createCoreException(exception);
+			}
+		}
+	}
+
+	/**
+	 * Reads the binary history log again from disk and checks that it
+	 * contains exactly the imported refactorings.
+	 *
+	 * @param log
+	 *            the history log
+	 * @param project
+	 *            the non-empty name of the project, or <code>null</code> for
+	 *            the workspace
+	 * @param stamps
+	 *            the time stamps of the imported refactorings
+	 * @return <code>true</code> if the log is complete, <code>false</code>
+	 *         otherwise
+	 * @throws IOException
+	 *             if the log could not be read
+	 */
+	private static boolean verifyImport(final RefactoringHistoryLog log, final String project, final Set<Long> stamps) throws IOException {
+		log.reload();
+		final RefactoringDescriptorProxy[] proxies= log.getProxies(project, Long.MIN_VALUE, Long.MAX_VALUE);
+		if (proxies.length != stamps.size())
+			return false;
+		for (int index= 0; index < proxies.length; index++) {
+			final long stamp= proxies[index].getTimeStamp();
+			if (!stamps.contains(Long.valueOf(stamp)) || log.readSession(stamp) == null)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the history and index files of the specified folders of the
+	 * history index tree, and the folders which have become empty.
+	 *
+	 * @param store
+	 *            the file store spanning the history index tree
+	 * @param folders
+	 *            the folders of the imported history files
+	 * @throws CoreException
+	 *             if an error occurs while deleting the files
+	 */
+	private static void deleteIndexFolders(final IFileStore store, final Set<IFileStore> folders) throws CoreException {
+		for (final Iterator<IFileStore> iterator= folders.iterator(); iterator.hasNext();) {
+			IFileStore folder= iterator.next();
+			folder.getChild(RefactoringHistoryService.NAME_HISTORY_FILE).delete(EFS.NONE, null);
+			folder.getChild(RefactoringHistoryService.NAME_INDEX_FILE).delete(EFS.NONE, null);
+			while (folder != null && store.isParentOf(folder) && folder.childNames(EFS.NONE, null).length == 0) {
+				folder.delete(EFS.NONE, null);
+				folder= folder.getParent();
+			}
+		}
+	}
+
 	/**
 	 * Escapes the specified string for the history index.
 	 *
@@ -183,6 +395,79 @@ public final class RefactoringHistoryManager {
 		return arguments;
 	}
 
+	/**
+	 * Reads the refactoring descriptor with the specified time stamp from the
+	 * binary history log.
+	 *
+	 * @param log
+	 *            the history log
+	 * @param project
+	 *            the non-empty name of the project, or <code>null</code> for
+	 *            the workspace
+	 * @param stamp
+	 *            the time stamp of the refactoring
+	 * @return the refactoring descriptor, or <code>null</code>
+	 * @throws CoreException
+	 *             if an error occurs while reading the session
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static RefactoringDescriptor readLogDescriptor(final RefactoringHistoryLog log, final String project, final long stamp) throws CoreException, IOException {
+		final byte[] bytes= log.readSession(stamp);
+		if (bytes == null)
+			return null;
+		final RefactoringSessionDescriptor session= new RefactoringSessionReader(false, project).readSession(new InputSource(new ByteArrayInputStream(bytes)));
+		if (session == null)
+			return null;
+		final RefactoringDescriptor[] descriptors= session.getRefactorings();
+		for (int index= 0; index < descriptors.length; index++) {
+			if (descriptors[index].getTimeStamp() == stamp) {
+				final String comment= log.getComment(stamp);
+				if (comment != null)
+					descriptors[index].setComment(comment);
+				return descriptors[index];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads refactoring descriptor proxies from the specified history store,
+	 * using its binary history log if enabled.
+	 *
+	 * @param store
+	 *            the history file store
+	 * @param project
+	 *            the name of the project, or <code>null</code> for the
+	 *            workspace
+	 * @param collection
+	 *            the collection of proxies to fill in
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @param task
+	 *            the task label to use
+	 * @throws CoreException
+	 *             if an error occurs
+	 */
+	private static void readHistoryProxies(final IFileStore store, final String project, final Collection<RefactoringDescriptorProxy> collection, final long start, final long end, final IProgressMonitor monitor, final String task) throws CoreException {
+		final RefactoringHistoryLog log= getHistoryLog(store, project);
+		if (log != null) {
+			try {
+				monitor.beginTask(task, 1);
+				collection.addAll(Arrays.asList(log.getProxies(project, start, end)));
+			} catch (IOException exception) {
+				throw createCoreException(exception);
+			} finally {
+				monitor.done();
+			}
+		} else
+			readRefactoringDescriptorProxies(store, project, collection, start, end, monitor, task);
+	}
+
 	/**
 	 * Reads refactoring descriptor proxies.
 	 *
@@ -809,6 +1094,41 @@ public final class RefactoringHistoryManager {
 	 *             if an error occurs while adding the descriptor to the history
 	 */
 	void addRefactoringDescriptor(final RefactoringDescriptor descriptor, final boolean sort, final IProgressMonitor monitor) throws CoreException {
+		final RefactoringHistoryLog log= getHistoryLog(fHistoryStore, fProjectName);
+		if (log == null) {
+			addToIndexTree(descriptor, sort, monitor);
+			return;
+		}
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 1);
+			final long stamp= descriptor.getTimeStamp();
+			if (stamp >= 0) {
+				final ByteArrayOutputStream output= new ByteArrayOutputStream(1024);
+				writeNode(output, transformDescriptor(descriptor, false));
+				log.add(stamp, descriptor.getDescription(), output.toByteArray());
+			}
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Adds the specified refactoring descriptor to the history index tree.
+	 *
+	 * @param descriptor
+	 *            the refactoring descriptor to add
+	 * @param sort
+	 *            <code>true</code> if the refactoring descriptor should be
+	 *            inserted into the history according to its time stamp,
+	 *            <code>false</code> to append it
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while adding the descriptor to the history
+	 */
+	private void addToIndexTree(final RefactoringDescriptor descriptor, final boolean sort, final IProgressMonitor monitor) throws CoreException {
 		try {
 			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 18);
 			final long stamp= descriptor.getTimeStamp();
@@ -964,10 +1284,10 @@ public final class RefactoringHistoryManager {
 			final Set<RefactoringDescriptorProxy> set= new HashSet<>();
 			try {
 				if (fHistoryStore.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
-					readRefactoringDescriptorProxies(fHistoryStore, fProjectName, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+					readHistoryProxies(fHistoryStore, fProjectName, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
 				final IFileStore store= EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER).getChild(RefactoringHistoryService.NAME_WORKSPACE_PROJECT);
 				if (store.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
-					readRefactoringDescriptorProxies(store, null, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+					readHistoryProxies(store, null, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
 			} catch (CoreException exception) {
 				RefactoringCorePlugin.log(exception);
 			}
@@ -1084,6 +1404,21 @@ public final class RefactoringHistoryManager {
 	 *             if an error occurs
 	 */
 	void removeRefactoringDescriptors(final RefactoringDescriptorProxy[] proxies, final IProgressMonitor monitor, final String task) throws CoreException {
+		final RefactoringHistoryLog log= getHistoryLog(fHistoryStore, fProjectName);
+		if (log != null) {
+			try {
+				monitor.beginTask(task, 1);
+				final long[] stamps= new long[proxies.length];
+				for (int index= 0; index < proxies.length; index++)
+					stamps[index]= proxies[index].getTimeStamp();
+				log.remove(stamps);
+			} catch (IOException exception) {
+				throw createCoreException(exception);
+			} finally {
+				monitor.done();
+			}
+			return;
+		}
 		try {
 			final Map<IPath, Collection<RefactoringDescriptorProxy>> paths= new HashMap<>();
 			monitor.beginTask(task, proxies.length + 300);
@@ -1130,6 +1465,9 @@ public final class RefactoringHistoryManager {
 			if (stamp >= 0) {
 				InputStream input= null;
 				try {
+					final RefactoringHistoryLog log= getHistoryLog(fHistoryStore, fProjectName);
+					if (log != null)
+						return readLogDescriptor(log, fProjectName, stamp);
 					final IFileStore folder= fHistoryStore.getFileStore(stampToPath(stamp));
 					final IFileStore file= folder.getChild(RefactoringHistoryService.NAME_HISTORY_FILE);
 					if (file.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists()) {
@@ -1147,6 +1485,8 @@ public final class RefactoringHistoryManager {
 					}
 				} catch (CoreException exception) {
 					RefactoringCorePlugin.log(exception);
+				} catch (IOException exception) {
+					RefactoringCorePlugin.log(exception);
 				} finally {
 					try {
 						if (input != null)
@@ -1178,7 +1518,15 @@ public final class RefactoringHistoryManager {
 		try {
 			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 100);
 			final long stamp= proxy.getTimeStamp();
-			if (stamp >= 0) {
+			final RefactoringHistoryLog log= getHistoryLog(fHistoryStore, fProjectName);
+			if (log != null) {
+				try {
+					if (stamp >= 0)
+						log.setComment(stamp, comment);
+				} catch (IOException exception) {
+					throw createCoreException(exception);
+				}
+			} else if (stamp >= 0) {
 				final IPath path= stampToPath(stamp);
 				final IFileStore folder= fHistoryStore.getFileStore(path);
 				final IFileStore history= folder.getChild(RefactoringHistoryService.NAME_HISTORY_FILE);
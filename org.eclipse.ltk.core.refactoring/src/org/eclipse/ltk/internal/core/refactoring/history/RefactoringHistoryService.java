@@ -249,6 +249,7 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 					final IFileStore history= EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(NAME_HISTORY_FOLDER);
 					if (enable) {
 						final IFileStore source= history.getChild(name);
+						RefactoringHistoryManager.exportHistoryLog(source, name);
 						if (source.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20)).exists()) {
 							IFileStore destination= EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER);
 							if (destination.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20)).exists())